@@ -0,0 +1,102 @@
+package category.tree.bot.benchmark;
+
+import category.tree.bot.cache.CategoryEntityCache;
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.repository.CategoryBulkRepository;
+import category.tree.bot.repository.CategoryHierarchyRepository;
+import category.tree.bot.repository.CategoryRepository;
+import category.tree.bot.repository.CategoryTreeRow;
+import category.tree.bot.service.implementations.CategoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Сервис категорий с репозиториями-заглушками: бенчмарки измеряют только процессор и выделения памяти.
+ */
+final class BenchmarkServices {
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * Сервис, который читает дерево из заранее подготовленных строк, а вставку и проверку имён не выполняет.
+     *
+     * @param treeRows   строки, возвращаемые {@code findTree}
+     * @param exportRows строки, возвращаемые при выгрузке
+     * @param treeCache  кэш дерева, который бенчмарк может сбрасывать
+     */
+    static CategoryServiceImpl categoryService(List<CategoryTreeRow> treeRows, List<CategoryExportRow> exportRows,
+                                               CategoryTreeCache treeCache) {
+        CategoryRepository repository = (CategoryRepository) Proxy.newProxyInstance(
+                CategoryRepository.class.getClassLoader(),
+                new Class<?>[]{CategoryRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findTree")) {
+                        return treeRows;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        CategoryBulkRepository bulkRepository = new CategoryBulkRepository(new JdbcTemplate()) {
+            @Override
+            public Set<String> findExistingNames(Collection<String> names) {
+                return Set.of();
+            }
+
+            @Override
+            public List<CategoryImportRow> insertAll(List<CategoryImportRow> categories) {
+                return List.of();
+            }
+
+            @Override
+            public void forEachForExport(Consumer<CategoryExportRow> consumer) {
+                exportRows.forEach(consumer);
+            }
+        };
+
+        CategoryHierarchyRepository hierarchyRepository = new CategoryHierarchyRepository(new JdbcTemplate()) {
+            @Override
+            public void addNodesByName(List<String> names) {
+            }
+        };
+
+        CategoryEntityCache entityCache = new CategoryEntityCache(null, treeCache) {
+            @Override
+            public void evictChildren() {
+            }
+        };
+
+        return new CategoryServiceImpl(repository, bulkRepository, hierarchyRepository, treeCache, entityCache,
+                new TransactionTemplate(new NoOpTransactionManager()), new BotMetrics(new SimpleMeterRegistry()));
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package category.tree.bot.benchmark;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.updatescontrol.commands.DownloadCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выгрузка дерева в Excel через {@code DownloadCommand.generateExcelFile} с заглушкой репозитория.
+ * Время включает запись временного файла на диск.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelExportBenchmark {
+
+    @Param({"BALANCED"})
+    public TreeShape shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private DownloadCommand downloadCommand;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        downloadCommand = new DownloadCommand(null, BenchmarkServices.categoryService(
+                List.of(), shape.exportRows(size), new CategoryTreeCache()));
+    }
+
+    @Benchmark
+    public long generateExcelFile() throws IOException {
+        File file = downloadCommand.generateExcelFile();
+        long length = file.length();
+        file.delete();
+        return length;
+    }
+}
@@ -0,0 +1,66 @@
+package category.tree.bot.benchmark;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.updatescontrol.commands.DownloadCommand;
+import category.tree.bot.updatescontrol.commands.UploadCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Импорт Excel-файла через {@code UploadCommand.processExcelFile}: чтение файла, проверка конфликтов
+ * и упорядочивание строк. Вставка в базу данных заменена заглушкой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ExcelImportBenchmark {
+
+    @Param({"BALANCED"})
+    public TreeShape shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private File file;
+    private UploadCommand uploadCommand;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = new DownloadCommand(null, BenchmarkServices.categoryService(
+                List.of(), shape.exportRows(size), new CategoryTreeCache())).generateExcelFile();
+        uploadCommand = new UploadCommand(null, new InMemoryChatStateStore(1, Duration.ofMinutes(30)), BenchmarkServices.categoryService(
+                List.of(), List.of(), new CategoryTreeCache()), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public CategoryImportReport processExcelFile() throws IOException {
+        return uploadCommand.processExcelFile(file);
+    }
+}
@@ -0,0 +1,56 @@
+package category.tree.bot.benchmark;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.service.implementations.CategoryServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение и отрисовка дерева категорий, как в {@code CategoryServiceImpl.viewTree}.
+ * Кэш сбрасывается перед каждым вызовом, поэтому измеряется полный путь: снимок из строк выборки и текст.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TreeRenderBenchmark {
+
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public TreeShape shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private final CategoryTreeCache treeCache = new CategoryTreeCache();
+    private CategoryServiceImpl categoryService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categoryService = BenchmarkServices.categoryService(shape.treeRows(size), List.of(), treeCache);
+    }
+
+    @Setup(Level.Invocation)
+    public void invalidate() {
+        treeCache.invalidate();
+    }
+
+    @Benchmark
+    public String viewTree() {
+        return categoryService.viewTree();
+    }
+}
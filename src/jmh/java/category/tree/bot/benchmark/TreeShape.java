@@ -0,0 +1,110 @@
+package category.tree.bot.benchmark;
+
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.repository.CategoryTreeRow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Форма синтетического дерева категорий для бенчмарков.
+ * Строки генерируются в том порядке, в котором их возвращает база данных: по глубине, родитель раньше подкатегорий.
+ */
+public enum TreeShape {
+
+    /**
+     * Один корень, все остальные категории — его прямые подкатегории.
+     */
+    WIDE {
+        @Override
+        long parentOf(long id) {
+            return id == 1 ? 0 : 1;
+        }
+    },
+
+    /**
+     * Цепочки длиной {@value #CHAIN_LENGTH}. Одна цепочка на миллион узлов дала бы текстовое
+     * представление в сотни гигабайт из-за отступов, поэтому глубина ограничена.
+     */
+    DEEP {
+        @Override
+        long parentOf(long id) {
+            return (id - 1) % CHAIN_LENGTH == 0 ? 0 : id - 1;
+        }
+    },
+
+    /**
+     * Полное двоичное дерево.
+     */
+    BALANCED {
+        @Override
+        long parentOf(long id) {
+            return id / 2;
+        }
+    };
+
+    static final int CHAIN_LENGTH = 100;
+
+    /**
+     * Возвращает идентификатор родителя или 0 для корня. Родитель всегда меньше потомка.
+     */
+    abstract long parentOf(long id);
+
+    /**
+     * Строки дерева из {@code size} категорий в порядке выборки {@code CategoryRepository.findTree}.
+     */
+    public List<CategoryTreeRow> treeRows(int size) {
+        int[] depth = new int[size + 1];
+        List<List<TreeRow>> levels = new ArrayList<>();
+        for (long id = 1; id <= size; id++) {
+            long parent = parentOf(id);
+            int level = parent == 0 ? 0 : depth[(int) parent] + 1;
+            depth[(int) id] = level;
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(new TreeRow(id, name(id), parent == 0 ? null : parent, level));
+        }
+        List<CategoryTreeRow> rows = new ArrayList<>(size);
+        levels.forEach(rows::addAll);
+        return rows;
+    }
+
+    /**
+     * Строки выгрузки дерева из {@code size} категорий.
+     */
+    public List<CategoryExportRow> exportRows(int size) {
+        List<CategoryExportRow> rows = new ArrayList<>(size);
+        for (CategoryTreeRow row : treeRows(size)) {
+            rows.add(new CategoryExportRow(row.getName(), row.getParentId() == null ? null : name(row.getParentId())));
+        }
+        return rows;
+    }
+
+    private static String name(long id) {
+        return "Категория " + id;
+    }
+
+    private record TreeRow(Long id, String name, Long parentId, int depth) implements CategoryTreeRow {
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Long getParentId() {
+            return parentId;
+        }
+
+        @Override
+        public int getDepth() {
+            return depth;
+        }
+    }
+}
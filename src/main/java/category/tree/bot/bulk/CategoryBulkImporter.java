@@ -0,0 +1,148 @@
+package category.tree.bot.bulk;
+
+import category.tree.bot.dto.CategoryBulkResult;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.service.services.CategoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетная загрузка категорий из потока JSON с потоковой выдачей результатов.
+ *
+ * Элементы читаются {@link JsonCategoryReader} и применяются пакетами по {@code batchSize},
+ * каждый пакет в своей транзакции. После каждого пакета в выходной поток пишутся результаты его элементов —
+ * по одной строке NDJSON на элемент, в порядке входного потока, — и поток сбрасывается,
+ * поэтому ни запрос, ни ответ не накапливаются в памяти целиком.
+ */
+@Component
+public class CategoryBulkImporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryBulkImporter.class);
+
+    /**
+     * Количество элементов, применяемых в одной транзакции.
+     */
+    public static final int BATCH_SIZE = 1000;
+
+    private static final String MISSING_NAME = "не указано имя категории";
+    private static final String BATCH_FAILED = "не удалось сохранить пакет, элементы пакета не применены";
+
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    private final JsonCategoryReader reader = new JsonCategoryReader();
+    private final int batchSize;
+
+    /**
+     * Конструктор загрузки.
+     *
+     * @param categoryService Сервис категорий.
+     * @param objectMapper    Сериализация результатов.
+     */
+    @Autowired
+    public CategoryBulkImporter(CategoryService categoryService, ObjectMapper objectMapper) {
+        this(categoryService, objectMapper, BATCH_SIZE);
+    }
+
+    CategoryBulkImporter(CategoryService categoryService, ObjectMapper objectMapper, int batchSize) {
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Применяет элементы входного потока и пишет результат каждого элемента в выходной поток.
+     * Если входной поток обрывается или не разбирается, уже прочитанные элементы применяются,
+     * а последней строкой ответа пишется ошибка разбора.
+     *
+     * @param input  Поток NDJSON или JSON-массив объектов {@code {"name", "parent"}}.
+     * @param output Поток для строк NDJSON с результатами.
+     * @return Количество обработанных элементов.
+     * @throws IOException Если не удаётся записать результаты.
+     */
+    public long importStream(InputStream input, OutputStream output) throws IOException {
+        List<CategoryImportRow> batch = new ArrayList<>(batchSize);
+        long[] items = {0};
+        try {
+            reader.read(input, row -> {
+                items[0] = row.rowNumber();
+                batch.add(row);
+                if (batch.size() == batchSize) {
+                    applyBatch(batch, output);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            applyBatch(batch, output);
+            logger.warn("Bulk category import stopped after {} items: {}", items[0], e.getMessage());
+            write(output, CategoryBulkResult.failed(items[0] + 1, null, "ошибка разбора JSON: " + e.getMessage()));
+            output.flush();
+            return items[0];
+        }
+        applyBatch(batch, output);
+        return items[0];
+    }
+
+    /**
+     * Применяет пакет в одной транзакции, пишет результаты его элементов и очищает пакет.
+     */
+    private void applyBatch(List<CategoryImportRow> batch, OutputStream output) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<CategoryImportRow> valid = new ArrayList<>(batch.size());
+        for (CategoryImportRow row : batch) {
+            if (row.name() != null) {
+                valid.add(row);
+            }
+        }
+
+        Map<Long, String> conflicts = new HashMap<>();
+        boolean saved = true;
+        if (!valid.isEmpty()) {
+            try {
+                categoryService.importCategories(valid, conflict -> conflicts.put(conflict.rowNumber(), conflict.reason()));
+            } catch (RuntimeException e) {
+                logger.warn("Bulk category import batch of {} items failed", valid.size(), e);
+                saved = false;
+            }
+        }
+
+        try {
+            for (CategoryImportRow row : batch) {
+                CategoryBulkResult result;
+                if (row.name() == null) {
+                    result = CategoryBulkResult.conflict(row, MISSING_NAME);
+                } else if (!saved) {
+                    result = CategoryBulkResult.failed(row.rowNumber(), row.name(), BATCH_FAILED);
+                } else if (conflicts.containsKey(row.rowNumber())) {
+                    result = CategoryBulkResult.conflict(row, conflicts.get(row.rowNumber()));
+                } else {
+                    result = CategoryBulkResult.created(row);
+                }
+                write(output, result);
+            }
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        batch.clear();
+    }
+
+    private void write(OutputStream output, CategoryBulkResult result) throws IOException {
+        output.write(objectMapper.writeValueAsBytes(result));
+        output.write('\n');
+    }
+}
@@ -0,0 +1,76 @@
+package category.tree.bot.bulk;
+
+import category.tree.bot.dto.CategoryImportRow;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение категорий из JSON.
+ *
+ * Принимает поток объектов {@code {"name": "...", "parent": "..."}}, разделённых переводами строк (NDJSON),
+ * или JSON-массив таких объектов. Поток разбирается парсером Jackson по токенам, поэтому в памяти
+ * находится только текущий элемент, независимо от размера тела запроса.
+ */
+public class JsonCategoryReader {
+
+    static final String NAME_FIELD = "name";
+    static final String PARENT_FIELD = "parent";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Читает элементы потока и передаёт каждый обработчику.
+     * Элемент без имени передаётся с именем null, чтобы обработчик мог сообщить о нём отдельно;
+     * пустой родитель считается отсутствующим.
+     *
+     * @param input    поток JSON
+     * @param consumer обработчик строк; номер строки — порядковый номер элемента, начиная с 1
+     * @return количество переданных обработчику строк
+     * @throws IOException если поток не удаётся прочитать или он не является NDJSON или массивом объектов
+     */
+    public long read(InputStream input, Consumer<CategoryImportRow> consumer) throws IOException {
+        long count = 0;
+        try (JsonParser parser = jsonFactory.createParser(input)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IOException("Элемент " + (count + 1) + " не является объектом категории");
+                }
+                consumer.accept(readRow(parser, ++count));
+                token = parser.nextToken();
+            }
+            if (array && token == null) {
+                throw new IOException("JSON-массив не закрыт");
+            }
+        }
+        return count;
+    }
+
+    private static CategoryImportRow readRow(JsonParser parser, long rowNumber) throws IOException {
+        String name = null;
+        String parent = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (NAME_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                name = parser.getText();
+            } else if (PARENT_FIELD.equals(field) && value == JsonToken.VALUE_STRING) {
+                parent = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        name = name == null || name.isBlank() ? null : name.trim();
+        parent = parent == null || parent.isBlank() ? null : parent.trim();
+        return new CategoryImportRow(rowNumber, name, parent);
+    }
+}
@@ -0,0 +1,92 @@
+package category.tree.bot.cache;
+
+import category.tree.bot.entity.Category;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Сброс второго уровня кэша Hibernate для категорий.
+ *
+ * Hibernate сам обновляет кэш при изменениях через сущности, но пакетный импорт вставляет строки через JDBC,
+ * а другие узлы кластера меняют дерево в своих процессах. Поэтому после пакетной вставки сбрасываются
+ * кэшированные списки подкатегорий, а после изменения дерева на другом узле — все кэши категорий.
+ */
+@Component
+public class CategoryEntityCache {
+
+    private static final String CHILDREN_ROLE = Category.class.getName() + ".children";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Конструктор сброса кэша.
+     *
+     * @param entityManagerFactory фабрика, владеющая вторым уровнем кэша
+     * @param treeCache            кэш дерева, сообщающий об изменениях на других узлах
+     */
+    public CategoryEntityCache(EntityManagerFactory entityManagerFactory, CategoryTreeCache treeCache) {
+        this.entityManagerFactory = entityManagerFactory;
+        treeCache.addStaleListener(this::evictAll);
+    }
+
+    /**
+     * Сбрасывает кэшированные списки подкатегорий после вставки категорий в обход Hibernate.
+     * Если вставка выполняется в транзакции, списки сбрасываются ещё раз после её завершения,
+     * чтобы список, прочитанный до фиксации вставки, не остался в кэше.
+     */
+    public void evictChildren() {
+        evictChildrenNow();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictChildrenNow();
+                }
+            });
+        }
+    }
+
+    /**
+     * Сбрасывает кэшированный список подкатегорий одной категории после вставки подкатегории в обход Hibernate,
+     * так же как {@link #evictChildren()}.
+     *
+     * @param parentId идентификатор категории, получившей подкатегорию
+     */
+    public void evictChildren(Long parentId) {
+        evictChildrenNow(parentId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evictChildrenNow(parentId);
+                }
+            });
+        }
+    }
+
+    /**
+     * Сбрасывает категории, их списки подкатегорий и разрешённые имена.
+     */
+    public void evictAll() {
+        Cache cache = cache();
+        cache.evictEntityData(Category.class);
+        cache.evictNaturalIdData(Category.class);
+        evictChildrenNow();
+    }
+
+    private void evictChildrenNow() {
+        cache().evictCollectionData(CHILDREN_ROLE);
+    }
+
+    private void evictChildrenNow(Long parentId) {
+        cache().evictCollectionData(CHILDREN_ROLE, parentId);
+    }
+
+    private Cache cache() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+}
@@ -0,0 +1,138 @@
+package category.tree.bot.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Кэш выгрузки дерева категорий в Excel.
+ *
+ * Хранит файл последней выгрузки вместе с версией дерева, по которой она построена, и {@code file_id},
+ * под которым Telegram сохранил файл после первой отправки. Пока версия дерева не изменилась,
+ * повторная выгрузка не строится заново, а отправляется по {@code file_id} без загрузки файла.
+ * Файл предыдущей версии удаляется только при следующей замене, чтобы не помешать отправке, начатой до неё.
+ */
+public class CategoryExportCache {
+
+    /**
+     * Построение файла выгрузки.
+     */
+    @FunctionalInterface
+    public interface Generator {
+        File generate() throws IOException;
+    }
+
+    private final ConcurrentMap<Long, FutureTask<Artifact>> building = new ConcurrentHashMap<>();
+    private Artifact current;
+    private Artifact previous;
+
+    /**
+     * Возвращает выгрузку для версии дерева, при необходимости строя её.
+     * Одновременные запросы одной версии ждут одного построения, а не строят файл каждый сам.
+     * Файл строится без блокировки кэша, поэтому запросы уже построенной версии не ждут построения новой.
+     *
+     * @param version   версия дерева, прочитанная до обращения к данным
+     * @param generator построение файла выгрузки
+     * @return выгрузка той же или более новой версии
+     * @throws IOException если файл не удалось построить
+     */
+    public Artifact getOrCreate(long version, Generator generator) throws IOException {
+        Artifact ready = currentFor(version);
+        if (ready != null) {
+            return ready;
+        }
+        FutureTask<Artifact> task = building.computeIfAbsent(version,
+                v -> new FutureTask<>(() -> publish(new Artifact(v, generator.generate()))));
+        try {
+            task.run();
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Построение выгрузки прервано");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw (Error) cause;
+        } finally {
+            building.remove(version, task);
+        }
+    }
+
+    private synchronized Artifact currentFor(long version) {
+        if (current != null && current.version >= version && current.file.exists()) {
+            return current;
+        }
+        return null;
+    }
+
+    /**
+     * Делает построенную выгрузку текущей. Если за время построения появилась выгрузка более новой версии,
+     * построенный файл удаляется и возвращается более новая выгрузка.
+     */
+    private synchronized Artifact publish(Artifact created) {
+        if (current != null && current.version >= created.version && current.file.exists()) {
+            created.file.delete();
+            return current;
+        }
+        if (previous != null) {
+            previous.file.delete();
+        }
+        previous = current;
+        current = created;
+        return created;
+    }
+
+    /**
+     * Выгрузка дерева определённой версии.
+     */
+    public static final class Artifact {
+        private final long version;
+        private final File file;
+        private volatile String fileId;
+
+        private Artifact(long version, File file) {
+            this.version = version;
+            this.file = file;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return {@code file_id} файла в Telegram или null, если файл ещё не отправлялся
+         */
+        public String getFileId() {
+            return fileId;
+        }
+
+        /**
+         * Запоминает {@code file_id}, который Telegram вернул после отправки файла.
+         */
+        public synchronized void rememberFileId(String fileId) {
+            this.fileId = fileId;
+        }
+
+        /**
+         * Забывает {@code file_id}, который Telegram отказался принять, если его ещё не заменили.
+         */
+        public synchronized void forgetFileId(String rejected) {
+            if (rejected.equals(fileId)) {
+                fileId = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package category.tree.bot.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Префиксный индекс имён категорий: упорядоченное множество пар «нормализованное имя — имя».
+ * Поиск переходит к началу диапазона за O(log n) и читает подряд не больше запрошенного количества имён,
+ * поэтому его время зависит от длины префикса и размера ответа, а не от числа категорий.
+ * Индекс строится один раз и затем меняется по одной категории при её добавлении или удалении,
+ * поиск может идти одновременно с изменениями.
+ */
+final class CategoryNameIndex {
+
+    /**
+     * Отделяет нормализованное имя от исходного; меньше любого символа имени,
+     * поэтому пары упорядочены сначала по нормализованному имени, затем по исходному.
+     */
+    private static final char SEPARATOR = '\0';
+
+    private final ConcurrentSkipListSet<String> entries = new ConcurrentSkipListSet<>();
+
+    static CategoryNameIndex of(Collection<String> names) {
+        CategoryNameIndex index = new CategoryNameIndex();
+        for (String name : names) {
+            index.add(name);
+        }
+        return index;
+    }
+
+    /**
+     * Приводит имя к виду, в котором оно хранится в индексе: без крайних пробелов, в нижнем регистре, «ё» как «е».
+     */
+    static String normalize(String name) {
+        return name.strip().toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    void add(String name) {
+        entries.add(entry(name));
+    }
+
+    void remove(String name) {
+        entries.remove(entry(name));
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Ищет имена, нормализованный вид которых начинается с префикса.
+     *
+     * @param prefix начало имени
+     * @param limit  максимальное количество результатов
+     * @return имена в алфавитном порядке нормализованных имён
+     */
+    List<String> search(String prefix, int limit) {
+        String key = normalize(prefix);
+        List<String> result = new ArrayList<>(Math.min(limit, 16));
+        if (key.isEmpty()) {
+            return result;
+        }
+        for (String entry : entries.tailSet(key)) {
+            if (result.size() >= limit || !entry.startsWith(key)) {
+                break;
+            }
+            result.add(entry.substring(entry.indexOf(SEPARATOR) + 1));
+        }
+        return result;
+    }
+
+    private static String entry(String name) {
+        return normalize(name) + SEPARATOR + name;
+    }
+}
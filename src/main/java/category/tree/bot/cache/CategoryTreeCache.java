@@ -0,0 +1,202 @@
+package category.tree.bot.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Кэш снимка дерева категорий.
+ * Снимок строится при первом чтении и переиспользуется до тех пор,
+ * пока изменения категорий не увеличат версию дерева.
+ *
+ * Префиксный индекс имён живёт дольше снимка: он строится по снимку один раз, а затем изменения,
+ * переданные в {@link #invalidateAdded(Collection)} и {@link #invalidateRemoved(Collection)},
+ * применяются к нему по одному имени после коммита. Индекс перестраивается целиком только после изменений,
+ * о составе которых кэш не знает: {@link #invalidate()}, {@link #markStale()} или откат транзакции.
+ */
+@Component
+public class CategoryTreeCache {
+
+    private final AtomicLong version = new AtomicLong();
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> staleListeners = new CopyOnWriteArrayList<>();
+    private volatile CategoryTreeSnapshot snapshot;
+    private final Object indexLock = new Object();
+    private volatile CategoryNameIndex nameIndex;
+
+    /**
+     * Возвращает актуальный снимок дерева, при необходимости загружая его.
+     *
+     * @param loader функция, строящая снимок для переданной версии дерева
+     * @return актуальный снимок дерева
+     */
+    public CategoryTreeSnapshot getOrLoad(LongFunction<CategoryTreeSnapshot> loader) {
+        CategoryTreeSnapshot current = snapshot;
+        if (current != null && current.getVersion() == version.get()) {
+            return current;
+        }
+        synchronized (this) {
+            long expectedVersion = version.get();
+            current = snapshot;
+            if (current != null && current.getVersion() == expectedVersion) {
+                return current;
+            }
+            CategoryTreeSnapshot loaded = loader.apply(expectedVersion);
+            if (version.get() == expectedVersion) {
+                snapshot = loaded;
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * Возвращает снимок дерева, если он уже загружен и актуален, не загружая его.
+     *
+     * @return актуальный снимок или null
+     */
+    public CategoryTreeSnapshot getIfCurrent() {
+        CategoryTreeSnapshot current = snapshot;
+        return current != null && current.getVersion() == version.get() ? current : null;
+    }
+
+    /**
+     * Ищет имена категорий по префиксному индексу без учёта регистра.
+     * Если индекса ещё нет, он строится по актуальному снимку дерева.
+     *
+     * @param prefix начало имени категории
+     * @param limit  максимальное количество результатов
+     * @param loader функция, строящая снимок для переданной версии дерева
+     * @return имена в алфавитном порядке нормализованных имён
+     */
+    public List<String> searchNames(String prefix, int limit, LongFunction<CategoryTreeSnapshot> loader) {
+        CategoryNameIndex index = nameIndex;
+        if (index == null) {
+            CategoryTreeSnapshot source = getOrLoad(loader);
+            index = CategoryNameIndex.of(source.names());
+            synchronized (indexLock) {
+                // Изменения, закоммиченные во время построения, не попали бы в индекс: такой индекс не публикуется.
+                if (nameIndex == null && source.getVersion() == version.get()) {
+                    nameIndex = index;
+                }
+            }
+        }
+        return index.search(prefix, limit);
+    }
+
+    /**
+     * Помечает текущий снимок устаревшим после изменения неизвестного состава и сбрасывает префиксный индекс.
+     * Если изменение выполняется в транзакции, версия увеличивается ещё раз после коммита,
+     * чтобы снимок, прочитанный до фиксации изменений, не попал в кэш.
+     * Слушатели изменений уведомляются после завершения транзакции или сразу, если её нет.
+     */
+    public void invalidate() {
+        invalidate(null);
+    }
+
+    /**
+     * Помечает текущий снимок устаревшим после добавления категорий так же, как {@link #invalidate()},
+     * и после коммита добавляет их имена в префиксный индекс.
+     *
+     * @param names имена добавленных категорий
+     */
+    public void invalidateAdded(Collection<String> names) {
+        invalidate(index -> names.forEach(index::add));
+    }
+
+    /**
+     * Помечает текущий снимок устаревшим после удаления категорий так же, как {@link #invalidate()},
+     * и после коммита удаляет их имена из префиксного индекса.
+     *
+     * @param names имена удалённых категорий
+     */
+    public void invalidateRemoved(Collection<String> names) {
+        invalidate(index -> names.forEach(index::remove));
+    }
+
+    private void invalidate(Consumer<CategoryNameIndex> indexChange) {
+        version.incrementAndGet();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    version.incrementAndGet();
+                    updateIndex(status == STATUS_COMMITTED ? indexChange : null);
+                    notifyChangeListeners();
+                }
+            });
+        } else {
+            updateIndex(indexChange);
+            notifyChangeListeners();
+        }
+    }
+
+    /**
+     * Применяет изменение к префиксному индексу или сбрасывает индекс, если изменение неизвестно.
+     */
+    private void updateIndex(Consumer<CategoryNameIndex> indexChange) {
+        synchronized (indexLock) {
+            CategoryNameIndex index = nameIndex;
+            if (index == null) {
+                return;
+            }
+            if (indexChange == null) {
+                nameIndex = null;
+            } else {
+                indexChange.accept(index);
+            }
+        }
+    }
+
+    /**
+     * Помечает текущий снимок устаревшим из-за изменения, сделанного вне этого процесса.
+     * В отличие от {@link #invalidate()}, слушатели изменений не уведомляются, а уведомляются слушатели внешних изменений.
+     */
+    public void markStale() {
+        version.incrementAndGet();
+        updateIndex(null);
+        for (Runnable listener : staleListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Добавляет слушателя локальных изменений дерева, например для оповещения других узлов кластера.
+     * Слушатель вызывается в потоке, завершившем изменение, и не должен обращаться к базе в этом потоке.
+     *
+     * @param listener действие после изменения дерева
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Добавляет слушателя изменений дерева, сделанных вне этого процесса, например для сброса других кэшей категорий.
+     *
+     * @param listener действие после {@link #markStale()}
+     */
+    public void addStaleListener(Runnable listener) {
+        staleListeners.add(listener);
+    }
+
+    /**
+     * Возвращает текущую версию дерева.
+     *
+     * @return версия дерева
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private void notifyChangeListeners() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
+    }
+}
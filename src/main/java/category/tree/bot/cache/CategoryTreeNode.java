@@ -0,0 +1,65 @@
+package category.tree.bot.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Узел неизменяемого снимка дерева категорий.
+ * Дочерние узлы добавляются только при построении снимка, после публикации узел не меняется.
+ */
+public final class CategoryTreeNode {
+
+    private final Long id;
+    private final String name;
+    private final CategoryTreeNode parent;
+    private final int depth;
+    private final List<CategoryTreeNode> children = new ArrayList<>();
+    private final List<CategoryTreeNode> childrenView = Collections.unmodifiableList(children);
+
+    CategoryTreeNode(Long id, String name, CategoryTreeNode parent) {
+        this.id = id;
+        this.name = name;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    void addChild(CategoryTreeNode child) {
+        children.add(child);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CategoryTreeNode getParent() {
+        return parent;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public List<CategoryTreeNode> getChildren() {
+        return childrenView;
+    }
+
+    /**
+     * Возвращает путь от корня до узла.
+     *
+     * @return имена категорий от корня до узла через « / »
+     */
+    public String getPath() {
+        String[] names = new String[depth + 1];
+        CategoryTreeNode node = this;
+        for (int i = depth; i >= 0; i--) {
+            names[i] = node.name;
+            node = node.parent;
+        }
+        return String.join(" / ", names);
+    }
+}
@@ -0,0 +1,222 @@
+package category.tree.bot.cache;
+
+import category.tree.bot.repository.CategoryTreeRow;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Неизменяемый снимок всего дерева категорий.
+ * Снимок строится один раз и затем читается без обращения к базе данных,
+ * текстовое представление дерева вычисляется лениво и запоминается.
+ */
+public final class CategoryTreeSnapshot {
+
+    public static final String EMPTY_TREE = "Дерево категорий пусто.";
+
+    private static final Comparator<CategoryTreeNode> BY_ID = Comparator.comparing(CategoryTreeNode::getId);
+
+    private final long version;
+    private final List<CategoryTreeNode> roots;
+    private final Map<String, CategoryTreeNode> nodesByName;
+
+    private volatile String rendered;
+
+    private CategoryTreeSnapshot(long version, List<CategoryTreeNode> roots, Map<String, CategoryTreeNode> nodesByName) {
+        this.version = version;
+        this.roots = Collections.unmodifiableList(roots);
+        this.nodesByName = Collections.unmodifiableMap(nodesByName);
+    }
+
+    /**
+     * Строит снимок по строкам рекурсивной выборки за один проход.
+     * Строки должны быть упорядочены так, чтобы родитель предшествовал подкатегориям;
+     * строка, родителя которой нет в выборке, становится корнем снимка.
+     *
+     * @param version версия дерева, для которой строится снимок
+     * @param rows    строки дерева, упорядоченные по глубине
+     * @return снимок дерева
+     */
+    public static CategoryTreeSnapshot fromRows(long version, List<? extends CategoryTreeRow> rows) {
+        List<CategoryTreeNode> roots = new ArrayList<>();
+        Map<String, CategoryTreeNode> nodesByName = new HashMap<>(rows.size() * 4 / 3 + 1);
+        Map<Long, CategoryTreeNode> nodesById = new HashMap<>(rows.size() * 4 / 3 + 1);
+
+        for (CategoryTreeRow row : rows) {
+            CategoryTreeNode parent = row.getParentId() != null ? nodesById.get(row.getParentId()) : null;
+            CategoryTreeNode node = new CategoryTreeNode(row.getId(), row.getName(), parent);
+            if (parent == null) {
+                roots.add(node);
+            } else {
+                parent.addChild(node);
+            }
+            nodesById.put(node.getId(), node);
+            nodesByName.put(node.getName(), node);
+        }
+        return new CategoryTreeSnapshot(version, roots, nodesByName);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<CategoryTreeNode> getRoots() {
+        return roots;
+    }
+
+    public boolean isEmpty() {
+        return roots.isEmpty();
+    }
+
+    public int size() {
+        return nodesByName.size();
+    }
+
+    /**
+     * Ищет узел дерева по имени категории.
+     *
+     * @param name имя категории
+     * @return узел или пустой Optional, если категории нет в снимке
+     */
+    public Optional<CategoryTreeNode> findByName(String name) {
+        return Optional.ofNullable(nodesByName.get(name));
+    }
+
+    /**
+     * Возвращает имена всех категорий снимка, например, для построения префиксного индекса.
+     *
+     * @return неизменяемое множество имён
+     */
+    Set<String> names() {
+        return nodesByName.keySet();
+    }
+
+    /**
+     * Возвращает страницу узлов поддерева в прямом порядке обхода: родитель перед подкатегориями.
+     * Следующий узел после курсора находится бинарным поиском среди соседей, упорядоченных по идентификатору,
+     * поэтому страница в любом месте дерева строится за O(limit · log n) и не зависит от размера дерева.
+     *
+     * @param root     корень поддерева или null для всего дерева
+     * @param maxDepth глубина относительно корня поддерева (или корневых категорий), глубже которой узлы не выводятся
+     * @param after    узел, после которого начинается страница, или null для первой страницы
+     * @param limit    максимальное количество узлов
+     * @return узлы страницы
+     * @throws IllegalArgumentException если узел курсора не входит в поддерево или глубже ограничения
+     */
+    public List<CategoryTreeNode> walk(CategoryTreeNode root, int maxDepth, CategoryTreeNode after, int limit) {
+        int baseDepth = root != null ? root.getDepth() : 0;
+        CategoryTreeNode node;
+        if (after == null) {
+            node = root != null ? root : (roots.isEmpty() ? null : roots.get(0));
+        } else {
+            if (after.getDepth() - baseDepth > maxDepth || !isInSubtree(after, root)) {
+                throw new IllegalArgumentException("Cursor is outside of the requested subtree: " + after.getName());
+            }
+            node = next(after, root, baseDepth, maxDepth);
+        }
+
+        List<CategoryTreeNode> page = new ArrayList<>(Math.min(limit, size()));
+        while (node != null && page.size() < limit) {
+            page.add(node);
+            node = next(node, root, baseDepth, maxDepth);
+        }
+        return page;
+    }
+
+    /**
+     * Возвращает текстовое представление дерева категорий.
+     * Каждая категория выводится с отступом, соответствующим уровню вложенности.
+     *
+     * @return строка, представляющая дерево категорий
+     */
+    public String render() {
+        String result = rendered;
+        if (result == null) {
+            result = isEmpty() ? EMPTY_TREE : renderNodes(roots, 0, Integer.MAX_VALUE);
+            rendered = result;
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает текстовое представление поддерева. Обходятся только узлы поддерева не глубже ограничения,
+     * отступ отсчитывается от корня поддерева.
+     *
+     * @param root     корень поддерева или null для всего дерева
+     * @param maxDepth глубина относительно корня поддерева (или корневых категорий), глубже которой узлы не выводятся
+     * @return строка, представляющая поддерево
+     */
+    public String render(CategoryTreeNode root, int maxDepth) {
+        if (root == null) {
+            if (maxDepth == Integer.MAX_VALUE) {
+                return render();
+            }
+            return isEmpty() ? EMPTY_TREE : renderNodes(roots, 0, maxDepth);
+        }
+        return renderNodes(List.of(root), root.getDepth(), maxDepth);
+    }
+
+    private CategoryTreeNode next(CategoryTreeNode node, CategoryTreeNode root, int baseDepth, int maxDepth) {
+        if (node.getDepth() - baseDepth < maxDepth && !node.getChildren().isEmpty()) {
+            return node.getChildren().get(0);
+        }
+        CategoryTreeNode current = node;
+        while (current != root) {
+            List<CategoryTreeNode> siblings = current.getParent() != null ? current.getParent().getChildren() : roots;
+            int index = indexOf(siblings, current);
+            if (index + 1 < siblings.size()) {
+                return siblings.get(index + 1);
+            }
+            current = current.getParent();
+            if (current == null) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(List<CategoryTreeNode> siblings, CategoryTreeNode node) {
+        int index = Collections.binarySearch(siblings, node, BY_ID);
+        return index >= 0 && siblings.get(index) == node ? index : siblings.indexOf(node);
+    }
+
+    private static boolean isInSubtree(CategoryTreeNode node, CategoryTreeNode root) {
+        if (root == null) {
+            return true;
+        }
+        for (CategoryTreeNode current = node; current != null; current = current.getParent()) {
+            if (current == root) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String renderNodes(List<CategoryTreeNode> startNodes, int baseDepth, int maxDepth) {
+        StringBuilder builder = new StringBuilder();
+        Deque<CategoryTreeNode> stack = new ArrayDeque<>();
+        for (int i = startNodes.size() - 1; i >= 0; i--) {
+            stack.push(startNodes.get(i));
+        }
+        while (!stack.isEmpty()) {
+            CategoryTreeNode node = stack.pop();
+            builder.append("  ".repeat(node.getDepth() - baseDepth)).append("--").append(node.getName()).append("\n");
+            if (node.getDepth() - baseDepth >= maxDepth) {
+                continue;
+            }
+            List<CategoryTreeNode> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+        return builder.toString();
+    }
+}
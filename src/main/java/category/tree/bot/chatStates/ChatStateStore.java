@@ -0,0 +1,48 @@
+package category.tree.bot.chatStates;
+
+/**
+ * Хранилище состояний чатов, в которых пользователь начал многошаговую команду (/addElement, /upload и т.п.).
+ *
+ * Состояние живёт ограниченное время: чат, бросивший команду на середине, через TTL возвращается
+ * в {@link MainChatStates#DEFAULT}. Для одного чата методы вызываются последовательно диспетчером обновлений,
+ * для разных чатов — параллельно.
+ */
+public interface ChatStateStore {
+
+    /**
+     * Возвращает состояние чата.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Текущее состояние или {@link MainChatStates#DEFAULT}, если оно не задано или истекло.
+     */
+    MainChatStates get(long chatId);
+
+    /**
+     * Устанавливает состояние чата и продлевает срок его жизни.
+     *
+     * @param chatId Идентификатор чата.
+     * @param state  Новое состояние; {@link MainChatStates#DEFAULT} равносильно удалению.
+     */
+    void put(long chatId, MainChatStates state);
+
+    /**
+     * Сбрасывает состояние чата.
+     *
+     * @param chatId Идентификатор чата.
+     */
+    void remove(long chatId);
+
+    /**
+     * Возвращает количество хранимых состояний, включая ещё не удалённые истёкшие.
+     *
+     * @return Количество состояний.
+     */
+    long size();
+
+    /**
+     * Удаляет истёкшие состояния.
+     *
+     * @return Количество удалённых состояний.
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,29 @@
+package category.tree.bot.chatStates;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодически удаляет истёкшие состояния чатов, к которым больше не обращались.
+ */
+@Component
+public class ChatStateSweeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatStateSweeper.class);
+
+    private final ChatStateStore chatStates;
+
+    public ChatStateSweeper(ChatStateStore chatStates) {
+        this.chatStates = chatStates;
+    }
+
+    @Scheduled(fixedDelayString = "${telegram.bot.chat-state.sweep-interval:1m}")
+    public void purgeExpired() {
+        int purged = chatStates.purgeExpired();
+        if (purged > 0) {
+            logger.debug("Purged {} expired chat states, {} remaining", purged, chatStates.size());
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package category.tree.bot.chatStates;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Хранилище состояний чатов в памяти с ограничением размера и временем жизни записей.
+ *
+ * Записи лежат в примитивных массивах с открытой адресацией, разбитых на сегменты со своей блокировкой.
+ * Ячейка занимает 13 байт (ключ, состояние, срок жизни), объектов на запись нет, а массивы выделяются сразу:
+ * ячеек — степень двойки не меньше {@code maxSize / 0,75}. Миллион чатов занимает около 27 МБ,
+ * и расход памяти не меняется со временем.
+ *
+ * Истёкшие записи удаляются при чтении и методом {@link #purgeExpired()}. Если сегмент заполнен,
+ * вытесняется запись с самым ранним сроком жизни среди нескольких случайных, то есть примерно давнее всех изменённая.
+ */
+public class InMemoryChatStateStore implements ChatStateStore {
+
+    private static final double LOAD_FACTOR = 0.75;
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MIN_SEGMENT_SIZE = 1024;
+    private static final int EVICTION_SAMPLES = 8;
+    private static final MainChatStates[] STATES = MainChatStates.values();
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final long ttlSeconds;
+    private final LongSupplier nanoClock;
+    private final long origin;
+
+    /**
+     * Конструктор хранилища.
+     *
+     * @param maxSize Максимальное количество хранимых состояний.
+     * @param ttl     Время жизни состояния с момента последнего изменения.
+     */
+    public InMemoryChatStateStore(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    InMemoryChatStateStore(int maxSize, Duration ttl, LongSupplier nanoClock) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        }
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+        int segmentSize = (maxSize + segmentCount - 1) / segmentCount;
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.segmentShift = Long.SIZE - Integer.numberOfTrailingZeros(segmentCount);
+        this.ttlSeconds = Math.max(1, ttl.toSeconds());
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    @Override
+    public MainChatStates get(long chatId) {
+        long hash = hash(chatId);
+        return segmentFor(hash).get(chatId, hash, now());
+    }
+
+    @Override
+    public void put(long chatId, MainChatStates state) {
+        if (state == MainChatStates.DEFAULT) {
+            remove(chatId);
+            return;
+        }
+        long hash = hash(chatId);
+        int expiry = (int) Math.min(Integer.MAX_VALUE, now() + ttlSeconds);
+        segmentFor(hash).put(chatId, hash, (byte) (state.ordinal() + 1), expiry);
+    }
+
+    @Override
+    public void remove(long chatId) {
+        long hash = hash(chatId);
+        segmentFor(hash).remove(chatId, hash);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int purgeExpired() {
+        int now = now();
+        int purged = 0;
+        for (Segment segment : segments) {
+            purged += segment.purgeExpired(now);
+        }
+        return purged;
+    }
+
+    /**
+     * Возвращает количество ячеек, выделенных под записи, — верхнюю границу расхода памяти.
+     *
+     * @return Количество ячеек во всех сегментах.
+     */
+    public long capacity() {
+        long capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.keys.length;
+        }
+        return capacity;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    /**
+     * Текущее время в секундах от создания хранилища; секундной точности достаточно для TTL в минутах.
+     */
+    private int now() {
+        return (int) TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong() - origin);
+    }
+
+    private static long hash(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Таблица с линейным пробированием. Пустая ячейка отмечена состоянием 0, удаление сдвигает
+     * следующие записи цепочки назад, поэтому надгробия не копятся.
+     */
+    private static final class Segment {
+        private final long[] keys;
+        private final byte[] states;
+        private final int[] expiries;
+        private final int mask;
+        private final int maxSize;
+        private int size;
+
+        private Segment(int maxSize) {
+            int capacity = Integer.highestOneBit((int) Math.ceil(maxSize / LOAD_FACTOR) - 1) << 1;
+            this.keys = new long[capacity];
+            this.states = new byte[capacity];
+            this.expiries = new int[capacity];
+            this.mask = capacity - 1;
+            this.maxSize = maxSize;
+        }
+
+        private synchronized MainChatStates get(long chatId, long hash, int now) {
+            int slot = find(chatId, hash);
+            if (slot < 0) {
+                return MainChatStates.DEFAULT;
+            }
+            if (expiries[slot] <= now) {
+                delete(slot);
+                return MainChatStates.DEFAULT;
+            }
+            return STATES[states[slot] - 1];
+        }
+
+        private synchronized void put(long chatId, long hash, byte state, int expiry) {
+            int slot = find(chatId, hash);
+            if (slot < 0) {
+                if (size >= maxSize) {
+                    evict();
+                }
+                slot = (int) hash & mask;
+                while (states[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = chatId;
+                size++;
+            }
+            states[slot] = state;
+            expiries[slot] = expiry;
+        }
+
+        private synchronized void remove(long chatId, long hash) {
+            int slot = find(chatId, hash);
+            if (slot >= 0) {
+                delete(slot);
+            }
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        private synchronized int purgeExpired(int now) {
+            int purged = 0;
+            int slot = 0;
+            while (slot < keys.length) {
+                if (states[slot] != 0 && expiries[slot] <= now) {
+                    // На место удалённой записи могла сдвинуться следующая, поэтому ячейка проверяется снова.
+                    delete(slot);
+                    purged++;
+                } else {
+                    slot++;
+                }
+            }
+            return purged;
+        }
+
+        private int find(long chatId, long hash) {
+            int slot = (int) hash & mask;
+            while (states[slot] != 0) {
+                if (keys[slot] == chatId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Вытесняет запись с самым ранним сроком жизни среди нескольких занятых ячеек, начиная со случайной.
+         */
+        private void evict() {
+            int slot = ThreadLocalRandom.current().nextInt(keys.length);
+            int victim = -1;
+            int samples = Math.min(EVICTION_SAMPLES, size);
+            for (int sampled = 0; sampled < samples; slot = (slot + 1) & mask) {
+                if (states[slot] != 0) {
+                    if (victim < 0 || expiries[slot] < expiries[victim]) {
+                        victim = slot;
+                    }
+                    sampled++;
+                }
+            }
+            delete(victim);
+        }
+
+        private void delete(int slot) {
+            int hole = slot;
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                if (states[next] == 0) {
+                    break;
+                }
+                int home = (int) hash(keys[next]) & mask;
+                boolean staysInPlace = hole <= next
+                        ? hole < home && home <= next
+                        : hole < home || home <= next;
+                if (!staysInPlace) {
+                    keys[hole] = keys[next];
+                    states[hole] = states[next];
+                    expiries[hole] = expiries[next];
+                    hole = next;
+                }
+            }
+            states[hole] = 0;
+            size--;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package category.tree.bot.chatStates;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Хранилище состояний чатов в таблице {@code chat_states}: состояние переживает перезапуск бота
+ * и общее для нескольких экземпляров, работающих с одной базой.
+ *
+ * Запись обновляется, а если её нет — вставляется; для одного чата это не гоняется, потому что
+ * диспетчер обновлений обрабатывает сообщения чата последовательно.
+ */
+public class JdbcChatStateStore implements ChatStateStore {
+
+    private static final String SELECT = "SELECT state FROM chat_states WHERE chat_id = ? AND updated_at > ?";
+    private static final String UPDATE = "UPDATE chat_states SET state = ?, updated_at = ? WHERE chat_id = ?";
+    private static final String INSERT = "INSERT INTO chat_states (chat_id, state, updated_at) VALUES (?, ?, ?)";
+    private static final String DELETE = "DELETE FROM chat_states WHERE chat_id = ?";
+    private static final String DELETE_EXPIRED = "DELETE FROM chat_states WHERE updated_at <= ?";
+    private static final String COUNT = "SELECT COUNT(*) FROM chat_states";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Clock clock;
+
+    /**
+     * Конструктор хранилища.
+     *
+     * @param jdbcTemplate Доступ к базе данных.
+     * @param ttl          Время жизни состояния с момента последнего изменения.
+     */
+    public JdbcChatStateStore(JdbcTemplate jdbcTemplate, Duration ttl) {
+        this(jdbcTemplate, ttl, Clock.systemUTC());
+    }
+
+    JdbcChatStateStore(JdbcTemplate jdbcTemplate, Duration ttl, Clock clock) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    @Override
+    public MainChatStates get(long chatId) {
+        List<String> states = jdbcTemplate.queryForList(SELECT, String.class, chatId, expiredBefore());
+        return states.isEmpty() ? MainChatStates.DEFAULT : MainChatStates.valueOf(states.get(0));
+    }
+
+    @Override
+    public void put(long chatId, MainChatStates state) {
+        if (state == MainChatStates.DEFAULT) {
+            remove(chatId);
+            return;
+        }
+        Timestamp now = Timestamp.from(clock.instant());
+        if (jdbcTemplate.update(UPDATE, state.name(), now, chatId) == 0) {
+            jdbcTemplate.update(INSERT, chatId, state.name(), now);
+        }
+    }
+
+    @Override
+    public void remove(long chatId) {
+        jdbcTemplate.update(DELETE, chatId);
+    }
+
+    @Override
+    public long size() {
+        Long count = jdbcTemplate.queryForObject(COUNT, Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public int purgeExpired() {
+        return jdbcTemplate.update(DELETE_EXPIRED, expiredBefore());
+    }
+
+    private Timestamp expiredBefore() {
+        return Timestamp.from(clock.instant().minus(ttl));
+    }
+}
@@ -4,7 +4,8 @@ public enum MainChatStates {
 
     ADD_ELEMENT,
     REMOVE_ELEMENT,
-    UPLOAD_FILE, DEFAULT
+    UPLOAD_FILE,
+    SEARCH, DEFAULT
 
 
 }
@@ -0,0 +1,351 @@
+package category.tree.bot.cluster;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Узел кластера ботов.
+ *
+ * Узел отмечается в {@code bot_nodes} и по числу живых узлов определяет свою долю шардов — {@code ceil(шарды / узлы)} —
+ * и долю общей частоты исходящих запросов в {@link OutboundMessageScheduler}.
+ * Шард принадлежит узлу, захватившему его блокировку в {@link ClusterLocks}; лишние шарды узел отпускает,
+ * только дождавшись обработки уже взятых из них обновлений, поэтому обновления чата никогда не обрабатываются
+ * двумя узлами одновременно и сохраняют порядок. Обновления своих шардов узел выбирает из {@link ClusterUpdateQueue}
+ * и передаёт в очередь чата {@link TelegramBotUpdatesControl#dispatch}.
+ *
+ * Перед обработкой обновление захватывается в очереди ({@link ClusterUpdateQueue#claim}) в потоке чата,
+ * только пока шард ещё принадлежит узлу, поэтому каждое обновление выполняется не больше одного раза.
+ *
+ * Узел, захвативший блокировку лидера, получает обновления long polling'ом (если задан {@link ClusterUpdatePoller})
+ * и чистит очередь. При падении узла его блокировки освобождает база, а не начатые им обновления
+ * остаются в очереди и достаются узлам, забравшим его шарды. Обновление, обработка которого уже началась
+ * на упавшем узле, не повторяется: его команда могла успеть выполниться.
+ */
+public class ClusterCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterCoordinator.class);
+
+    static final int LEADER_KEY = -1;
+
+    private final String nodeId;
+    private final ClusterUpdateQueue queue;
+    private final ClusterLocks locks;
+    private final TelegramBotUpdatesControl bot;
+    private final OutboundMessageScheduler outbound;
+    private final CategoryTreeCache treeCache;
+    private final ClusterUpdatePoller poller;
+    private final Duration nodeTimeout;
+    private final Duration retention;
+    private final int batchSize;
+    private final Clock clock;
+
+    private final Set<Integer> ownedShards = new TreeSet<>();
+    private final Set<Integer> releasingShards = new HashSet<>();
+    private final Map<Integer, Integer> inFlightByShard = new HashMap<>();
+    private final Set<Long> inFlight = new HashSet<>();
+    private boolean leader;
+    private long seenTreeVersion = -1;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * Конструктор узла.
+     *
+     * @param nodeId      Уникальный идентификатор узла.
+     * @param queue       Очередь обновлений кластера.
+     * @param locks       Блокировки лидерства и шардов.
+     * @param bot         Конвейер обработки обновлений.
+     * @param outbound    Очередь исходящих запросов, частота которой делится между узлами.
+     * @param treeCache   Кэш дерева категорий, который сбрасывается при изменениях на других узлах.
+     * @param poller      Получение обновлений лидером или null, если обновления приходят через webhook.
+     * @param nodeTimeout Время без отметки, после которого узел считается упавшим.
+     * @param retention   Время хранения обработанных обновлений.
+     * @param batchSize   Максимальное количество обновлений, одновременно взятых узлом в обработку.
+     */
+    public ClusterCoordinator(String nodeId,
+                              ClusterUpdateQueue queue,
+                              ClusterLocks locks,
+                              TelegramBotUpdatesControl bot,
+                              OutboundMessageScheduler outbound,
+                              CategoryTreeCache treeCache,
+                              ClusterUpdatePoller poller,
+                              Duration nodeTimeout,
+                              Duration retention,
+                              int batchSize) {
+        this(nodeId, queue, locks, bot, outbound, treeCache, poller, nodeTimeout, retention, batchSize, Clock.systemUTC());
+    }
+
+    ClusterCoordinator(String nodeId,
+                       ClusterUpdateQueue queue,
+                       ClusterLocks locks,
+                       TelegramBotUpdatesControl bot,
+                       OutboundMessageScheduler outbound,
+                       CategoryTreeCache treeCache,
+                       ClusterUpdatePoller poller,
+                       Duration nodeTimeout,
+                       Duration retention,
+                       int batchSize,
+                       Clock clock) {
+        this.nodeId = nodeId;
+        this.queue = queue;
+        this.locks = locks;
+        this.bot = bot;
+        this.outbound = outbound;
+        this.treeCache = treeCache;
+        this.poller = poller;
+        this.nodeTimeout = nodeTimeout;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Запускает отметки узла, распределение шардов и выборку обновлений по расписанию.
+     *
+     * @param pollInterval      Интервал выборки обновлений своих шардов.
+     * @param heartbeatInterval Интервал отметок и перераспределения шардов.
+     */
+    public synchronized void start(Duration pollInterval, Duration heartbeatInterval) {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bot-cluster-" + nodeId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService scheduler = executor;
+        treeCache.addChangeListener(() -> scheduler.execute(this::publishTreeChange));
+        scheduler.scheduleWithFixedDelay(() -> runSafely("tick", this::tick),
+                0, heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> runSafely("poll", this::pollOnce),
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        logger.info("Cluster node {} started, {} shards", nodeId, queue.getShards());
+    }
+
+    /**
+     * Отмечает узел, проверяет блокировки, борется за лидерство и перераспределяет шарды.
+     */
+    public synchronized void tick() {
+        Instant now = clock.instant();
+        if ((leader || !ownedShards.isEmpty()) && !locks.isValid()) {
+            logger.warn("Cluster lock session of node {} is lost, dropping leadership and shards {}", nodeId, ownedShards);
+            stopLeading();
+            ownedShards.clear();
+            releasingShards.clear();
+            locks.reset();
+        }
+
+        queue.heartbeat(nodeId, now);
+        int liveNodes = Math.max(1, queue.countLiveNodes(now.minus(nodeTimeout)));
+        outbound.setGlobalShare(liveNodes);
+
+        if (!leader && locks.tryLock(LEADER_KEY)) {
+            leader = true;
+            logger.info("Node {} became cluster leader", nodeId);
+            if (poller != null) {
+                poller.start();
+            }
+        }
+        if (leader) {
+            queue.purgeProcessed(now.minus(retention));
+            queue.purgeDeadNodes(now.minus(nodeTimeout.multipliedBy(10)));
+        }
+        rebalance(liveNodes);
+    }
+
+    /**
+     * Выбирает необработанные обновления своих шардов и ставит их в очереди чатов.
+     *
+     * @return Количество обновлений, переданных в обработку.
+     */
+    public synchronized int pollOnce() {
+        syncTreeVersion();
+        List<Integer> activeShards = new ArrayList<>(ownedShards);
+        activeShards.removeAll(releasingShards);
+        if (activeShards.isEmpty()) {
+            return 0;
+        }
+        int dispatched = 0;
+        for (ClusterUpdateQueue.QueuedUpdate queued : queue.fetchPending(activeShards, batchSize)) {
+            if (!inFlight.add(queued.updateId())) {
+                continue;
+            }
+            inFlightByShard.merge(queued.shard(), 1, Integer::sum);
+            dispatched++;
+            bot.dispatch(queued.update(), () -> claim(queued), () -> onProcessed(queued));
+        }
+        return dispatched;
+    }
+
+    public synchronized Set<Integer> getOwnedShards() {
+        return Set.copyOf(ownedShards);
+    }
+
+    public synchronized boolean isLeader() {
+        return leader;
+    }
+
+    /**
+     * Останавливает узел: отпускает лидерство и шарды и удаляет отметку узла,
+     * чтобы остальные узлы сразу разобрали его шарды.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        stopLeading();
+        ownedShards.clear();
+        releasingShards.clear();
+        locks.reset();
+        try {
+            queue.removeNode(nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("Cannot remove cluster node {}", nodeId, e);
+        }
+    }
+
+    /**
+     * Доводит число своих шардов до справедливой доли. Недостающие шарды захватываются начиная со смещения,
+     * зависящего от узла, чтобы узлы не соперничали за одни и те же блокировки.
+     */
+    private void rebalance(int liveNodes) {
+        int shards = queue.getShards();
+        int target = (shards + liveNodes - 1) / liveNodes;
+        int active = ownedShards.size() - releasingShards.size();
+
+        if (active < target) {
+            Iterator<Integer> releasing = releasingShards.iterator();
+            while (active < target && releasing.hasNext()) {
+                releasing.next();
+                releasing.remove();
+                active++;
+            }
+            int start = Math.floorMod(nodeId.hashCode(), shards);
+            for (int i = 0; i < shards && active < target; i++) {
+                int shard = (start + i) % shards;
+                if (!ownedShards.contains(shard) && locks.tryLock(shard)) {
+                    ownedShards.add(shard);
+                    active++;
+                }
+            }
+        } else if (active > target) {
+            for (Integer shard : ownedShards) {
+                if (active == target) {
+                    break;
+                }
+                if (releasingShards.add(shard)) {
+                    active--;
+                }
+            }
+        }
+
+        Iterator<Integer> releasing = releasingShards.iterator();
+        while (releasing.hasNext()) {
+            int shard = releasing.next();
+            if (inFlightByShard.getOrDefault(shard, 0) == 0) {
+                locks.unlock(shard);
+                ownedShards.remove(shard);
+                releasing.remove();
+            }
+        }
+    }
+
+    /**
+     * Захватывает обновление перед обработкой. Если шард уже отдан другому узлу или захват не удался,
+     * обновление пропускается: новый владелец шарда выберет его сам, а начатое обновление не повторяется.
+     */
+    private boolean claim(ClusterUpdateQueue.QueuedUpdate queued) {
+        synchronized (this) {
+            if (!ownedShards.contains(queued.shard())) {
+                logger.info("Skipping update {}: shard {} is no longer owned by node {}", queued.updateId(), queued.shard(), nodeId);
+                return false;
+            }
+        }
+        try {
+            if (queue.claim(queued.updateId(), clock.instant())) {
+                return true;
+            }
+            logger.info("Skipping update {}: its processing has already started", queued.updateId());
+        } catch (RuntimeException e) {
+            logger.warn("Cannot claim update {}, it stays in the queue", queued.updateId(), e);
+        }
+        return false;
+    }
+
+    private void onProcessed(ClusterUpdateQueue.QueuedUpdate queued) {
+        try {
+            queue.markProcessed(queued.updateId(), clock.instant());
+        } catch (RuntimeException e) {
+            // Обновление уже захвачено, поэтому повторно не выбирается; очередь удалит его по времени захвата.
+            logger.warn("Cannot mark update {} as processed", queued.updateId(), e);
+        }
+        synchronized (this) {
+            inFlight.remove(queued.updateId());
+            inFlightByShard.computeIfPresent(queued.shard(), (shard, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Сбрасывает кэш дерева, если дерево изменили на другом узле.
+     * Собственные изменения узла уже учтены его кэшем и в {@link #seenTreeVersion} записываются при публикации.
+     */
+    private void syncTreeVersion() {
+        long version = queue.getTreeVersion();
+        if (version != seenTreeVersion) {
+            seenTreeVersion = version;
+            treeCache.markStale();
+        }
+    }
+
+    /**
+     * Публикует локальное изменение дерева. Если до него узел видел последнюю версию, новая версия отличается
+     * от неё только этим изменением, и сбрасывать свои кэши при следующей выборке не нужно.
+     */
+    private void publishTreeChange() {
+        long published;
+        try {
+            published = queue.incrementTreeVersion();
+        } catch (RuntimeException e) {
+            logger.warn("Cannot publish category tree change", e);
+            return;
+        }
+        synchronized (this) {
+            if (published - 1 == seenTreeVersion) {
+                seenTreeVersion = published;
+            }
+        }
+    }
+
+    private void stopLeading() {
+        if (leader && poller != null) {
+            poller.stop();
+        }
+        leader = false;
+    }
+
+    private void runSafely(String task, Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.warn("Cluster {} failed on node {}", task, nodeId, e);
+        }
+    }
+}
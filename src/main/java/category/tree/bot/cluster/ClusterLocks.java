@@ -0,0 +1,37 @@
+package category.tree.bot.cluster;
+
+/**
+ * Сеансовые блокировки узла кластера: лидерство и владение шардами.
+ *
+ * Блокировки принадлежат сеансу и освобождаются все разом, если сеанс потерян — узел упал
+ * или потерял соединение с базой. Методы вызываются из одного потока координатора.
+ */
+public interface ClusterLocks {
+
+    /**
+     * Пытается захватить блокировку, не дожидаясь её освобождения.
+     *
+     * @param key Ключ блокировки.
+     * @return true, если блокировка захвачена этим сеансом.
+     */
+    boolean tryLock(int key);
+
+    /**
+     * Освобождает блокировку, захваченную этим сеансом.
+     *
+     * @param key Ключ блокировки.
+     */
+    void unlock(int key);
+
+    /**
+     * Проверяет, что сеанс жив и захваченные блокировки всё ещё принадлежат ему.
+     *
+     * @return false, если сеанс потерян и блокировки могли перейти другим узлам.
+     */
+    boolean isValid();
+
+    /**
+     * Завершает сеанс, освобождая все блокировки. Следующий захват откроет новый сеанс.
+     */
+    void reset();
+}
@@ -0,0 +1,113 @@
+package category.tree.bot.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.telegram.telegrambots.meta.api.methods.updates.DeleteWebhook;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Получение обновлений long polling'ом на узле-лидере.
+ *
+ * Полученная пачка записывается в {@link ClusterUpdateQueue} вместе с новым смещением в одной транзакции,
+ * и только после этого смещение используется в следующем запросе, то есть подтверждается Telegram.
+ * Поэтому новый лидер продолжает ровно с того места, где остановился прежний: обновления не теряются,
+ * а повторно полученные отбрасываются первичным ключом очереди.
+ */
+public class ClusterUpdatePoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterUpdatePoller.class);
+
+    private static final int BATCH_LIMIT = 100;
+    private static final long MIN_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private final AbsSender sender;
+    private final ClusterUpdateQueue queue;
+    private final int pollTimeoutSeconds;
+
+    private volatile Thread thread;
+
+    /**
+     * Конструктор получателя обновлений.
+     *
+     * @param sender             Клиент Bot API.
+     * @param queue              Очередь обновлений кластера.
+     * @param pollTimeoutSeconds Таймаут long polling'а в секундах.
+     */
+    public ClusterUpdatePoller(AbsSender sender, ClusterUpdateQueue queue, int pollTimeoutSeconds) {
+        this.sender = sender;
+        this.queue = queue;
+        this.pollTimeoutSeconds = pollTimeoutSeconds;
+    }
+
+    /**
+     * Запускает получение обновлений в отдельном потоке, если оно ещё не запущено.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "bot-cluster-poller");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Останавливает получение обновлений. Текущий запрос к Bot API дорабатывает, но его результат
+     * всё равно записывается в очередь: запись идемпотентна, а смещение в базе только растёт.
+     */
+    public synchronized void stop() {
+        Thread current = thread;
+        thread = null;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return thread != null;
+    }
+
+    private void run() {
+        Thread self = Thread.currentThread();
+        logger.info("Started polling updates as cluster leader");
+        try {
+            sender.execute(new DeleteWebhook());
+        } catch (TelegramApiException e) {
+            logger.warn("Cannot delete webhook before polling", e);
+        }
+
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (thread == self) {
+            try {
+                long offset = queue.getPollOffset();
+                List<Update> updates = sender.execute(GetUpdates.builder()
+                        .offset((int) offset)
+                        .limit(BATCH_LIMIT)
+                        .timeout(pollTimeoutSeconds)
+                        .build());
+                if (!updates.isEmpty()) {
+                    queue.enqueue(updates, Instant.now());
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+            } catch (TelegramApiException | DataAccessException e) {
+                logger.warn("Cannot poll updates, retrying in {} ms", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    break;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+        logger.info("Stopped polling updates");
+    }
+}
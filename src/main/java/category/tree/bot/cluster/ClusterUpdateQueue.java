@@ -0,0 +1,307 @@
+package category.tree.bot.cluster;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Общая очередь обновлений кластера в таблице {@code bot_updates}.
+ *
+ * Точка приёма (лидер, получающий обновления long polling'ом, или webhook любого узла) записывает обновления
+ * с номером шарда, вычисленным по идентификатору чата. Узел, владеющий шардом, выбирает ещё не начатые
+ * обновления по возрастанию {@code update_id}, непосредственно перед обработкой захватывает каждое
+ * условным обновлением {@code started_at} ({@link #claim}) и после обработки отмечает его обработанным.
+ * Захват удаётся только одному узлу и только один раз, поэтому обновление, уже начатое одним узлом, не выполняется
+ * повторно ни после сбоя отметки об обработке, ни после перехода шарда к другому узлу, а обновление, которое
+ * упавший узел не успел начать, остаётся в очереди.
+ *
+ * Повторная запись обновления игнорируется, поэтому повторная доставка от Telegram не создаёт дублей.
+ * Наибольший идентификатор удалённых из очереди обновлений хранится в {@code purged_update_id},
+ * и обновления не больше него тоже не записываются: так повтор отсекается и после очистки очереди.
+ */
+public class ClusterUpdateQueue {
+
+    private static final String INSERT = "INSERT INTO bot_updates (update_id, chat_id, shard, payload, received_at) "
+            + "VALUES (?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String ADVANCE_OFFSET = "UPDATE bot_cluster_state SET poll_offset = GREATEST(poll_offset, ?) WHERE id = 1";
+    private static final String SELECT_OFFSET = "SELECT poll_offset FROM bot_cluster_state WHERE id = 1";
+    private static final String SELECT_PURGED = "SELECT purged_update_id FROM bot_cluster_state WHERE id = 1";
+    private static final String SELECT_PENDING = "SELECT update_id, shard, payload FROM bot_updates "
+            + "WHERE started_at IS NULL AND shard IN (%s) ORDER BY update_id LIMIT ?";
+    private static final String CLAIM = "UPDATE bot_updates SET started_at = ? WHERE update_id = ? AND started_at IS NULL";
+    private static final String MARK_PROCESSED = "UPDATE bot_updates SET processed_at = ? WHERE update_id = ?";
+    private static final String ADVANCE_PURGED = "UPDATE bot_cluster_state SET purged_update_id = GREATEST(purged_update_id, "
+            + "(SELECT COALESCE(MAX(update_id), 0) FROM bot_updates WHERE started_at < ?)) WHERE id = 1";
+    private static final String DELETE_PROCESSED = "DELETE FROM bot_updates WHERE started_at < ?";
+    private static final String UPDATE_HEARTBEAT = "UPDATE bot_nodes SET heartbeat_at = ? WHERE node_id = ?";
+    private static final String INSERT_NODE = "INSERT INTO bot_nodes (node_id, heartbeat_at) VALUES (?, ?)";
+    private static final String DELETE_NODE = "DELETE FROM bot_nodes WHERE node_id = ?";
+    private static final String DELETE_DEAD_NODES = "DELETE FROM bot_nodes WHERE heartbeat_at < ?";
+    private static final String COUNT_LIVE_NODES = "SELECT COUNT(*) FROM bot_nodes WHERE heartbeat_at > ?";
+    private static final String SELECT_TREE_VERSION = "SELECT tree_version FROM bot_cluster_state WHERE id = 1";
+    private static final String INCREMENT_TREE_VERSION = "UPDATE bot_cluster_state SET tree_version = tree_version + 1 WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * Обновление хранится в формате Bot API: только поля с {@code @JsonProperty}, без вычисляемых геттеров.
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setVisibility(PropertyAccessor.GETTER, JsonAutoDetect.Visibility.NONE)
+            .setVisibility(PropertyAccessor.IS_GETTER, JsonAutoDetect.Visibility.NONE)
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final int shards;
+
+    /**
+     * Конструктор очереди.
+     *
+     * @param jdbcTemplate        Доступ к базе данных.
+     * @param transactionTemplate Шаблон транзакций для атомарной записи пачки обновлений.
+     * @param shards              Количество шардов; должно совпадать на всех узлах.
+     */
+    public ClusterUpdateQueue(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("shards must be positive: " + shards);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.shards = shards;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    /**
+     * Возвращает шард чата. Все обновления чата попадают в один шард, поэтому их обрабатывает один узел.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Номер шарда от 0 до {@code shards - 1}.
+     */
+    public int shardOf(long chatId) {
+        long h = chatId * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(h ^ (h >>> 32), (long) shards);
+    }
+
+    /**
+     * Записывает обновление, полученное через webhook.
+     *
+     * @param update Объект обновления.
+     */
+    public void enqueue(Update update) {
+        enqueue(List.of(update), Instant.now());
+    }
+
+    /**
+     * Записывает пачку обновлений и в той же транзакции сдвигает смещение long polling'а за последнее из них.
+     * Обновления без чата не записываются: конвейер обработки их всё равно пропускает.
+     * Обновления, уже удалённые из очереди после обработки, не записываются повторно.
+     *
+     * @param updates Обновления в порядке получения.
+     * @param now     Время получения.
+     * @return Смещение, с которого нужно запрашивать следующие обновления.
+     */
+    public long enqueue(List<Update> updates, Instant now) {
+        Long offset = transactionTemplate.execute(status -> {
+            Timestamp receivedAt = Timestamp.from(now);
+            Long purged = jdbcTemplate.queryForObject(SELECT_PURGED, Long.class);
+            long purgedUpdateId = purged != null ? purged : 0;
+            List<Object[]> rows = new ArrayList<>(updates.size());
+            long next = 0;
+            for (Update update : updates) {
+                next = Math.max(next, update.getUpdateId() + 1L);
+                Long chatId = chatIdOf(update);
+                if (chatId != null && update.getUpdateId() > purgedUpdateId) {
+                    rows.add(new Object[]{update.getUpdateId(), chatId, shardOf(chatId), serialize(update), receivedAt});
+                }
+            }
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT, rows);
+            }
+            jdbcTemplate.update(ADVANCE_OFFSET, next);
+            return next;
+        });
+        return offset != null ? offset : 0;
+    }
+
+    /**
+     * Возвращает смещение, сохранённое последним лидером.
+     *
+     * @return Идентификатор первого обновления, которое ещё не записано в очередь.
+     */
+    public long getPollOffset() {
+        Long offset = jdbcTemplate.queryForObject(SELECT_OFFSET, Long.class);
+        return offset != null ? offset : 0;
+    }
+
+    /**
+     * Выбирает ещё не начатые обновления шардов по возрастанию идентификатора.
+     *
+     * @param shards Шарды узла.
+     * @param limit  Максимальное количество обновлений.
+     * @return Обновления в порядке поступления.
+     */
+    public List<QueuedUpdate> fetchPending(Collection<Integer> shards, int limit) {
+        if (shards.isEmpty()) {
+            return List.of();
+        }
+        String shardList = shards.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return jdbcTemplate.query(SELECT_PENDING.formatted(shardList),
+                (rs, rowNum) -> new QueuedUpdate(rs.getLong("update_id"), rs.getInt("shard"),
+                        deserialize(rs.getString("payload"))),
+                limit);
+    }
+
+    /**
+     * Захватывает обновление перед обработкой. Удаётся ровно один раз для каждого обновления.
+     *
+     * @param updateId Идентификатор обновления.
+     * @param now      Время начала обработки.
+     * @return true, если обновление захвачено и его нужно обработать; false, если обработка уже начиналась.
+     */
+    public boolean claim(long updateId, Instant now) {
+        return jdbcTemplate.update(CLAIM, Timestamp.from(now), updateId) == 1;
+    }
+
+    /**
+     * Отмечает обновление обработанным.
+     *
+     * @param updateId Идентификатор обновления.
+     * @param now      Время окончания обработки.
+     */
+    public void markProcessed(long updateId, Instant now) {
+        jdbcTemplate.update(MARK_PROCESSED, Timestamp.from(now), updateId);
+    }
+
+    /**
+     * Удаляет обновления, обработка которых началась раньше указанного времени, и запоминает наибольший
+     * удалённый идентификатор, чтобы повторная доставка удалённого обновления не попала в очередь.
+     *
+     * @param before Граница хранения.
+     * @return Количество удалённых обновлений.
+     */
+    public int purgeProcessed(Instant before) {
+        Timestamp boundary = Timestamp.from(before);
+        Integer deleted = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(ADVANCE_PURGED, boundary);
+            return jdbcTemplate.update(DELETE_PROCESSED, boundary);
+        });
+        return deleted != null ? deleted : 0;
+    }
+
+    /**
+     * Продлевает запись узла в {@code bot_nodes}.
+     *
+     * @param nodeId Идентификатор узла.
+     * @param now    Текущее время.
+     */
+    public void heartbeat(String nodeId, Instant now) {
+        Timestamp heartbeatAt = Timestamp.from(now);
+        if (jdbcTemplate.update(UPDATE_HEARTBEAT, heartbeatAt, nodeId) == 0) {
+            jdbcTemplate.update(INSERT_NODE, nodeId, heartbeatAt);
+        }
+    }
+
+    /**
+     * Удаляет запись узла при штатной остановке, чтобы остальные узлы сразу забрали его шарды.
+     *
+     * @param nodeId Идентификатор узла.
+     */
+    public void removeNode(String nodeId) {
+        jdbcTemplate.update(DELETE_NODE, nodeId);
+    }
+
+    /**
+     * Удаляет записи узлов, переставших отмечаться.
+     *
+     * @param before Граница последней отметки.
+     * @return Количество удалённых узлов.
+     */
+    public int purgeDeadNodes(Instant before) {
+        return jdbcTemplate.update(DELETE_DEAD_NODES, Timestamp.from(before));
+    }
+
+    /**
+     * Возвращает количество узлов, отметившихся позже указанного времени.
+     *
+     * @param since Граница последней отметки.
+     * @return Количество живых узлов.
+     */
+    public int countLiveNodes(Instant since) {
+        Integer count = jdbcTemplate.queryForObject(COUNT_LIVE_NODES, Integer.class, Timestamp.from(since));
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Возвращает общую для кластера версию дерева категорий.
+     *
+     * @return Версия, которая увеличивается после каждого изменения дерева на любом узле.
+     */
+    public long getTreeVersion() {
+        Long version = jdbcTemplate.queryForObject(SELECT_TREE_VERSION, Long.class);
+        return version != null ? version : 0;
+    }
+
+    /**
+     * Увеличивает общую версию дерева категорий.
+     *
+     * @return Новая версия; строка версии заблокирована до конца транзакции, поэтому предыдущая версия на единицу меньше.
+     */
+    public long incrementTreeVersion() {
+        Long version = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(INCREMENT_TREE_VERSION);
+            return jdbcTemplate.queryForObject(SELECT_TREE_VERSION, Long.class);
+        });
+        return version != null ? version : 0;
+    }
+
+    private static Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return null;
+    }
+
+    private String serialize(Update update) {
+        try {
+            return objectMapper.writeValueAsString(update);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize update " + update.getUpdateId(), e);
+        }
+    }
+
+    private Update deserialize(String payload) {
+        try {
+            return objectMapper.readValue(payload, Update.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot deserialize queued update", e);
+        }
+    }
+
+    /**
+     * Обновление из очереди.
+     *
+     * @param updateId Идентификатор обновления.
+     * @param shard    Шард чата обновления.
+     * @param update   Объект обновления.
+     */
+    public record QueuedUpdate(long updateId, int shard, Update update) {
+    }
+}
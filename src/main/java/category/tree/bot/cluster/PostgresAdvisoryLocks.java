@@ -0,0 +1,111 @@
+package category.tree.bot.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Блокировки кластера на сеансовых advisory-блокировках PostgreSQL.
+ *
+ * Блокировки держит отдельное соединение, которое не возвращается в пул: пока оно открыто, блокировки
+ * принадлежат узлу, а при обрыве соединения или падении узла PostgreSQL освобождает их сам.
+ * Ключи блокировок бота отделены от прочих пользователей базы постоянным пространством имён.
+ */
+public class PostgresAdvisoryLocks implements ClusterLocks, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresAdvisoryLocks.class);
+
+    private static final int NAMESPACE = 0x74676274;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final DataSource dataSource;
+    private Connection connection;
+
+    /**
+     * Конструктор блокировок.
+     *
+     * @param dataSource Источник соединения для сеанса блокировок.
+     */
+    public PostgresAdvisoryLocks(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public synchronized boolean tryLock(int key) {
+        try {
+            return call("SELECT pg_try_advisory_lock(?, ?)", key);
+        } catch (SQLException e) {
+            logger.warn("Cannot acquire advisory lock {}", key, e);
+            reset();
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized void unlock(int key) {
+        try {
+            if (!call("SELECT pg_advisory_unlock(?, ?)", key)) {
+                logger.warn("Advisory lock {} was not held", key);
+            }
+        } catch (SQLException e) {
+            logger.warn("Cannot release advisory lock {}", key, e);
+            reset();
+        }
+    }
+
+    @Override
+    public synchronized boolean isValid() {
+        try {
+            return connection != null && connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Освобождает блокировки и возвращает соединение в пул. Если освободить их не удалось,
+     * соединение прерывается, чтобы пул не выдал его дальше вместе с чужими блокировками.
+     */
+    @Override
+    public synchronized void reset() {
+        if (connection == null) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock_all()")) {
+            statement.execute();
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Cannot release advisory locks, aborting connection", e);
+            try {
+                connection.abort(Runnable::run);
+            } catch (SQLException abortFailure) {
+                logger.debug("Cannot abort advisory lock connection", abortFailure);
+            }
+        }
+        connection = null;
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    private boolean call(String sql, int key) throws SQLException {
+        if (connection == null) {
+            connection = dataSource.getConnection();
+            connection.setAutoCommit(true);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, NAMESPACE);
+            statement.setInt(2, key);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package category.tree.bot.configuration;
+
+import category.tree.bot.entity.Category;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Конфигурация второго уровня кэша Hibernate для категорий на Caffeine через JCache.
+ *
+ * Кэшируются сущности категорий, их списки подкатегорий и разрешение имени в идентификатор.
+ * Размер каждой области задаётся свойством {@code telegram.bot.category-cache.max-size},
+ * время жизни записи — {@code telegram.bot.category-cache.expire-after-write}.
+ * Кэш выключается свойством {@code telegram.bot.category-cache.enabled=false}.
+ * Статистика Hibernate включена, попадания и промахи по областям публикуются в метриках {@code hibernate.*}.
+ */
+@Configuration
+public class CategoryCacheConfiguration {
+
+    /**
+     * Области кэша категорий: сущности, списки подкатегорий и натуральные ключи.
+     */
+    public static final List<String> REGIONS = List.of(
+            Category.class.getName(),
+            Category.class.getName() + ".children",
+            Category.class.getName() + "##NaturalId");
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "telegram.bot.category-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager categoryCacheManager(@Value("${telegram.bot.category-cache.max-size:10000}") long maxSize,
+                                             @Value("${telegram.bot.category-cache.expire-after-write:1h}") Duration expireAfterWrite) {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // Отдельный менеджер на контекст, чтобы несколько контекстов в одном процессе не делили области.
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("category-cache-" + UUID.randomUUID()), CategoryCacheConfiguration.class.getClassLoader());
+        for (String region : REGIONS) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setMaximumSize(OptionalLong.of(maxSize));
+            configuration.setExpireAfterWrite(OptionalLong.of(expireAfterWrite.toNanos()));
+            cacheManager.createCache(region, configuration);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer categoryCacheCustomizer(ObjectProvider<CacheManager> categoryCacheManager) {
+        return properties -> {
+            CacheManager cacheManager = categoryCacheManager.getIfAvailable();
+            if (cacheManager == null) {
+                properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+                return;
+            }
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.AUTO_EVICT_COLLECTION_CACHE, true);
+            properties.put(AvailableSettings.GENERATE_STATISTICS, true);
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package category.tree.bot.configuration;
+
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
+import category.tree.bot.chatStates.JdbcChatStateStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Duration;
+
+/**
+ * Конфигурация хранилища состояний чатов. Реализация задаётся свойством {@code telegram.bot.chat-state.store}:
+ * {@code memory} (по умолчанию) или {@code jdbc}, если состояние должно переживать перезапуск.
+ */
+@Configuration
+@EnableScheduling
+public class ChatStateConfiguration {
+
+
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.chat-state.store", havingValue = "memory", matchIfMissing = true)
+    public ChatStateStore inMemoryChatStateStore(@Value("${telegram.bot.chat-state.max-size:1000000}") int maxSize,
+                                                 @Value("${telegram.bot.chat-state.ttl:30m}") Duration ttl) {
+        return new InMemoryChatStateStore(maxSize, ttl);
+    }
+
+
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.chat-state.store", havingValue = "jdbc")
+    public ChatStateStore jdbcChatStateStore(JdbcTemplate jdbcTemplate,
+                                             @Value("${telegram.bot.chat-state.ttl:30m}") Duration ttl) {
+        return new JdbcChatStateStore(jdbcTemplate, ttl);
+    }
+}
@@ -0,0 +1,74 @@
+package category.tree.bot.configuration;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.cluster.ClusterCoordinator;
+import category.tree.bot.cluster.ClusterUpdatePoller;
+import category.tree.bot.cluster.ClusterUpdateQueue;
+import category.tree.bot.cluster.PostgresAdvisoryLocks;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Конфигурация кластерного режима, включаемого свойством {@code telegram.bot.cluster.enabled=true}.
+ * Узлы работают с одной базой PostgreSQL: обновления проходят через общую очередь и распределяются
+ * по узлам шардами по идентификатору чата.
+ */
+@Configuration
+@ConditionalOnProperty(name = "telegram.bot.cluster.enabled", havingValue = "true")
+public class ClusterConfiguration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterConfiguration.class);
+
+
+    @Bean
+    public PostgresAdvisoryLocks clusterLocks(DataSource dataSource) {
+        return new PostgresAdvisoryLocks(dataSource);
+    }
+
+
+    @Bean
+    public ClusterUpdateQueue clusterUpdateQueue(JdbcTemplate jdbcTemplate,
+                                                 TransactionTemplate transactionTemplate,
+                                                 @Value("${telegram.bot.cluster.shards:64}") int shards) {
+        return new ClusterUpdateQueue(jdbcTemplate, transactionTemplate, shards);
+    }
+
+
+    @Bean
+    public ClusterCoordinator clusterCoordinator(ClusterUpdateQueue queue,
+                                                 PostgresAdvisoryLocks locks,
+                                                 TelegramBotUpdatesControl bot,
+                                                 OutboundMessageScheduler outbound,
+                                                 CategoryTreeCache treeCache,
+                                                 @Value("${telegram.bot.mode:polling}") String mode,
+                                                 @Value("${telegram.bot.chat-state.store:memory}") String chatStateStore,
+                                                 @Value("${telegram.bot.cluster.node-id:}") String nodeId,
+                                                 @Value("${telegram.bot.cluster.poll-interval:100ms}") Duration pollInterval,
+                                                 @Value("${telegram.bot.cluster.heartbeat-interval:2s}") Duration heartbeatInterval,
+                                                 @Value("${telegram.bot.cluster.node-timeout:10s}") Duration nodeTimeout,
+                                                 @Value("${telegram.bot.cluster.retention:1h}") Duration retention,
+                                                 @Value("${telegram.bot.cluster.batch-size:500}") int batchSize,
+                                                 @Value("${telegram.bot.cluster.long-poll-timeout:50}") int longPollTimeout) {
+        if (!"jdbc".equals(chatStateStore)) {
+            logger.warn("Cluster mode with telegram.bot.chat-state.store={}: chat states are lost when a chat moves to another node", chatStateStore);
+        }
+        ClusterUpdatePoller poller = "polling".equals(mode) ? new ClusterUpdatePoller(bot, queue, longPollTimeout) : null;
+        String id = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        ClusterCoordinator coordinator = new ClusterCoordinator(id, queue, locks, bot, outbound, treeCache, poller,
+                nodeTimeout, retention, batchSize);
+        coordinator.start(pollInterval, heartbeatInterval);
+        return coordinator;
+    }
+}
@@ -1,34 +1,92 @@
 package category.tree.bot.configuration;
 
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.cluster.ClusterUpdateQueue;
+import category.tree.bot.metrics.BotMetrics;
 import category.tree.bot.service.services.CategoryService;
+import category.tree.bot.updatescontrol.ChatUpdateDispatcher;
+import category.tree.bot.updatescontrol.TelegramWebhookBotUpdatesControl;
 import category.tree.bot.updatescontrol.commands.CommandRegistry;
+import category.tree.bot.updatescontrol.dedup.UpdateDeduplicator;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.util.function.Consumer;
+
+/**
+ * Конфигурация бота. Режим получения обновлений задаётся свойством {@code telegram.bot.mode}:
+ * {@code polling} (по умолчанию) или {@code webhook}. В кластерном режиме long polling ведёт узел-лидер
+ * ({@link ClusterConfiguration}), а webhook записывает обновления в общую очередь.
+ */
 @Configuration
 public class TelegramBotConfiguration {
 
+    private static final Logger logger = LoggerFactory.getLogger(TelegramBotConfiguration.class);
+
 
     @Bean
-    public TelegramBotsApi telegramBotsApi() throws TelegramApiException {
-        return new TelegramBotsApi(DefaultBotSession.class);
+    public DefaultBotOptions telegramBotOptions(@Value("${telegram.bot.api-url:https://api.telegram.org/bot}") String apiUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(apiUrl);
+        return options;
     }
 
 
     @Bean
-    public TelegramBotUpdatesControl telegramBot(TelegramBotsApi botsApi,
+    public TelegramBotUpdatesControl telegramBot(DefaultBotOptions options,
                                                  CommandRegistry commandRegistry,
                                                  CategoryService categoryService,
+                                                 ChatStateStore chatStates,
+                                                 ChatUpdateDispatcher dispatcher,
+                                                 OutboundMessageScheduler outbound,
+                                                 UpdateDeduplicator deduplicator,
+                                                 ImportJobManager importJobs,
+                                                 BotMetrics metrics,
                                                  @Value("${telegram.bot.username}") String username,
-                                                 @Value("${telegram.bot.token}") String token) throws TelegramApiException {
-        TelegramBotUpdatesControl bot = new TelegramBotUpdatesControl(username, token, categoryService, commandRegistry);
+                                                 @Value("${telegram.bot.token}") String token) {
+        return new TelegramBotUpdatesControl(options, username, token, categoryService, commandRegistry, chatStates, dispatcher, outbound, deduplicator, importJobs, metrics);
+    }
+
+
+    @Bean
+    @ConditionalOnExpression("'${telegram.bot.mode:polling}' == 'polling' and !${telegram.bot.cluster.enabled:false}")
+    public TelegramBotsApi telegramBotsApi(TelegramBotUpdatesControl bot) throws TelegramApiException {
+        TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
         botsApi.registerBot(bot);
-        System.out.println("Bot successfully registered!");
-        return bot;
+        logger.info("Bot successfully registered!");
+        return botsApi;
+    }
+
+
+    @Bean
+    @ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+    public TelegramWebhookBotUpdatesControl telegramWebhookBot(DefaultBotOptions options,
+                                                               TelegramBotUpdatesControl bot,
+                                                               ObjectProvider<ClusterUpdateQueue> clusterQueue,
+                                                               @Value("${telegram.bot.username}") String username,
+                                                               @Value("${telegram.bot.token}") String token,
+                                                               @Value("${telegram.bot.webhook.path:/telegram/webhook}") String path,
+                                                               @Value("${telegram.bot.webhook.url}") String publicUrl,
+                                                               @Value("${telegram.bot.webhook.secret-token:}") String secretToken) throws TelegramApiException {
+        ClusterUpdateQueue queue = clusterQueue.getIfAvailable();
+        Consumer<Update> updateConsumer = queue != null ? queue::enqueue : bot::onUpdateReceived;
+        TelegramWebhookBotUpdatesControl webhookBot = new TelegramWebhookBotUpdatesControl(options, username, token, path, updateConsumer);
+        webhookBot.registerWebhook(publicUrl, secretToken);
+        logger.info("Webhook successfully registered at {}", publicUrl);
+        return webhookBot;
     }
 }
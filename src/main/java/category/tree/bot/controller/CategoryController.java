@@ -1,6 +1,10 @@
 package category.tree.bot.controller;
 
 
+import category.tree.bot.bulk.CategoryBulkImporter;
+import category.tree.bot.dto.CategoryBulkResult;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.dto.CategoryTreePage;
 import category.tree.bot.entity.Category;
 import category.tree.bot.service.services.CategoryService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -8,11 +12,21 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.UUID;
 
 @Tag(name = "Контроллер для управления категориями",
         description = "Создание, удаление и просмотр категорий.")
@@ -20,13 +34,22 @@ import java.util.List;
 @RestController
 public class CategoryController {
 
+    /**
+     * Версия дерева ведётся в памяти процесса, поэтому ETag включает идентификатор экземпляра:
+     * после перезапуска или на другом узле та же версия не даст ложного 304.
+     */
+    private static final String INSTANCE_ID = UUID.randomUUID().toString().substring(0, 8);
+
     private final CategoryService categoryService;
+    private final CategoryBulkImporter bulkImporter;
 
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CategoryBulkImporter bulkImporter) {
         this.categoryService = categoryService;
+        this.bulkImporter = bulkImporter;
     }
 
     @Operation(summary = "Просмотр категорий в структурированном виде",
+            description = "С параметром root выводится только поддерево категории, с параметром depth — не глубже указанного уровня.",
             responses = {
                     @ApiResponse(
                             responseCode = "200",
@@ -35,11 +58,75 @@ public class CategoryController {
                                     mediaType = "application/json",
                                     schema = @Schema(implementation = String.class)
                             )
-                    )
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Отрицательная глубина"),
+                    @ApiResponse(responseCode = "404", description = "Корень не найден")
             })
     @GetMapping("/viewTree")
-    public ResponseEntity<String> viewTree() {
-        return ResponseEntity.ok(categoryService.viewTree());
+    public ResponseEntity<String> viewTree(@RequestParam(required = false) String root,
+                                           @RequestParam(required = false) Integer depth) {
+        if (root == null && depth == null) {
+            return ResponseEntity.ok(categoryService.viewTree());
+        }
+        try {
+            return ResponseEntity.ok(categoryService.viewTree(root, depth));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
+
+    @Operation(summary = "Страница дерева категорий в JSON",
+            description = "Узлы поддерева в прямом порядке обхода. Ответ содержит ETag версии дерева; "
+                    + "запрос с If-None-Match получает 304, пока дерево не изменилось.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Страница дерева",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CategoryTreePage.class)
+                            )
+                    ),
+                    @ApiResponse(responseCode = "304", description = "Дерево не изменилось"),
+                    @ApiResponse(responseCode = "400", description = "Некорректные параметры или устаревший курсор"),
+                    @ApiResponse(responseCode = "404", description = "Корень не найден")
+            })
+    @GetMapping("/tree")
+    public ResponseEntity<CategoryTreePage> tree(@RequestParam(required = false) String root,
+                                                 @RequestParam(required = false) Integer depth,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "100") int limit,
+                                                 WebRequest request) {
+        if (request.checkNotModified(treeEtag(categoryService.getTreeVersion()))) {
+            return null;
+        }
+        CategoryTreePage page;
+        try {
+            page = categoryService.getTreePage(root, depth, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        return ResponseEntity.ok()
+                .eTag(treeEtag(page.version()))
+                .cacheControl(CacheControl.noCache())
+                .body(page);
+    }
+
+    @Operation(summary = "Поиск категорий по началу имени",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Найденные категории с путями от корня",
+                            content = @Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CategorySearchResult.class)
+                            )
+                    )
+            })
+    @GetMapping("/search")
+    public ResponseEntity<List<CategorySearchResult>> search(@RequestParam String prefix,
+                                                             @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(categoryService.searchCategories(prefix, limit));
     }
 
     @Operation(summary = "Создает новую категорию как корневую, если родитель не указан, или добавляет её к существующей категории.",
@@ -58,6 +145,29 @@ public class CategoryController {
         return ResponseEntity.ok(categoryService.addElement(parent, child));
     }
 
+    @Operation(summary = "Пакетная загрузка категорий",
+            description = "Принимает поток NDJSON или JSON-массив объектов {\"name\", \"parent\"} и применяет их "
+                    + "пакетами по " + CategoryBulkImporter.BATCH_SIZE + " в отдельных транзакциях. "
+                    + "Результат каждого элемента возвращается строкой NDJSON по мере применения пакетов.",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Результаты элементов в порядке запроса",
+                            content = @Content(
+                                    mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                                    schema = @Schema(implementation = CategoryBulkResult.class)
+                            )
+                    )
+            })
+    @PostMapping(value = "/bulk",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void bulk(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        bulkImporter.importStream(body, response.getOutputStream());
+    }
+
     @Operation(summary = "Удаление элемента из категорий",
             responses = {
                     @ApiResponse(
@@ -89,4 +199,8 @@ public class CategoryController {
     public ResponseEntity<List<String>> getHelp() {
         return ResponseEntity.ok(categoryService.getHelp());
     }
+
+    private static String treeEtag(long version) {
+        return "\"" + INSTANCE_ID + "-" + version + "\"";
+    }
 }
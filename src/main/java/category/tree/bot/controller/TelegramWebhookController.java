@@ -0,0 +1,54 @@
+package category.tree.bot.controller;
+
+import category.tree.bot.updatescontrol.TelegramWebhookBotUpdatesControl;
+import io.swagger.v3.oas.annotations.Hidden;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Точка приёма обновлений от Telegram в режиме webhook.
+ */
+@Hidden
+@RestController
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final TelegramWebhookBotUpdatesControl webhookBot;
+    private final String secretToken;
+
+    public TelegramWebhookController(TelegramWebhookBotUpdatesControl webhookBot,
+                                     @Value("${telegram.bot.webhook.secret-token:}") String secretToken) {
+        this.webhookBot = webhookBot;
+        this.secretToken = secretToken;
+    }
+
+    @PostMapping("${telegram.bot.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_HEADER, required = false) String secret,
+                                         @RequestBody Update update) {
+        if (!secretToken.isEmpty() && !isSecretValid(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        webhookBot.onWebhookUpdateReceived(update);
+        return ResponseEntity.ok().build();
+    }
+
+    /**
+     * Сравнивает секрет из заголовка за время, не зависящее от совпавшего префикса.
+     */
+    private boolean isSecretValid(String secret) {
+        return secret != null && MessageDigest.isEqual(secretToken.getBytes(StandardCharsets.UTF_8),
+                secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,42 @@
+package category.tree.bot.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Результат обработки одного элемента пакетной загрузки категорий.
+ *
+ * @param line   номер элемента во входном потоке, начиная с 1
+ * @param name   имя категории или null, если элемент не удалось разобрать
+ * @param status итог обработки элемента
+ * @param reason причина конфликта или ошибки, null для созданной категории
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CategoryBulkResult(long line, String name, Status status, String reason) {
+
+    public enum Status {
+        /**
+         * Категория создана.
+         */
+        CREATED,
+        /**
+         * Элемент пропущен, как конфликтная строка импорта.
+         */
+        CONFLICT,
+        /**
+         * Элемент не обработан из-за ошибки сохранения пакета или разбора входного потока.
+         */
+        FAILED
+    }
+
+    public static CategoryBulkResult created(CategoryImportRow row) {
+        return new CategoryBulkResult(row.rowNumber(), row.name(), Status.CREATED, null);
+    }
+
+    public static CategoryBulkResult conflict(CategoryImportRow row, String reason) {
+        return new CategoryBulkResult(row.rowNumber(), row.name(), Status.CONFLICT, reason);
+    }
+
+    public static CategoryBulkResult failed(long line, String name, String reason) {
+        return new CategoryBulkResult(line, name, Status.FAILED, reason);
+    }
+}
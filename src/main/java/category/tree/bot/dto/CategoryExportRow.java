@@ -0,0 +1,10 @@
+package category.tree.bot.dto;
+
+/**
+ * Строка выгрузки категорий.
+ *
+ * @param name       имя категории
+ * @param parentName имя родительской категории или null для корневой категории
+ */
+public record CategoryExportRow(String name, String parentName) {
+}
@@ -0,0 +1,11 @@
+package category.tree.bot.dto;
+
+/**
+ * Строка импорта, которую не удалось применить.
+ *
+ * @param rowNumber номер строки в исходном документе
+ * @param name      имя категории
+ * @param reason    причина конфликта
+ */
+public record CategoryImportConflict(long rowNumber, String name, String reason) {
+}
@@ -0,0 +1,46 @@
+package category.tree.bot.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Итог импорта категорий.
+ * Хранит не более {@link #MAX_CONFLICTS} конфликтов, остальные только подсчитываются.
+ *
+ * @param imported      количество созданных категорий
+ * @param conflictCount общее количество конфликтных строк
+ * @param conflicts     первые конфликтные строки
+ */
+public record CategoryImportReport(long imported, long conflictCount, List<CategoryImportConflict> conflicts) {
+
+    public static final int MAX_CONFLICTS = 100;
+
+    public CategoryImportReport {
+        conflicts = List.copyOf(conflicts);
+    }
+
+    public static CategoryImportReport empty() {
+        return new CategoryImportReport(0, 0, List.of());
+    }
+
+    /**
+     * Объединяет два отчёта, например, отчёты по соседним пакетам строк.
+     *
+     * @param other отчёт для объединения
+     * @return суммарный отчёт
+     */
+    public CategoryImportReport plus(CategoryImportReport other) {
+        List<CategoryImportConflict> merged = new ArrayList<>(conflicts);
+        for (CategoryImportConflict conflict : other.conflicts) {
+            if (merged.size() >= MAX_CONFLICTS) {
+                break;
+            }
+            merged.add(conflict);
+        }
+        return new CategoryImportReport(imported + other.imported, conflictCount + other.conflictCount, merged);
+    }
+
+    public boolean hasConflicts() {
+        return conflictCount > 0;
+    }
+}
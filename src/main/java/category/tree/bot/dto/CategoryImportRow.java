@@ -0,0 +1,29 @@
+package category.tree.bot.dto;
+
+/**
+ * Строка импорта категорий.
+ *
+ * @param rowNumber  номер строки в исходном документе, начиная с 1, или 0 для отсутствующего родителя,
+ *                   которого импорт создаёт сам
+ * @param name       имя категории
+ * @param parentName имя родительской категории или null для корневой категории
+ */
+public record CategoryImportRow(long rowNumber, String name, String parentName) {
+
+    /**
+     * Создаёт строку для отсутствующего родителя, которого нет в исходном документе.
+     *
+     * @param name имя родительской категории
+     * @return корневая категория без номера строки
+     */
+    public static CategoryImportRow missingParent(String name) {
+        return new CategoryImportRow(0, name, null);
+    }
+
+    /**
+     * @return true, если строки нет в исходном документе и её создал импорт
+     */
+    public boolean isMissingParent() {
+        return rowNumber == 0;
+    }
+}
@@ -0,0 +1,11 @@
+package category.tree.bot.dto;
+
+/**
+ * Найденная категория.
+ *
+ * @param id   идентификатор категории
+ * @param name имя категории
+ * @param path путь от корня до категории через « / »
+ */
+public record CategorySearchResult(Long id, String name, String path) {
+}
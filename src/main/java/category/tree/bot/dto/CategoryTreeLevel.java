@@ -0,0 +1,26 @@
+package category.tree.bot.dto;
+
+import category.tree.bot.repository.CategoryLevelRow;
+
+import java.util.List;
+
+/**
+ * Одна страница одного уровня дерева категорий.
+ *
+ * @param nodeId   идентификатор открытой категории или null для корневого уровня
+ * @param nodeName имя открытой категории или null для корневого уровня
+ * @param parentId идентификатор родителя открытой категории или null
+ * @param children подкатегории на странице, упорядоченные по идентификатору
+ * @param hasMore  есть ли подкатегории после последней на странице
+ */
+public record CategoryTreeLevel(Long nodeId, String nodeName, Long parentId,
+                                List<CategoryLevelRow> children, boolean hasMore) {
+
+    public CategoryTreeLevel {
+        children = List.copyOf(children);
+    }
+
+    public boolean isRoot() {
+        return nodeId == null;
+    }
+}
@@ -0,0 +1,29 @@
+package category.tree.bot.dto;
+
+import java.util.List;
+
+/**
+ * Страница поддерева категорий в прямом порядке обхода.
+ *
+ * @param version    версия дерева, по которой построена страница
+ * @param nodes      узлы страницы: родитель всегда предшествует подкатегориям
+ * @param nextCursor курсор следующей страницы или null, если страница последняя
+ */
+public record CategoryTreePage(long version, List<Node> nodes, String nextCursor) {
+
+    public CategoryTreePage {
+        nodes = List.copyOf(nodes);
+    }
+
+    /**
+     * Узел страницы.
+     *
+     * @param id         идентификатор категории
+     * @param name       имя категории
+     * @param parentId   идентификатор родителя или null для корневой категории
+     * @param depth      глубина относительно корня запроса
+     * @param childCount количество подкатегорий, в том числе не попавших в ответ из-за ограничения глубины
+     */
+    public record Node(Long id, String name, Long parentId, int depth, int childCount) {
+    }
+}
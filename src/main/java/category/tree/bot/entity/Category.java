@@ -1,19 +1,34 @@
 package category.tree.bot.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 
+/**
+ * Категория дерева.
+ *
+ * Категории, их списки подкатегорий и разрешение имени в идентификатор хранятся во втором уровне кэша Hibernate,
+ * поэтому поиск категории по имени обычно не обращается к базе данных.
+ * Имя — натуральный ключ категории и после создания не меняется.
+ */
 @Entity
 @Table(name = "categories")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@NaturalIdCache
 public class Category {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @Column(nullable = false, unique = true)
     private String name;
 
@@ -21,6 +36,7 @@ public class Category {
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     private List<Category> children = new ArrayList<>();
 
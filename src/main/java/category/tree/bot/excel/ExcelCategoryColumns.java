@@ -0,0 +1,29 @@
+package category.tree.bot.excel;
+
+/**
+ * Расположение колонок в Excel-документе с деревом категорий.
+ */
+public final class ExcelCategoryColumns {
+
+    public static final String SHEET_NAME = "Categories";
+
+    public static final int CATEGORY_COLUMN = 0;
+    public static final int PARENT_COLUMN = 1;
+
+    public static final String CATEGORY_HEADER = "Категория";
+    public static final String PARENT_HEADER = "Родительская категория";
+
+    private ExcelCategoryColumns() {
+    }
+
+    /**
+     * Возвращает имя листа документа по его номеру. Выгрузка, не уместившаяся на один лист,
+     * продолжается на листах «Categories 2», «Categories 3» и так далее.
+     *
+     * @param number номер листа, начиная с 1
+     * @return имя листа
+     */
+    public static String sheetName(int number) {
+        return number == 1 ? SHEET_NAME : SHEET_NAME + " " + number;
+    }
+}
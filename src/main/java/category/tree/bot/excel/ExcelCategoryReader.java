@@ -0,0 +1,114 @@
+package category.tree.bot.excel;
+
+import category.tree.bot.dto.CategoryImportRow;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Consumer;
+
+/**
+ * Потоковое чтение Excel-документа с деревом категорий.
+ *
+ * Лист разбирается SAX-парсером через событийную модель XSSF, поэтому в памяти
+ * одновременно находится только текущая строка, независимо от размера документа.
+ * Первая колонка содержит имя категории, вторая — имя родительской категории.
+ */
+public class ExcelCategoryReader {
+
+    /**
+     * Читает первый лист документа и передаёт каждую строку с категорией обработчику.
+     * За первым листом читаются листы продолжения выгрузки («Categories 2», «Categories 3» и так далее),
+     * которые пишет {@link ExcelCategoryWriter}, если категории не уместились на один лист; остальные листы
+     * не читаются. Номер строки отсчитывается в пределах её листа.
+     * Строка заголовка и строки без имени категории пропускаются.
+     *
+     * @param file     Excel-файл
+     * @param consumer обработчик строк
+     * @return количество переданных обработчику строк
+     * @throws IOException если файл не удаётся прочитать или разобрать
+     */
+    public long read(File file, Consumer<CategoryImportRow> consumer) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader reader = new XSSFReader(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            RowCollector collector = new RowCollector(consumer);
+            for (int number = 1; sheets.hasNext(); number++) {
+                try (InputStream sheet = sheets.next()) {
+                    if (number > 1 && !ExcelCategoryColumns.sheetName(number).equals(sheets.getSheetName())) {
+                        break;
+                    }
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(new XSSFSheetXMLHandler(
+                            reader.getStylesTable(), null, strings, collector, new DataFormatter(), false));
+                    parser.parse(new InputSource(sheet));
+                }
+            }
+            return collector.count;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Не удалось разобрать Excel-файл: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собирает значения первых двух колонок строки и передаёт их обработчику по окончании строки.
+     */
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final Consumer<CategoryImportRow> consumer;
+        private long count;
+
+        private int currentColumn;
+        private String name;
+        private String parentName;
+
+        private RowCollector(Consumer<CategoryImportRow> consumer) {
+            this.consumer = consumer;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            currentColumn = -1;
+            name = null;
+            parentName = null;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (name == null || name.isBlank()) {
+                return;
+            }
+            if (rowNum == 0 && ExcelCategoryColumns.CATEGORY_HEADER.equals(name)) {
+                return;
+            }
+            String parent = parentName == null || parentName.isBlank() ? null : parentName.trim();
+            consumer.accept(new CategoryImportRow(rowNum + 1L, name.trim(), parent));
+            count++;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            currentColumn = cellReference != null ? new CellReference(cellReference).getCol() : currentColumn + 1;
+            if (currentColumn == ExcelCategoryColumns.CATEGORY_COLUMN) {
+                name = formattedValue;
+            } else if (currentColumn == ExcelCategoryColumns.PARENT_COLUMN) {
+                parentName = formattedValue;
+            }
+        }
+    }
+}
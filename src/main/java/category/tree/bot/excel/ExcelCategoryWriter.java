@@ -0,0 +1,114 @@
+package category.tree.bot.excel;
+
+import category.tree.bot.dto.CategoryExportRow;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Потоковая запись дерева категорий в Excel-документ.
+ *
+ * Строки пишутся через {@link SXSSFWorkbook}: в памяти держится только скользящее окно
+ * из {@value #ROW_WINDOW} строк, остальные сбрасываются во временный файл.
+ * Ширина колонок считается по длине строк, без измерения шрифтов через {@code autoSizeColumn}.
+ * Лист xlsx вмещает не больше 1 048 576 строк, поэтому выгрузка, не уместившаяся на один лист,
+ * продолжается на следующих листах, каждый со своей строкой заголовка.
+ */
+public class ExcelCategoryWriter {
+
+    private static final int ROW_WINDOW = 100;
+    private static final int CHAR_WIDTH = 256;
+    private static final int WIDTH_PADDING = 2;
+    private static final int MAX_COLUMN_CHARS = 255;
+
+    /**
+     * Наибольшее количество категорий на одном листе: ограничение формата на число строк без строки заголовка.
+     */
+    public static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+
+    private final int maxRowsPerSheet;
+
+    public ExcelCategoryWriter() {
+        this(MAX_ROWS_PER_SHEET);
+    }
+
+    /**
+     * @param maxRowsPerSheet наибольшее количество категорий на одном листе
+     */
+    ExcelCategoryWriter(int maxRowsPerSheet) {
+        if (maxRowsPerSheet <= 0 || maxRowsPerSheet > MAX_ROWS_PER_SHEET) {
+            throw new IllegalArgumentException("maxRowsPerSheet must be in [1, " + MAX_ROWS_PER_SHEET + "]: " + maxRowsPerSheet);
+        }
+        this.maxRowsPerSheet = maxRowsPerSheet;
+    }
+
+    /**
+     * Записывает категории в файл.
+     *
+     * @param file   файл для записи
+     * @param source источник строк: получает обработчик и передаёт ему строки выгрузки по одной
+     * @return количество записанных категорий
+     * @throws IOException если файл не удаётся записать
+     */
+    public long write(File file, Consumer<Consumer<CategoryExportRow>> source) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        try {
+            List<Sheet> sheets = new ArrayList<>();
+            Sheet[] sheet = {createSheet(workbook, sheets)};
+
+            int[] maxLength = {ExcelCategoryColumns.CATEGORY_HEADER.length(), ExcelCategoryColumns.PARENT_HEADER.length()};
+            int[] rowIndex = {1};
+            long[] written = {0};
+            source.accept(category -> {
+                if (rowIndex[0] > maxRowsPerSheet) {
+                    sheet[0] = createSheet(workbook, sheets);
+                    rowIndex[0] = 1;
+                }
+                Row row = sheet[0].createRow(rowIndex[0]++);
+                String parentName = category.parentName() != null ? category.parentName() : "";
+                row.createCell(ExcelCategoryColumns.CATEGORY_COLUMN).setCellValue(category.name());
+                row.createCell(ExcelCategoryColumns.PARENT_COLUMN).setCellValue(parentName);
+                maxLength[0] = Math.max(maxLength[0], category.name().length());
+                maxLength[1] = Math.max(maxLength[1], parentName.length());
+                written[0]++;
+            });
+
+            for (Sheet filled : sheets) {
+                filled.setColumnWidth(ExcelCategoryColumns.CATEGORY_COLUMN, columnWidth(maxLength[0]));
+                filled.setColumnWidth(ExcelCategoryColumns.PARENT_COLUMN, columnWidth(maxLength[1]));
+            }
+
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                workbook.write(fos);
+            }
+            return written[0];
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * Добавляет следующий лист выгрузки со строкой заголовка.
+     */
+    private static Sheet createSheet(SXSSFWorkbook workbook, List<Sheet> sheets) {
+        Sheet sheet = workbook.createSheet(ExcelCategoryColumns.sheetName(sheets.size() + 1));
+        Row headerRow = sheet.createRow(0);
+        headerRow.createCell(ExcelCategoryColumns.CATEGORY_COLUMN).setCellValue(ExcelCategoryColumns.CATEGORY_HEADER);
+        headerRow.createCell(ExcelCategoryColumns.PARENT_COLUMN).setCellValue(ExcelCategoryColumns.PARENT_HEADER);
+        sheets.add(sheet);
+        return sheet;
+    }
+
+    private static int columnWidth(int chars) {
+        return Math.min(chars + WIDTH_PADDING, MAX_COLUMN_CHARS) * CHAR_WIDTH;
+    }
+}
@@ -0,0 +1,185 @@
+package category.tree.bot.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики бота в Micrometer. Публикуются через Actuator ({@code /actuator/metrics}, {@code /actuator/prometheus}).
+ *
+ * Таймеры команд и исходящих запросов публикуют гистограммы, чтобы перцентили можно было считать
+ * по всем экземплярам бота. Имена метрик собраны в константах, теги — в нижнем регистре.
+ */
+@Component
+public class BotMetrics {
+
+    public static final String COMMAND_LATENCY = "bot.command.latency";
+    public static final String UPDATE_LAG = "bot.update.lag";
+    public static final String UPDATE_DUPLICATES = "bot.update.duplicates";
+    public static final String OUTBOUND_LATENCY = "bot.outbound.latency";
+    public static final String OUTBOUND_FAILURES = "bot.outbound.failures";
+    public static final String EXCEL_ROWS = "bot.excel.rows";
+    public static final String EXCEL_THROUGHPUT = "bot.excel.throughput";
+    public static final String REPOSITORY_LATENCY = "bot.repository.latency";
+
+    public static final String TYPE_COMMAND = "command";
+    public static final String TYPE_STATE = "state";
+    public static final String TYPE_CALLBACK = "callback";
+
+    public static final String DIRECTION_IMPORT = "import";
+    public static final String DIRECTION_EXPORT = "export";
+
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Timer updateLag;
+    private final Counter updateDuplicates;
+
+    public BotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.updateLag = Timer.builder(UPDATE_LAG)
+                .description("Задержка между отправкой сообщения пользователем и началом его обработки")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.updateDuplicates = Counter.builder(UPDATE_DUPLICATES)
+                .description("Повторно доставленные обновления, пропущенные без обработки")
+                .register(registry);
+    }
+
+    /**
+     * Выполняет обработчик и записывает его длительность.
+     *
+     * @param type   тип обработчика: команда, обработчик состояния чата или нажатие кнопки
+     * @param name   имя команды, состояния или префикс кнопки
+     * @param action обработчик
+     */
+    public void timeCommand(String type, String name, Runnable action) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            action.run();
+            outcome = OUTCOME_SUCCESS;
+        } finally {
+            Timer.builder(COMMAND_LATENCY)
+                    .description("Длительность обработки команды")
+                    .tag("type", type)
+                    .tag("name", name)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Записывает задержку обработки обновления относительно даты сообщения.
+     *
+     * @param messageDateSeconds дата сообщения в секундах Unix-времени, как её передаёт Telegram
+     */
+    public void recordUpdateLag(Integer messageDateSeconds) {
+        if (messageDateSeconds == null) {
+            return;
+        }
+        long lagMillis = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(messageDateSeconds);
+        updateLag.record(Duration.ofMillis(Math.max(0, lagMillis)));
+    }
+
+    /**
+     * Учитывает повторно доставленное обновление.
+     */
+    public void recordDuplicateUpdate() {
+        updateDuplicates.increment();
+    }
+
+    /**
+     * Записывает длительность одной попытки исходящего запроса к Bot API.
+     *
+     * @param method  имя метода Bot API
+     * @param outcome результат попытки: success, rate_limited, server_error, network или client_error
+     * @param nanos   длительность в наносекундах
+     */
+    public void recordOutbound(String method, String outcome, long nanos) {
+        Timer.builder(OUTBOUND_LATENCY)
+                .description("Длительность исходящего запроса к Bot API")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (!OUTCOME_SUCCESS.equals(outcome)) {
+            Counter.builder(OUTBOUND_FAILURES)
+                    .description("Неуспешные попытки исходящих запросов к Bot API")
+                    .tag("method", method)
+                    .tag("reason", outcome)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Записывает количество строк, обработанных при импорте или выгрузке Excel, и скорость обработки.
+     *
+     * @param direction {@link #DIRECTION_IMPORT} или {@link #DIRECTION_EXPORT}
+     * @param rows      количество строк
+     * @param nanos     длительность обработки в наносекундах
+     */
+    public void recordExcelRows(String direction, long rows, long nanos) {
+        Counter.builder(EXCEL_ROWS)
+                .description("Строки, обработанные при работе с Excel")
+                .tag("direction", direction)
+                .register(registry)
+                .increment(rows);
+        if (nanos > 0) {
+            DistributionSummary.builder(EXCEL_THROUGHPUT)
+                    .description("Скорость обработки строк Excel")
+                    .baseUnit("rows/s")
+                    .tag("direction", direction)
+                    .register(registry)
+                    .record(rows * 1e9 / nanos);
+        }
+    }
+
+    /**
+     * Выполняет обращение к JDBC-репозиторию и записывает его длительность.
+     * Вызовы репозиториев Spring Data измеряются Spring Boot в метрике {@code spring.data.repository.invocations}.
+     *
+     * @param repository имя репозитория
+     * @param method     имя метода
+     * @param call       обращение к репозиторию
+     * @return результат обращения
+     */
+    public <T> T timeRepository(String repository, String method, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            Timer.builder(REPOSITORY_LATENCY)
+                    .description("Длительность обращения к JDBC-репозиторию")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Выполняет обращение к JDBC-репозиторию без результата и записывает его длительность.
+     *
+     * @param repository имя репозитория
+     * @param method     имя метода
+     * @param call       обращение к репозиторию
+     */
+    public void timeRepository(String repository, String method, Runnable call) {
+        timeRepository(repository, method, () -> {
+            call.run();
+            return null;
+        });
+    }
+}
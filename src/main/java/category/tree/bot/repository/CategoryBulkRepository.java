@@ -0,0 +1,273 @@
+package category.tree.bot.repository;
+
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportRow;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Пакетные операции над категориями через JDBC.
+ * Используется для массового импорта, где сохранение сущностей по одной слишком дорого,
+ * и для вставки категории одним запросом без предварительной проверки имени.
+ */
+@Repository
+public class CategoryBulkRepository {
+
+    private static final String INSERT_CATEGORY = """
+            INSERT INTO categories (name, parent_id)
+            VALUES (?, (SELECT p.id FROM categories p WHERE p.name = ?))
+            %s
+            """;
+
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO categories (name, parent_id)
+            VALUES (?, ?)
+            %s
+            """;
+
+    /**
+     * Вставка категории вместе со строками таблицы замыканий одним запросом PostgreSQL.
+     * Оба изменяющих подзапроса выполняются всегда, даже если основной запрос не читает результат второго;
+     * если имя уже занято, {@code inserted} пуст и строки замыканий не добавляются.
+     */
+    private static final String INSERT_WITH_CLOSURE = """
+            WITH inserted AS (
+                INSERT INTO categories (name, parent_id)
+                VALUES (?, ?)
+                ON CONFLICT (name) DO NOTHING
+                RETURNING id
+            ), closure AS (
+                INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+                SELECT cc.ancestor_id, i.id, cc.depth + 1
+                FROM inserted i
+                JOIN category_closure cc ON cc.descendant_id = ?
+                UNION ALL
+                SELECT i.id, i.id, 0
+                FROM inserted i
+            )
+            SELECT id FROM inserted
+            """;
+
+    private static final String INSERT_CLOSURE = """
+            INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+            SELECT ancestor_id, CAST(? AS BIGINT), depth + 1
+            FROM category_closure
+            WHERE descendant_id = ?
+            UNION ALL
+            SELECT CAST(? AS BIGINT), CAST(? AS BIGINT), 0
+            """;
+
+    private static final String ON_NAME_CONFLICT = "ON CONFLICT (name) DO NOTHING";
+
+    /**
+     * H2, на которой выполняются тесты, не разбирает цель конфликта, но и без неё пропускает только
+     * нарушения уникальности, а не NOT NULL или внешних ключей.
+     */
+    private static final String ON_NAME_CONFLICT_H2 = "ON CONFLICT DO NOTHING";
+
+    private static final String SELECT_FOR_EXPORT = """
+            SELECT c.name, p.name
+            FROM categories r
+            JOIN category_closure cc ON cc.ancestor_id = r.id
+            JOIN categories c ON c.id = cc.descendant_id
+            LEFT JOIN categories p ON p.id = c.parent_id
+            WHERE r.parent_id IS NULL
+            ORDER BY cc.depth, c.id
+            """;
+
+    private static final String SELECT_SUBTREE_FOR_EXPORT = """
+            SELECT c.name, CASE WHEN cc.depth = 0 THEN NULL ELSE p.name END
+            FROM category_closure cc
+            JOIN categories c ON c.id = cc.descendant_id
+            LEFT JOIN categories p ON p.id = c.parent_id
+            WHERE cc.ancestor_id = ? AND cc.depth <= ?
+            ORDER BY cc.depth, c.id
+            """;
+
+    private static final String SELECT_LEVELS_FOR_EXPORT = """
+            SELECT c.name, p.name
+            FROM categories r
+            JOIN category_closure cc ON cc.ancestor_id = r.id
+            JOIN categories c ON c.id = cc.descendant_id
+            LEFT JOIN categories p ON p.id = c.parent_id
+            WHERE r.parent_id IS NULL AND cc.depth <= ?
+            ORDER BY cc.depth, c.id
+            """;
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private volatile Boolean h2;
+
+    public CategoryBulkRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Возвращает имена из переданного набора, которые уже есть в базе данных.
+     *
+     * @param names проверяемые имена
+     * @return существующие имена
+     */
+    public Set<String> findExistingNames(Collection<String> names) {
+        if (names.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedJdbcTemplate.queryForList(
+                "SELECT name FROM categories WHERE name IN (:names)", Map.of("names", names), String.class));
+    }
+
+    /**
+     * Вставляет категорию, если категории с таким именем ещё нет.
+     * Проверка имени и вставка выполняются одним запросом, поэтому одновременные вставки одного имени
+     * не падают на ограничении уникальности: одна вставляет строку, остальные получают null.
+     * Пропускается только конфликт по имени, остальные нарушения ограничений приводят к ошибке.
+     * Идентификатор читается как сгенерированный ключ, драйвер PostgreSQL добавляет к запросу {@code RETURNING id}.
+     *
+     * @param name     имя категории
+     * @param parentId идентификатор родителя или null для корневой категории
+     * @return идентификатор новой категории или null, если категория с таким именем уже есть
+     */
+    public Long insertIfAbsent(String name, Long parentId) {
+        String sql = INSERT_IF_ABSENT.formatted(onNameConflict());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, new String[]{"id"});
+            statement.setString(1, name);
+            statement.setObject(2, parentId, Types.BIGINT);
+            return statement;
+        }, keyHolder);
+        Number key = keyHolder.getKey();
+        return key != null ? key.longValue() : null;
+    }
+
+    /**
+     * Вставляет категорию, если категории с таким именем ещё нет, и добавляет её в таблицу замыканий.
+     * В PostgreSQL это один запрос с изменяющими подзапросами {@code WITH}, поэтому новая категория
+     * стоит одного обращения к базе данных, а не двух. H2, на которой выполняются тесты, не поддерживает
+     * {@code INSERT} внутри {@code WITH}: там категория и строки замыканий вставляются двумя запросами.
+     *
+     * @param name     имя категории
+     * @param parentId идентификатор родителя или null для корневой категории
+     * @return идентификатор новой категории или null, если категория с таким именем уже есть
+     */
+    public Long insertWithClosure(String name, Long parentId) {
+        if (isH2()) {
+            Long id = insertIfAbsent(name, parentId);
+            if (id != null) {
+                jdbcTemplate.update(INSERT_CLOSURE, id, parentId, id, id);
+            }
+            return id;
+        }
+        List<Long> ids = jdbcTemplate.queryForList(INSERT_WITH_CLOSURE,
+                new Object[]{name, parentId, parentId}, new int[]{Types.VARCHAR, Types.BIGINT, Types.BIGINT}, Long.class);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * Вставляет категории одним JDBC-пакетом.
+     * Родитель каждой категории определяется по имени подзапросом, поэтому родитель,
+     * вставленный раньше в этом же пакете, уже виден его подкатегориям.
+     * Категория, имя которой успели добавить после проверки имён, не вставляется и не прерывает пакет:
+     * она возвращается в списке пропущенных.
+     *
+     * @param categories категории, упорядоченные так, что родитель идёт раньше подкатегории
+     * @return категории, не вставленные из-за уже существующего имени
+     */
+    public List<CategoryImportRow> insertAll(List<CategoryImportRow> categories) {
+        int[][] counts = jdbcTemplate.batchUpdate(INSERT_CATEGORY.formatted(onNameConflict()), categories,
+                categories.size(), (ps, category) -> {
+                    ps.setString(1, category.name());
+                    ps.setString(2, category.parentName());
+                });
+        List<CategoryImportRow> skipped = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count == 0) {
+                    skipped.add(categories.get(index));
+                }
+                index++;
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Возвращает условие {@code ON CONFLICT} по имени категории для используемой базы данных.
+     */
+    private String onNameConflict() {
+        return isH2() ? ON_NAME_CONFLICT_H2 : ON_NAME_CONFLICT;
+    }
+
+    /**
+     * Проверяет, выполняются ли запросы на H2. Тип базы данных определяется по метаданным соединения один раз.
+     */
+    private boolean isH2() {
+        Boolean result = h2;
+        if (result == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            result = "H2".equals(product);
+            h2 = result;
+        }
+        return result;
+    }
+
+    /**
+     * Передаёт обработчику все категории вместе с именами родителей, не накапливая их в памяти.
+     * Строки читаются курсором порциями по {@value #EXPORT_FETCH_SIZE}, родитель всегда предшествует подкатегории.
+     * Для потокового чтения в PostgreSQL метод должен вызываться внутри транзакции.
+     *
+     * @param consumer обработчик строк
+     */
+    public void forEachForExport(Consumer<CategoryExportRow> consumer) {
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(SELECT_FOR_EXPORT);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet ->
+                consumer.accept(new CategoryExportRow(resultSet.getString(1), resultSet.getString(2))));
+    }
+
+    /**
+     * Передаёт обработчику категории поддерева не глубже заданного уровня так же, как {@link #forEachForExport(Consumer)}.
+     * Поддерево читается по первичному ключу таблицы замыканий, поэтому стоимость зависит от размера поддерева,
+     * а не всего дерева. Корень поддерева передаётся без родителя, чтобы выгрузку можно было загрузить как отдельное дерево.
+     *
+     * @param rootId   идентификатор корня поддерева или null для корневых категорий
+     * @param maxDepth глубина относительно корня поддерева (или корневых категорий), глубже которой строки не передаются
+     * @param consumer обработчик строк
+     */
+    public void forEachInSubtreeForExport(Long rootId, int maxDepth, Consumer<CategoryExportRow> consumer) {
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(rootId != null ? SELECT_SUBTREE_FOR_EXPORT : SELECT_LEVELS_FOR_EXPORT);
+            statement.setFetchSize(EXPORT_FETCH_SIZE);
+            if (rootId != null) {
+                statement.setLong(1, rootId);
+                statement.setInt(2, maxDepth);
+            } else {
+                statement.setInt(1, maxDepth);
+            }
+            return statement;
+        }, (RowCallbackHandler) resultSet ->
+                consumer.accept(new CategoryExportRow(resultSet.getString(1), resultSet.getString(2))));
+    }
+}
@@ -0,0 +1,66 @@
+package category.tree.bot.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Поддержка таблицы замыканий {@code category_closure}.
+ *
+ * Для каждой категории таблица хранит пары (предок, потомок, расстояние), включая саму категорию
+ * с расстоянием 0, поэтому поддерево, путь до корня и количество потомков читаются одним индексным запросом.
+ * Строки добавляются здесь при создании категорий, а при удалении категории удаляются каскадно внешними ключами.
+ */
+@Repository
+public class CategoryHierarchyRepository {
+
+    private static final String INSERT_NODE = """
+            INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+            SELECT ancestor_id, CAST(? AS BIGINT), depth + 1
+            FROM category_closure
+            WHERE descendant_id = ?
+            UNION ALL
+            SELECT CAST(? AS BIGINT), CAST(? AS BIGINT), 0
+            """;
+
+    private static final String INSERT_NODE_BY_NAME = """
+            INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+            SELECT a.ancestor_id, c.id, a.depth + 1
+            FROM categories c
+            JOIN category_closure a ON a.descendant_id = c.parent_id
+            WHERE c.name = ?
+            UNION ALL
+            SELECT id, id, 0
+            FROM categories
+            WHERE name = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CategoryHierarchyRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Добавляет в таблицу замыканий новую категорию: копирует пути родителя и добавляет путь к самой себе.
+     *
+     * @param id       идентификатор новой категории
+     * @param parentId идентификатор родителя или null для корневой категории
+     */
+    public void addNode(Long id, Long parentId) {
+        jdbcTemplate.update(INSERT_NODE, id, parentId, id, id);
+    }
+
+    /**
+     * Добавляет в таблицу замыканий категории, вставленные пакетом, одним JDBC-пакетом.
+     *
+     * @param names имена категорий, упорядоченные так, что родитель идёт раньше подкатегории
+     */
+    public void addNodesByName(List<String> names) {
+        jdbcTemplate.batchUpdate(INSERT_NODE_BY_NAME, names, names.size(), (ps, name) -> {
+            ps.setString(1, name);
+            ps.setString(2, name);
+        });
+    }
+}
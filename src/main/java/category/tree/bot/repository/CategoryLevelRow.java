@@ -0,0 +1,15 @@
+package category.tree.bot.repository;
+
+/**
+ * Строка выборки одного уровня дерева категорий для постраничной навигации.
+ */
+public interface CategoryLevelRow {
+
+    Long getId();
+
+    String getName();
+
+    Long getParentId();
+
+    boolean getHasChildren();
+}
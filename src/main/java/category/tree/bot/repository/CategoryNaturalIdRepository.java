@@ -0,0 +1,30 @@
+package category.tree.bot.repository;
+
+import category.tree.bot.entity.Category;
+
+import java.util.Optional;
+
+/**
+ * Поиск категорий по имени через натуральный ключ Hibernate.
+ *
+ * В отличие от производных запросов Spring Data, разрешение натурального ключа сначала смотрит в кэш
+ * натуральных ключей и кэш сущностей второго уровня, а к базе данных обращается только при промахе.
+ */
+public interface CategoryNaturalIdRepository {
+
+    /**
+     * Находит категорию по имени.
+     *
+     * @param name имя категории
+     * @return категория или пустой Optional, если категории нет
+     */
+    Optional<Category> findByName(String name);
+
+    /**
+     * Проверяет, есть ли категория с таким именем.
+     *
+     * @param name имя категории
+     * @return true, если категория существует
+     */
+    boolean existsByName(String name);
+}
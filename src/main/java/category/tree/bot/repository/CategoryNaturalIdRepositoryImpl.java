@@ -0,0 +1,31 @@
+package category.tree.bot.repository;
+
+import category.tree.bot.entity.Category;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Реализация {@link CategoryNaturalIdRepository}, подключаемая Spring Data к {@link CategoryRepository}.
+ */
+@Transactional(readOnly = true)
+class CategoryNaturalIdRepositoryImpl implements CategoryNaturalIdRepository {
+
+    private final EntityManager entityManager;
+
+    CategoryNaturalIdRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Optional<Category> findByName(String name) {
+        return entityManager.unwrap(Session.class).bySimpleNaturalId(Category.class).loadOptional(name);
+    }
+
+    @Override
+    public boolean existsByName(String name) {
+        return findByName(name).isPresent();
+    }
+}
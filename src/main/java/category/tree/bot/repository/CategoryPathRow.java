@@ -0,0 +1,13 @@
+package category.tree.bot.repository;
+
+/**
+ * Строка пути категории: категория и один из её предков.
+ */
+public interface CategoryPathRow {
+
+    Long getId();
+
+    String getName();
+
+    String getAncestorName();
+}
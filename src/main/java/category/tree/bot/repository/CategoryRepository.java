@@ -2,12 +2,156 @@ package category.tree.bot.repository;
 
 import category.tree.bot.entity.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface CategoryRepository extends JpaRepository<Category, Long> {
+public interface CategoryRepository extends JpaRepository<Category, Long>, CategoryNaturalIdRepository {
 
-    boolean existsByName(String name);
-    Optional<Category> findByName(String name);
+    /**
+     * Загружает всё дерево категорий одним запросом по таблице замыканий.
+     * Каждая категория выбирается один раз — через путь от её корня, глубина равна расстоянию до корня.
+     * Строки упорядочены по глубине, поэтому родитель всегда предшествует своим подкатегориям.
+     *
+     * @return строки дерева с глубиной вложенности относительно корня
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId", cc.depth
+            FROM categories r
+            JOIN category_closure cc ON cc.ancestor_id = r.id
+            JOIN categories c ON c.id = cc.descendant_id
+            WHERE r.parent_id IS NULL
+            ORDER BY cc.depth, c.id
+            """, nativeQuery = true)
+    List<CategoryTreeRow> findTree();
 
+    /**
+     * Загружает поддерево категории одним запросом по первичному ключу таблицы замыканий.
+     *
+     * @param rootId идентификатор корня поддерева
+     * @return строки поддерева, глубина отсчитывается от корня поддерева
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId", cc.depth
+            FROM category_closure cc
+            JOIN categories c ON c.id = cc.descendant_id
+            WHERE cc.ancestor_id = :rootId
+            ORDER BY cc.depth, c.id
+            """, nativeQuery = true)
+    List<CategoryTreeRow> findSubtree(@Param("rootId") Long rootId);
+
+    /**
+     * Загружает поддерево категории до заданной глубины одним запросом по первичному ключу таблицы замыканий.
+     *
+     * @param rootId   идентификатор корня поддерева
+     * @param maxDepth глубина относительно корня, глубже которой категории не загружаются
+     * @return строки поддерева, глубина отсчитывается от корня поддерева
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId", cc.depth
+            FROM category_closure cc
+            JOIN categories c ON c.id = cc.descendant_id
+            WHERE cc.ancestor_id = :rootId AND cc.depth <= :maxDepth
+            ORDER BY cc.depth, c.id
+            """, nativeQuery = true)
+    List<CategoryTreeRow> findSubtree(@Param("rootId") Long rootId, @Param("maxDepth") int maxDepth);
+
+    /**
+     * Загружает путь от корня до категории одним запросом по индексу потомков таблицы замыканий.
+     *
+     * @param id идентификатор категории
+     * @return предки от корня до самой категории включительно, глубина — расстояние до категории
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId", cc.depth
+            FROM category_closure cc
+            JOIN categories c ON c.id = cc.ancestor_id
+            WHERE cc.descendant_id = :id
+            ORDER BY cc.depth DESC
+            """, nativeQuery = true)
+    List<CategoryTreeRow> findAncestors(@Param("id") Long id);
+
+    /**
+     * Загружает пути от корня до категорий с переданными именами одним запросом по таблице замыканий.
+     *
+     * @param names имена категорий
+     * @return по строке на каждого предка категории, включая её саму; предки каждой категории идут от корня
+     */
+    @Query(value = """
+            SELECT d.id, d.name, a.name AS "ancestorName"
+            FROM categories d
+            JOIN category_closure cc ON cc.descendant_id = d.id
+            JOIN categories a ON a.id = cc.ancestor_id
+            WHERE d.name IN (:names)
+            ORDER BY d.id, cc.depth DESC
+            """, nativeQuery = true)
+    List<CategoryPathRow> findPathsByName(@Param("names") Collection<String> names);
+
+    /**
+     * Подсчитывает всех потомков категории, не считая её саму.
+     *
+     * @param id идентификатор категории
+     * @return количество потомков
+     */
+    @Query(value = """
+            SELECT COUNT(*)
+            FROM category_closure
+            WHERE ancestor_id = :id AND depth > 0
+            """, nativeQuery = true)
+    long countDescendants(@Param("id") Long id);
+
+    /**
+     * Загружает категорию вместе с признаком наличия подкатегорий.
+     *
+     * @param id идентификатор категории
+     * @return строка категории или пустой Optional, если категории нет
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId",
+                   EXISTS (SELECT 1 FROM categories g WHERE g.parent_id = c.id) AS "hasChildren"
+            FROM categories c
+            WHERE c.id = :id
+            """, nativeQuery = true)
+    Optional<CategoryLevelRow> findLevelNode(@Param("id") Long id);
+
+    /**
+     * Загружает страницу подкатегорий по индексу (parent_id, id).
+     * Страницы выбираются по ключу: следующая страница начинается после последнего идентификатора предыдущей.
+     *
+     * @param parentId идентификатор родителя
+     * @param afterId  идентификатор, после которого начинается страница, 0 для первой страницы
+     * @param limit    максимальное количество строк
+     * @return подкатегории, упорядоченные по идентификатору
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId",
+                   EXISTS (SELECT 1 FROM categories g WHERE g.parent_id = c.id) AS "hasChildren"
+            FROM categories c
+            WHERE c.parent_id = :parentId AND c.id > :afterId
+            ORDER BY c.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CategoryLevelRow> findChildrenPage(@Param("parentId") Long parentId,
+                                            @Param("afterId") long afterId,
+                                            @Param("limit") int limit);
+
+    /**
+     * Загружает страницу корневых категорий.
+     *
+     * @param afterId идентификатор, после которого начинается страница, 0 для первой страницы
+     * @param limit   максимальное количество строк
+     * @return корневые категории, упорядоченные по идентификатору
+     */
+    @Query(value = """
+            SELECT c.id, c.name, c.parent_id AS "parentId",
+                   EXISTS (SELECT 1 FROM categories g WHERE g.parent_id = c.id) AS "hasChildren"
+            FROM categories c
+            WHERE c.parent_id IS NULL AND c.id > :afterId
+            ORDER BY c.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<CategoryLevelRow> findRootsPage(@Param("afterId") long afterId, @Param("limit") int limit);
 }
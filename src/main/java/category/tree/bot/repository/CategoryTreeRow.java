@@ -0,0 +1,15 @@
+package category.tree.bot.repository;
+
+/**
+ * Строка рекурсивной выборки дерева категорий.
+ */
+public interface CategoryTreeRow {
+
+    Long getId();
+
+    String getName();
+
+    Long getParentId();
+
+    int getDepth();
+}
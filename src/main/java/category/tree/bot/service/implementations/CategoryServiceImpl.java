@@ -1,15 +1,43 @@
 package category.tree.bot.service.implementations;
 
+import category.tree.bot.cache.CategoryEntityCache;
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.cache.CategoryTreeNode;
+import category.tree.bot.cache.CategoryTreeSnapshot;
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.dto.CategoryTreeLevel;
+import category.tree.bot.dto.CategoryTreePage;
 import category.tree.bot.entity.Category;
 import category.tree.bot.exceptions.CategoryAlreadyExists;
 import category.tree.bot.exceptions.CategoryIsNotFound;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.repository.CategoryBulkRepository;
+import category.tree.bot.repository.CategoryHierarchyRepository;
+import category.tree.bot.repository.CategoryLevelRow;
+import category.tree.bot.repository.CategoryPathRow;
 import category.tree.bot.repository.CategoryRepository;
+import category.tree.bot.repository.CategoryTreeRow;
 import category.tree.bot.service.services.CategoryService;
-import org.hibernate.Hibernate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Реализация сервиса для управления деревом категорий.
@@ -17,101 +45,384 @@ import java.util.List;
 @Service
 public class CategoryServiceImpl implements CategoryService {
 
+    /**
+     * Количество строк импорта, применяемых в одной транзакции.
+     */
+    public static final int IMPORT_BATCH_SIZE = 1000;
+
+    /**
+     * Максимальное количество результатов поиска категорий.
+     */
+    public static final int MAX_SEARCH_LIMIT = 50;
+
+    /**
+     * Максимальное количество узлов на странице дерева.
+     */
+    public static final int MAX_TREE_PAGE_LIMIT = 1000;
+
     private final CategoryRepository categoryRepository;
+    private final CategoryBulkRepository bulkRepository;
+    private final CategoryHierarchyRepository hierarchyRepository;
+    private final CategoryTreeCache treeCache;
+    private final CategoryEntityCache entityCache;
+    private final TransactionTemplate transactionTemplate;
+    private final BotMetrics metrics;
 
     /**
      * Конструктор для внедрения репозитория категорий.
      *
-     * @param categoryRepository репозиторий категорий
+     * @param categoryRepository  репозиторий категорий
+     * @param bulkRepository      репозиторий пакетных операций над категориями
+     * @param hierarchyRepository репозиторий таблицы замыканий дерева категорий
+     * @param treeCache           кэш снимка дерева категорий
+     * @param entityCache         сброс второго уровня кэша категорий после вставки в обход Hibernate
+     * @param transactionTemplate шаблон транзакций для пакетного импорта
+     * @param metrics             метрики бота
      */
-    public CategoryServiceImpl(CategoryRepository categoryRepository) {
+    public CategoryServiceImpl(CategoryRepository categoryRepository,
+                               CategoryBulkRepository bulkRepository,
+                               CategoryHierarchyRepository hierarchyRepository,
+                               CategoryTreeCache treeCache,
+                               CategoryEntityCache entityCache,
+                               TransactionTemplate transactionTemplate,
+                               BotMetrics metrics) {
         this.categoryRepository = categoryRepository;
+        this.bulkRepository = bulkRepository;
+        this.hierarchyRepository = hierarchyRepository;
+        this.treeCache = treeCache;
+        this.entityCache = entityCache;
+        this.transactionTemplate = transactionTemplate;
+        this.metrics = metrics;
     }
 
     /**
      * Возвращает текстовое представление дерева категорий.
+     * Представление берётся из кэшированного снимка, база данных читается только после изменений дерева.
      *
      * @return строка, представляющая дерево категорий
      */
-
-    @Transactional
+    @Transactional(readOnly = true)
     @Override
     public String viewTree() {
-        List<Category> parentCategories = categoryRepository.findAll().stream()
-                .filter(category -> category.getParent() == null)
-                .toList();
+        return getTreeSnapshot().render();
+    }
+
+    /**
+     * Возвращает текстовое представление поддерева категории.
+     * Поддерево загружается одним запросом по таблице замыканий до нужной глубины, а корень ищется
+     * по имени через кэш натуральных ключей, поэтому запрос поддерева не загружает всё дерево.
+     * Всё дерево берётся из кэшированного снимка.
+     *
+     * @param root  имя корня поддерева или null для всего дерева
+     * @param depth глубина относительно корня или null без ограничения
+     * @return строка, представляющая поддерево
+     * @throws CategoryIsNotFound       если категории-корня нет
+     * @throws IllegalArgumentException если глубина отрицательна
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public String viewTree(String root, Integer depth) {
+        checkDepth(depth);
+        if (root == null) {
+            return getTreeSnapshot().render(null, depth != null ? depth : Integer.MAX_VALUE);
+        }
+        CategoryTreeSnapshot subtree = loadSubtree(root, depth != null ? depth : Integer.MAX_VALUE);
+        return subtree.render(subtree.getRoots().get(0), Integer.MAX_VALUE);
+    }
+
+    /**
+     * Возвращает актуальный снимок дерева категорий.
+     *
+     * @return неизменяемый снимок дерева
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CategoryTreeSnapshot getTreeSnapshot() {
+        return treeCache.getOrLoad(this::loadTreeSnapshot);
+    }
+
+    /**
+     * Возвращает версию дерева категорий, которая меняется при каждом изменении дерева.
+     * Версию нужно прочитать до чтения данных, чтобы результат, построенный по ним, не оказался новее версии.
+     *
+     * @return текущая версия дерева
+     */
+    @Override
+    public long getTreeVersion() {
+        return treeCache.getVersion();
+    }
+
+    /**
+     * Возвращает идентификатор категории по имени через кэш натуральных ключей.
+     *
+     * @param name имя категории
+     * @return идентификатор категории
+     * @throws CategoryIsNotFound если категории нет
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public Long getCategoryId(String name) {
+        return categoryRepository.findByName(name).orElseThrow(CategoryIsNotFound::new).getId();
+    }
 
-        if (parentCategories.isEmpty()) {
-            return "Дерево категорий пусто.";
+    /**
+     * Загружает поддерево категории до заданной глубины одним запросом по таблице замыканий.
+     * Версия дерева читается до данных, чтобы снимок поддерева не оказался новее своей версии.
+     *
+     * @param root     имя корня поддерева
+     * @param maxDepth глубина относительно корня, глубже которой категории не загружаются
+     * @return снимок поддерева с единственным корнем
+     * @throws CategoryIsNotFound если категории-корня нет
+     */
+    private CategoryTreeSnapshot loadSubtree(String root, int maxDepth) {
+        long version = treeCache.getVersion();
+        Long rootId = getCategoryId(root);
+        List<CategoryTreeRow> rows = metrics.timeRepository("CategoryRepository", "findSubtree",
+                () -> categoryRepository.findSubtree(rootId, maxDepth));
+        if (rows.isEmpty()) {
+            throw new CategoryIsNotFound();
         }
+        return CategoryTreeSnapshot.fromRows(version, rows);
+    }
 
-        StringBuilder builder = new StringBuilder();
-        for (Category parentCategory : parentCategories) {
-            Hibernate.initialize(parentCategory.getChildren());
-            buildTreeView(builder, parentCategory, 0);
+    /**
+     * Возвращает страницу поддерева в прямом порядке обхода. Страница всего дерева строится по снимку дерева,
+     * страница поддерева — по поддереву, загруженному до нужной глубины.
+     * Размер ответа ограничен {@link #MAX_TREE_PAGE_LIMIT} узлами при любом размере дерева.
+     *
+     * @param root   имя корня поддерева или null для всего дерева
+     * @param depth  глубина относительно корня или null без ограничения
+     * @param cursor курсор из предыдущей страницы или null для первой страницы
+     * @param limit  размер страницы
+     * @return страница дерева
+     * @throws CategoryIsNotFound       если категории-корня нет
+     * @throws IllegalArgumentException если параметры или курсор некорректны
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CategoryTreePage getTreePage(String root, Integer depth, String cursor, int limit) {
+        checkDepth(depth);
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        int maxDepth = depth != null ? depth : Integer.MAX_VALUE;
+        // Поддерево загружается на уровень глубже страницы, чтобы у её нижних узлов были посчитаны подкатегории.
+        CategoryTreeSnapshot snapshot = root != null
+                ? loadSubtree(root, maxDepth < Integer.MAX_VALUE ? maxDepth + 1 : maxDepth)
+                : getTreeSnapshot();
+        CategoryTreeNode rootNode = root != null ? snapshot.getRoots().get(0) : null;
+        CategoryTreeNode after = null;
+        if (cursor != null) {
+            after = snapshot.findByName(decodeCursor(cursor))
+                    .orElseThrow(() -> new IllegalArgumentException("Cursor refers to a category outside of the requested tree"));
         }
-        return builder.toString();
+
+        int pageLimit = Math.min(limit, MAX_TREE_PAGE_LIMIT);
+        List<CategoryTreeNode> nodes = snapshot.walk(rootNode, maxDepth, after, pageLimit + 1);
+        boolean hasMore = nodes.size() > pageLimit;
+        if (hasMore) {
+            nodes = nodes.subList(0, pageLimit);
+        }
+
+        int baseDepth = rootNode != null ? rootNode.getDepth() : 0;
+        List<CategoryTreePage.Node> page = new ArrayList<>(nodes.size());
+        for (CategoryTreeNode node : nodes) {
+            page.add(new CategoryTreePage.Node(node.getId(), node.getName(),
+                    node.getParent() != null ? node.getParent().getId() : null,
+                    node.getDepth() - baseDepth, node.getChildren().size()));
+        }
+        String nextCursor = hasMore ? encodeCursor(nodes.get(nodes.size() - 1).getName()) : null;
+        return new CategoryTreePage(snapshot.getVersion(), page, nextCursor);
+    }
+
+    private static void checkDepth(Integer depth) {
+        if (depth != null && depth < 0) {
+            throw new IllegalArgumentException("depth must not be negative: " + depth);
+        }
+    }
+
+    private static String encodeCursor(String name) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Возвращает страницу одного уровня дерева: категорию и часть её подкатегорий.
+     * Читаются только строки запрошенной страницы, всё дерево не загружается.
+     *
+     * @param nodeId  идентификатор открытой категории или null для корневого уровня
+     * @param afterId идентификатор последней подкатегории предыдущей страницы, 0 для первой страницы
+     * @param limit   размер страницы
+     * @return страница уровня дерева
+     * @throws CategoryIsNotFound если категории с таким идентификатором нет
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public CategoryTreeLevel getTreeLevel(Long nodeId, long afterId, int limit) {
+        List<CategoryLevelRow> rows;
+        CategoryLevelRow node = null;
+        if (nodeId == null) {
+            rows = categoryRepository.findRootsPage(afterId, limit + 1);
+        } else {
+            node = categoryRepository.findLevelNode(nodeId).orElseThrow(CategoryIsNotFound::new);
+            rows = categoryRepository.findChildrenPage(nodeId, afterId, limit + 1);
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<CategoryLevelRow> children = hasMore ? rows.subList(0, limit) : rows;
+        return node == null
+                ? new CategoryTreeLevel(null, null, null, children, hasMore)
+                : new CategoryTreeLevel(node.getId(), node.getName(), node.getParentId(), children, hasMore);
     }
 
     /**
-     * Рекурсивно строит текстовое представление дерева категорий.
+     * Ищет категории по началу имени без учёта регистра.
+     * Имена ищутся по префиксному индексу, который обновляется при каждом изменении дерева и не перестраивается.
+     * Пути найденных категорий берутся из снимка дерева, если он актуален, иначе читаются одним запросом
+     * по таблице замыканий, поэтому поиск после изменения дерева не загружает всё дерево.
      *
-     * @param builder строковый билдер для записи дерева
-     * @param category текущая категория
-     * @param depth текущая глубина вложенности, то есть уровень подкатегории
+     * @param prefix начало имени категории
+     * @param limit  максимальное количество результатов, не больше {@link #MAX_SEARCH_LIMIT}
+     * @return найденные категории с путями от корня
      */
-    private void buildTreeView(StringBuilder builder, Category category, int depth) {
-        builder.append("  ".repeat(depth)).append("--").append(category.getName()).append("\n");
+    @Transactional(readOnly = true)
+    @Override
+    public List<CategorySearchResult> searchCategories(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank() || limit <= 0) {
+            return List.of();
+        }
+        List<String> names = treeCache.searchNames(prefix, Math.min(limit, MAX_SEARCH_LIMIT), this::loadTreeSnapshot);
+        if (names.isEmpty()) {
+            return List.of();
+        }
 
-        if (!category.getChildren().isEmpty()) {
-            for (Category child : category.getChildren()) {
-                buildTreeView(builder, child, depth + 1);
+        CategoryTreeSnapshot snapshot = treeCache.getIfCurrent();
+        if (snapshot != null) {
+            return names.stream()
+                    .flatMap(name -> snapshot.findByName(name).stream())
+                    .map(node -> new CategorySearchResult(node.getId(), node.getName(), node.getPath()))
+                    .toList();
+        }
+
+        Map<String, CategorySearchResult> found = new HashMap<>();
+        Map<String, StringBuilder> paths = new HashMap<>();
+        for (CategoryPathRow row : metrics.timeRepository("CategoryRepository", "findPathsByName",
+                () -> categoryRepository.findPathsByName(names))) {
+            StringBuilder path = paths.get(row.getName());
+            if (path == null) {
+                paths.put(row.getName(), new StringBuilder(row.getAncestorName()));
+            } else {
+                path.append(" / ").append(row.getAncestorName());
+            }
+            found.putIfAbsent(row.getName(), new CategorySearchResult(row.getId(), row.getName(), null));
+        }
+        List<CategorySearchResult> results = new ArrayList<>(found.size());
+        for (String name : names) {
+            CategorySearchResult result = found.get(name);
+            if (result != null) {
+                results.add(new CategorySearchResult(result.id(), name, paths.get(name).toString()));
             }
         }
+        return results;
+    }
+
+    /**
+     * Загружает дерево категорий из базы данных одним запросом и строит его снимок.
+     *
+     * @param version версия дерева, для которой строится снимок
+     * @return снимок дерева
+     */
+    private CategoryTreeSnapshot loadTreeSnapshot(long version) {
+        return CategoryTreeSnapshot.fromRows(version, categoryRepository.findTree());
     }
 
     /**
      * Добавляет новую категорию или подкатегорию.
+     * Категория вставляется запросом {@code INSERT ... ON CONFLICT (name) DO NOTHING}: существующее имя определяется
+     * по результату вставки, а не отдельной проверкой, поэтому одновременное добавление одного имени
+     * не падает на ограничении уникальности. В PostgreSQL строки таблицы замыканий добавляются тем же запросом.
+     * Родитель ищется по имени через кэш натуральных ключей и вставляется так же, только если его нет.
+     * Подкатегория существующего родителя стоит одного запроса (и поиска родителя, если его нет в кэше),
+     * новый родитель с подкатегорией — поиска и двух вставок.
      *
      * @param parent имя родительской категории или новой категории
      * @param child имя подкатегории (null, если создается новая корневая категория)
      * @return созданная категория или родительская категория, к которой добавлена подкатегория
+     * @throws CategoryAlreadyExists если категория с таким именем уже есть
      */
     @Transactional
     @Override
     public Category addElement(String parent, String child) {
         if (child == null) {
-            if (categoryRepository.existsByName(parent)) {
+            Long id = insertWithHierarchy(parent, null);
+            if (id == null) {
                 throw new CategoryAlreadyExists();
             }
-            Category newParent = new Category();
-            newParent.setName(parent);
-            return categoryRepository.save(newParent);
+            treeCache.invalidateAdded(List.of(parent));
+            return detached(id, parent, null);
         }
 
+        List<String> added = new ArrayList<>(2);
         Category parentCategory = categoryRepository.findByName(parent)
-                .orElseGet(() -> {
-                    Category newParent = new Category();
-                    newParent.setName(parent);
-                    return categoryRepository.save(newParent);
-                });
+                .map(found -> detached(found.getId(), found.getName(), null))
+                .orElseGet(() -> detached(insertParent(parent, added), parent, null));
 
-        if (categoryRepository.existsByName(child)) {
+        Long childId = insertWithHierarchy(child, parentCategory.getId());
+        if (childId == null) {
             throw new CategoryAlreadyExists();
         }
+        added.add(child);
+        entityCache.evictChildren(parentCategory.getId());
+        treeCache.invalidateAdded(added);
 
-        Category childCategory = new Category();
-        childCategory.setName(child);
-        childCategory.setParent(parentCategory);
-        parentCategory.getChildren().add(childCategory);
+        parentCategory.getChildren().add(detached(childId, child, parentCategory));
+        return parentCategory;
+    }
 
-        categoryRepository.save(childCategory);
+    /**
+     * Вставляет отсутствующего родителя. Если родителя успели создать после поиска, возвращает его идентификатор.
+     *
+     * @param added имена добавленных категорий, куда записывается родитель, если он вставлен
+     */
+    private Long insertParent(String name, List<String> added) {
+        Long id = insertWithHierarchy(name, null);
+        if (id != null) {
+            added.add(name);
+            return id;
+        }
+        return categoryRepository.findByName(name).orElseThrow(CategoryIsNotFound::new).getId();
+    }
 
-        return parentCategory;
+    /**
+     * Вставляет категорию, если её ещё нет, вместе со строками таблицы замыканий.
+     *
+     * @return идентификатор новой категории или null, если категория с таким именем уже есть
+     */
+    private Long insertWithHierarchy(String name, Long parentId) {
+        return metrics.timeRepository("CategoryBulkRepository", "insertWithClosure",
+                () -> bulkRepository.insertWithClosure(name, parentId));
+    }
+
+    /**
+     * Создаёт категорию для ответа, не связанную с контекстом персистентности,
+     * чтобы добавление подкатегории в её список не привело к повторной вставке.
+     */
+    private static Category detached(Long id, String name, Category parent) {
+        Category category = new Category(name, parent);
+        category.setId(id);
+        return category;
     }
 
     /**
      * Удаляет категорию и все её подкатегории.
+     * Строки таблицы замыканий удаляются каскадно внешними ключами.
      *
      * @param element имя категории для удаления
      * @return сообщение об успешном удалении
@@ -123,11 +434,160 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = categoryRepository.findByName(element)
                 .orElseThrow(() -> new CategoryIsNotFound());
 
+        List<String> removed = categoryRepository.findSubtree(category.getId()).stream()
+                .map(CategoryTreeRow::getName)
+                .toList();
         categoryRepository.delete(category);
+        treeCache.invalidateRemoved(removed);
 
         return "Категория и её подкатегории удалены: " + element;
     }
 
+    /**
+     * Импортирует категории пакетами по {@link #IMPORT_BATCH_SIZE} строк, каждый пакет в своей транзакции.
+     * Строки, которые нельзя применить, не прерывают импорт, а попадают в отчёт как конфликты.
+     * Отсутствующий родитель создаётся как корневая категория, как и в {@link #addElement(String, String)}.
+     *
+     * @param rows строки импорта
+     * @return отчёт о количестве созданных категорий и конфликтах
+     */
+    @Override
+    public CategoryImportReport importCategories(List<CategoryImportRow> rows) {
+        return importCategories(rows, conflict -> {
+        });
+    }
+
+    /**
+     * Импортирует категории так же, как {@link #importCategories(List)}, дополнительно сообщая о каждой
+     * конфликтной строке, в том числе о не попавших в отчёт сверх {@link CategoryImportReport#MAX_CONFLICTS}.
+     * Обработчик вызывается до фиксации транзакции пакета: если пакет не сохранился, его конфликты недействительны.
+     *
+     * @param rows             строки импорта
+     * @param conflictListener обработчик конфликтных строк
+     * @return отчёт о количестве созданных категорий и конфликтах
+     */
+    @Override
+    public CategoryImportReport importCategories(List<CategoryImportRow> rows, Consumer<CategoryImportConflict> conflictListener) {
+        long start = System.nanoTime();
+        CategoryImportReport report = CategoryImportReport.empty();
+        for (int from = 0; from < rows.size(); from += IMPORT_BATCH_SIZE) {
+            List<CategoryImportRow> batch = rows.subList(from, Math.min(rows.size(), from + IMPORT_BATCH_SIZE));
+            report = report.plus(transactionTemplate.execute(status -> importBatch(batch, conflictListener)));
+        }
+        metrics.recordExcelRows(BotMetrics.DIRECTION_IMPORT, rows.size(), System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Применяет один пакет строк импорта: одним запросом проверяет существующие имена,
+     * упорядочивает новые категории так, чтобы родитель шёл раньше подкатегории,
+     * и вставляет их и их строки таблицы замыканий JDBC-пакетами.
+     * Категории, которые успели добавить другим запросом после проверки имён, пропускаются при вставке
+     * и попадают в отчёт как конфликты, а не прерывают пакет.
+     *
+     * @param batch            строки пакета
+     * @param conflictListener обработчик конфликтных строк
+     * @return отчёт по пакету
+     */
+    private CategoryImportReport importBatch(List<CategoryImportRow> batch, Consumer<CategoryImportConflict> conflictListener) {
+        Set<String> names = new HashSet<>();
+        for (CategoryImportRow row : batch) {
+            names.add(row.name());
+            if (row.parentName() != null) {
+                names.add(row.parentName());
+            }
+        }
+        Set<String> existing = metrics.timeRepository("CategoryBulkRepository", "findExistingNames",
+                () -> bulkRepository.findExistingNames(names));
+
+        List<CategoryImportConflict> conflicts = new ArrayList<>();
+        long conflictCount = 0;
+
+        Map<String, CategoryImportRow> accepted = new LinkedHashMap<>();
+        for (CategoryImportRow row : batch) {
+            String reason = null;
+            if (existing.contains(row.name())) {
+                reason = "категория уже существует";
+            } else if (accepted.containsKey(row.name())) {
+                reason = "категория повторяется в файле";
+            } else if (row.name().equals(row.parentName())) {
+                reason = "категория не может быть родителем самой себе";
+            }
+            if (reason != null) {
+                conflictCount++;
+                addConflict(conflicts, new CategoryImportConflict(row.rowNumber(), row.name(), reason), conflictListener);
+            } else {
+                accepted.put(row.name(), row);
+            }
+        }
+
+        List<CategoryImportRow> ordered = new ArrayList<>(accepted.size());
+        Set<String> emitted = new HashSet<>();
+        Set<String> rejected = new HashSet<>();
+        for (CategoryImportRow row : accepted.values()) {
+            Deque<CategoryImportRow> path = new ArrayDeque<>();
+            Set<String> onPath = new HashSet<>();
+            CategoryImportRow current = row;
+            while (current != null && !emitted.contains(current.name())
+                    && !rejected.contains(current.name()) && onPath.add(current.name())) {
+                path.push(current);
+                current = current.parentName() == null ? null : accepted.get(current.parentName());
+            }
+
+            if (current != null && (rejected.contains(current.name()) || onPath.contains(current.name()))) {
+                for (CategoryImportRow broken : path) {
+                    rejected.add(broken.name());
+                    conflictCount++;
+                    addConflict(conflicts, new CategoryImportConflict(
+                            broken.rowNumber(), broken.name(), "циклическая ссылка на родителя"), conflictListener);
+                }
+                continue;
+            }
+
+            while (!path.isEmpty()) {
+                CategoryImportRow next = path.pop();
+                String parentName = next.parentName();
+                if (parentName != null && !existing.contains(parentName)
+                        && !accepted.containsKey(parentName) && emitted.add(parentName)) {
+                    ordered.add(CategoryImportRow.missingParent(parentName));
+                }
+                ordered.add(next);
+                emitted.add(next.name());
+            }
+        }
+
+        long imported = ordered.size();
+        if (!ordered.isEmpty()) {
+            List<CategoryImportRow> skipped = metrics.timeRepository("CategoryBulkRepository", "insertAll",
+                    () -> bulkRepository.insertAll(ordered));
+            entityCache.evictChildren();
+            Set<String> skippedNames = new HashSet<>();
+            for (CategoryImportRow row : skipped) {
+                skippedNames.add(row.name());
+                if (!row.isMissingParent()) {
+                    conflictCount++;
+                    addConflict(conflicts, new CategoryImportConflict(row.rowNumber(), row.name(), "категория уже существует"),
+                            conflictListener);
+                }
+            }
+            imported -= skipped.size();
+            List<String> insertedNames = ordered.stream().map(CategoryImportRow::name)
+                    .filter(name -> !skippedNames.contains(name)).toList();
+            metrics.timeRepository("CategoryHierarchyRepository", "addNodesByName",
+                    () -> hierarchyRepository.addNodesByName(insertedNames));
+            treeCache.invalidateAdded(insertedNames);
+        }
+        return new CategoryImportReport(imported, conflictCount, conflicts);
+    }
+
+    private static void addConflict(List<CategoryImportConflict> conflicts, CategoryImportConflict conflict,
+                                    Consumer<CategoryImportConflict> conflictListener) {
+        conflictListener.accept(conflict);
+        if (conflicts.size() < CategoryImportReport.MAX_CONFLICTS) {
+            conflicts.add(conflict);
+        }
+    }
+
     /**
      * Возвращает список доступных команд.
      *
@@ -146,4 +606,56 @@ public class CategoryServiceImpl implements CategoryService {
         return categoryRepository.findAll();
     }
 
+    /**
+     * Передаёт обработчику все категории с именами родителей прямо из курсора базы данных.
+     * Родитель всегда передаётся раньше своих подкатегорий.
+     *
+     * @param consumer обработчик строк выгрузки
+     * @return количество переданных строк
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public long exportCategories(Consumer<CategoryExportRow> consumer) {
+        long start = System.nanoTime();
+        long[] count = {0};
+        metrics.timeRepository("CategoryBulkRepository", "forEachForExport", () -> bulkRepository.forEachForExport(row -> {
+            consumer.accept(row);
+            count[0]++;
+        }));
+        metrics.recordExcelRows(BotMetrics.DIRECTION_EXPORT, count[0], System.nanoTime() - start);
+        return count[0];
+    }
+
+    /**
+     * Передаёт обработчику категории поддерева с именами родителей прямо из курсора базы данных.
+     * Поддерево читается по таблице замыканий, поэтому читаются только строки поддерева.
+     * Корень поддерева передаётся без родителя, родитель всегда передаётся раньше своих подкатегорий.
+     *
+     * @param root     имя корня поддерева или null для всего дерева
+     * @param depth    глубина относительно корня или null без ограничения
+     * @param consumer обработчик строк выгрузки
+     * @return количество переданных строк
+     * @throws CategoryIsNotFound       если категории-корня нет
+     * @throws IllegalArgumentException если глубина отрицательна
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public long exportCategories(String root, Integer depth, Consumer<CategoryExportRow> consumer) {
+        checkDepth(depth);
+        if (root == null && depth == null) {
+            return exportCategories(consumer);
+        }
+        Long rootId = root != null ? categoryRepository.findByName(root).orElseThrow(CategoryIsNotFound::new).getId() : null;
+
+        long start = System.nanoTime();
+        long[] count = {0};
+        metrics.timeRepository("CategoryBulkRepository", "forEachInSubtreeForExport", () ->
+                bulkRepository.forEachInSubtreeForExport(rootId, depth != null ? depth : Integer.MAX_VALUE, row -> {
+                    consumer.accept(row);
+                    count[0]++;
+                }));
+        metrics.recordExcelRows(BotMetrics.DIRECTION_EXPORT, count[0], System.nanoTime() - start);
+        return count[0];
+    }
+
 }
@@ -1,22 +1,53 @@
 package category.tree.bot.service.services;
 
 
+import category.tree.bot.cache.CategoryTreeSnapshot;
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.dto.CategoryTreeLevel;
+import category.tree.bot.dto.CategoryTreePage;
 import category.tree.bot.entity.Category;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface CategoryService {
 
 
     String viewTree();
 
+    String viewTree(String root, Integer depth);
+
+    CategoryTreeSnapshot getTreeSnapshot();
+
+    long getTreeVersion();
+
+    Long getCategoryId(String name);
+
+    CategoryTreePage getTreePage(String root, Integer depth, String cursor, int limit);
+
+    CategoryTreeLevel getTreeLevel(Long nodeId, long afterId, int limit);
+
+    List<CategorySearchResult> searchCategories(String prefix, int limit);
+
     Category addElement(String parent, String child);
 
     String removeElement(String element);
 
+    CategoryImportReport importCategories(List<CategoryImportRow> rows);
+
+    CategoryImportReport importCategories(List<CategoryImportRow> rows, Consumer<CategoryImportConflict> conflictListener);
+
     List<String> getHelp();
 
     List<Category> getAllCategories();
 
+    long exportCategories(Consumer<CategoryExportRow> consumer);
+
+    long exportCategories(String root, Integer depth, Consumer<CategoryExportRow> consumer);
+
 
 }
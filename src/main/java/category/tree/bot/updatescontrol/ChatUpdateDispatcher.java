@@ -0,0 +1,127 @@
+package category.tree.bot.updatescontrol;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Диспетчер обработки обновлений по чатам.
+ *
+ * Обновления разных чатов обрабатываются параллельно в пуле потоков,
+ * а обновления одного чата — строго последовательно в порядке поступления.
+ * Для каждого активного чата держится очередь задач; очередь удаляется, как только опустеет.
+ */
+@Component
+public class ChatUpdateDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatUpdateDispatcher.class);
+
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<Long, ChatQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор диспетчера.
+     *
+     * @param workerThreads Количество потоков обработки обновлений.
+     */
+    public ChatUpdateDispatcher(@Value("${telegram.bot.worker-threads:16}") int workerThreads) {
+        this.executor = Executors.newFixedThreadPool(workerThreads, new WorkerThreadFactory());
+    }
+
+    /**
+     * Ставит задачу в очередь чата. Задача будет выполнена после всех ранее поставленных задач этого чата.
+     *
+     * @param chatId Идентификатор чата.
+     * @param task   Задача обработки обновления.
+     */
+    public void submit(long chatId, Runnable task) {
+        queues.compute(chatId, (id, queue) -> {
+            if (queue == null) {
+                queue = new ChatQueue();
+            }
+            queue.tasks.add(task);
+            if (!queue.running) {
+                queue.running = true;
+                ChatQueue scheduled = queue;
+                executor.execute(() -> drain(id, scheduled));
+            }
+            return queue;
+        });
+    }
+
+    /**
+     * Возвращает количество чатов, у которых есть невыполненные задачи.
+     *
+     * @return Количество активных чатов.
+     */
+    public int getActiveChats() {
+        return queues.size();
+    }
+
+    /**
+     * Выполняет задачи чата по очереди, пока очередь не опустеет.
+     */
+    private void drain(long chatId, ChatQueue queue) {
+        while (true) {
+            Runnable task = queue.tasks.poll();
+            if (task == null) {
+                boolean[] finished = {false};
+                queues.compute(chatId, (id, current) -> {
+                    if (queue.tasks.isEmpty()) {
+                        queue.running = false;
+                        finished[0] = true;
+                        return null;
+                    }
+                    return current;
+                });
+                if (finished[0]) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                task.run();
+            } catch (Throwable e) {
+                logger.error("Error processing update for chatId: {}", chatId, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Очередь задач одного чата. Флаг {@code running} меняется только внутри {@code compute}.
+     */
+    private static final class ChatQueue {
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private boolean running;
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bot-update-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -1,26 +1,45 @@
 package category.tree.bot.updatescontrol;
 
+import category.tree.bot.chatStates.ChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.metrics.BotMetrics;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.commands.*;
+import category.tree.bot.updatescontrol.dedup.UpdateDeduplicator;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.File;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 /**
  * Класс TelegramBotUpdatesControl управляет обработкой обновлений, поступающих от Telegram,
  * и взаимодействием с пользователями через бот.
+ * Обновления обрабатываются в {@link ChatUpdateDispatcher}: параллельно для разных чатов
+ * и последовательно внутри одного чата, поэтому общее состояние хранится в потокобезопасных структурах.
+ * Экземпляр создаётся и регистрируется в {@code TelegramBotConfiguration}.
  */
-@Service
 public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
 
     private static final Logger logger = LoggerFactory.getLogger(TelegramBotUpdatesControl.class);
@@ -29,29 +48,60 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
     private final String botToken;
     private final CategoryService categoryService;
     private final CommandRegistry commandRegistry;
+    private final ChatStateStore chatStates;
+    private final ChatUpdateDispatcher dispatcher;
+    private final OutboundMessageScheduler outbound;
+    private final UpdateDeduplicator deduplicator;
+    private final ImportJobManager importJobs;
+    private final BotMetrics metrics;
 
-    private final Map<Long, MainChatStates> chatStates = new HashMap<>();
-
+    /**
+     * Предельное время скачивания файла: Telegram отдаёт боту файлы до 20 МБ, зависший ответ не должен занимать поток импорта.
+     */
+    private static final Duration FILE_DOWNLOAD_TIMEOUT = Duration.ofMinutes(2);
 
-    private Update lastUpdate;
+    private final HttpClient fileClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
 
     /**
      * Конструктор класса TelegramBotUpdatesControl.
      *
+     * @param options         Настройки клиента Bot API.
      * @param botUsername     Имя пользователя бота, заданное в настройках.
      * @param botToken        Токен доступа к Telegram API.
      * @param categoryService Сервис для работы с категориями.
      * @param commandRegistry Реестр команд бота.
+     * @param chatStates      Хранилище состояний чатов.
+     * @param dispatcher      Диспетчер, распределяющий обработку обновлений по чатам.
+     * @param outbound        Очередь исходящих сообщений с учётом ограничений Telegram.
+     * @param deduplicator    Фильтр повторно доставленных обновлений.
+     * @param importJobs      Фоновые задания импорта.
+     * @param metrics         Метрики бота.
      */
     public TelegramBotUpdatesControl(
-            @Value("${telegram.bot.username}") String botUsername,
-            @Value("${telegram.bot.token}") String botToken,
+            DefaultBotOptions options,
+            String botUsername,
+            String botToken,
             CategoryService categoryService,
-            CommandRegistry commandRegistry) {
+            CommandRegistry commandRegistry,
+            ChatStateStore chatStates,
+            ChatUpdateDispatcher dispatcher,
+            OutboundMessageScheduler outbound,
+            UpdateDeduplicator deduplicator,
+            ImportJobManager importJobs,
+            BotMetrics metrics) {
+        super(options, botToken);
         this.botUsername = botUsername;
         this.botToken = botToken;
         this.categoryService = categoryService;
         this.commandRegistry = commandRegistry;
+        this.chatStates = chatStates;
+        this.dispatcher = dispatcher;
+        this.outbound = outbound;
+        this.deduplicator = deduplicator;
+        this.importJobs = importJobs;
+        this.metrics = metrics;
 
         logger.info("Initializing TelegramBotUpdatesControl");
         registerCommands();
@@ -62,35 +112,125 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
      */
     private void registerCommands() {
         logger.info("Registering commands");
+        AddElementCommand addElementCommand = new AddElementCommand(this, categoryService, chatStates);
+        RemoveElementCommand removeElementCommand = new RemoveElementCommand(this, categoryService, chatStates);
+        UploadCommand uploadCommand = new UploadCommand(this, chatStates, categoryService, importJobs);
+        SearchCommand searchCommand = new SearchCommand(this, categoryService, chatStates);
+        ViewTreeCommand viewTreeCommand = new ViewTreeCommand(this, categoryService);
+
         commandRegistry.registerCommand("/start", new StartCommand(this));
-        commandRegistry.registerCommand("/addElement", new AddElementCommand(this, categoryService, chatStates));
-        commandRegistry.registerCommand("/removeElement", new RemoveElementCommand(this, categoryService, chatStates));
-        commandRegistry.registerCommand("/viewTree", new ViewTreeCommand(this, categoryService));
+        commandRegistry.registerCommand("/addElement", addElementCommand);
+        commandRegistry.registerCommand("/removeElement", removeElementCommand);
+        commandRegistry.registerCommand("/viewTree", viewTreeCommand);
+        commandRegistry.registerCallbackHandler(ViewTreeCommand.CALLBACK_PREFIX, viewTreeCommand);
         commandRegistry.registerCommand("/help", new HelpCommand(this));
         commandRegistry.registerCommand("/download", new DownloadCommand(this, categoryService));
-        commandRegistry.registerCommand("/upload", new UploadCommand(this, chatStates, categoryService));
+        commandRegistry.registerCommand("/upload", uploadCommand);
+        commandRegistry.registerCommand("/cancel", new CancelCommand(this, importJobs));
+        commandRegistry.registerCommand("/search", searchCommand);
+
+        commandRegistry.registerStateHandler(MainChatStates.ADD_ELEMENT, addElementCommand);
+        commandRegistry.registerStateHandler(MainChatStates.REMOVE_ELEMENT, removeElementCommand);
+        commandRegistry.registerStateHandler(MainChatStates.UPLOAD_FILE, uploadCommand);
+        commandRegistry.registerStateHandler(MainChatStates.SEARCH, searchCommand);
     }
 
     /**
-     * Обрабатывает входящие обновления от Telegram.
+     * Принимает входящее обновление от Telegram и ставит его в очередь чата.
+     * Поток получения обновлений не блокируется обработкой команд.
+     * Повторно доставленные обновления пропускаются, после обработки обновление отмечается в фильтре повторов.
      *
      * @param update Объект обновления, содержащий данные о новом событии.
      */
     @Override
     public void onUpdateReceived(Update update) {
+        Integer updateId = update.getUpdateId();
+        if (updateId == null) {
+            dispatch(update, () -> {});
+            return;
+        }
+        if (!deduplicator.tryAccept(updateId)) {
+            logger.debug("Skipping duplicate update: {}", updateId);
+            metrics.recordDuplicateUpdate();
+            return;
+        }
+        dispatch(update, () -> deduplicator.complete(updateId));
+    }
+
+    /**
+     * Ставит обновление в очередь чата и сообщает о завершении его обработки.
+     *
+     * @param update      Объект обновления.
+     * @param onProcessed Действие после обработки обновления, в том числе неудачной или пропущенной.
+     */
+    public void dispatch(Update update, Runnable onProcessed) {
+        dispatch(update, () -> true, onProcessed);
+    }
+
+    /**
+     * Ставит обновление в очередь чата, захватывая его непосредственно перед обработкой.
+     * Используется узлом кластера: обновление выполняется, только если захват в общей очереди удался,
+     * и отмечается обработанным только после выполнения команды.
+     *
+     * @param update      Объект обновления.
+     * @param claim       Захват обновления в потоке чата; false — обновление уже обрабатывалось и пропускается.
+     * @param onProcessed Действие после обработки обновления, в том числе неудачной или пропущенной.
+     */
+    public void dispatch(Update update, BooleanSupplier claim, Runnable onProcessed) {
         logger.debug("Received update: {}", update);
-        if (update.hasMessage() && update.getMessage().hasText() || update.getMessage().hasDocument()) {
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            CallbackQuery callbackQuery = update.getCallbackQuery();
+            dispatcher.submit(callbackQuery.getMessage().getChatId(), () -> {
+                try {
+                    if (claim.getAsBoolean()) {
+                        processCallbackQuery(callbackQuery);
+                    }
+                } finally {
+                    onProcessed.run();
+                }
+            });
+            return;
+        }
+        if (!update.hasMessage()) {
+            logger.debug("Skipping update without message: {}", update.getUpdateId());
+            onProcessed.run();
+            return;
+        }
+        dispatcher.submit(update.getMessage().getChatId(), () -> {
+            try {
+                if (claim.getAsBoolean()) {
+                    processUpdate(update);
+                }
+            } finally {
+                onProcessed.run();
+            }
+        });
+    }
+
+    /**
+     * Обрабатывает обновление в очереди его чата.
+     *
+     * @param update Объект обновления, содержащий данные о новом событии.
+     */
+    void processUpdate(Update update) {
+        if (update.getMessage().hasText() || update.getMessage().hasDocument()) {
             String messageText = update.getMessage().getText();
             long chatId = update.getMessage().getChatId();
+            metrics.recordUpdateLag(update.getMessage().getDate());
 
-            MainChatStates chatState = chatStates.getOrDefault(chatId, MainChatStates.DEFAULT);
-
-            CommandHandler command = commandRegistry.getCommand(messageText);
+            MainChatStates chatState = chatStates.get(chatId);
 
+            String commandName = CommandRegistry.commandName(messageText, botUsername);
+            if (commandName == null && messageText != null && messageText.strip().startsWith("/")) {
+                logger.debug("Skipping command addressed to another bot: {}", messageText);
+                return;
+            }
+            CommandHandler command = commandName != null ? commandRegistry.getCommand(commandName) : null;
 
             if (command != null) {
                 logger.info("Executing command: {} for chatId: {}", messageText, chatId);
-                command.execute(update);
+                String arguments = CommandRegistry.commandArguments(messageText);
+                metrics.timeCommand(BotMetrics.TYPE_COMMAND, commandName, () -> command.execute(update, arguments));
             } else {
                 logger.info("Handling command: {} for chatId: {}", messageText, chatId);
                 handleCommand(chatId, chatState, messageText, update);
@@ -98,6 +238,24 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
         }
     }
 
+    /**
+     * Обрабатывает нажатие на кнопку встроенной клавиатуры в очереди чата.
+     *
+     * @param callbackQuery Запрос нажатия на кнопку.
+     */
+    void processCallbackQuery(CallbackQuery callbackQuery) {
+        CallbackQueryHandler handler = commandRegistry.getCallbackHandler(callbackQuery.getData());
+        if (handler != null) {
+            logger.info("Handling callback: {} for chatId: {}", callbackQuery.getData(), callbackQuery.getMessage().getChatId());
+            String data = callbackQuery.getData();
+            int separator = data.indexOf(CommandRegistry.CALLBACK_SEPARATOR);
+            metrics.timeCommand(BotMetrics.TYPE_CALLBACK, separator < 0 ? data : data.substring(0, separator),
+                    () -> handler.handleCallback(callbackQuery));
+        } else {
+            logger.warn("No handler found for callback: {}", callbackQuery.getData());
+        }
+    }
+
     /**
      * Обрабатывает команды, не зарегистрированные в реестре команд,
      * в зависимости от текущего состояния чата.
@@ -109,12 +267,12 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
      */
     private void handleCommand(long chatId, MainChatStates chatState, String messageText, Update update) {
         logger.debug("Handling command for chatId: {}, state: {}, message: {}", chatId, chatState, messageText);
-        CommandHandler commandHandler = new CommandFactory(commandRegistry, this, categoryService, chatStates)
-                .getCommandHandler(messageText, chatState);
+        CommandHandler commandHandler = commandRegistry.getStateHandler(chatState);
 
         if (commandHandler != null) {
             logger.info("Executing handler for chatId: {}", chatId);
-            commandHandler.handle(chatId, messageText, this, update);
+            metrics.timeCommand(BotMetrics.TYPE_STATE, chatState.name(),
+                    () -> commandHandler.handle(chatId, messageText, this, update));
         } else {
             logger.warn("No handler found for chatId: {} and message: {}", chatId, messageText);
             sendMessage(chatId, "Команда не распознана или не поддерживается в текущем состоянии.");
@@ -135,20 +293,29 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
 
     /**
      * Отправляет текстовое сообщение пользователю.
+     * Сообщение ставится в очередь исходящих сообщений, метод не ждёт ответа Telegram.
      *
      * @param chatId Идентификатор чата.
      * @param text   Текст сообщения.
+     * @return Отправленное сообщение, доступное после фактической отправки.
      */
-    public void sendMessage(long chatId, String text) {
+    public CompletableFuture<Message> sendMessage(long chatId, String text) {
         logger.debug("Sending message to chatId: {}: {}", chatId, text);
-        try {
-            execute(org.telegram.telegrambots.meta.api.methods.send.SendMessage.builder()
-                    .chatId(String.valueOf(chatId))
-                    .text(text)
-                    .build());
-        } catch (TelegramApiException e) {
-            logger.error("Error sending message to chatId: {}: {}", chatId, e.getMessage(), e);
-        }
+        return send(chatId, SendMessage.builder()
+                .chatId(String.valueOf(chatId))
+                .text(text)
+                .build());
+    }
+
+    /**
+     * Ставит произвольный запрос к Bot API в очередь исходящих сообщений чата.
+     *
+     * @param chatId Идентификатор чата, к которому относится запрос.
+     * @param method Запрос к Bot API, в том числе с загрузкой файла, например, {@code SendDocument}.
+     * @return Результат запроса, доступный после фактической отправки.
+     */
+    public <T extends Serializable> CompletableFuture<T> send(long chatId, PartialBotApiMethod<T> method) {
+        return outbound.submit(chatId, method, this);
     }
 
     /**
@@ -173,17 +340,6 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
         return botToken;
     }
 
-
-    /**
-     * Возвращает последнее обновление.
-     *
-     * @return Объект Update, представляющий последнее обновление.
-     */
-    public Update getUpdate() {
-        logger.debug("Getting last update");
-        return lastUpdate;
-    }
-
     /**
      * Получает файл из Telegram по его идентификатору.
      *
@@ -196,4 +352,51 @@ public class TelegramBotUpdatesControl extends TelegramLongPollingBot {
         GetFile getFile = new GetFile(fileId);
         return execute(getFile);
     }
+
+    /**
+     * Скачивает файл, полученный методом {@link #getFile(String)}, во временный файл.
+     * Адрес файла строится от адреса Bot API из настроек ({@code <сервер>/file/bot<токен>/<путь>}),
+     * поэтому скачивание работает и с локальным сервером Bot API, а не только с api.telegram.org.
+     *
+     * @param file Объект File, полученный из Telegram.
+     * @return Скачанный временный файл.
+     * @throws TelegramApiException Если файл не удалось скачать.
+     */
+    public java.io.File downloadTelegramFile(File file) throws TelegramApiException {
+        String apiUrl = getOptions().getBaseUrl();
+        String fileUrl = apiUrl.substring(0, apiUrl.lastIndexOf("bot")) + "file/bot" + botToken + "/" + file.getFilePath();
+        logger.debug("Downloading file: {}", file.getFilePath());
+        Path target;
+        try {
+            target = Files.createTempFile("telegram-file-", ".tmp");
+        } catch (IOException e) {
+            throw new TelegramApiException("Error creating temporary file", e);
+        }
+        boolean downloaded = false;
+        try {
+            HttpResponse<Path> response = fileClient.send(HttpRequest.newBuilder(URI.create(fileUrl))
+                            .timeout(FILE_DOWNLOAD_TIMEOUT)
+                            .GET()
+                            .build(),
+                    HttpResponse.BodyHandlers.ofFile(target));
+            if (response.statusCode() != 200) {
+                throw new TelegramApiException("Error downloading file, status: " + response.statusCode());
+            }
+            downloaded = true;
+            return target.toFile();
+        } catch (IOException e) {
+            throw new TelegramApiException("Error downloading file", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Error downloading file", e);
+        } finally {
+            if (!downloaded) {
+                try {
+                    Files.deleteIfExists(target);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete temporary file {}", target, e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,87 @@
+package category.tree.bot.updatescontrol;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.bots.TelegramWebhookBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.function.Consumer;
+
+/**
+ * Вариант бота, получающий обновления через webhook вместо long polling.
+ * Обновления принимает встроенный веб-сервер Spring, а обработка передаётся
+ * в тот же конвейер команд {@link TelegramBotUpdatesControl}, что и при long polling,
+ * или, в кластерном режиме, в общую очередь обновлений.
+ */
+public class TelegramWebhookBotUpdatesControl extends TelegramWebhookBot {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelegramWebhookBotUpdatesControl.class);
+
+    private final String botUsername;
+    private final String botPath;
+    private final Consumer<Update> updateConsumer;
+
+    /**
+     * Конструктор webhook-бота.
+     *
+     * @param options        Настройки клиента Bot API.
+     * @param botUsername    Имя пользователя бота.
+     * @param botToken       Токен доступа к Telegram API.
+     * @param botPath        Путь, по которому встроенный веб-сервер принимает обновления.
+     * @param updateConsumer Получатель обновлений: конвейер обработки или очередь кластера.
+     */
+    public TelegramWebhookBotUpdatesControl(DefaultBotOptions options,
+                                            String botUsername,
+                                            String botToken,
+                                            String botPath,
+                                            Consumer<Update> updateConsumer) {
+        super(options, botToken);
+        this.botUsername = botUsername;
+        this.botPath = botPath;
+        this.updateConsumer = updateConsumer;
+    }
+
+    /**
+     * Регистрирует webhook в Telegram.
+     *
+     * @param publicUrl   Публичный адрес приложения, доступный серверам Telegram.
+     * @param secretToken Секрет, который Telegram передаёт в заголовке каждого запроса; может быть пустым.
+     * @throws TelegramApiException Если Telegram отклонил регистрацию.
+     */
+    public void registerWebhook(String publicUrl, String secretToken) throws TelegramApiException {
+        String url = publicUrl.replaceAll("/+$", "") + botPath;
+        logger.info("Registering webhook: {}", url);
+        SetWebhook.SetWebhookBuilder setWebhook = SetWebhook.builder().url(url);
+        if (secretToken != null && !secretToken.isBlank()) {
+            setWebhook.secretToken(secretToken);
+        }
+        setWebhook(setWebhook.build());
+    }
+
+    /**
+     * Передаёт обновление получателю. Если он выбросит исключение, Telegram получит ошибку
+     * и повторит доставку. Ответ формируется асинхронно, поэтому в тело ответа webhook ничего не возвращается.
+     *
+     * @param update Объект обновления.
+     * @return Всегда null.
+     */
+    @Override
+    public BotApiMethod<?> onWebhookUpdateReceived(Update update) {
+        updateConsumer.accept(update);
+        return null;
+    }
+
+    @Override
+    public String getBotUsername() {
+        return botUsername;
+    }
+
+    @Override
+    public String getBotPath() {
+        return botPath;
+    }
+}
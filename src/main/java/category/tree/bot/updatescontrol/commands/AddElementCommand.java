@@ -1,12 +1,12 @@
 package category.tree.bot.updatescontrol.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
 import category.tree.bot.exceptions.CategoryAlreadyExists;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.util.Map;
 
 /**
  * Команда для добавления новой категории в дерево категорий.
@@ -15,16 +15,16 @@ public class AddElementCommand implements CommandHandler {
 
     private final TelegramBotUpdatesControl bot;
     private final CategoryService categoryService;
-    private final Map<Long, MainChatStates> chatStates;
+    private final ChatStateStore chatStates;
 
     /**
      * Конструктор для создания команды AddElementCommand.
      *
      * @param bot             Экземпляр бота для отправки сообщений и управления состояниями.
      * @param categoryService Сервис для управления категориями.
-     * @param chatStates      Карта состояний чатов, где ключ — ID чата, а значение — текущее состояние.
+     * @param chatStates      Хранилище состояний чатов.
      */
-    public AddElementCommand(TelegramBotUpdatesControl bot, CategoryService categoryService, Map<Long, MainChatStates> chatStates) {
+    public AddElementCommand(TelegramBotUpdatesControl bot, CategoryService categoryService, ChatStateStore chatStates) {
         this.bot = bot;
         this.categoryService = categoryService;
         this.chatStates = chatStates;
@@ -38,13 +38,27 @@ public class AddElementCommand implements CommandHandler {
      */
     @Override
     public void execute(Update update) {
+        execute(update, CommandRegistry.commandArguments(update.getMessage().getText()));
+    }
+
+    /**
+     * Добавляет категорию сразу, если она указана после команды ({@code /addElement родитель подкатегория}),
+     * иначе запрашивает данные отдельным сообщением.
+     *
+     * @param update    Объект обновления, содержащий данные о новом сообщении.
+     * @param arguments Текст после команды.
+     */
+    @Override
+    public void execute(Update update, String arguments) {
         long chatId = update.getMessage().getChatId();
+        if (!arguments.isEmpty()) {
+            addElement(chatId, arguments);
+            return;
+        }
         bot.sendMessage(chatId, "Введите название новой категории или укажите родителя и подкатегорию через пробел. Пример: 'категория подкатегория'.");
         chatStates.put(chatId, MainChatStates.ADD_ELEMENT);
     }
 
-
-
     /**
      * Обрабатывает состояние добавления категории, проверяет корректность ввода,
      * выполняет добавление и уведомляет пользователя о результате.
@@ -56,7 +70,12 @@ public class AddElementCommand implements CommandHandler {
      */
     @Override
     public void handle(long chatId, String messageText, TelegramBotUpdatesControl bot, Update update) {
-        String[] parts = messageText.split(" ", 2);
+        addElement(chatId, messageText);
+        chatStates.remove(chatId);
+    }
+
+    private void addElement(long chatId, String text) {
+        String[] parts = text.split(" ", 2);
         try {
             if (parts.length == 1) {
                 categoryService.addElement(parts[0], null);
@@ -70,7 +89,5 @@ public class AddElementCommand implements CommandHandler {
         } catch (CategoryAlreadyExists e) {
             bot.sendMessage(chatId, "Ошибка: такая категория уже существует!");
         }
-        chatStates.remove(chatId);
     }
-
 }
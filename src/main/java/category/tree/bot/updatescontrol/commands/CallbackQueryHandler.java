@@ -0,0 +1,16 @@
+package category.tree.bot.updatescontrol.commands;
+
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+
+/**
+ * Интерфейс для обработки нажатий на кнопки встроенной клавиатуры.
+ */
+public interface CallbackQueryHandler {
+
+    /**
+     * Обрабатывает нажатие на кнопку.
+     *
+     * @param callbackQuery Запрос нажатия, содержащий данные кнопки и исходное сообщение.
+     */
+    void handleCallback(CallbackQuery callbackQuery);
+}
@@ -0,0 +1,41 @@
+package category.tree.bot.updatescontrol.commands;
+
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.jobs.ImportJob;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+/**
+ * Команда для остановки фонового импорта чата.
+ * Импорт останавливается перед сохранением следующего пакета строк, уже сохранённые строки остаются.
+ */
+public class CancelCommand implements CommandHandler {
+
+    private final TelegramBotUpdatesControl bot;
+    private final ImportJobManager importJobs;
+
+    /**
+     * Конструктор команды CancelCommand.
+     *
+     * @param bot        Экземпляр бота для отправки сообщений.
+     * @param importJobs Фоновые задания импорта.
+     */
+    public CancelCommand(TelegramBotUpdatesControl bot, ImportJobManager importJobs) {
+        this.bot = bot;
+        this.importJobs = importJobs;
+    }
+
+    @Override
+    public void execute(Update update) {
+        long chatId = update.getMessage().getChatId();
+        ImportJob job = importJobs.cancel(chatId);
+        if (job == null) {
+            bot.sendMessage(chatId, "Нет выполняемого импорта.");
+        } else {
+            bot.sendMessage(chatId, "Задание #" + job.getId() + " будет остановлено после текущего пакета строк.");
+        }
+    }
+
+    @Override
+    public void handle(long chatId, String messageText, TelegramBotUpdatesControl bot, Update update) {}
+}
@@ -9,6 +9,17 @@ import org.telegram.telegrambots.meta.api.objects.Update;
 public interface CommandHandler {
     void execute(Update update);
 
+    /**
+     * Выполняет команду с аргументами, переданными в том же сообщении ({@code /removeElement Фрукты}).
+     * По умолчанию аргументы игнорируются.
+     *
+     * @param update    Объект обновления с командой.
+     * @param arguments Текст после имени команды или пустая строка.
+     */
+    default void execute(Update update, String arguments) {
+        execute(update);
+    }
+
     /**
      * Обрабатывает пользовательский ввод для текущего состояния чата.
      *
@@ -1,17 +1,31 @@
 package category.tree.bot.updatescontrol.commands;
 
+import category.tree.bot.chatStates.MainChatStates;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Класс для управления командами бота.
+ * Реестр читается одновременно из нескольких потоков обработки обновлений.
+ *
+ * Обработчики команд, состояний чата и кнопок создаются один раз при запуске бота, поэтому
+ * маршрутизация сообщения сводится к поиску в таблице и не создаёт объектов обработчиков.
+ * Команда может содержать упоминание бота и аргументы: {@code /viewTree@BotName Фрукты}.
  */
 @Component
 public class CommandRegistry {
 
-    private final Map<String, CommandHandler> commands = new HashMap<>();
+    /**
+     * Разделитель префикса и аргументов в данных кнопки.
+     */
+    public static final char CALLBACK_SEPARATOR = ':';
+
+    private final Map<String, CommandHandler> commands = new ConcurrentHashMap<>();
+    private final Map<String, CallbackQueryHandler> callbackHandlers = new ConcurrentHashMap<>();
+    private final Map<MainChatStates, CommandHandler> stateHandlers = new EnumMap<>(MainChatStates.class);
 
     /**
      * Регистрация команды.
@@ -32,4 +46,110 @@ public class CommandRegistry {
     public CommandHandler getCommand(String commandName) {
         return commands.get(commandName);
     }
+
+    /**
+     * Регистрация обработчика ввода для состояния чата.
+     * Вызывается только при запуске бота, до обработки обновлений: после запуска таблица только читается.
+     *
+     * @param state   Состояние чата.
+     * @param handler Обработчик сообщения, пришедшего в этом состоянии.
+     */
+    public void registerStateHandler(MainChatStates state, CommandHandler handler) {
+        stateHandlers.put(state, handler);
+    }
+
+    /**
+     * Получение обработчика ввода для состояния чата.
+     *
+     * @param state Состояние чата.
+     * @return Обработчик или null, если в этом состоянии ввод не ожидается.
+     */
+    public CommandHandler getStateHandler(MainChatStates state) {
+        return stateHandlers.get(state);
+    }
+
+    /**
+     * Выделяет имя команды из текста сообщения: первое слово без упоминания бота.
+     * Команда, адресованная другому боту ({@code /help@OtherBot}), не распознаётся.
+     *
+     * @param messageText Текст сообщения.
+     * @param botUsername Имя пользователя бота или null, если упоминание не проверяется.
+     * @return Имя команды ("/viewTree") или null, если сообщение не является командой этого бота.
+     */
+    public static String commandName(String messageText, String botUsername) {
+        if (messageText == null) {
+            return null;
+        }
+        int start = skipWhitespace(messageText, 0);
+        if (start == messageText.length() || messageText.charAt(start) != '/') {
+            return null;
+        }
+        int end = start;
+        int mention = -1;
+        while (end < messageText.length() && !Character.isWhitespace(messageText.charAt(end))) {
+            if (mention < 0 && messageText.charAt(end) == '@') {
+                mention = end;
+            }
+            end++;
+        }
+        if (mention < 0) {
+            return messageText.substring(start, end);
+        }
+        if (botUsername != null) {
+            int length = end - mention - 1;
+            if (length != botUsername.length() || !messageText.regionMatches(true, mention + 1, botUsername, 0, length)) {
+                return null;
+            }
+        }
+        return messageText.substring(start, mention);
+    }
+
+    /**
+     * Выделяет аргументы команды: текст после первого слова без крайних пробелов.
+     *
+     * @param messageText Текст сообщения с командой.
+     * @return Аргументы команды или пустая строка, если их нет.
+     */
+    public static String commandArguments(String messageText) {
+        if (messageText == null) {
+            return "";
+        }
+        int end = skipWhitespace(messageText, 0);
+        while (end < messageText.length() && !Character.isWhitespace(messageText.charAt(end))) {
+            end++;
+        }
+        return messageText.substring(end).strip();
+    }
+
+    private static int skipWhitespace(String text, int from) {
+        int index = from;
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Регистрация обработчика нажатий на кнопки.
+     *
+     * @param prefix  Префикс данных кнопки до символа {@link #CALLBACK_SEPARATOR}.
+     * @param handler Обработчик нажатий.
+     */
+    public void registerCallbackHandler(String prefix, CallbackQueryHandler handler) {
+        callbackHandlers.put(prefix, handler);
+    }
+
+    /**
+     * Получение обработчика нажатия по данным кнопки.
+     *
+     * @param callbackData Данные кнопки.
+     * @return Обработчик или null, если префикс не зарегистрирован.
+     */
+    public CallbackQueryHandler getCallbackHandler(String callbackData) {
+        if (callbackData == null) {
+            return null;
+        }
+        int separator = callbackData.indexOf(CALLBACK_SEPARATOR);
+        return callbackHandlers.get(separator < 0 ? callbackData : callbackData.substring(0, separator));
+    }
 }
@@ -1,31 +1,54 @@
 package category.tree.bot.updatescontrol.commands;
 
-import category.tree.bot.entity.Category;
+import category.tree.bot.cache.CategoryExportCache;
+import category.tree.bot.excel.ExcelCategoryWriter;
+import category.tree.bot.exceptions.CategoryIsNotFound;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 
 /**
  * Класс для обработки команды загрузки дерева категорий.
  *
  * Данный класс реализует интерфейс {@link CommandHandler} и используется для
  * генерации и отправки пользователю Excel-файла с информацией о категориях.
+ * Файл строится один раз на версию дерева, а после первой отправки пересылается по {@code file_id};
+ * заново он загружается, только если Telegram отклонил сам {@code file_id}.
+ * Команда с аргументами ({@code /download Фрукты 2}) выгружает только поддерево категории,
+ * такой файл строится на каждый запрос и удаляется после отправки.
+ * Файлы отправляются через очередь исходящих сообщений, которая соблюдает ограничения частоты Telegram.
  */
 public class DownloadCommand implements CommandHandler {
 
+    private static final Logger logger = LoggerFactory.getLogger(DownloadCommand.class);
+
+    private static final String FILE_NAME = "categories_tree.xlsx";
+
+    /**
+     * Символы, которые нельзя оставлять в имени файла: разделители путей, кавычки, зарезервированные
+     * в Windows символы, управляющие и невидимые символы форматирования.
+     */
+    private static final Pattern UNSAFE_FILE_NAME_CHARS = Pattern.compile("[\\\\/:*?\"<>|\\p{Cc}\\p{Cf}\\p{Zl}\\p{Zp}]");
+
+    private static final int MAX_FILE_NAME_ROOT_LENGTH = 64;
+
     private final TelegramBotUpdatesControl bot;
     private final CategoryService categoryService;
+    private final ExcelCategoryWriter excelWriter = new ExcelCategoryWriter();
+    private final CategoryExportCache exportCache = new CategoryExportCache();
 
     /**
      * Конструктор для создания экземпляра команды загрузки.
@@ -45,55 +68,177 @@ public class DownloadCommand implements CommandHandler {
      */
     @Override
     public void execute(Update update) {
+        execute(update, CommandRegistry.commandArguments(update.getMessage().getText()));
+    }
+
+    /**
+     * Выполняет команду: без аргументов отправляет всё дерево, с аргументами {@code <имя> [глубина]} — поддерево.
+     *
+     * @param update    Объект обновления из Telegram.
+     * @param arguments Имя корня поддерева и глубина или пустая строка.
+     */
+    @Override
+    public void execute(Update update, String arguments) {
         long chatId = update.getMessage().getChatId();
+        if (!arguments.isEmpty()) {
+            sendSubtree(chatId, SubtreeArguments.parse(arguments), arguments);
+            return;
+        }
+        CategoryExportCache.Artifact export;
         try {
-            File file = generateExcelFile();
+            export = exportCache.getOrCreate(categoryService.getTreeVersion(), this::generateExcelFile);
+        } catch (Exception e) {
+            bot.sendMessage(chatId, "Ошибка при генерации файла: " + e.getMessage());
+            return;
+        }
 
-            bot.execute(SendDocument.builder()
-                    .chatId(String.valueOf(chatId))
-                    .document(new InputFile(file, "categories_tree.xlsx"))
-                    .caption("Дерево категорий")
-                    .build());
+        String fileId = export.getFileId();
+        CompletableFuture<Message> sent = fileId == null
+                ? upload(chatId, export)
+                : bot.send(chatId, document(chatId, new InputFile(fileId))).exceptionallyCompose(e -> {
+                    if (!isRejectedFileId(e)) {
+                        return CompletableFuture.failedFuture(e);
+                    }
+                    logger.warn("Telegram отклонил сохранённый fileId выгрузки, файл будет загружен заново: {}",
+                            cause(e).getMessage());
+                    export.forgetFileId(fileId);
+                    return upload(chatId, export);
+                });
+        sent.whenComplete((message, e) -> {
+            if (e != null) {
+                reportSendFailure(chatId, e);
+            }
+        });
+    }
 
-            file.delete();
+    private CompletableFuture<Message> upload(long chatId, CategoryExportCache.Artifact export) {
+        return bot.send(chatId, document(chatId, new InputFile(export.getFile(), FILE_NAME)))
+                .thenApply(sent -> {
+                    if (sent != null && sent.getDocument() != null) {
+                        export.rememberFileId(sent.getDocument().getFileId());
+                    }
+                    return sent;
+                });
+    }
+
+    /**
+     * Строит и отправляет выгрузку поддерева. Если корень с глубиной не найден, число в конце считается частью
+     * имени категории, например «iPhone 15», и выгрузка строится по всей строке аргументов.
+     */
+    private void sendSubtree(long chatId, SubtreeArguments subtree, String arguments) {
+        File file;
+        try {
+            file = generateExcelFile(subtree.root(), subtree.depth());
+        } catch (CategoryIsNotFound e) {
+            if (subtree.depth() != null) {
+                sendSubtree(chatId, SubtreeArguments.name(arguments), arguments);
+                return;
+            }
+            bot.sendMessage(chatId, "Категория \"" + subtree.root() + "\" не найдена.");
+            return;
         } catch (Exception e) {
             bot.sendMessage(chatId, "Ошибка при генерации файла: " + e.getMessage());
+            return;
         }
+        bot.send(chatId, SendDocument.builder()
+                        .chatId(String.valueOf(chatId))
+                        .document(new InputFile(file, subtreeFileName(subtree.root())))
+                        .caption("Поддерево категории \"" + subtree.root() + "\"")
+                        .build())
+                .whenComplete((message, e) -> {
+                    if (!file.delete()) {
+                        logger.warn("Не удалось удалить временный файл выгрузки поддерева: {}", file);
+                    }
+                    if (e != null) {
+                        reportSendFailure(chatId, e);
+                    }
+                });
     }
 
     /**
-     * Генерирует временный Excel-файл с информацией о дереве категорий.
+     * Строит имя файла выгрузки поддерева по имени его корня. Имя категории вводит пользователь, поэтому
+     * недопустимые в именах файлов символы заменяются подчёркиванием, а длина имени ограничивается.
      *
-     * @return Файл с данными о категориях.
-     * @throws IOException Если возникает ошибка ввода-вывода при создании файла.
+     * @param root Имя корня поддерева.
+     * @return Имя файла вида {@code categories_<имя>.xlsx}.
      */
-    public File generateExcelFile() throws IOException {
-        File file = File.createTempFile("categories_tree", ".xlsx");
+    public static String subtreeFileName(String root) {
+        String name = UNSAFE_FILE_NAME_CHARS.matcher(root).replaceAll("_").strip();
+        if (name.codePointCount(0, name.length()) > MAX_FILE_NAME_ROOT_LENGTH) {
+            name = name.substring(0, name.offsetByCodePoints(0, MAX_FILE_NAME_ROOT_LENGTH));
+        }
+        return "categories_" + name + ".xlsx";
+    }
 
-        List<Category> categories = categoryService.getAllCategories();
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Categories");
+    /**
+     * Проверяет, что Telegram отклонил сам {@code file_id}: запрос с ним отвергнут как неверный (400).
+     * Ограничение частоты или сбой сервера не означают, что {@code file_id} устарел, и повторной загрузки не требуют.
+     */
+    private static boolean isRejectedFileId(Throwable error) {
+        if (!(cause(error) instanceof TelegramApiRequestException e)) {
+            return false;
+        }
+        if (e.getParameters() != null && e.getParameters().getRetryAfter() != null) {
+            return false;
+        }
+        String description = e.getApiResponse() != null ? e.getApiResponse() : e.getMessage();
+        return Integer.valueOf(400).equals(e.getErrorCode())
+                && description != null
+                && description.toLowerCase(Locale.ROOT).contains("file");
+    }
 
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue("Категория");
-            headerRow.createCell(1).setCellValue("Родительская категория");
+    private void reportSendFailure(long chatId, Throwable error) {
+        logger.warn("Не удалось отправить выгрузку в чат {}: {}", chatId, cause(error).getMessage());
+        bot.sendMessage(chatId, "Ошибка при отправке файла: " + cause(error).getMessage());
+    }
 
-            int rowIndex = 1;
-            for (Category category : categories) {
-                Row row = sheet.createRow(rowIndex++);
-                row.createCell(0).setCellValue(category.getName());
-                String parentName = category.getParent() != null ? category.getParent().getName() : "";
-                row.createCell(1).setCellValue(parentName);
-            }
+    private static Throwable cause(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
 
-            sheet.autoSizeColumn(0);
-            sheet.autoSizeColumn(1);
+    private SendDocument document(long chatId, InputFile file) {
+        return SendDocument.builder()
+                .chatId(String.valueOf(chatId))
+                .document(file)
+                .caption("Дерево категорий")
+                .build();
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(file)) {
-                workbook.write(fos);
-            }
+    /**
+     * Генерирует временный Excel-файл с информацией о дереве категорий.
+     * Категории читаются из базы данных потоком и сразу пишутся в файл,
+     * поэтому расход памяти не растёт с количеством категорий.
+     *
+     * @return Файл с данными о категориях.
+     * @throws IOException Если возникает ошибка ввода-вывода при создании файла.
+     */
+    public File generateExcelFile() throws IOException {
+        File file = File.createTempFile("categories_tree", ".xlsx");
+        try {
+            excelWriter.write(file, categoryService::exportCategories);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
         }
+        return file;
+    }
 
+    /**
+     * Генерирует временный Excel-файл с поддеревом категории. Читаются только строки поддерева.
+     *
+     * @param root  Имя корня поддерева.
+     * @param depth Глубина относительно корня или null без ограничения.
+     * @return Файл с данными о категориях поддерева.
+     * @throws IOException Если возникает ошибка ввода-вывода при создании файла.
+     */
+    public File generateExcelFile(String root, Integer depth) throws IOException {
+        File file = File.createTempFile("categories_subtree", ".xlsx");
+        try {
+            excelWriter.write(file, consumer -> categoryService.exportCategories(root, depth, consumer));
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            throw e;
+        }
         return file;
     }
 
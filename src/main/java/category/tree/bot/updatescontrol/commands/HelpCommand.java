@@ -48,6 +48,7 @@ public class HelpCommand implements CommandHandler {
             KeyboardRow row2 = new KeyboardRow();
             row2.add(new KeyboardButton("/download"));
             row2.add(new KeyboardButton("/upload"));
+            row2.add(new KeyboardButton("/search"));
 
             keyboard.add(row1);
             keyboard.add(row2);
@@ -58,10 +59,15 @@ public class HelpCommand implements CommandHandler {
                     .text("Вот список доступных команд:\n"
                             + "/start - начать работу с ботом\n"
                             + "/addElement - добавить категорию\n"
-                            + "/removeElement - удалить категорию\n"
-                            + "/viewTree - посмотреть дерево категорий\n"
-                            + "/download - скачать excel-файл дерева категорий\n"
-                            + "/upload - показать это сообщение\n")
+                            + "/addElement <категория> - добавить корневую категорию сразу\n"
+                            + "/addElement <родитель> <подкатегория> - добавить подкатегорию сразу\n"
+                            + "/removeElement [<категория>] - удалить категорию\n"
+                            + "/viewTree [<категория>] - посмотреть дерево категорий или уровень категории\n"
+                            + "/viewTree <категория> <глубина> - показать поддерево до заданной глубины\n"
+                            + "/download [<категория> [<глубина>]] - скачать excel-файл дерева категорий или поддерева\n"
+                            + "/upload - загрузить excel-файл с категориями\n"
+                            + "/search <начало названия> - найти категорию\n"
+                            + "/cancel - остановить импорт excel-файла\n")
                     .replyMarkup(keyboardMarkup)
                     .build();
 
@@ -1,12 +1,12 @@
 package category.tree.bot.updatescontrol.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
 import category.tree.bot.exceptions.CategoryIsNotFound;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.util.Map;
 
 /**
  * Команда для удаления категории из дерева категорий.
@@ -16,16 +16,16 @@ public class RemoveElementCommand implements CommandHandler {
 
     private final TelegramBotUpdatesControl bot;
     private final CategoryService categoryService;
-    private final Map<Long, MainChatStates> chatStates;
+    private final ChatStateStore chatStates;
 
     /**
      * Конструктор команды RemoveElementCommand.
      *
      * @param bot             Экземпляр бота для отправки сообщений и управления состояниями.
      * @param categoryService Сервис для работы с категориями.
-     * @param chatStates      Карта состояний чатов, где ключ — ID чата, а значение — текущее состояние.
+     * @param chatStates      Хранилище состояний чатов.
      */
-    public RemoveElementCommand(TelegramBotUpdatesControl bot, CategoryService categoryService, Map<Long, MainChatStates> chatStates) {
+    public RemoveElementCommand(TelegramBotUpdatesControl bot, CategoryService categoryService, ChatStateStore chatStates) {
         this.bot = bot;
         this.categoryService = categoryService;
         this.chatStates = chatStates;
@@ -33,15 +33,29 @@ public class RemoveElementCommand implements CommandHandler {
 
     /**
      * Выполняет логику команды, удаляя указанную категорию.
-     * Если команда вызвана впервые, запрашивает у пользователя название категории.
-     * При повторном вызове выполняет удаление категории, используя введённые данные.
+     * Если название не указано после команды, запрашивает его у пользователя.
      *
      * @param update Объект обновления, содержащий данные о новом сообщении.
      */
     @Override
     public void execute(Update update) {
+        execute(update, CommandRegistry.commandArguments(update.getMessage().getText()));
+    }
+
+    /**
+     * Удаляет категорию сразу, если она указана после команды ({@code /removeElement Фрукты}),
+     * иначе запрашивает название отдельным сообщением.
+     *
+     * @param update    Объект обновления, содержащий данные о новом сообщении.
+     * @param arguments Название категории или пустая строка.
+     */
+    @Override
+    public void execute(Update update, String arguments) {
         long chatId = update.getMessage().getChatId();
-        String messageText = update.getMessage().getText();
+        if (!arguments.isEmpty()) {
+            removeElement(chatId, arguments);
+            return;
+        }
         bot.sendMessage(chatId, "Введите название категории, которую хотите удалить. Все её подкатегории также будут удалены.");
         chatStates.put(chatId, MainChatStates.REMOVE_ELEMENT);
     }
@@ -57,12 +71,18 @@ public class RemoveElementCommand implements CommandHandler {
     @Override
     public void handle(long chatId, String messageText, TelegramBotUpdatesControl bot, Update update) {
         try {
-            String result = categoryService.removeElement(messageText);
+            removeElement(chatId, messageText);
+        } finally {
+            chatStates.remove(chatId);
+        }
+    }
+
+    private void removeElement(long chatId, String name) {
+        try {
+            String result = categoryService.removeElement(name);
             bot.sendMessage(chatId, "Категория и её подкатегории (при наличии) удалены: " + result);
         } catch (CategoryIsNotFound e) {
             bot.sendMessage(chatId, "Категория не найдена или не может быть удалена.");
-        } finally {
-            chatStates.remove(chatId);
         }
     }
 }
@@ -0,0 +1,103 @@
+package category.tree.bot.updatescontrol.commands;
+
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.service.services.CategoryService;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+/**
+ * Команда для поиска категорий по началу имени.
+ * Префикс можно передать сразу ({@code /search кин}) или отдельным сообщением после команды.
+ */
+public class SearchCommand implements CommandHandler {
+
+    /**
+     * Количество категорий, показываемых в ответе.
+     */
+    public static final int RESULT_LIMIT = 10;
+
+    private final TelegramBotUpdatesControl bot;
+    private final CategoryService categoryService;
+    private final ChatStateStore chatStates;
+
+    /**
+     * Конструктор команды SearchCommand.
+     *
+     * @param bot             Экземпляр бота для отправки сообщений.
+     * @param categoryService Сервис для работы с категориями.
+     * @param chatStates      Хранилище состояний чатов.
+     */
+    public SearchCommand(TelegramBotUpdatesControl bot, CategoryService categoryService, ChatStateStore chatStates) {
+        this.bot = bot;
+        this.categoryService = categoryService;
+        this.chatStates = chatStates;
+    }
+
+    /**
+     * Выполняет поиск, если префикс указан после команды, иначе запрашивает его у пользователя.
+     *
+     * @param update Объект обновления, содержащий данные о новом сообщении.
+     */
+    @Override
+    public void execute(Update update) {
+        execute(update, CommandRegistry.commandArguments(update.getMessage().getText()));
+    }
+
+    /**
+     * Выполняет поиск по префиксу, указанному после команды, иначе запрашивает его у пользователя.
+     *
+     * @param update    Объект обновления, содержащий данные о новом сообщении.
+     * @param arguments Начало названия категории или пустая строка.
+     */
+    @Override
+    public void execute(Update update, String arguments) {
+        long chatId = update.getMessage().getChatId();
+
+        if (!arguments.isEmpty()) {
+            sendResults(chatId, arguments);
+        } else {
+            bot.sendMessage(chatId, "Введите начало названия категории.");
+            chatStates.put(chatId, MainChatStates.SEARCH);
+        }
+    }
+
+    /**
+     * Выполняет поиск по префиксу, отправленному отдельным сообщением.
+     *
+     * @param chatId      Идентификатор чата.
+     * @param messageText Начало названия категории.
+     * @param bot         Экземпляр бота для отправки сообщений пользователю.
+     * @param update      Последний update в боте.
+     */
+    @Override
+    public void handle(long chatId, String messageText, TelegramBotUpdatesControl bot, Update update) {
+        try {
+            sendResults(chatId, messageText);
+        } finally {
+            chatStates.remove(chatId);
+        }
+    }
+
+    private void sendResults(long chatId, String prefix) {
+        if (prefix == null || prefix.isBlank()) {
+            bot.sendMessage(chatId, "Введите начало названия категории.");
+            return;
+        }
+
+        List<CategorySearchResult> results = categoryService.searchCategories(prefix, RESULT_LIMIT);
+        if (results.isEmpty()) {
+            bot.sendMessage(chatId, "Категории, начинающиеся с \"" + prefix.strip() + "\", не найдены.");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("Найденные категории:\n");
+        for (CategorySearchResult result : results) {
+            text.append(result.path()).append("\n");
+        }
+        bot.sendMessage(chatId, text.toString());
+    }
+}
@@ -0,0 +1,40 @@
+package category.tree.bot.updatescontrol.commands;
+
+/**
+ * Аргументы команд, работающих с поддеревом: {@code <имя> [глубина]}.
+ *
+ * @param root  имя корня поддерева
+ * @param depth глубина относительно корня или null без ограничения
+ */
+public record SubtreeArguments(String root, Integer depth) {
+
+    /**
+     * Разбирает аргументы команды. Последнее слово считается глубиной, если оно — неотрицательное число
+     * и перед ним есть имя категории; иначе вся строка считается именем.
+     * Число в конце может оказаться частью имени («iPhone 15»), поэтому команды, не нашедшие такой корень,
+     * повторяют поиск по {@link #name(String)}.
+     *
+     * @param arguments аргументы команды без пробелов по краям
+     * @return разобранные аргументы
+     */
+    public static SubtreeArguments parse(String arguments) {
+        int space = arguments.lastIndexOf(' ');
+        if (space > 0) {
+            String last = arguments.substring(space + 1);
+            if (!last.isEmpty() && last.length() <= 9 && last.chars().allMatch(Character::isDigit)) {
+                return new SubtreeArguments(arguments.substring(0, space).strip(), Integer.parseInt(last));
+            }
+        }
+        return name(arguments);
+    }
+
+    /**
+     * Считает всю строку аргументов именем категории без ограничения глубины.
+     *
+     * @param arguments аргументы команды без пробелов по краям
+     * @return аргументы с именем корня
+     */
+    public static SubtreeArguments name(String arguments) {
+        return new SubtreeArguments(arguments, null);
+    }
+}
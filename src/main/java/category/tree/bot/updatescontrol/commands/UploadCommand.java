@@ -1,21 +1,28 @@
 package category.tree.bot.updatescontrol.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.excel.ExcelCategoryReader;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import category.tree.bot.updatescontrol.jobs.ImportCancelledException;
+import category.tree.bot.updatescontrol.jobs.ImportJob;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 
 /**
@@ -25,9 +32,14 @@ import org.slf4j.Logger;
  */
 public class UploadCommand implements CommandHandler {
 
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    private static final int MAX_CONFLICTS_IN_MESSAGE = 20;
+
     private final TelegramBotUpdatesControl bot;
-    private final Map<Long, MainChatStates> chatStates;
+    private final ChatStateStore chatStates;
     private final CategoryService categoryService;
+    private final ImportJobManager importJobs;
+    private final ExcelCategoryReader excelReader = new ExcelCategoryReader();
 
     private static final Logger logger = LoggerFactory.getLogger(UploadCommand.class);
 
@@ -37,11 +49,14 @@ public class UploadCommand implements CommandHandler {
      * @param bot            Экземпляр управления обновлениями Telegram-бота.
      * @param chatStates     Состояния чатов для управления процессами бота.
      * @param categoryService Сервис для работы с категориями.
+     * @param importJobs      Фоновые задания импорта.
      */
-    public UploadCommand(TelegramBotUpdatesControl bot, Map<Long, MainChatStates> chatStates, CategoryService categoryService) {
+    public UploadCommand(TelegramBotUpdatesControl bot, ChatStateStore chatStates, CategoryService categoryService,
+                         ImportJobManager importJobs) {
         this.bot = bot;
         this.chatStates = chatStates;
         this.categoryService = categoryService;
+        this.importJobs = importJobs;
     }
 
     /**
@@ -60,7 +75,8 @@ public class UploadCommand implements CommandHandler {
     }
 
     /**
-     * Обрабатывает файл, отправленный пользователем.
+     * Принимает файл, отправленный пользователем, и ставит его импорт в фоновое задание.
+     * Пользователь получает сообщение с номером задания, которое затем обновляется по ходу импорта.
      *
      * @param chatId     Идентификатор чата, из которого пришёл файл.
      * @param messageText Текст сообщения (не используется в данном методе).
@@ -75,26 +91,20 @@ public class UploadCommand implements CommandHandler {
         logger.info("Получен fileId: {}", fileId);
 
         try {
-
-            org.telegram.telegrambots.meta.api.objects.File telegramFile = bot.getFile(fileId);
-            logger.info("Получен объект File с fileId: {}", fileId);
-
-            File downloadedFile = bot.downloadFile(telegramFile);
-            if (downloadedFile == null || !downloadedFile.exists()) {
-                bot.sendMessage(chatId, "Ошибка: файл не загружен.");
-                logger.error("Файл не загружен для fileId: {}", fileId);
+            ImportJob job = importJobs.create(chatId);
+            if (job == null) {
+                ImportJob running = importJobs.getJob(chatId);
+                bot.sendMessage(chatId, "Импорт уже выполняется" + (running != null ? " (задание #" + running.getId() + ")" : "")
+                        + ". Отправьте /cancel, чтобы остановить его.");
                 return;
             }
 
-            logger.info("Файл скачан: {}", downloadedFile.getAbsolutePath());
-            bot.sendMessage(chatId, "Обрабатываем Excel...");
-
-            processExcelFile(downloadedFile);
-            bot.sendMessage(chatId, "Файл обработан, категории успешно добавлены!");
-
-        } catch (Exception e) {
-            bot.sendMessage(chatId, "Ошибка при обработке файла: " + e.getMessage());
-            logger.error("Ошибка при обработке файла: ", e);
+            ExcelImport excelImport = new ExcelImport(chatId, fileId);
+            excelImport.status = bot.sendMessage(chatId, "Задание #" + job.getId() + ": обрабатываем Excel... "
+                    + "Отправьте /cancel, чтобы остановить импорт.");
+            if (!importJobs.start(job, excelImport)) {
+                bot.sendMessage(chatId, "Сейчас выполняется слишком много импортов, попробуйте позже.");
+            }
         } finally {
             chatStates.remove(chatId);
             logger.info("Состояние чата для chatId: {} удалено.", chatId);
@@ -105,30 +115,178 @@ public class UploadCommand implements CommandHandler {
      * Обрабатывает содержимое Excel-документа и добавляет категории в систему.
      *
      * @param file Файл Excel, отправленный пользователем.
+     * @return Отчёт об импорте с количеством добавленных категорий и конфликтами.
      * @throws IOException Если возникает ошибка при чтении файла.
      */
-    public void processExcelFile(File file) throws IOException {
+    public CategoryImportReport processExcelFile(File file) throws IOException {
+        return processExcelFile(file, null);
+    }
+
+    /**
+     * Обрабатывает содержимое Excel-документа и добавляет категории в систему.
+     * Документ читается потоково, строки импортируются пакетами по {@value #IMPORT_CHUNK_SIZE},
+     * поэтому расход памяти не зависит от количества строк. Перед каждым пакетом проверяется отмена задания,
+     * после него задание учитывает сохранённые строки.
+     *
+     * @param file Файл Excel, отправленный пользователем.
+     * @param job  Задание импорта или null.
+     * @return Отчёт об импорте с количеством добавленных категорий и конфликтами.
+     * @throws IOException              Если возникает ошибка при чтении файла.
+     * @throws ImportCancelledException Если задание отменено; уже сохранённые пакеты остаются в базе.
+     */
+    public CategoryImportReport processExcelFile(File file, ImportJob job) throws IOException {
         logger.info("Начинаем обработку Excel файла: {}", file.getAbsolutePath());
 
-        try (FileInputStream fis = new FileInputStream(file);
-             Workbook workbook = new XSSFWorkbook(fis)) {
+        List<CategoryImportRow> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        CategoryImportReport[] report = {CategoryImportReport.empty()};
+        try {
+            long rows = excelReader.read(file, row -> {
+                chunk.add(row);
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    report[0] = report[0].plus(importChunk(chunk, job));
+                    chunk.clear();
+                }
+            });
+            if (!chunk.isEmpty()) {
+                report[0] = report[0].plus(importChunk(chunk, job));
+            }
+            logger.info("Обработано строк Excel файла: {}, добавлено категорий: {}, конфликтов: {}",
+                    rows, report[0].imported(), report[0].conflictCount());
+        } catch (IOException e) {
+            logger.error("Ошибка при чтении Excel файла: ", e);
+            throw e;
+        }
+        return report[0];
+    }
 
-            Sheet sheet = workbook.getSheetAt(0);
-            logger.info("Обрабатываем лист: {}", sheet.getSheetName());
+    private CategoryImportReport importChunk(List<CategoryImportRow> chunk, ImportJob job) {
+        if (job == null) {
+            return categoryService.importCategories(chunk);
+        }
+        job.checkCancelled();
+        CategoryImportReport report = categoryService.importCategories(chunk);
+        job.addRows(chunk.size());
+        return report;
+    }
 
-            for (Row row : sheet) {
-                if (row.getCell(0) == null) continue;
+    /**
+     * Формирует сообщение о конфликтных строках импорта.
+     *
+     * @param report Отчёт об импорте.
+     * @return Текст сообщения для пользователя.
+     */
+    private String formatConflicts(CategoryImportReport report) {
+        StringBuilder builder = new StringBuilder()
+                .append("Файл обработан. Добавлено категорий: ").append(report.imported())
+                .append(", пропущено строк: ").append(report.conflictCount()).append("\n");
+        int shown = Math.min(report.conflicts().size(), MAX_CONFLICTS_IN_MESSAGE);
+        for (int i = 0; i < shown; i++) {
+            CategoryImportConflict conflict = report.conflicts().get(i);
+            builder.append("Строка ").append(conflict.rowNumber()).append(": ")
+                    .append(conflict.name()).append(" — ").append(conflict.reason()).append("\n");
+        }
+        if (report.conflictCount() > shown) {
+            builder.append("...");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Фоновый импорт одного файла: скачивает файл, импортирует его и обновляет сообщение о ходе задания.
+     */
+    private final class ExcelImport implements ImportJobManager.Task {
+
+        private final long chatId;
+        private final String fileId;
+        private volatile CompletableFuture<Message> status;
+        private long reportedRows = -1;
+        private boolean finished;
+
+        private ExcelImport(long chatId, String fileId) {
+            this.chatId = chatId;
+            this.fileId = fileId;
+        }
 
-                String categoryName = row.getCell(0).getStringCellValue();
-                String parentName = row.getCell(1) != null ? row.getCell(1).getStringCellValue() : null;
+        @Override
+        public void run(ImportJob job) {
+            File downloadedFile = null;
+            try {
+                job.checkCancelled();
+                org.telegram.telegrambots.meta.api.objects.File telegramFile = bot.getFile(fileId);
+                logger.info("Получен объект File с fileId: {}", fileId);
 
-                logger.info("Добавление категории: {}, Родитель: {}", categoryName, parentName);
+                downloadedFile = bot.downloadTelegramFile(telegramFile);
+                if (downloadedFile == null || !downloadedFile.exists()) {
+                    bot.sendMessage(chatId, "Ошибка: файл не загружен.");
+                    logger.error("Файл не загружен для fileId: {}", fileId);
+                    finish("Задание #" + job.getId() + " завершилось с ошибкой.");
+                    return;
+                }
+                logger.info("Файл скачан: {}", downloadedFile.getAbsolutePath());
 
-                categoryService.addElement(parentName, categoryName);
+                job.start();
+                CategoryImportReport report = processExcelFile(downloadedFile, job);
+                finish(String.format(Locale.ROOT, "Задание #%d завершено: обработано строк: %d за %.1f с (%d строк/с).",
+                        job.getId(), job.getRows(), job.getElapsedSeconds(), job.getRowsPerSecond()));
+                if (report.hasConflicts()) {
+                    bot.sendMessage(chatId, formatConflicts(report));
+                } else {
+                    bot.sendMessage(chatId, "Файл обработан, категории успешно добавлены!");
+                }
+            } catch (ImportCancelledException e) {
+                logger.info("Импорт для chatId: {} отменён, сохранено строк: {}", chatId, job.getRows());
+                finish("Задание #" + job.getId() + " отменено: сохранено строк: " + job.getRows() + ".");
+                bot.sendMessage(chatId, "Импорт отменён. Сохранено строк: " + job.getRows() + ".");
+            } catch (Exception e) {
+                finish("Задание #" + job.getId() + " завершилось с ошибкой.");
+                bot.sendMessage(chatId, "Ошибка при обработке файла: " + e.getMessage());
+                logger.error("Ошибка при обработке файла: ", e);
+            } finally {
+                if (downloadedFile != null && downloadedFile.exists() && !downloadedFile.delete()) {
+                    logger.warn("Не удалось удалить скачанный файл: {}", downloadedFile);
+                }
             }
-        } catch (IOException e) {
-            logger.error("Ошибка при чтении Excel файла: ", e);
-            throw e;
+        }
+
+        @Override
+        public void reportProgress(ImportJob job) {
+            CompletableFuture<Message> current = status;
+            if (!current.isDone()) {
+                return;
+            }
+            String text;
+            synchronized (this) {
+                if (current.isCompletedExceptionally()) {
+                    // Сообщение о ходе не отправлено, редактировать нечего.
+                    finished = true;
+                }
+                long rows = job.getRows();
+                if (finished || rows == reportedRows) {
+                    return;
+                }
+                reportedRows = rows;
+                text = "Задание #" + job.getId() + ": обработано строк: " + rows + " (" + job.getRowsPerSecond()
+                        + " строк/с). Отправьте /cancel, чтобы остановить импорт.";
+            }
+            editStatus(current.join(), text);
+        }
+
+        /**
+         * Заменяет сообщение о ходе задания итогом; после этого отчёты о ходе больше не отправляются.
+         */
+        private void finish(String text) {
+            synchronized (this) {
+                finished = true;
+            }
+            status.thenAccept(sent -> editStatus(sent, text));
+        }
+
+        private void editStatus(Message sent, String text) {
+            bot.send(chatId, EditMessageText.builder()
+                    .chatId(String.valueOf(chatId))
+                    .messageId(sent.getMessageId())
+                    .text(text)
+                    .build());
         }
     }
 }
@@ -1,16 +1,54 @@
 package category.tree.bot.updatescontrol.commands;
 
+import category.tree.bot.cache.CategoryTreeSnapshot;
+import category.tree.bot.dto.CategoryTreeLevel;
+import category.tree.bot.exceptions.CategoryIsNotFound;
+import category.tree.bot.repository.CategoryLevelRow;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Команда для отображения дерева категорий.
  *
- * Данный класс реализует интерфейс {@link CommandHandler} и используется для
- * отображения дерева категорий в текстовом формате.
+ * Данный класс реализует интерфейсы {@link CommandHandler} и {@link CallbackQueryHandler}.
+ * Дерево показывается по одному уровню: каждая подкатегория — кнопка встроенной клавиатуры,
+ * нажатие на которую открывает её уровень в том же сообщении. Так дерево любого размера
+ * умещается в ограничение Telegram на длину сообщения, а каждое нажатие читает только одну страницу уровня.
+ *
+ * Данные кнопки имеют вид {@code t:<id>} или {@code t:<id>:<afterId>} с идентификаторами в base36,
+ * где id 0 обозначает корневой уровень.
  */
-public class ViewTreeCommand implements CommandHandler {
+public class ViewTreeCommand implements CommandHandler, CallbackQueryHandler {
+
+    /**
+     * Префикс данных кнопок навигации по дереву.
+     */
+    public static final String CALLBACK_PREFIX = "t";
+
+    /**
+     * Количество подкатегорий на одной странице уровня.
+     */
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Ограничение Telegram на длину текста сообщения.
+     */
+    public static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private static final String TRUNCATED = "\n…поддерево не уместилось в сообщение, уменьшите глубину или используйте /download";
+
+    private static final long ROOT_ID = 0;
+    private static final int ID_RADIX = 36;
 
     private final TelegramBotUpdatesControl bot;
     private final CategoryService categoryService;
@@ -27,22 +65,92 @@ public class ViewTreeCommand implements CommandHandler {
     }
 
     /**
-     * Выполняет команду, отправляя пользователю текстовое представление дерева категорий.
+     * Выполняет команду, отправляя пользователю корневой уровень дерева категорий.
      *
      * @param update Объект обновления из Telegram.
      */
     @Override
     public void execute(Update update) {
+        execute(update, CommandRegistry.commandArguments(update.getMessage().getText()));
+    }
+
+    /**
+     * Выполняет команду, отправляя пользователю уровень категории, указанной после команды
+     * ({@code /viewTree Фрукты}), или корневой уровень, если категория не указана.
+     * Если после имени указана глубина ({@code /viewTree Фрукты 2}), поддерево отправляется текстом.
+     * Если корня с такой глубиной нет, число в конце считается частью имени категории, например «iPhone 15».
+     *
+     * @param update    Объект обновления из Telegram.
+     * @param arguments Название категории и глубина или пустая строка.
+     */
+    @Override
+    public void execute(Update update, String arguments) {
         long chatId = update.getMessage().getChatId();
 
         try {
-            String tree = categoryService.viewTree();
-            bot.sendMessage(chatId, "Дерево категорий:\n" + tree);
+            Long nodeId = null;
+            if (!arguments.isEmpty()) {
+                SubtreeArguments subtree = SubtreeArguments.parse(arguments);
+                if (subtree.depth() != null) {
+                    try {
+                        bot.sendMessage(chatId, truncate(categoryService.viewTree(subtree.root(), subtree.depth())));
+                        return;
+                    } catch (CategoryIsNotFound e) {
+                        subtree = SubtreeArguments.name(arguments);
+                    }
+                }
+                try {
+                    nodeId = categoryService.getCategoryId(subtree.root());
+                } catch (CategoryIsNotFound e) {
+                    bot.sendMessage(chatId, "Категория \"" + subtree.root() + "\" не найдена.");
+                    return;
+                }
+            }
+            CategoryTreeLevel level = categoryService.getTreeLevel(nodeId, 0, PAGE_SIZE);
+            bot.send(chatId, SendMessage.builder()
+                    .chatId(String.valueOf(chatId))
+                    .text(formatTitle(level))
+                    .replyMarkup(buildKeyboard(level, 0))
+                    .build());
         } catch (Exception e) {
             bot.sendMessage(chatId, "Произошла ошибка при отображении дерева категорий: " + e.getMessage());
         }
     }
 
+    /**
+     * Открывает уровень дерева, выбранный нажатием на кнопку, в том же сообщении.
+     *
+     * @param callbackQuery Запрос нажатия на кнопку навигации.
+     */
+    @Override
+    public void handleCallback(CallbackQuery callbackQuery) {
+        long chatId = callbackQuery.getMessage().getChatId();
+        String notice = null;
+
+        try {
+            String[] parts = callbackQuery.getData().split(String.valueOf(CommandRegistry.CALLBACK_SEPARATOR));
+            long nodeId = Long.parseLong(parts[1], ID_RADIX);
+            long afterId = parts.length > 2 ? Long.parseLong(parts[2], ID_RADIX) : 0;
+
+            CategoryTreeLevel level = categoryService.getTreeLevel(nodeId == ROOT_ID ? null : nodeId, afterId, PAGE_SIZE);
+            bot.send(chatId, EditMessageText.builder()
+                    .chatId(String.valueOf(chatId))
+                    .messageId(callbackQuery.getMessage().getMessageId())
+                    .text(formatTitle(level))
+                    .replyMarkup(buildKeyboard(level, afterId))
+                    .build());
+        } catch (CategoryIsNotFound e) {
+            notice = "Категория уже удалена.";
+        } catch (RuntimeException e) {
+            notice = "Произошла ошибка при отображении дерева категорий: " + e.getMessage();
+        }
+
+        bot.send(chatId, AnswerCallbackQuery.builder()
+                .callbackQueryId(callbackQuery.getId())
+                .text(notice)
+                .build());
+    }
+
     /**
      * Обработчик команды.
      *
@@ -53,4 +161,64 @@ public class ViewTreeCommand implements CommandHandler {
      */
     @Override
     public void handle(long chatId, String messageText, TelegramBotUpdatesControl bot, Update update) {}
+
+    /**
+     * Обрезает текст поддерева по последней целой строке, чтобы он уместился в одно сообщение.
+     *
+     * @param text текст поддерева
+     * @return текст не длиннее {@link #MAX_MESSAGE_LENGTH}
+     */
+    public static String truncate(String text) {
+        if (text.length() <= MAX_MESSAGE_LENGTH) {
+            return text;
+        }
+        int end = text.lastIndexOf('\n', MAX_MESSAGE_LENGTH - TRUNCATED.length());
+        return text.substring(0, Math.max(end, 0)) + TRUNCATED;
+    }
+
+    private static String formatTitle(CategoryTreeLevel level) {
+        if (level.isRoot()) {
+            return level.children().isEmpty() ? CategoryTreeSnapshot.EMPTY_TREE : "Дерево категорий:";
+        }
+        return level.children().isEmpty()
+                ? "Категория \"" + level.nodeName() + "\" не содержит подкатегорий."
+                : "Подкатегории \"" + level.nodeName() + "\":";
+    }
+
+    /**
+     * Строит клавиатуру уровня: по кнопке на подкатегорию и строку навигации.
+     */
+    static InlineKeyboardMarkup buildKeyboard(CategoryTreeLevel level, long afterId) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        for (CategoryLevelRow child : level.children()) {
+            rows.add(List.of(button(child.getHasChildren() ? child.getName() + " ▸" : child.getName(),
+                    callbackData(child.getId(), 0))));
+        }
+
+        long nodeId = level.isRoot() ? ROOT_ID : level.nodeId();
+        List<InlineKeyboardButton> navigation = new ArrayList<>();
+        if (!level.isRoot()) {
+            navigation.add(button("⬆ Назад", callbackData(level.parentId() != null ? level.parentId() : ROOT_ID, 0)));
+        }
+        if (afterId > 0) {
+            navigation.add(button("⏮ В начало", callbackData(nodeId, 0)));
+        }
+        if (level.hasMore()) {
+            long lastId = level.children().get(level.children().size() - 1).getId();
+            navigation.add(button("Далее ➡", callbackData(nodeId, lastId)));
+        }
+        if (!navigation.isEmpty()) {
+            rows.add(navigation);
+        }
+        return InlineKeyboardMarkup.builder().keyboard(rows).build();
+    }
+
+    static String callbackData(long nodeId, long afterId) {
+        String data = CALLBACK_PREFIX + CommandRegistry.CALLBACK_SEPARATOR + Long.toString(nodeId, ID_RADIX);
+        return afterId > 0 ? data + CommandRegistry.CALLBACK_SEPARATOR + Long.toString(afterId, ID_RADIX) : data;
+    }
+
+    private static InlineKeyboardButton button(String text, String callbackData) {
+        return InlineKeyboardButton.builder().text(text).callbackData(callbackData).build();
+    }
 }
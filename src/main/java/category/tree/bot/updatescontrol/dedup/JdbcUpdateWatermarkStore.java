@@ -0,0 +1,32 @@
+package category.tree.bot.updatescontrol.dedup;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Отметка принятых обновлений в однострочной таблице {@code update_watermark}.
+ * Отметка только растёт, поэтому запоздавшая запись меньшего значения ничего не портит.
+ */
+@Component
+public class JdbcUpdateWatermarkStore implements UpdateWatermarkStore {
+
+    private static final String SELECT = "SELECT update_id FROM update_watermark WHERE id = 1";
+    private static final String UPDATE = "UPDATE update_watermark SET update_id = GREATEST(update_id, ?) WHERE id = 1";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcUpdateWatermarkStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public long load() {
+        Long updateId = jdbcTemplate.queryForObject(SELECT, Long.class);
+        return updateId != null ? updateId : 0;
+    }
+
+    @Override
+    public void save(long updateId) {
+        jdbcTemplate.update(UPDATE, updateId);
+    }
+}
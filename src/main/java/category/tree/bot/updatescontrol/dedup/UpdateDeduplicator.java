@@ -0,0 +1,130 @@
+package category.tree.bot.updatescontrol.dedup;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * Отсекает повторно доставленные обновления по {@code update_id}: повтор webhook-запроса
+ * или повторную выдачу getUpdates после перезапуска.
+ *
+ * Принятые идентификаторы отмечаются в кольцевом битовом окне из {@code window} последних идентификаторов
+ * (64 тысячи идентификаторов занимают 8 КБ). Идентификаторы старше окна и не больше сохранённой отметки
+ * считаются повторами. Отметкой служит идентификатор, до которого включительно все принятые обновления
+ * уже обработаны, то есть предшествующий наименьшему необработанному. Она сохраняется в {@link UpdateWatermarkStore}
+ * раз в {@code telegram.bot.dedup.flush-interval} и при остановке. Обновление, принятое, но не обработанное
+ * до аварийного завершения, остаётся выше отметки и будет обработано после повторной доставки;
+ * повторно могут выполниться только обновления, обработанные за последний интервал.
+ *
+ * Отметка исходит из того, что Telegram выдаёт обновления по возрастанию идентификатора: обновление,
+ * не доставленное до перезапуска и оказавшееся меньше сохранённой отметки, будет отброшено.
+ */
+@Component
+public class UpdateDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateDeduplicator.class);
+
+    private final UpdateWatermarkStore store;
+    private final long[] words;
+    private final int mask;
+    private final TreeSet<Long> pending = new TreeSet<>();
+
+    private long floor;
+    private long high;
+    private long persisted;
+
+    /**
+     * Конструктор фильтра повторов.
+     *
+     * @param store  Хранилище отметки принятых обновлений.
+     * @param window Размер окна в идентификаторах; округляется вверх до степени двойки, не меньше 64.
+     */
+    public UpdateDeduplicator(UpdateWatermarkStore store,
+                              @Value("${telegram.bot.dedup.window:65536}") int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        int size = Math.max(Long.SIZE, Integer.highestOneBit(window - 1) << 1);
+        this.store = store;
+        this.words = new long[size / Long.SIZE];
+        this.mask = size - 1;
+        this.floor = store.load();
+        this.high = floor;
+        this.persisted = floor;
+        logger.info("Update deduplication window {}, resuming after update {}", size, floor);
+    }
+
+    /**
+     * Отмечает обновление принятым, если оно ещё не встречалось.
+     *
+     * @param updateId Идентификатор обновления.
+     * @return true, если обновление нужно обработать; false, если это повтор.
+     */
+    public synchronized boolean tryAccept(long updateId) {
+        if (updateId <= floor) {
+            return false;
+        }
+        if (updateId > high) {
+            advance(updateId);
+        }
+        int slot = (int) (updateId & mask);
+        long bit = 1L << slot;
+        int word = slot >>> 6;
+        if ((words[word] & bit) != 0) {
+            return false;
+        }
+        words[word] |= bit;
+        pending.add(updateId);
+        return true;
+    }
+
+    /**
+     * Отмечает принятое обновление обработанным, в том числе неудачно. Вызывается после выполнения обновления.
+     *
+     * @param updateId Идентификатор обновления.
+     */
+    public synchronized void complete(long updateId) {
+        pending.remove(updateId);
+    }
+
+    /**
+     * Сохраняет отметку обработанных обновлений, если она выросла.
+     */
+    @Scheduled(fixedDelayString = "${telegram.bot.dedup.flush-interval:1s}")
+    @PreDestroy
+    public void flush() {
+        long current;
+        synchronized (this) {
+            current = pending.isEmpty() ? high : pending.first() - 1;
+            if (current <= persisted) {
+                return;
+            }
+        }
+        store.save(current);
+        synchronized (this) {
+            persisted = Math.max(persisted, current);
+        }
+    }
+
+    /**
+     * Сдвигает окно к новому наибольшему идентификатору, освобождая ячейки выпавших из окна идентификаторов.
+     */
+    private void advance(long updateId) {
+        if (updateId - high > mask) {
+            Arrays.fill(words, 0);
+        } else {
+            for (long id = high + 1; id <= updateId; id++) {
+                int slot = (int) (id & mask);
+                words[slot >>> 6] &= ~(1L << slot);
+            }
+        }
+        high = updateId;
+        floor = Math.max(floor, updateId - mask - 1);
+    }
+}
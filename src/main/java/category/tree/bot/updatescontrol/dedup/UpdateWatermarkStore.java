@@ -0,0 +1,21 @@
+package category.tree.bot.updatescontrol.dedup;
+
+/**
+ * Хранилище отметки обработанных обновлений, переживающее перезапуск бота.
+ */
+public interface UpdateWatermarkStore {
+
+    /**
+     * Возвращает сохранённую отметку.
+     *
+     * @return Наибольший сохранённый {@code update_id} или 0, если обновлений ещё не было.
+     */
+    long load();
+
+    /**
+     * Сохраняет отметку, если она больше уже сохранённой.
+     *
+     * @param updateId Идентификатор, до которого включительно все принятые обновления обработаны.
+     */
+    void save(long updateId);
+}
@@ -0,0 +1,11 @@
+package category.tree.bot.updatescontrol.jobs;
+
+/**
+ * Задание импорта остановлено командой {@code /cancel}.
+ */
+public class ImportCancelledException extends RuntimeException {
+
+    public ImportCancelledException(long jobId) {
+        super("Задание импорта #" + jobId + " отменено");
+    }
+}
@@ -0,0 +1,90 @@
+package category.tree.bot.updatescontrol.jobs;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновое задание импорта категорий одного чата.
+ *
+ * Счётчик строк и признак отмены читаются потоком отчёта о ходе импорта и командой {@code /cancel},
+ * пока задание выполняется в пуле {@link ImportJobManager}.
+ */
+public class ImportJob {
+
+    private final long id;
+    private final long chatId;
+    private final AtomicLong rows = new AtomicLong();
+    private volatile boolean cancelled;
+    private volatile long startedNanos;
+
+    ImportJob(long id, long chatId) {
+        this.id = id;
+        this.chatId = chatId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Отмечает начало обработки строк, от которого считается скорость импорта.
+     */
+    public void start() {
+        startedNanos = System.nanoTime();
+    }
+
+    /**
+     * Учитывает обработанный пакет строк.
+     *
+     * @param count количество строк пакета
+     */
+    public void addRows(long count) {
+        rows.addAndGet(count);
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+
+    /**
+     * @return время обработки строк в секундах или 0, если обработка ещё не началась
+     */
+    public double getElapsedSeconds() {
+        long started = startedNanos;
+        return started == 0 ? 0 : (System.nanoTime() - started) / 1_000_000_000.0;
+    }
+
+    /**
+     * @return средняя скорость импорта в строках в секунду
+     */
+    public long getRowsPerSecond() {
+        double elapsed = getElapsedSeconds();
+        return elapsed > 0 ? Math.round(getRows() / elapsed) : 0;
+    }
+
+    /**
+     * Просит задание остановиться. Задание останавливается на границе пакета строк,
+     * уже сохранённые пакеты остаются в базе.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Прерывает задание, если его отменили. Вызывается перед сохранением очередного пакета строк.
+     *
+     * @throws ImportCancelledException если задание отменено
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new ImportCancelledException(id);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package category.tree.bot.updatescontrol.jobs;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Выполнение заданий импорта в фоне.
+ *
+ * Задания выполняются в ограниченном пуле из {@code telegram.bot.import.threads} потоков с очередью
+ * на {@code telegram.bot.import.queue-capacity} заданий, поэтому долгий импорт не занимает поток обработки
+ * обновлений чата и не мешает пользователю отправлять другие команды, в том числе {@code /cancel}.
+ * У чата может быть только одно задание. Пока задание выполняется, раз в {@code telegram.bot.import.progress-interval}
+ * вызывается {@link Task#reportProgress(ImportJob)}.
+ */
+@Component
+public class ImportJobManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportJobManager.class);
+
+    /**
+     * Работа, выполняемая заданием.
+     */
+    public interface Task {
+
+        /**
+         * Выполняет задание. Перед сохранением каждого пакета строк задание вызывает {@link ImportJob#checkCancelled()}.
+         *
+         * @param job выполняемое задание
+         */
+        void run(ImportJob job);
+
+        /**
+         * Сообщает пользователю о ходе задания. Вызывается из потока отчётов, пока задание выполняется.
+         *
+         * @param job выполняемое задание
+         */
+        void reportProgress(ImportJob job);
+    }
+
+    private final Executor executor;
+    private final ScheduledExecutorService progressScheduler;
+    private final Duration progressInterval;
+    private final Map<Long, ImportJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * Конструктор менеджера заданий.
+     *
+     * @param threads          Количество одновременно выполняемых заданий.
+     * @param queueCapacity    Количество заданий, ожидающих свободного потока.
+     * @param progressInterval Интервал отчётов о ходе задания.
+     */
+    @Autowired
+    public ImportJobManager(@Value("${telegram.bot.import.threads:2}") int threads,
+                            @Value("${telegram.bot.import.queue-capacity:16}") int queueCapacity,
+                            @Value("${telegram.bot.import.progress-interval:2s}") Duration progressInterval) {
+        this(new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity), threadFactory("bot-import-")),
+                Executors.newSingleThreadScheduledExecutor(threadFactory("bot-import-progress-")),
+                progressInterval);
+    }
+
+    /**
+     * Конструктор с заданными пулами, например, для выполнения заданий в вызывающем потоке.
+     *
+     * @param executor          Пул выполнения заданий.
+     * @param progressScheduler Планировщик отчётов о ходе заданий.
+     * @param progressInterval  Интервал отчётов о ходе задания.
+     */
+    public ImportJobManager(Executor executor, ScheduledExecutorService progressScheduler, Duration progressInterval) {
+        this.executor = executor;
+        this.progressScheduler = progressScheduler;
+        this.progressInterval = progressInterval;
+    }
+
+    /**
+     * Создаёт задание чата, ещё не поставленное в пул, чтобы пользователь сразу узнал его номер.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Новое задание или null, если у чата уже есть задание.
+     */
+    public ImportJob create(long chatId) {
+        ImportJob job = new ImportJob(nextId.incrementAndGet(), chatId);
+        return jobs.putIfAbsent(chatId, job) == null ? job : null;
+    }
+
+    /**
+     * Ставит созданное задание в пул.
+     *
+     * @param job  Задание, созданное {@link #create(long)}.
+     * @param task Работа задания.
+     * @return true, если задание принято; false, если очередь заданий заполнена и задание снято.
+     */
+    public boolean start(ImportJob job, Task task) {
+        try {
+            executor.execute(() -> run(job, task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            logger.warn("Import queue is full, rejecting job {} of chat {}", job.getId(), job.getChatId());
+            jobs.remove(job.getChatId(), job);
+            return false;
+        }
+    }
+
+    /**
+     * Возвращает задание чата.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Выполняемое или ожидающее задание или null.
+     */
+    public ImportJob getJob(long chatId) {
+        return jobs.get(chatId);
+    }
+
+    /**
+     * Отменяет задание чата. Задание остановится перед сохранением следующего пакета строк.
+     *
+     * @param chatId Идентификатор чата.
+     * @return Отменённое задание или null, если у чата нет задания.
+     */
+    public ImportJob cancel(long chatId) {
+        ImportJob job = jobs.get(chatId);
+        if (job != null) {
+            job.cancel();
+            logger.info("Import job {} of chat {} cancelled", job.getId(), chatId);
+        }
+        return job;
+    }
+
+    /**
+     * Отменяет все задания и ждёт, пока они остановятся на границе пакета.
+     */
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(ImportJob::cancel);
+        progressScheduler.shutdownNow();
+        if (executor instanceof ExecutorService service) {
+            service.shutdown();
+            try {
+                if (!service.awaitTermination(30, TimeUnit.SECONDS)) {
+                    logger.warn("Import jobs did not stop in time");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run(ImportJob job, Task task) {
+        long interval = progressInterval.toMillis();
+        ScheduledFuture<?> progress = progressScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                task.reportProgress(job);
+            } catch (RuntimeException e) {
+                logger.warn("Cannot report progress of import job {}", job.getId(), e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        try {
+            task.run(job);
+        } catch (ImportCancelledException e) {
+            logger.info("Import job {} of chat {} stopped after {} rows", job.getId(), job.getChatId(), job.getRows());
+        } catch (RuntimeException e) {
+            logger.error("Import job {} of chat {} failed", job.getId(), job.getChatId(), e);
+        } finally {
+            progress.cancel(false);
+            jobs.remove(job.getChatId(), job);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
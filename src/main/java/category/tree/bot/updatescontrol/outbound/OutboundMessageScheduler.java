@@ -0,0 +1,362 @@
+package category.tree.bot.updatescontrol.outbound;
+
+import category.tree.bot.metrics.BotMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
+import org.telegram.telegrambots.meta.api.methods.send.SendAudio;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMediaGroup;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendSticker;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideoNote;
+import org.telegram.telegrambots.meta.api.methods.send.SendVoice;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageMedia;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Асинхронная очередь исходящих запросов к Bot API с учётом ограничений Telegram.
+ *
+ * Отправка ограничивается общей корзиной токенов (около 30 сообщений в секунду на бота)
+ * и корзиной каждого чата. В кластере ограничение Telegram действует на всех узлах вместе,
+ * поэтому узел получает свою долю общей частоты через {@link #setGlobalShare(int)}. Запросы одного чата отправляются строго по очереди.
+ * Через очередь отправляются и обычные запросы, и запросы с загрузкой файлов, например, {@link SendDocument}.
+ * Ответ 429 приостанавливает чат на {@code retry_after} секунд. В группах и каналах Telegram ограничивает
+ * частоту отправки в сам чат, а в личных чатах корзина чата уже не даёт превысить такое ограничение,
+ * поэтому ответ 429 в личный чат считается ограничением всего бота и приостанавливает также общую корзину.
+ * Сетевые ошибки и ошибки 5xx повторяются с экспоненциальной задержкой, остальные ошибки завершают запрос.
+ */
+@Component
+public class OutboundMessageScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundMessageScheduler.class);
+
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+
+    private final ScheduledExecutorService executor;
+    private final TokenBucket globalBucket;
+    private final double globalRate;
+    private volatile int globalShare = 1;
+    private final double perChatRate;
+    private final double perChatBurst;
+    private final int maxAttempts;
+    private final BotMetrics metrics;
+
+    private final ConcurrentHashMap<Long, ChatOutbox> outboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Конструктор очереди исходящих запросов.
+     *
+     * @param globalRate   Допустимое количество запросов в секунду на бота.
+     * @param perChatRate  Допустимое количество запросов в секунду в один чат.
+     * @param perChatBurst Допустимый всплеск запросов в один чат.
+     * @param maxAttempts  Максимальное количество попыток отправки одного запроса.
+     * @param threads      Количество потоков отправки.
+     * @param metrics      Метрики бота.
+     */
+    public OutboundMessageScheduler(@Value("${telegram.bot.outbound.global-rate:30}") double globalRate,
+                                    @Value("${telegram.bot.outbound.per-chat-rate:1}") double perChatRate,
+                                    @Value("${telegram.bot.outbound.per-chat-burst:3}") double perChatBurst,
+                                    @Value("${telegram.bot.outbound.max-attempts:5}") int maxAttempts,
+                                    @Value("${telegram.bot.outbound.threads:4}") int threads,
+                                    BotMetrics metrics) {
+        this.globalBucket = new TokenBucket(globalRate, globalRate, System.nanoTime());
+        this.globalRate = globalRate;
+        this.perChatRate = perChatRate;
+        this.perChatBurst = perChatBurst;
+        this.maxAttempts = maxAttempts;
+        this.metrics = metrics;
+        this.executor = Executors.newScheduledThreadPool(threads, new SenderThreadFactory());
+        this.executor.scheduleAtFixedRate(this::sweepIdleChats,
+                SWEEP_INTERVAL_SECONDS, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ставит запрос в очередь чата.
+     *
+     * @param chatId Идентификатор чата, в который отправляется запрос.
+     * @param method Запрос к Bot API: {@link BotApiMethod} или запрос с загрузкой файла, например, {@link SendDocument}.
+     * @param sender Клиент Bot API, выполняющий запрос.
+     * @return Результат запроса, который завершится после успешной отправки или исчерпания попыток.
+     */
+    public <T extends Serializable> CompletableFuture<T> submit(long chatId, PartialBotApiMethod<T> method, AbsSender sender) {
+        OutboundRequest<T> request = new OutboundRequest<>(method, sender);
+        outboxes.compute(chatId, (id, outbox) -> {
+            if (outbox == null) {
+                outbox = new ChatOutbox(new TokenBucket(perChatBurst, perChatRate, System.nanoTime()));
+            }
+            outbox.requests.add(request);
+            if (!outbox.scheduled) {
+                outbox.scheduled = true;
+                ChatOutbox scheduled = outbox;
+                executor.execute(() -> process(id, scheduled));
+            }
+            return outbox;
+        });
+        return request.result;
+    }
+
+    /**
+     * Делит общую частоту отправки между узлами кластера: узел отправляет не больше {@code global-rate / nodes}
+     * запросов в секунду, чтобы узлы вместе не превысили ограничение Telegram на бота.
+     *
+     * @param nodes Количество живых узлов, не меньше 1.
+     */
+    public synchronized void setGlobalShare(int nodes) {
+        int share = Math.max(1, nodes);
+        if (share == globalShare) {
+            return;
+        }
+        globalShare = share;
+        double rate = globalRate / share;
+        // Вместимость не меньше одного токена, иначе корзина не выдаст ни одного запроса.
+        globalBucket.setRate(Math.max(1, rate), rate, System.nanoTime());
+        logger.info("Outbound global rate set to {} requests/s for {} cluster nodes", rate, share);
+    }
+
+    /**
+     * Возвращает количество чатов, для которых хранится состояние очереди.
+     *
+     * @return Количество чатов.
+     */
+    public int getTrackedChats() {
+        return outboxes.size();
+    }
+
+    /**
+     * Пытается отправить первый запрос из очереди чата.
+     * Если токенов нет, повторная попытка планируется на момент их появления.
+     */
+    private void process(long chatId, ChatOutbox outbox) {
+        OutboundRequest<?> request = outbox.requests.peek();
+        if (request == null) {
+            release(chatId, outbox);
+            return;
+        }
+
+        long now = System.nanoTime();
+        long wait = outbox.bucket.delayNanos(now);
+        if (wait == 0) {
+            wait = globalBucket.tryAcquire(now);
+        }
+        if (wait > 0) {
+            executor.schedule(() -> process(chatId, outbox), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+        outbox.bucket.tryAcquire(now);
+
+        request.attempts++;
+        long start = System.nanoTime();
+        try {
+            execute(request, start);
+        } catch (TelegramApiRequestException e) {
+            Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+            Integer errorCode = e.getErrorCode();
+            boolean serverError = errorCode != null && errorCode >= 500;
+            if (retryAfter != null) {
+                pause(chatId, outbox, retryAfter);
+            }
+            metrics.recordOutbound(request.methodName(),
+                    retryAfter != null ? "rate_limited" : serverError ? "server_error" : "client_error",
+                    System.nanoTime() - start);
+            if (retryAfter != null && request.attempts < maxAttempts) {
+                executor.execute(() -> process(chatId, outbox));
+                return;
+            }
+            if (serverError && request.attempts < maxAttempts) {
+                retryWithBackoff(chatId, outbox, request, e);
+                return;
+            }
+            request.fail(e);
+            logger.error("Error sending request to chatId: {}: {}", chatId, e.getMessage());
+        } catch (TelegramApiException e) {
+            metrics.recordOutbound(request.methodName(), "network", System.nanoTime() - start);
+            if (request.attempts < maxAttempts) {
+                retryWithBackoff(chatId, outbox, request, e);
+                return;
+            }
+            request.fail(e);
+            logger.error("Error sending request to chatId: {}: {}", chatId, e.getMessage(), e);
+        } catch (RuntimeException e) {
+            metrics.recordOutbound(request.methodName(), "client_error", System.nanoTime() - start);
+            request.fail(e);
+            logger.error("Error sending request to chatId: {}: {}", chatId, e.getMessage(), e);
+        }
+
+        outbox.requests.poll();
+        release(chatId, outbox);
+    }
+
+    /**
+     * Выполняет запрос и завершает его результат. Метрика записывается раньше завершения результата,
+     * чтобы вызывающий код, дождавшийся ответа, видел её.
+     */
+    private <T extends Serializable> void execute(OutboundRequest<T> request, long start) throws TelegramApiException {
+        T response = call(request.sender, request.method);
+        metrics.recordOutbound(request.methodName(), "success", System.nanoTime() - start);
+        request.result.complete(response);
+    }
+
+    /**
+     * Выполняет запрос перегрузкой {@link AbsSender#execute}, соответствующей его типу:
+     * запросы с загрузкой файлов не наследуют {@link BotApiMethod} и отправляются отдельными методами.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Serializable> T call(AbsSender sender, PartialBotApiMethod<T> method) throws TelegramApiException {
+        if (method instanceof BotApiMethod<T> apiMethod) {
+            return sender.execute(apiMethod);
+        } else if (method instanceof SendDocument document) {
+            return (T) sender.execute(document);
+        } else if (method instanceof SendPhoto photo) {
+            return (T) sender.execute(photo);
+        } else if (method instanceof SendVideo video) {
+            return (T) sender.execute(video);
+        } else if (method instanceof SendAudio audio) {
+            return (T) sender.execute(audio);
+        } else if (method instanceof SendVoice voice) {
+            return (T) sender.execute(voice);
+        } else if (method instanceof SendAnimation animation) {
+            return (T) sender.execute(animation);
+        } else if (method instanceof SendSticker sticker) {
+            return (T) sender.execute(sticker);
+        } else if (method instanceof SendVideoNote videoNote) {
+            return (T) sender.execute(videoNote);
+        } else if (method instanceof SendMediaGroup mediaGroup) {
+            return (T) sender.execute(mediaGroup);
+        } else if (method instanceof EditMessageMedia editMedia) {
+            return (T) sender.execute(editMedia);
+        }
+        throw new IllegalArgumentException("Unsupported Bot API method: " + method.getMethod());
+    }
+
+    /**
+     * Приостанавливает отправку в чат по {@code retry_after}, а для личного чата — и отправку всего бота.
+     */
+    private void pause(long chatId, ChatOutbox outbox, int retryAfter) {
+        long now = System.nanoTime();
+        long pause = TimeUnit.SECONDS.toNanos(retryAfter);
+        outbox.bucket.pause(now, pause);
+        if (isChatLimited(chatId)) {
+            logger.warn("Rate limited by Telegram for chatId: {}, retry after {} s", chatId, retryAfter);
+        } else {
+            logger.warn("Rate limited by Telegram for the bot after sending to chatId: {}, retry after {} s",
+                    chatId, retryAfter);
+            globalBucket.pause(now, pause);
+        }
+    }
+
+    /**
+     * Группы и каналы имеют отрицательные идентификаторы и собственное ограничение частоты отправки.
+     */
+    private static boolean isChatLimited(long chatId) {
+        return chatId < 0;
+    }
+
+    private void retryWithBackoff(long chatId, ChatOutbox outbox, OutboundRequest<?> request, TelegramApiException e) {
+        long backoff = Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << Math.min(request.attempts - 1, 16));
+        logger.warn("Retrying request to chatId: {} in {} ms after error: {}",
+                chatId, TimeUnit.NANOSECONDS.toMillis(backoff), e.getMessage());
+        executor.schedule(() -> process(chatId, outbox), backoff, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Продолжает обработку очереди чата или снимает отметку о запланированной обработке, если очередь пуста.
+     */
+    private void release(long chatId, ChatOutbox outbox) {
+        outboxes.compute(chatId, (id, current) -> {
+            if (outbox.requests.isEmpty()) {
+                outbox.scheduled = false;
+            } else {
+                executor.execute(() -> process(id, outbox));
+            }
+            return current;
+        });
+    }
+
+    /**
+     * Удаляет состояние чатов, у которых нет запросов и полностью восстановилась корзина токенов.
+     */
+    private void sweepIdleChats() {
+        long now = System.nanoTime();
+        for (Long chatId : outboxes.keySet()) {
+            outboxes.computeIfPresent(chatId, (id, outbox) ->
+                    !outbox.scheduled && outbox.requests.isEmpty() && outbox.bucket.isFull(now) ? null : outbox);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Очередь и корзина токенов одного чата. Флаг {@code scheduled} меняется только внутри {@code compute}.
+     */
+    private static final class ChatOutbox {
+        private final Queue<OutboundRequest<?>> requests = new ConcurrentLinkedQueue<>();
+        private final TokenBucket bucket;
+        private boolean scheduled;
+
+        private ChatOutbox(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Запрос к Bot API вместе с клиентом, результатом и счётчиком попыток.
+     */
+    private static final class OutboundRequest<T extends Serializable> {
+        private final PartialBotApiMethod<T> method;
+        private final AbsSender sender;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private int attempts;
+
+        private OutboundRequest(PartialBotApiMethod<T> method, AbsSender sender) {
+            this.method = method;
+            this.sender = sender;
+        }
+
+        private void fail(Throwable e) {
+            result.completeExceptionally(e);
+        }
+
+        private String methodName() {
+            return method.getMethod();
+        }
+    }
+
+    private static final class SenderThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bot-outbound-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package category.tree.bot.updatescontrol.outbound;
+
+/**
+ * Корзина токенов для ограничения частоты отправки сообщений.
+ * Корзина вмещает {@code capacity} токенов и пополняется со скоростью {@code ratePerSecond};
+ * каждая отправка забирает один токен.
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private double capacity;
+    private double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+    private long pausedUntil;
+
+    /**
+     * @param capacity      Максимальное количество токенов, то есть допустимый всплеск отправок.
+     * @param ratePerSecond Скорость пополнения, токенов в секунду.
+     * @param now           Текущее время в наносекундах.
+     */
+    public TokenBucket(double capacity, double ratePerSecond, long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.tokens = capacity;
+        this.lastRefill = now;
+        this.pausedUntil = now;
+    }
+
+    /**
+     * Пытается забрать токен.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return 0, если токен получен, иначе время ожидания следующего токена в наносекундах.
+     */
+    public synchronized long tryAcquire(long now) {
+        long wait = delayNanos(now);
+        if (wait == 0) {
+            tokens -= 1;
+        }
+        return wait;
+    }
+
+    /**
+     * Возвращает время до появления токена, не забирая его.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return 0, если токен доступен, иначе время ожидания в наносекундах.
+     */
+    public synchronized long delayNanos(long now) {
+        if (now - pausedUntil < 0) {
+            return pausedUntil - now;
+        }
+        refill(now);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Проверяет, что корзина полностью пополнена, то есть её состояние можно забыть без потери ограничения.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return true, если корзина полна.
+     */
+    public synchronized boolean isFull(long now) {
+        if (now - pausedUntil < 0) {
+            return false;
+        }
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    /**
+     * Приостанавливает выдачу токенов, например, по {@code retry_after} из ответа Telegram.
+     *
+     * @param now   Текущее время в наносекундах.
+     * @param nanos Длительность паузы в наносекундах.
+     */
+    public synchronized void pause(long now, long nanos) {
+        if (now + nanos - pausedUntil > 0) {
+            pausedUntil = now + nanos;
+        }
+        tokens = 1;
+        lastRefill = pausedUntil;
+    }
+
+    /**
+     * Меняет вместимость и скорость пополнения, сохраняя накопленные токены в пределах новой вместимости.
+     *
+     * @param capacity      Новая вместимость.
+     * @param ratePerSecond Новая скорость пополнения, токенов в секунду.
+     * @param now           Текущее время в наносекундах.
+     */
+    public synchronized void setRate(double capacity, double ratePerSecond, long now) {
+        if (now - pausedUntil >= 0) {
+            refill(now);
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.tokens = Math.min(tokens, capacity);
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefill = now;
+        }
+    }
+}
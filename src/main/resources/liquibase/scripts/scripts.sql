@@ -1 +1,73 @@
--- liquibase formatted sql
\ No newline at end of file
+-- liquibase formatted sql
+
+-- changeset category-tree-bot:1
+CREATE TABLE IF NOT EXISTS categories (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE,
+    parent_id BIGINT REFERENCES categories (id)
+);
+
+-- changeset category-tree-bot:2
+CREATE INDEX IF NOT EXISTS idx_categories_parent_id ON categories (parent_id, id);
+
+-- changeset category-tree-bot:3
+CREATE TABLE IF NOT EXISTS category_closure (
+    ancestor_id BIGINT NOT NULL REFERENCES categories (id) ON DELETE CASCADE,
+    descendant_id BIGINT NOT NULL REFERENCES categories (id) ON DELETE CASCADE,
+    depth INT NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+CREATE INDEX IF NOT EXISTS idx_category_closure_descendant ON category_closure (descendant_id, depth);
+
+-- changeset category-tree-bot:4
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+WITH RECURSIVE paths (ancestor_id, descendant_id, depth) AS (
+    SELECT id, id, 0
+    FROM categories
+    UNION ALL
+    SELECT p.ancestor_id, c.id, p.depth + 1
+    FROM paths p
+    JOIN categories c ON c.parent_id = p.descendant_id
+)
+SELECT ancestor_id, descendant_id, depth
+FROM paths;
+
+-- changeset category-tree-bot:5
+CREATE TABLE IF NOT EXISTS chat_states (
+    chat_id BIGINT PRIMARY KEY,
+    state VARCHAR(32) NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
+CREATE INDEX IF NOT EXISTS idx_chat_states_updated_at ON chat_states (updated_at);
+
+-- changeset category-tree-bot:6
+CREATE TABLE IF NOT EXISTS bot_updates (
+    update_id BIGINT PRIMARY KEY,
+    chat_id BIGINT NOT NULL,
+    shard INT NOT NULL,
+    payload TEXT NOT NULL,
+    received_at TIMESTAMP NOT NULL,
+    processed_at TIMESTAMP
+);
+CREATE INDEX IF NOT EXISTS idx_bot_updates_shard ON bot_updates (shard, update_id);
+CREATE TABLE IF NOT EXISTS bot_nodes (
+    node_id VARCHAR(64) PRIMARY KEY,
+    heartbeat_at TIMESTAMP NOT NULL
+);
+CREATE TABLE IF NOT EXISTS bot_cluster_state (
+    id INT PRIMARY KEY,
+    poll_offset BIGINT NOT NULL,
+    tree_version BIGINT NOT NULL
+);
+INSERT INTO bot_cluster_state (id, poll_offset, tree_version) VALUES (1, 0, 0);
+
+-- changeset category-tree-bot:7
+CREATE TABLE IF NOT EXISTS update_watermark (
+    id INT PRIMARY KEY,
+    update_id BIGINT NOT NULL
+);
+INSERT INTO update_watermark (id, update_id) VALUES (1, 0);
+
+-- changeset category-tree-bot:8
+ALTER TABLE bot_updates ADD COLUMN IF NOT EXISTS started_at TIMESTAMP;
+ALTER TABLE bot_cluster_state ADD COLUMN IF NOT EXISTS purged_update_id BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,94 @@
+package category.tree.bot.bulk;
+
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.service.services.CategoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class CategoryBulkImporterTest {
+
+    private CategoryService categoryService;
+    private CategoryBulkImporter importer;
+    private final List<List<CategoryImportRow>> batches = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        categoryService = mock(CategoryService.class);
+        importer = new CategoryBulkImporter(categoryService, new ObjectMapper(), 2);
+        when(categoryService.importCategories(anyList(), any())).thenAnswer(invocation -> {
+            List<CategoryImportRow> rows = List.copyOf(invocation.getArgument(0));
+            Consumer<CategoryImportConflict> listener = invocation.getArgument(1);
+            batches.add(rows);
+            for (CategoryImportRow row : rows) {
+                if (row.name().startsWith("Дубль")) {
+                    listener.accept(new CategoryImportConflict(row.rowNumber(), row.name(), "категория уже существует"));
+                }
+            }
+            return CategoryImportReport.empty();
+        });
+    }
+
+    @Test
+    void importStream_ShouldApplyBatchesAndReportItemsInInputOrder() throws IOException {
+        String output = importStream("[{\"name\":\"A\"},{\"name\":\"\"},{\"name\":\"Дубль\"},{\"name\":\"B\",\"parent\":\"A\"},{\"name\":\"C\"}]");
+
+        assertEquals(List.of(
+                List.of(new CategoryImportRow(1, "A", null)),
+                List.of(new CategoryImportRow(3, "Дубль", null), new CategoryImportRow(4, "B", "A")),
+                List.of(new CategoryImportRow(5, "C", null))), batches);
+        assertEquals("""
+                {"line":1,"name":"A","status":"CREATED"}
+                {"line":2,"status":"CONFLICT","reason":"не указано имя категории"}
+                {"line":3,"name":"Дубль","status":"CONFLICT","reason":"категория уже существует"}
+                {"line":4,"name":"B","status":"CREATED"}
+                {"line":5,"name":"C","status":"CREATED"}
+                """, output);
+    }
+
+    @Test
+    void importStream_ShouldReportFailedBatchAndContinue() throws IOException {
+        when(categoryService.importCategories(argThat(rows -> rows.get(0).name().equals("A")), any()))
+                .thenThrow(new IllegalStateException("duplicate key"));
+
+        String output = importStream("{\"name\":\"A\"}\n{\"name\":\"B\"}\n{\"name\":\"C\"}\n");
+
+        List<String> lines = output.lines().toList();
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"status\":\"FAILED\""), lines.get(0));
+        assertTrue(lines.get(1).contains("\"status\":\"FAILED\""), lines.get(1));
+        assertEquals("{\"line\":3,\"name\":\"C\",\"status\":\"CREATED\"}", lines.get(2),
+                "Ошибка пакета не должна прерывать загрузку следующих пакетов");
+    }
+
+    @Test
+    void importStream_MalformedInput_ShouldApplyReadItemsAndReportError() throws IOException {
+        String output = importStream("{\"name\":\"A\"}\n{\"name\":");
+
+        List<String> lines = output.lines().toList();
+        assertEquals(2, lines.size());
+        assertEquals("{\"line\":1,\"name\":\"A\",\"status\":\"CREATED\"}", lines.get(0));
+        assertTrue(lines.get(1).startsWith("{\"line\":2,\"status\":\"FAILED\""), lines.get(1));
+    }
+
+    private String importStream(String json) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        importer.importStream(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), output);
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package category.tree.bot.bulk;
+
+import category.tree.bot.dto.CategoryImportRow;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonCategoryReaderTest {
+
+    private final JsonCategoryReader reader = new JsonCategoryReader();
+
+    @Test
+    void read_ShouldAcceptNdjsonAndArray() throws IOException {
+        List<CategoryImportRow> expected = List.of(
+                new CategoryImportRow(1, "Фрукты", null),
+                new CategoryImportRow(2, "Яблоки", "Фрукты"),
+                new CategoryImportRow(3, null, null));
+
+        assertEquals(expected, read("{\"name\":\"Фрукты\",\"parent\":\"\"}\n"
+                + "{\"name\":\" Яблоки \",\"parent\":\"Фрукты\",\"extra\":{\"a\":[1,2]}}\n"
+                + "{\"parent\":null}\n"));
+        assertEquals(expected, read("[{\"name\":\"Фрукты\"},{\"parent\":\"Фрукты\",\"name\":\"Яблоки\"},{\"name\":\" \"}]"));
+    }
+
+    @Test
+    void read_ShouldPassItemsBeforeMalformedElement() {
+        List<CategoryImportRow> rows = new ArrayList<>();
+
+        IOException e = assertThrows(IOException.class, () -> reader.read(stream("[{\"name\":\"A\"},42]"), rows::add));
+
+        assertEquals(List.of(new CategoryImportRow(1, "A", null)), rows);
+        assertTrue(e.getMessage().contains("2"), "Сообщение должно указывать номер элемента");
+        assertThrows(IOException.class, () -> reader.read(stream("[{\"name\":\"A\"}"), row -> { }));
+    }
+
+    @Test
+    void read_LargeStream_ShouldNotBufferInput() throws IOException {
+        int count = 200_000;
+        InputStream input = new InputStream() {
+            private final byte[] line = "{\"name\":\"Категория\",\"parent\":\"Родитель\"}\n".getBytes(StandardCharsets.UTF_8);
+            private long position;
+
+            @Override
+            public int read() {
+                if (position >= (long) line.length * count) {
+                    return -1;
+                }
+                return line[(int) (position++ % line.length)] & 0xff;
+            }
+        };
+        long[] seen = {0};
+
+        long read = reader.read(input, row -> seen[0]++);
+
+        assertEquals(count, read);
+        assertEquals(count, seen[0]);
+    }
+
+    private List<CategoryImportRow> read(String json) throws IOException {
+        List<CategoryImportRow> rows = new ArrayList<>();
+        reader.read(stream(json), rows::add);
+        return rows;
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
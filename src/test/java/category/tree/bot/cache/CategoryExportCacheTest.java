@@ -0,0 +1,95 @@
+package category.tree.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryExportCacheTest {
+
+    private final CategoryExportCache cache = new CategoryExportCache();
+
+    @Test
+    void getOrCreate_ConcurrentRequests_ShouldGenerateOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger generated = new AtomicInteger();
+        CategoryExportCache.Generator generator = () -> {
+            generated.incrementAndGet();
+            started.countDown();
+            await(release);
+            return tempFile();
+        };
+
+        CompletableFuture<CategoryExportCache.Artifact> first = CompletableFuture.supplyAsync(() -> create(1, generator));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<CategoryExportCache.Artifact> second = CompletableFuture.supplyAsync(() -> create(1, generator));
+        release.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, generated.get());
+        first.get().getFile().deleteOnExit();
+    }
+
+    @Test
+    void getOrCreate_WhileNewVersionIsGenerated_ShouldReturnBuiltVersionWithoutWaiting() throws Exception {
+        CategoryExportCache.Artifact built = cache.getOrCreate(1, CategoryExportCacheTest::tempFile);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<CategoryExportCache.Artifact> newer = CompletableFuture.supplyAsync(() -> create(2, () -> {
+            started.countDown();
+            await(release);
+            return tempFile();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        try {
+            assertSame(built, cache.getOrCreate(1, () -> fail("Построенная версия не должна строиться заново")));
+        } finally {
+            release.countDown();
+        }
+        assertEquals(2, newer.get(5, TimeUnit.SECONDS).getVersion());
+        assertTrue(built.getFile().exists(), "Файл предыдущей версии удаляется только при следующей замене");
+        built.getFile().deleteOnExit();
+        newer.get().getFile().deleteOnExit();
+    }
+
+    @Test
+    void getOrCreate_GenerationFailure_ShouldAllowRetry() throws Exception {
+        assertThrows(IOException.class, () -> cache.getOrCreate(1, () -> {
+            throw new IOException("диск заполнен");
+        }));
+
+        CategoryExportCache.Artifact artifact = cache.getOrCreate(1, CategoryExportCacheTest::tempFile);
+
+        assertTrue(artifact.getFile().exists());
+        artifact.getFile().deleteOnExit();
+    }
+
+    private CategoryExportCache.Artifact create(long version, CategoryExportCache.Generator generator) {
+        try {
+            return cache.getOrCreate(version, generator);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static File tempFile() throws IOException {
+        return File.createTempFile("categories_tree", ".xlsx");
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package category.tree.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryNameIndexTest {
+
+    private static final int LARGE_INDEX_SIZE = 300_000;
+    private static final int SEARCHES = 10_000;
+
+    @Test
+    void search_ShouldMatchPrefixIgnoringCaseInAlphabeticalOrder() {
+        CategoryNameIndex index = CategoryNameIndex.of(List.of("Искусство", "Кино", "Ёлки", "Кинетика", "Хоррор"));
+
+        assertEquals(List.of("Кинетика", "Кино"), index.search("кин", 10));
+        assertEquals(List.of("Ёлки"), index.search("ел", 10));
+        assertEquals(List.of("Хоррор"), index.search("  ХОР", 10));
+        assertEquals(1, index.search("ки", 1).size());
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("театр", 10).isEmpty());
+    }
+
+    @Test
+    void addAndRemove_ShouldChangeSearchResultsWithoutRebuild() {
+        CategoryNameIndex index = CategoryNameIndex.of(List.of("Кино", "Музыка"));
+
+        index.add("Кинетика");
+        index.remove("Кино");
+
+        assertEquals(List.of("Кинетика"), index.search("кин", 10));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void search_LargeIndex_ShouldStaySubMillisecondWhileChanging() {
+        List<String> names = new ArrayList<>(LARGE_INDEX_SIZE);
+        for (int id = 1; id <= LARGE_INDEX_SIZE; id++) {
+            names.add("Категория" + id);
+        }
+        CategoryNameIndex index = CategoryNameIndex.of(names);
+        index.search("категория1", 10);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < SEARCHES; i++) {
+            index.add("Новая" + i);
+            found += index.search("категория" + (i % 1000 + 1), 10).size();
+        }
+        long averageMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / SEARCHES;
+
+        assertEquals(SEARCHES * 10, found);
+        assertEquals(LARGE_INDEX_SIZE + SEARCHES, index.size());
+        assertTrue(averageMicros < 1000, "Среднее время изменения и поиска: " + averageMicros + " мкс");
+    }
+}
@@ -0,0 +1,69 @@
+package category.tree.bot.cache;
+
+import category.tree.bot.repository.CategoryTreeRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryTreeCacheTest {
+
+    @Test
+    void searchNames_ShouldApplyChangesToIndexWithoutReloadingTree() {
+        CategoryTreeCache cache = new CategoryTreeCache();
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(List.of("Кино"), cache.searchNames("ки", 10, version -> load(loads, version, "Кино")));
+
+        cache.invalidateAdded(List.of("Кинетика"));
+        cache.invalidateRemoved(List.of("Кино"));
+
+        assertEquals(List.of("Кинетика"), cache.searchNames("ки", 10, version -> load(loads, version, "Кино")));
+        assertEquals(1, loads.get(), "Индекс не должен перестраиваться после известных изменений");
+        assertNull(cache.getIfCurrent(), "Снимок дерева после изменений устарел");
+    }
+
+    @Test
+    void searchNames_ShouldRebuildIndexAfterUnknownChange() {
+        CategoryTreeCache cache = new CategoryTreeCache();
+        AtomicInteger loads = new AtomicInteger();
+        cache.searchNames("ки", 10, version -> load(loads, version, "Кино"));
+
+        cache.markStale();
+
+        assertEquals(List.of("Кинетика"), cache.searchNames("ки", 10, version -> load(loads, version, "Кинетика")));
+        assertEquals(2, loads.get());
+        assertNotNull(cache.getIfCurrent());
+    }
+
+    private static CategoryTreeSnapshot load(AtomicInteger loads, long version, String name) {
+        loads.incrementAndGet();
+        return CategoryTreeSnapshot.fromRows(version, List.of(row(name)));
+    }
+
+    private static CategoryTreeRow row(String name) {
+        return new CategoryTreeRow() {
+            @Override
+            public Long getId() {
+                return 1L;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Long getParentId() {
+                return null;
+            }
+
+            @Override
+            public int getDepth() {
+                return 0;
+            }
+        };
+    }
+}
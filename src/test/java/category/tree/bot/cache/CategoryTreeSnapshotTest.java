@@ -0,0 +1,113 @@
+package category.tree.bot.cache;
+
+import category.tree.bot.repository.CategoryTreeRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CategoryTreeSnapshotTest {
+
+    private static final int LARGE_TREE_SIZE = 300_000;
+
+    @Test
+    void walk_ShouldPagePreorderWithinSubtreeAndDepth() {
+        CategoryTreeSnapshot snapshot = CategoryTreeSnapshot.fromRows(1, List.of(
+                row(1, "Искусство", null, 0),
+                row(6, "Наука", null, 0),
+                row(2, "Кино", 1L, 1),
+                row(3, "Музыка", 1L, 1),
+                row(7, "Физика", 6L, 1),
+                row(4, "Хоррор", 2L, 2),
+                row(5, "Джаз", 3L, 2)));
+
+        assertEquals(List.of("Искусство", "Кино", "Хоррор", "Музыка", "Джаз", "Наука", "Физика"),
+                names(snapshot.walk(null, Integer.MAX_VALUE, null, 100)));
+        assertEquals(List.of("Искусство", "Кино", "Музыка", "Наука", "Физика"), names(snapshot.walk(null, 1, null, 100)));
+
+        CategoryTreeNode art = snapshot.findByName("Искусство").orElseThrow();
+        List<CategoryTreeNode> first = snapshot.walk(art, Integer.MAX_VALUE, null, 2);
+        assertEquals(List.of("Искусство", "Кино"), names(first));
+        List<CategoryTreeNode> second = snapshot.walk(art, Integer.MAX_VALUE, first.get(1), 2);
+        assertEquals(List.of("Хоррор", "Музыка"), names(second));
+        assertEquals(List.of("Джаз"), names(snapshot.walk(art, Integer.MAX_VALUE, second.get(1), 2)),
+                "Обход поддерева не должен выходить за его корень");
+
+        CategoryTreeNode physics = snapshot.findByName("Физика").orElseThrow();
+        assertThrows(IllegalArgumentException.class, () -> snapshot.walk(art, Integer.MAX_VALUE, physics, 2));
+    }
+
+    @Test
+    void walk_WideTree_ShouldPageFromAnyPositionQuickly() {
+        List<CategoryTreeRow> rows = new ArrayList<>(LARGE_TREE_SIZE);
+        rows.add(row(1, "Корень", null, 0));
+        for (long id = 2; id <= LARGE_TREE_SIZE; id++) {
+            rows.add(row(id, "Категория" + id, 1L, 1));
+        }
+        CategoryTreeSnapshot snapshot = CategoryTreeSnapshot.fromRows(1, rows);
+        CategoryTreeNode root = snapshot.findByName("Корень").orElseThrow();
+
+        long start = System.nanoTime();
+        CategoryTreeNode cursor = null;
+        int pages = 0;
+        int nodes = 0;
+        do {
+            List<CategoryTreeNode> page = snapshot.walk(root, 1, cursor, 1000);
+            nodes += page.size();
+            pages++;
+            cursor = page.size() == 1000 ? page.get(page.size() - 1) : null;
+        } while (cursor != null);
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(LARGE_TREE_SIZE, nodes);
+        assertEquals(LARGE_TREE_SIZE / 1000 + 1, pages);
+        assertTrue(millis < 5000, "Обход широкого дерева страницами занял " + millis + " мс");
+    }
+
+    private static List<String> names(List<CategoryTreeNode> nodes) {
+        return nodes.stream().map(CategoryTreeNode::getName).toList();
+    }
+
+    private static CategoryTreeRow row(long id, String name, Long parentId, int depth) {
+        return new CategoryTreeRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Long getParentId() {
+                return parentId;
+            }
+
+            @Override
+            public int getDepth() {
+                return depth;
+            }
+        };
+    }
+
+    @Test
+    void render_ShouldRenderOnlySubtreeUpToDepth() {
+        CategoryTreeSnapshot snapshot = CategoryTreeSnapshot.fromRows(1, List.of(
+                row(1, "Искусство", null, 0),
+                row(6, "Наука", null, 0),
+                row(2, "Кино", 1L, 1),
+                row(4, "Хоррор", 2L, 2)));
+        CategoryTreeNode art = snapshot.findByName("Искусство").orElseThrow();
+        CategoryTreeNode film = snapshot.findByName("Кино").orElseThrow();
+
+        assertEquals("--Кино\n  --Хоррор\n", snapshot.render(film, Integer.MAX_VALUE), "Отступ отсчитывается от корня поддерева");
+        assertEquals("--Искусство\n  --Кино\n", snapshot.render(art, 1));
+        assertEquals("--Искусство\n--Наука\n", snapshot.render(null, 0));
+        assertSame(snapshot.render(), snapshot.render(null, Integer.MAX_VALUE));
+    }
+}
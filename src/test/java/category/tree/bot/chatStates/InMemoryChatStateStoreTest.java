@@ -0,0 +1,120 @@
+package category.tree.bot.chatStates;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryChatStateStoreTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void put_ShouldStoreAndRemoveState() {
+        InMemoryChatStateStore store = new InMemoryChatStateStore(100, Duration.ofMinutes(30), clock::get);
+
+        assertEquals(MainChatStates.DEFAULT, store.get(1L));
+        store.put(1L, MainChatStates.ADD_ELEMENT);
+        store.put(2L, MainChatStates.UPLOAD_FILE);
+        store.put(1L, MainChatStates.SEARCH);
+
+        assertEquals(MainChatStates.SEARCH, store.get(1L));
+        assertEquals(MainChatStates.UPLOAD_FILE, store.get(2L));
+        assertEquals(2, store.size());
+
+        store.remove(1L);
+        store.put(2L, MainChatStates.DEFAULT);
+        assertEquals(MainChatStates.DEFAULT, store.get(1L));
+        assertEquals(MainChatStates.DEFAULT, store.get(2L));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void get_AfterTtl_ShouldReturnDefault() {
+        InMemoryChatStateStore store = new InMemoryChatStateStore(100, Duration.ofMinutes(30), clock::get);
+        store.put(1L, MainChatStates.ADD_ELEMENT);
+        store.put(2L, MainChatStates.REMOVE_ELEMENT);
+
+        advance(29);
+        store.put(2L, MainChatStates.REMOVE_ELEMENT);
+        assertEquals(MainChatStates.ADD_ELEMENT, store.get(1L));
+
+        advance(2);
+        assertEquals(MainChatStates.DEFAULT, store.get(1L), "Состояние брошенной команды должно истечь");
+        assertEquals(MainChatStates.REMOVE_ELEMENT, store.get(2L), "Изменение состояния продлевает его срок жизни");
+
+        advance(30);
+        assertEquals(1, store.purgeExpired());
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void put_WhenFull_ShouldEvictOldestAndStayWithinBound() {
+        InMemoryChatStateStore store = new InMemoryChatStateStore(100, Duration.ofMinutes(30), clock::get);
+        for (long chatId = 0; chatId < 100; chatId++) {
+            store.put(chatId, MainChatStates.ADD_ELEMENT);
+        }
+        advance(1);
+        for (long chatId = 100; chatId < 1000; chatId++) {
+            store.put(chatId, MainChatStates.UPLOAD_FILE);
+            assertEquals(MainChatStates.UPLOAD_FILE, store.get(chatId));
+        }
+
+        assertEquals(100, store.size());
+        long oldSurvivors = 0;
+        for (long chatId = 0; chatId < 100; chatId++) {
+            if (store.get(chatId) != MainChatStates.DEFAULT) {
+                oldSurvivors++;
+            }
+        }
+        assertEquals(0, oldSurvivors, "Первыми вытесняются давно изменённые состояния");
+    }
+
+    @Test
+    void operations_ShouldMatchHashMap() {
+        InMemoryChatStateStore store = new InMemoryChatStateStore(10_000, Duration.ofMinutes(30), clock::get);
+        Map<Long, MainChatStates> expected = new HashMap<>();
+        MainChatStates[] states = MainChatStates.values();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long chatId = random.nextInt(5_000) - 2_500;
+            if (random.nextInt(3) == 0) {
+                store.remove(chatId);
+                expected.remove(chatId);
+            } else {
+                MainChatStates state = states[random.nextInt(states.length)];
+                store.put(chatId, state);
+                if (state == MainChatStates.DEFAULT) {
+                    expected.remove(chatId);
+                } else {
+                    expected.put(chatId, state);
+                }
+            }
+        }
+
+        assertEquals(expected.size(), store.size());
+        for (long chatId = -2_500; chatId < 2_500; chatId++) {
+            assertEquals(expected.getOrDefault(chatId, MainChatStates.DEFAULT), store.get(chatId), "chatId " + chatId);
+        }
+    }
+
+    @Test
+    void capacity_ForMillionChats_ShouldBePreallocatedAndCompact() {
+        InMemoryChatStateStore store = new InMemoryChatStateStore(1_000_000, Duration.ofMinutes(30));
+
+        long bytes = store.capacity() * (Long.BYTES + Byte.BYTES + Integer.BYTES);
+        assertTrue(store.capacity() >= 1_000_000 / 0.75);
+        assertTrue(bytes < 32L * 1024 * 1024, "Хранилище на миллион чатов занимает " + bytes + " байт");
+    }
+
+    private void advance(long minutes) {
+        clock.addAndGet(TimeUnit.MINUTES.toNanos(minutes));
+    }
+}
@@ -0,0 +1,62 @@
+package category.tree.bot.chatStates;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:chat-states;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class JdbcChatStateStoreTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void put_ShouldInsertUpdateAndRemoveState() {
+        JdbcChatStateStore store = storeAt(NOW);
+
+        store.put(1L, MainChatStates.ADD_ELEMENT);
+        store.put(1L, MainChatStates.UPLOAD_FILE);
+        store.put(2L, MainChatStates.SEARCH);
+
+        assertEquals(MainChatStates.UPLOAD_FILE, store.get(1L));
+        assertEquals(2, store.size());
+
+        store.put(1L, MainChatStates.DEFAULT);
+        store.remove(2L);
+        assertEquals(MainChatStates.DEFAULT, store.get(1L));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void get_ShouldSurviveNewInstanceUntilTtl() {
+        storeAt(NOW).put(1L, MainChatStates.REMOVE_ELEMENT);
+
+        assertEquals(MainChatStates.REMOVE_ELEMENT, storeAt(NOW.plus(Duration.ofMinutes(29))).get(1L),
+                "Состояние должно пережить перезапуск бота");
+
+        JdbcChatStateStore later = storeAt(NOW.plus(Duration.ofMinutes(31)));
+        assertEquals(MainChatStates.DEFAULT, later.get(1L));
+        assertEquals(1, later.purgeExpired());
+        assertEquals(0, later.size());
+    }
+
+    private JdbcChatStateStore storeAt(Instant instant) {
+        return new JdbcChatStateStore(jdbcTemplate, Duration.ofMinutes(30), Clock.fixed(instant, ZoneOffset.UTC));
+    }
+}
@@ -0,0 +1,392 @@
+package category.tree.bot.cluster;
+
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@JdbcTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster-coordinator;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ClusterCoordinatorTest {
+
+    private static final int SHARDS = 8;
+    private static final Duration NODE_TIMEOUT = Duration.ofSeconds(10);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T12:00:00Z"));
+    private final LockServer lockServer = new LockServer();
+    private final List<Processed> processed = new ArrayList<>();
+    private ClusterUpdateQueue queue;
+    private int nextUpdateId = 1;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ClusterUpdateQueue(jdbcTemplate, transactionTemplate, SHARDS);
+    }
+
+    @Test
+    void nodes_ShouldSplitShardsAndProcessEachUpdateOnceInChatOrder() {
+        Node a = new Node("a");
+        Node b = new Node("b");
+
+        a.coordinator.tick();
+        assertEquals(SHARDS, a.coordinator.getOwnedShards().size());
+        b.coordinator.tick();
+        a.coordinator.tick();
+        b.coordinator.tick();
+
+        Set<Integer> shardsA = a.coordinator.getOwnedShards();
+        Set<Integer> shardsB = b.coordinator.getOwnedShards();
+        assertEquals(SHARDS / 2, shardsA.size());
+        assertEquals(SHARDS / 2, shardsB.size());
+        assertTrue(shardsA.stream().noneMatch(shardsB::contains), "Шард не должен принадлежать двум узлам");
+        verify(a.outbound).setGlobalShare(2);
+        verify(b.outbound, atLeastOnce()).setGlobalShare(2);
+
+        enqueueMessages(20, 3);
+        a.coordinator.pollOnce();
+        b.coordinator.pollOnce();
+
+        assertEquals(60, processed.size());
+        assertEquals(60, processed.stream().map(Processed::updateId).distinct().count(),
+                "Каждое обновление должно быть обработано ровно один раз");
+        assertChatsProcessedInOrderByOneNode();
+        assertTrue(queue.fetchPending(allShards(), 100).isEmpty());
+    }
+
+    @Test
+    void shard_ShouldBeReleasedOnlyAfterInFlightUpdatesAreProcessed() {
+        Node a = new Node("a");
+        a.holdCallbacks = true;
+        a.coordinator.tick();
+
+        long chatId = 7L;
+        int shard = queue.shardOf(chatId);
+        enqueue(chatId, "/viewTree");
+        assertEquals(1, a.coordinator.pollOnce());
+
+        Node b = new Node("b");
+        b.coordinator.tick();
+        a.coordinator.tick();
+        b.coordinator.tick();
+        assertTrue(a.coordinator.getOwnedShards().contains(shard), "Шард с обновлением в обработке не должен освобождаться");
+
+        enqueue(chatId, "/help");
+        b.coordinator.pollOnce();
+        assertEquals(0, processed.stream().filter(p -> p.node().equals("b")).count());
+
+        a.releaseCallbacks();
+        a.coordinator.tick();
+        b.coordinator.tick();
+        a.coordinator.pollOnce();
+        b.coordinator.pollOnce();
+
+        assertEquals(4, a.coordinator.getOwnedShards().size());
+        assertEquals(4, b.coordinator.getOwnedShards().size());
+        assertEquals(List.of(1L, 2L), processed.stream().map(Processed::updateId).toList());
+    }
+
+    @Test
+    void failover_ShouldMoveLeadershipAndPendingUpdatesToLiveNode() {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.coordinator.tick();
+        b.coordinator.tick();
+        a.coordinator.tick();
+        b.coordinator.tick();
+        assertTrue(a.coordinator.isLeader());
+        assertFalse(b.coordinator.isLeader());
+        verify(a.poller).start();
+        verify(b.poller, never()).start();
+
+        // Узел a падает: база освобождает его блокировки, отметки прекращаются.
+        a.locks.reset();
+        enqueueMessages(10, 2);
+        clock.advance(NODE_TIMEOUT.plusSeconds(1));
+
+        b.coordinator.tick();
+        b.coordinator.pollOnce();
+
+        assertTrue(b.coordinator.isLeader());
+        verify(b.poller).start();
+        assertEquals(SHARDS, b.coordinator.getOwnedShards().size());
+        assertEquals(20, processed.size(), "Обновления упавшего узла должны быть обработаны живым узлом");
+        assertChatsProcessedInOrderByOneNode();
+    }
+
+    @Test
+    void failover_UpdateQueuedOnDeadNode_ShouldBeProcessedOnceByNewOwner() {
+        Node a = new Node("a");
+        a.holdTasks = true;
+        a.coordinator.tick();
+        enqueue(7L, "/viewTree");
+        assertEquals(1, a.coordinator.pollOnce());
+
+        // Узел a теряет сеанс блокировок, пока обновление стоит в очереди его чата.
+        a.locks.reset();
+        a.coordinator.shutdown();
+        clock.advance(NODE_TIMEOUT.plusSeconds(1));
+        Node b = new Node("b");
+        b.coordinator.tick();
+        b.coordinator.pollOnce();
+        a.releaseTasks();
+
+        assertEquals(List.of(new Processed("b", 7L, 1L)), processed,
+                "Обновление, не начатое упавшим узлом, должно выполниться ровно один раз на новом владельце");
+    }
+
+    @Test
+    void failover_UpdateStartedOnDeadNode_ShouldNotBeRepeated() {
+        Node a = new Node("a");
+        a.holdCallbacks = true;
+        a.coordinator.tick();
+        enqueue(7L, "/addElement Фрукты");
+        a.coordinator.pollOnce();
+
+        // Узел a падает во время обработки: обновление захвачено, но не отмечено обработанным.
+        a.locks.reset();
+        clock.advance(NODE_TIMEOUT.plusSeconds(1));
+        Node b = new Node("b");
+        b.coordinator.tick();
+        b.coordinator.pollOnce();
+
+        assertEquals(List.of(new Processed("a", 7L, 1L)), processed, "Начатое обновление не должно выполняться повторно");
+    }
+
+    @Test
+    void treeChange_ShouldInvalidateCacheOnOtherNodes() {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.coordinator.pollOnce();
+        b.coordinator.pollOnce();
+        long versionB = b.treeCache.getVersion();
+
+        queue.incrementTreeVersion();
+        b.coordinator.pollOnce();
+
+        assertTrue(b.treeCache.getVersion() > versionB, "Кэш дерева должен сброситься после изменения на другом узле");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void treeChange_OwnChange_ShouldNotInvalidateCacheOfPublishingNode() throws Exception {
+        Node a = new Node("a");
+        Node b = new Node("b");
+        a.coordinator.start(Duration.ofHours(1), Duration.ofHours(1));
+        try {
+            a.coordinator.pollOnce();
+            b.coordinator.pollOnce();
+            int staleA = a.staleCount();
+            int staleB = b.staleCount();
+            long version = queue.getTreeVersion();
+
+            a.treeCache.invalidate();
+            awaitTreeVersion(version + 1);
+            a.coordinator.pollOnce();
+            b.coordinator.pollOnce();
+
+            assertEquals(staleA, a.staleCount(), "Узел не должен сбрасывать кэши после собственного изменения");
+            assertEquals(staleB + 1, b.staleCount(), "Другой узел должен сбросить кэши");
+        } finally {
+            a.coordinator.shutdown();
+        }
+    }
+
+    private void awaitTreeVersion(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (queue.getTreeVersion() < version && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(version, queue.getTreeVersion());
+    }
+
+    private void enqueueMessages(int chats, int messagesPerChat) {
+        for (int i = 0; i < messagesPerChat; i++) {
+            for (long chatId = 1; chatId <= chats; chatId++) {
+                enqueue(chatId, "message " + i);
+            }
+        }
+    }
+
+    private void enqueue(long chatId, String text) {
+        int updateId = nextUpdateId++;
+        queue.enqueue(List.of(ClusterUpdateQueueTest.update(updateId, chatId, text)), clock.instant());
+    }
+
+    private void assertChatsProcessedInOrderByOneNode() {
+        Map<Long, Processed> last = new HashMap<>();
+        for (Processed p : processed) {
+            Processed previous = last.put(p.chatId(), p);
+            if (previous != null) {
+                assertTrue(previous.updateId() < p.updateId(), "Нарушен порядок обновлений чата " + p.chatId());
+                assertEquals(previous.node(), p.node(), "Обновления чата " + p.chatId() + " обработаны разными узлами");
+            }
+        }
+    }
+
+    private Set<Integer> allShards() {
+        Set<Integer> shards = new HashSet<>();
+        for (int i = 0; i < SHARDS; i++) {
+            shards.add(i);
+        }
+        return shards;
+    }
+
+    private record Processed(String node, long chatId, long updateId) {
+    }
+
+    /**
+     * Узел кластера с конвейером обработки, записывающим порядок обработки обновлений.
+     */
+    private class Node {
+        final ClusterLocks locks = lockServer.session();
+        final ClusterUpdatePoller poller = mock(ClusterUpdatePoller.class);
+        final OutboundMessageScheduler outbound = mock(OutboundMessageScheduler.class);
+        final CategoryTreeCache treeCache = new CategoryTreeCache();
+        final AtomicInteger stale = new AtomicInteger();
+        final List<Runnable> heldCallbacks = new ArrayList<>();
+        final List<Runnable> heldTasks = new ArrayList<>();
+        final ClusterCoordinator coordinator;
+        boolean holdCallbacks;
+        boolean holdTasks;
+
+        Node(String name) {
+            TelegramBotUpdatesControl bot = mock(TelegramBotUpdatesControl.class);
+            doAnswer(invocation -> {
+                Update update = invocation.getArgument(0);
+                BooleanSupplier claim = invocation.getArgument(1);
+                Runnable callback = invocation.getArgument(2);
+                Runnable task = () -> {
+                    if (claim.getAsBoolean()) {
+                        processed.add(new Processed(name, update.getMessage().getChatId(), update.getUpdateId()));
+                    }
+                    if (holdCallbacks) {
+                        heldCallbacks.add(callback);
+                    } else {
+                        callback.run();
+                    }
+                };
+                if (holdTasks) {
+                    heldTasks.add(task);
+                } else {
+                    task.run();
+                }
+                return null;
+            }).when(bot).dispatch(any(), any(), any());
+            treeCache.addStaleListener(stale::incrementAndGet);
+            coordinator = new ClusterCoordinator(name, queue, locks, bot, outbound, treeCache, poller,
+                    NODE_TIMEOUT, Duration.ofHours(1), 100, clock);
+        }
+
+        int staleCount() {
+            return stale.get();
+        }
+
+        void releaseTasks() {
+            holdTasks = false;
+            heldTasks.forEach(Runnable::run);
+            heldTasks.clear();
+        }
+
+        void releaseCallbacks() {
+            holdCallbacks = false;
+            heldCallbacks.forEach(Runnable::run);
+            heldCallbacks.clear();
+        }
+    }
+
+    /**
+     * Замена advisory-блокировок PostgreSQL: блокировки сеанса освобождаются вместе с ним.
+     */
+    private static class LockServer {
+        private final Map<Integer, Object> owners = new HashMap<>();
+
+        ClusterLocks session() {
+            Object session = new Object();
+            return new ClusterLocks() {
+                @Override
+                public boolean tryLock(int key) {
+                    return owners.putIfAbsent(key, session) == null || owners.get(key) == session;
+                }
+
+                @Override
+                public void unlock(int key) {
+                    owners.remove(key, session);
+                }
+
+                @Override
+                public boolean isValid() {
+                    return true;
+                }
+
+                @Override
+                public void reset() {
+                    owners.values().removeIf(owner -> owner == session);
+                }
+            };
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package category.tree.bot.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cluster-queue;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class ClusterUpdateQueueTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T12:00:00Z");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ClusterUpdateQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ClusterUpdateQueue(jdbcTemplate, transactionTemplate, 8);
+    }
+
+    @Test
+    void enqueue_ShouldIgnoreRedeliveredUpdatesAndAdvanceOffset() {
+        long offset = queue.enqueue(List.of(update(10, 1L, "/viewTree"), update(11, 2L, "/help")), NOW);
+        assertEquals(12, offset);
+
+        queue.enqueue(List.of(update(11, 2L, "/help"), update(12, 1L, "/download")), NOW);
+
+        assertEquals(13, queue.getPollOffset());
+        List<ClusterUpdateQueue.QueuedUpdate> pending = queue.fetchPending(allShards(), 100);
+        assertEquals(List.of(10L, 11L, 12L), pending.stream().map(ClusterUpdateQueue.QueuedUpdate::updateId).toList(),
+                "Повторно доставленное обновление не должно попасть в очередь дважды");
+    }
+
+    @Test
+    void fetchPending_ShouldRestoreUpdateAndSkipProcessed() {
+        queue.enqueue(List.of(update(20, 42L, "/addElement"), update(21, 42L, "Фрукты")), NOW);
+        assertTrue(queue.claim(20, NOW));
+        assertFalse(queue.claim(20, NOW), "Обновление захватывается только один раз");
+        queue.markProcessed(20, NOW);
+
+        List<ClusterUpdateQueue.QueuedUpdate> pending = queue.fetchPending(Set.of(queue.shardOf(42L)), 100);
+
+        assertEquals(1, pending.size());
+        Update restored = pending.get(0).update();
+        assertEquals(21, restored.getUpdateId());
+        assertEquals(42L, restored.getMessage().getChatId());
+        assertEquals("Фрукты", restored.getMessage().getText());
+        assertTrue(queue.fetchPending(otherShards(queue.shardOf(42L)), 100).isEmpty());
+
+        assertEquals(1, queue.purgeProcessed(NOW.plus(Duration.ofMinutes(1))));
+    }
+
+    @Test
+    void enqueue_AfterPurge_ShouldIgnoreRedeliveredUpdate() {
+        queue.enqueue(List.of(update(40, 3L, "/help")), NOW);
+        assertTrue(queue.claim(40, NOW));
+        queue.markProcessed(40, NOW);
+        assertEquals(1, queue.purgeProcessed(NOW.plus(Duration.ofMinutes(1))));
+
+        queue.enqueue(List.of(update(40, 3L, "/help"), update(41, 3L, "/viewTree")), NOW);
+
+        assertEquals(List.of(41L), queue.fetchPending(allShards(), 100).stream()
+                .map(ClusterUpdateQueue.QueuedUpdate::updateId).toList(),
+                "Повторная доставка обновления, удалённого из очереди, не должна обрабатываться");
+    }
+
+    @Test
+    void fetchPending_ShouldRestoreCallbackQuery() {
+        Update update = update(30, 5L, "Дерево категорий");
+        update.getMessage().setDate(1);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setId("cb");
+        callbackQuery.setData("page:2");
+        callbackQuery.setMessage(update.getMessage());
+        update.setMessage(null);
+        update.setCallbackQuery(callbackQuery);
+
+        queue.enqueue(List.of(update), NOW);
+
+        Update restored = queue.fetchPending(allShards(), 100).get(0).update();
+        assertEquals("page:2", restored.getCallbackQuery().getData());
+        assertEquals(5L, restored.getCallbackQuery().getMessage().getChatId());
+    }
+
+    @Test
+    void heartbeat_ShouldCountOnlyLiveNodes() {
+        queue.heartbeat("a", NOW);
+        queue.heartbeat("b", NOW.minus(Duration.ofMinutes(1)));
+        queue.heartbeat("a", NOW.plusSeconds(1));
+
+        assertEquals(1, queue.countLiveNodes(NOW.minusSeconds(10)));
+        assertEquals(2, queue.countLiveNodes(NOW.minus(Duration.ofHours(1))));
+
+        queue.removeNode("a");
+        assertEquals(0, queue.countLiveNodes(NOW.minusSeconds(10)));
+    }
+
+    private Set<Integer> allShards() {
+        return Set.of(0, 1, 2, 3, 4, 5, 6, 7);
+    }
+
+    private Set<Integer> otherShards(int shard) {
+        return Set.copyOf(allShards().stream().filter(s -> s != shard).toList());
+    }
+
+    static Update update(int updateId, long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+        Message message = new Message();
+        message.setMessageId(updateId);
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        update.setMessage(message);
+        return update;
+    }
+}
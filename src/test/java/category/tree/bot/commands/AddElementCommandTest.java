@@ -1,5 +1,7 @@
 package category.tree.bot.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
 import category.tree.bot.exceptions.CategoryAlreadyExists;
 import category.tree.bot.service.services.CategoryService;
@@ -13,8 +15,7 @@ import org.mockito.MockitoAnnotations;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,7 +28,7 @@ class AddElementCommandTest {
     @Mock
     private CategoryService categoryService;
 
-    private Map<Long, MainChatStates> chatStates;
+    private ChatStateStore chatStates;
 
     @InjectMocks
     private AddElementCommand addElementCommand;
@@ -35,7 +36,7 @@ class AddElementCommandTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        chatStates = new HashMap<>();
+        chatStates = new InMemoryChatStateStore(100, Duration.ofMinutes(30));
         addElementCommand = new AddElementCommand(bot, categoryService, chatStates);
     }
 
@@ -67,7 +68,7 @@ class AddElementCommandTest {
             fail("Exception should not have been thrown");
         }
 
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -85,7 +86,7 @@ class AddElementCommandTest {
             fail("Exception should not have been thrown");
         }
 
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -97,7 +98,7 @@ class AddElementCommandTest {
         addElementCommand.handle(chatId, messageText, bot, update);
 
         verify(bot).sendMessage(chatId, "Ошибка! Введите название(-я) корректно!");
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -111,6 +112,21 @@ class AddElementCommandTest {
         addElementCommand.handle(chatId, messageText, bot, update);
 
         verify(bot).sendMessage(chatId, "Ошибка: такая категория уже существует!");
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
+    }
+
+    @Test
+    void testExecute_WithInlineArguments_ShouldAddWithoutWaitingForInput() {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(12345L);
+        when(message.getText()).thenReturn("/addElement Родитель Подкатегория");
+
+        addElementCommand.execute(update);
+
+        verify(categoryService).addElement("Родитель", "Подкатегория");
+        verify(bot).sendMessage(12345L, "Подкатегория добавлена: Подкатегория к родителю Родитель");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(12345L), "Команда с аргументами не должна ждать ввода");
     }
 }
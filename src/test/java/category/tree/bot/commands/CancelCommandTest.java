@@ -0,0 +1,58 @@
+package category.tree.bot.commands;
+
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.commands.CancelCommand;
+import category.tree.bot.updatescontrol.jobs.ImportJob;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CancelCommandTest {
+
+    private TelegramBotUpdatesControl bot;
+    private ImportJobManager importJobs;
+    private CancelCommand cancelCommand;
+
+    @BeforeEach
+    void setUp() {
+        bot = mock(TelegramBotUpdatesControl.class);
+        importJobs = new ImportJobManager(Runnable::run, mock(ScheduledExecutorService.class), Duration.ofHours(1));
+        cancelCommand = new CancelCommand(bot, importJobs);
+    }
+
+    @Test
+    void execute_ShouldCancelRunningJob() {
+        ImportJob job = importJobs.create(42L);
+
+        cancelCommand.execute(update(42L));
+
+        assertTrue(job.isCancelled());
+        verify(bot).sendMessage(42L, "Задание #" + job.getId() + " будет остановлено после текущего пакета строк.");
+    }
+
+    @Test
+    void execute_WithoutJob_ShouldReply() {
+        ImportJob other = importJobs.create(1L);
+
+        cancelCommand.execute(update(42L));
+
+        assertFalse(other.isCancelled(), "Команда не должна отменять задания других чатов");
+        verify(bot).sendMessage(42L, "Нет выполняемого импорта.");
+    }
+
+    private static Update update(long chatId) {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(chatId);
+        return update;
+    }
+}
@@ -0,0 +1,45 @@
+package category.tree.bot.commands;
+
+import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.updatescontrol.commands.CommandHandler;
+import category.tree.bot.updatescontrol.commands.CommandRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CommandRegistryTest {
+
+    @Test
+    void commandName_ShouldStripArgumentsAndOwnMention() {
+        assertEquals("/viewTree", CommandRegistry.commandName("/viewTree", "CategoryBot"));
+        assertEquals("/viewTree", CommandRegistry.commandName("  /viewTree@categorybot Фрукты", "CategoryBot"));
+        assertEquals("/addElement", CommandRegistry.commandName("/addElement Фрукты Яблоки", "CategoryBot"));
+        assertEquals("/help", CommandRegistry.commandName("/help@AnyBot", null));
+
+        assertNull(CommandRegistry.commandName("/viewTree@OtherBot", "CategoryBot"), "Команда другого бота не должна распознаваться");
+        assertNull(CommandRegistry.commandName("/viewTree@CategoryBot2", "CategoryBot"));
+        assertNull(CommandRegistry.commandName("Фрукты Яблоки", "CategoryBot"));
+        assertNull(CommandRegistry.commandName(null, "CategoryBot"));
+    }
+
+    @Test
+    void commandArguments_ShouldReturnTextAfterCommand() {
+        assertEquals("Фрукты Яблоки", CommandRegistry.commandArguments("/addElement   Фрукты Яблоки  "));
+        assertEquals("Фрукты", CommandRegistry.commandArguments("/viewTree@CategoryBot\nФрукты"));
+        assertEquals("", CommandRegistry.commandArguments("/viewTree"));
+        assertEquals("", CommandRegistry.commandArguments(null));
+    }
+
+    @Test
+    void getStateHandler_ShouldReturnHandlerRegisteredAtStartup() {
+        CommandRegistry registry = new CommandRegistry();
+        CommandHandler handler = mock(CommandHandler.class);
+
+        registry.registerStateHandler(MainChatStates.SEARCH, handler);
+
+        assertSame(handler, registry.getStateHandler(MainChatStates.SEARCH));
+        assertSame(handler, registry.getStateHandler(MainChatStates.SEARCH), "Обработчик не должен создаваться заново");
+        assertNull(registry.getStateHandler(MainChatStates.DEFAULT));
+    }
+}
@@ -1,6 +1,7 @@
 package category.tree.bot.commands;
 
-import category.tree.bot.entity.Category;
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.exceptions.CategoryIsNotFound;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
 import category.tree.bot.updatescontrol.commands.DownloadCommand;
@@ -10,16 +11,22 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
@@ -47,24 +54,96 @@ class DownloadCommandTest {
         when(message.getChatId()).thenReturn(12345L);
 
         File tempFile = File.createTempFile("categories_tree", ".xlsx");
-        when(categoryService.getAllCategories()).thenReturn(new ArrayList<>());
+        when(categoryService.exportCategories(any())).thenReturn(0L);
 
         doAnswer(invocation -> {
-            SendDocument sendDocument = invocation.getArgument(0);
+            SendDocument sendDocument = invocation.getArgument(1);
             InputFile document = sendDocument.getDocument();
 
             // Проверяем, что имя файла корректно установлено
             assertEquals("categories_tree.xlsx", document.getMediaName());
-            return null;
-        }).when(bot).execute(any(SendDocument.class));
+            return CompletableFuture.completedFuture(new Message());
+        }).when(bot).send(eq(12345L), any(SendDocument.class));
 
         downloadCommand.execute(update);
 
-        verify(bot, times(1)).execute(any(SendDocument.class));
+        verify(bot, times(1)).send(eq(12345L), any(SendDocument.class));
+        verify(bot, never()).execute(any(SendDocument.class));
         tempFile.deleteOnExit();
     }
 
 
+    @Test
+    void testExecute_SameTreeVersion_ShouldReuseFileId() throws Exception {
+        Update update = updateFromChat(12345L);
+        when(categoryService.getTreeVersion()).thenReturn(3L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+
+        downloadCommand.execute(update);
+        downloadCommand.execute(update);
+        downloadCommand.execute(update);
+
+        verify(categoryService, times(1)).exportCategories(any());
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).isNew(), "Первая выгрузка должна загрузить файл");
+        assertFalse(sent.get(1).isNew(), "Повторная выгрузка должна отправляться по file_id");
+        assertEquals("telegram-file-1", sent.get(1).getAttachName());
+        assertEquals("telegram-file-1", sent.get(2).getAttachName());
+    }
+
+    @Test
+    void testExecute_TreeChanged_ShouldRegenerateFile() throws Exception {
+        Update update = updateFromChat(12345L);
+        when(categoryService.getTreeVersion()).thenReturn(3L, 5L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+
+        downloadCommand.execute(update);
+        downloadCommand.execute(update);
+
+        verify(categoryService, times(2)).exportCategories(any());
+        assertTrue(sent.get(1).isNew(), "После изменения дерева файл должен строиться заново");
+    }
+
+    @Test
+    void testExecute_RejectedFileId_ShouldUploadAgain() throws Exception {
+        Update update = updateFromChat(12345L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+        downloadCommand.execute(update);
+
+        TelegramApiRequestException rejected = requestException(400,
+                "Bad Request: wrong file identifier/HTTP URL specified", null);
+        doReturn(CompletableFuture.failedFuture(rejected))
+                .doAnswer(invocation -> {
+                    sent.add(((SendDocument) invocation.getArgument(1)).getDocument());
+                    return CompletableFuture.completedFuture(new Message());
+                })
+                .when(bot).send(anyLong(), any(SendDocument.class));
+        downloadCommand.execute(update);
+
+        verify(categoryService, times(1)).exportCategories(any());
+        assertTrue(sent.get(sent.size() - 1).isNew());
+        verify(bot, never()).sendMessage(anyLong(), anyString());
+    }
+
+    @Test
+    void testExecute_RateLimitedFileIdSend_ShouldReportErrorWithoutUpload() throws Exception {
+        Update update = updateFromChat(12345L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+        downloadCommand.execute(update);
+
+        TelegramApiRequestException rateLimited = requestException(429, "Too Many Requests: retry after 30", 30);
+        doReturn(CompletableFuture.failedFuture(rateLimited)).when(bot).send(anyLong(), any(SendDocument.class));
+        downloadCommand.execute(update);
+
+        verify(bot, times(2)).send(anyLong(), any(SendDocument.class));
+        assertEquals(1, sent.size(), "При ограничении частоты файл не должен загружаться заново");
+        verify(bot).sendMessage(eq(12345L), startsWith("Ошибка при отправке файла"));
+
+        List<InputFile> resent = recordSentDocuments("telegram-file-2");
+        downloadCommand.execute(update);
+        assertEquals("telegram-file-1", resent.get(0).getAttachName(), "file_id не должен забываться при 429");
+    }
+
     @Test
     void testExecute_GenerationFailure() {
         Update update = mock(Update.class);
@@ -72,27 +151,58 @@ class DownloadCommandTest {
         when(update.getMessage()).thenReturn(message);
         when(message.getChatId()).thenReturn(12345L);
 
-        doThrow(RuntimeException.class).when(categoryService).getAllCategories();
+        doThrow(RuntimeException.class).when(categoryService).exportCategories(any());
 
         downloadCommand.execute(update);
 
         verify(bot).sendMessage(12345L, "Ошибка при генерации файла: null");
     }
 
-    @Test
-    void testGenerateExcelFile_CorrectFileStructure() throws IOException {
-        List<Category> mockCategories = new ArrayList<>();
-        Category parent = new Category();
-        parent.setName("Родитель");
+    private Update updateFromChat(long chatId) {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(chatId);
+        return update;
+    }
 
-        Category child = new Category();
-        child.setName("Дочерняя");
-        child.setParent(parent);
+    /**
+     * Записывает отправленные через очередь документы; на загрузку файла Telegram отвечает сообщением
+     * с переданным file_id.
+     */
+    private List<InputFile> recordSentDocuments(String fileId) {
+        List<InputFile> sent = new ArrayList<>();
+        doAnswer(invocation -> {
+            InputFile document = ((SendDocument) invocation.getArgument(1)).getDocument();
+            sent.add(document);
+            Message response = new Message();
+            if (document.isNew()) {
+                Document uploaded = new Document();
+                uploaded.setFileId(fileId);
+                response.setDocument(uploaded);
+            }
+            return CompletableFuture.completedFuture(response);
+        }).when(bot).send(anyLong(), any(SendDocument.class));
+        return sent;
+    }
 
-        mockCategories.add(parent);
-        mockCategories.add(child);
+    private static TelegramApiRequestException requestException(int errorCode, String description, Integer retryAfter) {
+        TelegramApiRequestException exception = mock(TelegramApiRequestException.class);
+        when(exception.getErrorCode()).thenReturn(errorCode);
+        when(exception.getApiResponse()).thenReturn(description);
+        when(exception.getMessage()).thenReturn(description);
+        when(exception.getParameters()).thenReturn(new ResponseParameters(null, retryAfter));
+        return exception;
+    }
 
-        when(categoryService.getAllCategories()).thenReturn(mockCategories);
+    @Test
+    void testGenerateExcelFile_CorrectFileStructure() throws IOException {
+        doAnswer(invocation -> {
+            Consumer<CategoryExportRow> consumer = invocation.getArgument(0);
+            consumer.accept(new CategoryExportRow("Родитель", null));
+            consumer.accept(new CategoryExportRow("Дочерняя", "Родитель"));
+            return 2L;
+        }).when(categoryService).exportCategories(any());
 
         File file = downloadCommand.generateExcelFile();
 
@@ -104,7 +214,7 @@ class DownloadCommandTest {
 
     @Test
     void testGenerateExcelFile_EmptyCategories() throws IOException {
-        when(categoryService.getAllCategories()).thenReturn(new ArrayList<>());
+        when(categoryService.exportCategories(any())).thenReturn(0L);
 
         File file = downloadCommand.generateExcelFile();
 
@@ -113,4 +223,69 @@ class DownloadCommandTest {
 
         file.deleteOnExit();
     }
+
+    @Test
+    void testExecute_WithSubtreeArguments_ShouldSendSubtreeFileWithoutCaching() throws Exception {
+        Update update = updateFromChat(12345L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+        when(categoryService.exportCategories(eq("Фрукты"), eq(2), any())).thenReturn(0L);
+
+        downloadCommand.execute(update, "Фрукты 2");
+        downloadCommand.execute(update, "Фрукты 2");
+
+        verify(categoryService, times(2)).exportCategories(eq("Фрукты"), eq(2), any());
+        verify(categoryService, never()).exportCategories(any());
+        assertEquals("categories_Фрукты.xlsx", sent.get(0).getMediaName());
+        assertTrue(sent.get(1).isNew(), "Поддерево не должно пересылаться по file_id всего дерева");
+        assertFalse(sent.get(0).getNewMediaFile().exists(), "Временный файл поддерева должен удаляться после отправки");
+    }
+
+    @Test
+    void testExecute_WithSubtreeArguments_ShouldDeleteFileOnlyAfterSendCompletes() {
+        Update update = updateFromChat(12345L);
+        CompletableFuture<Message> pending = new CompletableFuture<>();
+        List<InputFile> sent = new ArrayList<>();
+        doAnswer(invocation -> {
+            sent.add(((SendDocument) invocation.getArgument(1)).getDocument());
+            return pending;
+        }).when(bot).send(anyLong(), any(SendDocument.class));
+
+        downloadCommand.execute(update, "Фрукты");
+
+        File file = sent.get(0).getNewMediaFile();
+        assertTrue(file.exists(), "Файл не должен удаляться, пока очередь его не отправила");
+        pending.complete(new Message());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    void testExecute_WithMissingSubtreeRoot_ShouldReportNotFound() {
+        Update update = updateFromChat(12345L);
+        when(categoryService.exportCategories(eq("Нет"), isNull(), any())).thenThrow(new CategoryIsNotFound());
+
+        downloadCommand.execute(update, "Нет");
+
+        verify(bot).sendMessage(12345L, "Категория \"Нет\" не найдена.");
+    }
+
+    @Test
+    void testExecute_WithNameEndingInDigits_ShouldExportWholeNameWhenRootIsMissing() {
+        Update update = updateFromChat(12345L);
+        List<InputFile> sent = recordSentDocuments("telegram-file-1");
+        when(categoryService.exportCategories(eq("iPhone"), eq(15), any())).thenThrow(new CategoryIsNotFound());
+        when(categoryService.exportCategories(eq("iPhone 15"), isNull(), any())).thenReturn(0L);
+
+        downloadCommand.execute(update, "iPhone 15");
+
+        assertEquals("categories_iPhone 15.xlsx", sent.get(0).getMediaName());
+        verify(bot, never()).sendMessage(anyLong(), anyString());
+    }
+
+    @Test
+    void subtreeFileName_ShouldReplaceUnsafeCharactersAndLimitLength() {
+        assertEquals("categories_Фрукты.xlsx", DownloadCommand.subtreeFileName("Фрукты"));
+        assertEquals("categories_.._.._etc_passwd.xlsx", DownloadCommand.subtreeFileName("../../etc/passwd"));
+        assertEquals("categories_a_b_c_d_e.xlsx", DownloadCommand.subtreeFileName("a\"b\nc\\d\u202Ee"));
+        assertEquals("categories_" + "я".repeat(64) + ".xlsx", DownloadCommand.subtreeFileName("я".repeat(100)));
+    }
 }
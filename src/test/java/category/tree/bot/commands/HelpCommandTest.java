@@ -49,10 +49,15 @@ class HelpCommandTest {
         assertEquals("Вот список доступных команд:\n"
                 + "/start - начать работу с ботом\n"
                 + "/addElement - добавить категорию\n"
-                + "/removeElement - удалить категорию\n"
-                + "/viewTree - посмотреть дерево категорий\n"
-                + "/download - скачать excel-файл дерева категорий\n"
-                + "/upload - показать это сообщение\n", sentMessage.getText());
+                + "/addElement <категория> - добавить корневую категорию сразу\n"
+                + "/addElement <родитель> <подкатегория> - добавить подкатегорию сразу\n"
+                + "/removeElement [<категория>] - удалить категорию\n"
+                + "/viewTree [<категория>] - посмотреть дерево категорий или уровень категории\n"
+                + "/viewTree <категория> <глубина> - показать поддерево до заданной глубины\n"
+                + "/download [<категория> [<глубина>]] - скачать excel-файл дерева категорий или поддерева\n"
+                + "/upload - загрузить excel-файл с категориями\n"
+                + "/search <начало названия> - найти категорию\n"
+                + "/cancel - остановить импорт excel-файла\n", sentMessage.getText());
 
         assertTrue(sentMessage.getReplyMarkup() instanceof ReplyKeyboardMarkup);
         ReplyKeyboardMarkup keyboardMarkup = (ReplyKeyboardMarkup) sentMessage.getReplyMarkup();
@@ -67,9 +72,10 @@ class HelpCommandTest {
         assertEquals("/viewTree", row1.get(2).getText());
 
         KeyboardRow row2 = keyboard.get(1);
-        assertEquals(2, row2.size());
+        assertEquals(3, row2.size());
         assertEquals("/download", row2.get(0).getText());
         assertEquals("/upload", row2.get(1).getText());
+        assertEquals("/search", row2.get(2).getText());
     }
 
     @Test
@@ -1,5 +1,7 @@
 package category.tree.bot.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
 import category.tree.bot.exceptions.CategoryIsNotFound;
 import category.tree.bot.service.services.CategoryService;
@@ -13,11 +15,9 @@ import org.mockito.MockitoAnnotations;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.mockito.Mockito.*;
 
 class RemoveElementCommandTest {
@@ -28,7 +28,7 @@ class RemoveElementCommandTest {
     @Mock
     private CategoryService categoryService;
 
-    private Map<Long, MainChatStates> chatStates;
+    private ChatStateStore chatStates;
 
     @InjectMocks
     private RemoveElementCommand removeElementCommand;
@@ -36,7 +36,7 @@ class RemoveElementCommandTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        chatStates = new HashMap<>();
+        chatStates = new InMemoryChatStateStore(100, Duration.ofMinutes(30));
         removeElementCommand = new RemoveElementCommand(bot, categoryService, chatStates);
     }
 
@@ -64,7 +64,7 @@ class RemoveElementCommandTest {
 
         verify(categoryService).removeElement(categoryName);
         verify(bot).sendMessage(chatId, "Категория и её подкатегории (при наличии) удалены: " + categoryName);
-        assertEquals(null, chatStates.get(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -78,7 +78,7 @@ class RemoveElementCommandTest {
 
         verify(categoryService).removeElement(categoryName);
         verify(bot).sendMessage(chatId, "Категория не найдена или не может быть удалена.");
-        assertEquals(null, chatStates.get(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -95,6 +95,20 @@ class RemoveElementCommandTest {
         verify(categoryService).removeElement(categoryName);
         verify(bot).sendMessage(chatId, "Категория и её подкатегории (при наличии) удалены: " + categoryName);
 
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
+    }
+
+    @Test
+    void testExecute_WithInlineName_ShouldRemoveImmediately() {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(12345L);
+        when(categoryService.removeElement("Фрукты")).thenReturn("Фрукты");
+
+        removeElementCommand.execute(update, "Фрукты");
+
+        verify(bot).sendMessage(12345L, "Категория и её подкатегории (при наличии) удалены: Фрукты");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(12345L));
     }
 }
@@ -0,0 +1,83 @@
+package category.tree.bot.commands;
+
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
+import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.service.services.CategoryService;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.commands.SearchCommand;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class SearchCommandTest {
+
+    private static final long CHAT_ID = 12345L;
+
+    @Mock
+    private TelegramBotUpdatesControl bot;
+
+    @Mock
+    private CategoryService categoryService;
+
+    private ChatStateStore chatStates;
+    private SearchCommand searchCommand;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        chatStates = new InMemoryChatStateStore(100, Duration.ofMinutes(30));
+        searchCommand = new SearchCommand(bot, categoryService, chatStates);
+    }
+
+    @Test
+    void execute_WithPrefix_ShouldSendMatchesWithPaths() {
+        when(categoryService.searchCategories("кин", SearchCommand.RESULT_LIMIT)).thenReturn(List.of(
+                new CategorySearchResult(2L, "кино", "искусство / кино"),
+                new CategorySearchResult(5L, "кинетика", "наука / кинетика")));
+
+        searchCommand.execute(update("/search кин"));
+
+        verify(bot).sendMessage(CHAT_ID, "Найденные категории:\nискусство / кино\nнаука / кинетика\n");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(CHAT_ID));
+    }
+
+    @Test
+    void execute_WithoutPrefix_ShouldAskForPrefix() {
+        searchCommand.execute(update("/search"));
+
+        verify(bot).sendMessage(CHAT_ID, "Введите начало названия категории.");
+        assertEquals(MainChatStates.SEARCH, chatStates.get(CHAT_ID));
+        verifyNoInteractions(categoryService);
+    }
+
+    @Test
+    void handle_ShouldSearchAndResetState() {
+        chatStates.put(CHAT_ID, MainChatStates.SEARCH);
+        when(categoryService.searchCategories("хор", SearchCommand.RESULT_LIMIT)).thenReturn(List.of());
+
+        searchCommand.handle(CHAT_ID, "хор", bot, null);
+
+        verify(bot).sendMessage(CHAT_ID, "Категории, начинающиеся с \"хор\", не найдены.");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(CHAT_ID));
+    }
+
+    private static Update update(String text) {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(CHAT_ID);
+        when(message.getText()).thenReturn(text);
+        return update;
+    }
+}
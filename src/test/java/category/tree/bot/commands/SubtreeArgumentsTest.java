@@ -0,0 +1,17 @@
+package category.tree.bot.commands;
+
+import category.tree.bot.updatescontrol.commands.SubtreeArguments;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SubtreeArgumentsTest {
+
+    @Test
+    void parse_ShouldTreatTrailingNumberAsDepth() {
+        assertEquals(new SubtreeArguments("Фрукты", 2), SubtreeArguments.parse("Фрукты 2"));
+        assertEquals(new SubtreeArguments("Фрукты", null), SubtreeArguments.parse("Фрукты"));
+        assertEquals(new SubtreeArguments("2024", null), SubtreeArguments.parse("2024"), "Одно число — это имя категории");
+        assertEquals(new SubtreeArguments("Фрукты -1", null), SubtreeArguments.parse("Фрукты -1"));
+    }
+}
@@ -1,20 +1,40 @@
-package category.tree.bot.updatescontrol.commands;
+package category.tree.bot.commands;
 
+import category.tree.bot.chatStates.ChatStateStore;
+import category.tree.bot.chatStates.InMemoryChatStateStore;
 import category.tree.bot.chatStates.MainChatStates;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import category.tree.bot.updatescontrol.commands.UploadCommand;
+import category.tree.bot.updatescontrol.jobs.ImportJob;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,7 +47,10 @@ class UploadCommandTest {
     @Mock
     private CategoryService categoryService;
 
-    private Map<Long, MainChatStates> chatStates;
+    private ChatStateStore chatStates;
+
+    private ScheduledExecutorService progressScheduler;
+    private ImportJobManager importJobs;
 
     @InjectMocks
     private UploadCommand uploadCommand;
@@ -35,8 +58,19 @@ class UploadCommandTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        chatStates = new HashMap<>();
-        uploadCommand = new UploadCommand(bot, chatStates, categoryService);
+        chatStates = new InMemoryChatStateStore(100, Duration.ofMinutes(30));
+        progressScheduler = Executors.newSingleThreadScheduledExecutor();
+        importJobs = new ImportJobManager(Runnable::run, progressScheduler, Duration.ofHours(1));
+        uploadCommand = new UploadCommand(bot, chatStates, categoryService, importJobs);
+
+        Message status = new Message();
+        status.setMessageId(7);
+        when(bot.sendMessage(anyLong(), anyString())).thenReturn(CompletableFuture.completedFuture(status));
+    }
+
+    @AfterEach
+    void tearDown() {
+        progressScheduler.shutdownNow();
     }
 
     @Test
@@ -67,16 +101,46 @@ class UploadCommandTest {
         org.telegram.telegrambots.meta.api.objects.File telegramFile = mock(org.telegram.telegrambots.meta.api.objects.File.class);
         when(bot.getFile("file_id")).thenReturn(telegramFile);
 
-        File testExcelFile = new File("src/test/resources/categories_tree (3).xlsx");
-        assertTrue(testExcelFile.exists(), "Тестовый Excel-файл должен существовать");
+        File testExcelFile = downloadedCopy();
 
-        when(bot.downloadFile(telegramFile)).thenReturn(testExcelFile);
+        when(bot.downloadTelegramFile(telegramFile)).thenReturn(testExcelFile);
+        when(categoryService.importCategories(anyList())).thenReturn(new CategoryImportReport(4, 0, List.of()));
 
         uploadCommand.handle(chatId, null, bot, update);
 
-        verify(bot).sendMessage(chatId, "Обрабатываем Excel...");
+        verify(bot).sendMessage(chatId, "Задание #1: обрабатываем Excel... Отправьте /cancel, чтобы остановить импорт.");
+        verify(categoryService, times(1)).importCategories(argThat(rows -> rows.size() == 4));
         verify(bot).sendMessage(chatId, "Файл обработан, категории успешно добавлены!");
-        assertFalse(chatStates.containsKey(chatId), "Состояние чата должно быть удалено после обработки");
+        verify(bot).send(eq(chatId), argThat(method -> method instanceof EditMessageText edit
+                && edit.getMessageId() == 7 && edit.getText().startsWith("Задание #1 завершено: обработано строк: 4 за")));
+        assertNull(importJobs.getJob(chatId), "Завершённое задание не должно оставаться у чата");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId), "Состояние чата должно быть удалено после обработки");
+        assertFalse(testExcelFile.exists(), "Скачанный файл должен удаляться после импорта");
+    }
+
+    @Test
+    void testHandle_ExcelFileWithConflicts() throws Exception {
+        long chatId = 12345L;
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        Document document = mock(Document.class);
+
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getDocument()).thenReturn(document);
+        when(document.getFileId()).thenReturn("file_id");
+
+        org.telegram.telegrambots.meta.api.objects.File telegramFile = mock(org.telegram.telegrambots.meta.api.objects.File.class);
+        when(bot.getFile("file_id")).thenReturn(telegramFile);
+        when(bot.downloadTelegramFile(telegramFile)).thenReturn(downloadedCopy());
+        when(categoryService.importCategories(anyList())).thenReturn(new CategoryImportReport(3, 1,
+                List.of(new CategoryImportConflict(2, "искусство", "категория уже существует"))));
+
+        uploadCommand.handle(chatId, null, bot, update);
+
+        verify(bot).sendMessage(chatId, "Файл обработан. Добавлено категорий: 3, пропущено строк: 1\n"
+                + "Строка 2: искусство — категория уже существует\n");
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
 
@@ -97,7 +161,7 @@ class UploadCommandTest {
         uploadCommand.handle(chatId, null, bot, update);
 
         verify(bot).sendMessage(chatId, "Ошибка: файл не загружен.");
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
     }
 
     @Test
@@ -117,11 +181,88 @@ class UploadCommandTest {
 
         File tempFile = File.createTempFile("test", ".xlsx");
         tempFile.delete();
-        when(bot.downloadFile(telegramFile)).thenReturn(tempFile);
+        when(bot.downloadTelegramFile(telegramFile)).thenReturn(tempFile);
 
         uploadCommand.handle(chatId, null, bot, update);
 
         verify(bot).sendMessage(chatId, "Ошибка: файл не загружен.");
-        assertFalse(chatStates.containsKey(chatId));
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
+    }
+
+    @Test
+    void testHandle_Cancel_ShouldStopAtChunkBoundary() throws Exception {
+        long chatId = 12345L;
+        File largeFile = File.createTempFile("categories_cancel", ".xlsx");
+        try {
+            writeCategories(largeFile, 2500);
+            Update update = documentUpdate(chatId);
+            org.telegram.telegrambots.meta.api.objects.File telegramFile = mock(org.telegram.telegrambots.meta.api.objects.File.class);
+            when(bot.getFile("file_id")).thenReturn(telegramFile);
+            when(bot.downloadTelegramFile(telegramFile)).thenReturn(largeFile);
+            when(categoryService.importCategories(anyList())).thenAnswer(invocation -> {
+                importJobs.cancel(chatId);
+                return new CategoryImportReport(1000, 0, List.of());
+            });
+
+            uploadCommand.handle(chatId, null, bot, update);
+
+            verify(categoryService, times(1)).importCategories(anyList());
+            verify(bot).sendMessage(chatId, "Импорт отменён. Сохранено строк: 1000.");
+            verify(bot).send(eq(chatId), argThat(method -> method instanceof EditMessageText edit
+                    && edit.getText().equals("Задание #1 отменено: сохранено строк: 1000.")));
+            assertNull(importJobs.getJob(chatId));
+        } finally {
+            largeFile.delete();
+        }
+    }
+
+    @Test
+    void testHandle_JobAlreadyRunning() throws Exception {
+        long chatId = 12345L;
+        ImportJob running = importJobs.create(chatId);
+
+        uploadCommand.handle(chatId, null, bot, documentUpdate(chatId));
+
+        verify(bot).sendMessage(chatId, "Импорт уже выполняется (задание #" + running.getId()
+                + "). Отправьте /cancel, чтобы остановить его.");
+        verify(bot, never()).getFile(anyString());
+        assertEquals(MainChatStates.DEFAULT, chatStates.get(chatId));
+    }
+
+    /**
+     * Копирует тестовый Excel-файл во временный, как его скачал бы бот: команда удаляет скачанный файл после импорта.
+     */
+    private static File downloadedCopy() throws IOException {
+        Path resource = Path.of("src/test/resources/categories_tree (3).xlsx");
+        assertTrue(Files.exists(resource), "Тестовый Excel-файл должен существовать");
+        Path copy = Files.createTempFile("telegram-file-", ".xlsx");
+        Files.copy(resource, copy, StandardCopyOption.REPLACE_EXISTING);
+        copy.toFile().deleteOnExit();
+        return copy.toFile();
+    }
+
+    private static Update documentUpdate(long chatId) {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
+        Document document = mock(Document.class);
+        when(update.getMessage()).thenReturn(message);
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getDocument()).thenReturn(document);
+        when(document.getFileId()).thenReturn("file_id");
+        return update;
+    }
+
+    private static void writeCategories(File file, int count) throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 1; i <= count; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Категория" + i);
+            }
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                workbook.write(fos);
+            }
+            workbook.dispose();
+        }
     }
 }
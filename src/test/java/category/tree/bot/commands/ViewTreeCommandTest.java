@@ -1,5 +1,8 @@
 package category.tree.bot.commands;
 
+import category.tree.bot.dto.CategoryTreeLevel;
+import category.tree.bot.exceptions.CategoryIsNotFound;
+import category.tree.bot.repository.CategoryLevelRow;
 import category.tree.bot.service.services.CategoryService;
 import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
 import category.tree.bot.updatescontrol.commands.ViewTreeCommand;
@@ -7,14 +10,26 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class ViewTreeCommandTest {
 
+    private static final long CHAT_ID = 123456789L;
+
     private TelegramBotUpdatesControl botMock;
     private CategoryService categoryServiceMock;
     private ViewTreeCommand viewTreeCommand;
@@ -27,55 +42,185 @@ class ViewTreeCommandTest {
     }
 
     @Test
-    void execute_ShouldSendCategoryTree() {
-        long chatId = 123456789L;
-        String treeRepresentation = "Root\n  ├── Category1\n  └── Category2";
-        when(categoryServiceMock.viewTree()).thenReturn(treeRepresentation);
+    void execute_ShouldSendRootLevelWithButtons() {
+        when(categoryServiceMock.getTreeLevel(null, 0, ViewTreeCommand.PAGE_SIZE)).thenReturn(
+                new CategoryTreeLevel(null, null, null, List.of(row(1, "Root", true), row(40, "Leaf", false)), true));
+
+        viewTreeCommand.execute(messageUpdate());
+
+        ArgumentCaptor<SendMessage> captor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        SendMessage sent = captor.getValue();
+        assertEquals("Дерево категорий:", sent.getText());
+
+        List<List<InlineKeyboardButton>> keyboard = keyboardOf(sent);
+        assertEquals("Root ▸", keyboard.get(0).get(0).getText());
+        assertEquals("t:1", keyboard.get(0).get(0).getCallbackData());
+        assertEquals("Leaf", keyboard.get(1).get(0).getText());
+        assertEquals("t:0:14", keyboard.get(2).get(0).getCallbackData());
+    }
 
-        Update update = mock(Update.class);
-        var message = mock(org.telegram.telegrambots.meta.api.objects.Message.class);
+    @Test
+    void execute_ShouldHandleEmptyTree() {
+        when(categoryServiceMock.getTreeLevel(null, 0, ViewTreeCommand.PAGE_SIZE))
+                .thenReturn(new CategoryTreeLevel(null, null, null, List.of(), false));
 
-        when(update.getMessage()).thenReturn(message);
-        when(message.getChatId()).thenReturn(chatId);
+        viewTreeCommand.execute(messageUpdate());
 
-        ArgumentCaptor<SendMessage> messageCaptor = ArgumentCaptor.forClass(SendMessage.class);
+        ArgumentCaptor<SendMessage> captor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        assertEquals("Дерево категорий пусто.", captor.getValue().getText());
+        assertTrue(keyboardOf(captor.getValue()).isEmpty());
+    }
 
-        viewTreeCommand.execute(update);
+    @Test
+    void execute_WithInlineRoot_ShouldSendThatCategoryLevel() {
+        when(categoryServiceMock.getCategoryId("Root")).thenReturn(36L);
+        when(categoryServiceMock.getCategoryId("Missing")).thenThrow(new CategoryIsNotFound());
+        when(categoryServiceMock.getTreeLevel(36L, 0, ViewTreeCommand.PAGE_SIZE)).thenReturn(
+                new CategoryTreeLevel(36L, "Root", null, List.of(row(37, "Child", false)), false));
+
+        viewTreeCommand.execute(messageUpdate(), "Root");
+        viewTreeCommand.execute(messageUpdate(), "Missing");
+
+        ArgumentCaptor<SendMessage> captor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        assertEquals("Подкатегории \"Root\":", captor.getValue().getText());
+        verify(botMock).sendMessage(CHAT_ID, "Категория \"Missing\" не найдена.");
+    }
 
-        verify(botMock, times(1)).sendMessage(chatId, "Дерево категорий:\n" + treeRepresentation);
+    @Test
+    void execute_ShouldHandleException() {
+        when(categoryServiceMock.getTreeLevel(null, 0, ViewTreeCommand.PAGE_SIZE))
+                .thenThrow(new RuntimeException("Test exception"));
+
+        assertDoesNotThrow(() -> viewTreeCommand.execute(messageUpdate()));
+
+        verify(botMock, times(1)).sendMessage(CHAT_ID, "Произошла ошибка при отображении дерева категорий: Test exception");
     }
 
     @Test
-    void execute_ShouldHandleEmptyTree() {
-        long chatId = 123456789L;
-        String emptyTree = "Дерево категорий пусто.";
-        when(categoryServiceMock.viewTree()).thenReturn(emptyTree);
+    void handleCallback_ShouldEditMessageWithChildLevel() {
+        when(categoryServiceMock.getTreeLevel(36L, 0, ViewTreeCommand.PAGE_SIZE)).thenReturn(
+                new CategoryTreeLevel(36L, "Root", null, List.of(row(37, "Child", false)), false));
+
+        viewTreeCommand.handleCallback(callbackQuery("t:10"));
+
+        ArgumentCaptor<EditMessageText> captor = ArgumentCaptor.forClass(EditMessageText.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        EditMessageText edit = captor.getValue();
+        assertEquals(7, edit.getMessageId());
+        assertEquals("Подкатегории \"Root\":", edit.getText());
+        assertEquals("t:11", edit.getReplyMarkup().getKeyboard().get(0).get(0).getCallbackData());
+        assertEquals("⬆ Назад", edit.getReplyMarkup().getKeyboard().get(1).get(0).getText());
+        assertEquals("t:0", edit.getReplyMarkup().getKeyboard().get(1).get(0).getCallbackData());
+        verify(botMock).send(eq(CHAT_ID), any(AnswerCallbackQuery.class));
+    }
 
-        Update update = mock(Update.class);
-        var message = mock(org.telegram.telegrambots.meta.api.objects.Message.class);
+    @Test
+    void handleCallback_ShouldPassPageCursor() {
+        when(categoryServiceMock.getTreeLevel(null, 20L, ViewTreeCommand.PAGE_SIZE))
+                .thenReturn(new CategoryTreeLevel(null, null, null, List.of(row(21, "Next", false)), false));
+
+        viewTreeCommand.handleCallback(callbackQuery("t:0:k"));
+
+        ArgumentCaptor<EditMessageText> captor = ArgumentCaptor.forClass(EditMessageText.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        assertEquals("⏮ В начало", captor.getValue().getReplyMarkup().getKeyboard().get(1).get(0).getText());
+    }
 
+    @Test
+    void handleCallback_WhenCategoryRemoved_ShouldAnswerWithNotice() {
+        when(categoryServiceMock.getTreeLevel(36L, 0, ViewTreeCommand.PAGE_SIZE)).thenThrow(new CategoryIsNotFound());
+
+        viewTreeCommand.handleCallback(callbackQuery("t:10"));
+
+        ArgumentCaptor<AnswerCallbackQuery> captor = ArgumentCaptor.forClass(AnswerCallbackQuery.class);
+        verify(botMock).send(eq(CHAT_ID), captor.capture());
+        assertEquals("Категория уже удалена.", captor.getValue().getText());
+        verify(botMock, never()).send(eq(CHAT_ID), any(EditMessageText.class));
+    }
+
+    private static Update messageUpdate() {
+        Update update = mock(Update.class);
+        Message message = mock(Message.class);
         when(update.getMessage()).thenReturn(message);
-        when(message.getChatId()).thenReturn(chatId);
+        when(message.getChatId()).thenReturn(CHAT_ID);
+        return update;
+    }
 
-        viewTreeCommand.execute(update);
+    private static CallbackQuery callbackQuery(String data) {
+        Message message = mock(Message.class);
+        when(message.getChatId()).thenReturn(CHAT_ID);
+        when(message.getMessageId()).thenReturn(7);
+        CallbackQuery callbackQuery = mock(CallbackQuery.class);
+        when(callbackQuery.getId()).thenReturn("query");
+        when(callbackQuery.getData()).thenReturn(data);
+        when(callbackQuery.getMessage()).thenReturn(message);
+        return callbackQuery;
+    }
+
+    private static List<List<InlineKeyboardButton>> keyboardOf(SendMessage message) {
+        return ((InlineKeyboardMarkup) message.getReplyMarkup()).getKeyboard();
+    }
 
-        verify(botMock, times(1)).sendMessage(chatId, "Дерево категорий:\n" + emptyTree);
+    private static CategoryLevelRow row(long id, String name, boolean hasChildren) {
+        return new CategoryLevelRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Long getParentId() {
+                return null;
+            }
+
+            @Override
+            public boolean getHasChildren() {
+                return hasChildren;
+            }
+        };
     }
 
     @Test
-    void execute_ShouldHandleException() {
-        long chatId = 123456789L;
-        Update update = mock(Update.class);
-        var message = mock(org.telegram.telegrambots.meta.api.objects.Message.class);
+    void execute_WithDepth_ShouldSendSubtreeAsText() {
+        when(categoryServiceMock.viewTree("Root", 1)).thenReturn("--Root\n  --Child\n");
 
-        when(update.getMessage()).thenReturn(message);
-        when(message.getChatId()).thenReturn(chatId);
+        viewTreeCommand.execute(messageUpdate(), "Root 1");
+
+        verify(botMock).sendMessage(CHAT_ID, "--Root\n  --Child\n");
+        verify(categoryServiceMock, never()).getTreeLevel(any(), anyLong(), anyInt());
+        verify(categoryServiceMock, never()).getTreeSnapshot();
+    }
 
-        when(categoryServiceMock.viewTree()).thenThrow(new RuntimeException("Test exception"));
+    @Test
+    void execute_WithNameEndingInDigits_ShouldOpenThatCategory() {
+        when(categoryServiceMock.viewTree("iPhone", 15)).thenThrow(new CategoryIsNotFound());
+        when(categoryServiceMock.getCategoryId("iPhone 15")).thenReturn(15L);
+        when(categoryServiceMock.getTreeLevel(15L, 0, ViewTreeCommand.PAGE_SIZE)).thenReturn(
+                new CategoryTreeLevel(15L, "iPhone 15", null, List.of(), false));
 
-        assertDoesNotThrow(() -> viewTreeCommand.execute(update));
+        viewTreeCommand.execute(messageUpdate(), "iPhone 15");
 
-        verify(botMock, times(1)).sendMessage(chatId, "Произошла ошибка при отображении дерева категорий: Test exception");
+        verify(botMock, never()).sendMessage(eq(CHAT_ID), anyString());
+        verify(categoryServiceMock).getTreeLevel(15L, 0, ViewTreeCommand.PAGE_SIZE);
     }
 
+    @Test
+    void truncate_ShouldFitTelegramMessageLimit() {
+        String line = "  --Категория\n";
+        String text = line.repeat(ViewTreeCommand.MAX_MESSAGE_LENGTH / line.length() + 10);
+
+        String truncated = ViewTreeCommand.truncate(text);
+
+        assertTrue(truncated.length() <= ViewTreeCommand.MAX_MESSAGE_LENGTH);
+        assertTrue(truncated.endsWith("/download"));
+        assertEquals("--Root\n", ViewTreeCommand.truncate("--Root\n"));
+    }
 }
@@ -0,0 +1,134 @@
+package category.tree.bot.configuration;
+
+import category.tree.bot.cache.CategoryEntityCache;
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.entity.Category;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.repository.CategoryBulkRepository;
+import category.tree.bot.repository.CategoryHierarchyRepository;
+import category.tree.bot.repository.CategoryRepository;
+import category.tree.bot.service.implementations.CategoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Второй уровень кэша кладёт только зафиксированные данные, поэтому тесты работают без общей транзакции
+ * и очищают таблицы после себя.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:category-cache;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=validate"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CategoryServiceImpl.class, CategoryBulkRepository.class, CategoryHierarchyRepository.class, CategoryTreeCache.class,
+        CategoryEntityCache.class, CategoryCacheConfiguration.class, BotMetrics.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CategoryCacheConfigurationTest {
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryServiceImpl categoryService;
+
+    @Autowired
+    private CategoryTreeCache treeCache;
+
+    @Autowired
+    private CategoryEntityCache entityCache;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        categoryService.addElement("Фрукты", null);
+        categoryService.addElement("Фрукты", "Яблоки");
+        categoryService.addElement("Яблоки", "Антоновка");
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("UPDATE categories SET parent_id = NULL");
+        jdbcTemplate.update("DELETE FROM categories");
+        entityCache.evictAll();
+    }
+
+    @Test
+    void findByName_ShouldResolveFromSecondLevelCacheAfterFirstLoad() {
+        categoryRepository.findByName("Антоновка").orElseThrow();
+        statistics.clear();
+
+        Category cached = categoryRepository.findByName("Антоновка").orElseThrow();
+
+        assertTrue(categoryRepository.existsByName("Антоновка"));
+        assertEquals("Яблоки", cached.getParent().getName());
+        assertEquals(0, statistics.getPrepareStatementCount(), "Повторный поиск по имени не должен обращаться к базе");
+        assertTrue(statistics.getNaturalIdCacheHitCount() > 0);
+        assertTrue(statistics.getSecondLevelCacheHitCount() > 0);
+    }
+
+    @Test
+    void importCategories_ShouldEvictCachedChildrenOfExistingParent() {
+        assertEquals(1, childrenOf("Фрукты"));
+
+        categoryService.importCategories(List.of(new CategoryImportRow(2, "Груши", "Фрукты")));
+
+        assertEquals(2, childrenOf("Фрукты"), "Подкатегории, вставленные через JDBC, не должны читаться из устаревшего кэша");
+    }
+
+    @Test
+    void removeElement_ShouldEvictRemovedCategoryFromParentChildren() {
+        assertEquals(1, childrenOf("Яблоки"));
+
+        categoryService.removeElement("Антоновка");
+
+        assertEquals(0, childrenOf("Яблоки"));
+        assertFalse(categoryRepository.existsByName("Антоновка"));
+    }
+
+    @Test
+    void markStale_ShouldEvictCategoriesChangedOnAnotherNode() {
+        categoryRepository.findByName("Антоновка").orElseThrow();
+        jdbcTemplate.update("DELETE FROM categories WHERE name = 'Антоновка'");
+
+        treeCache.markStale();
+
+        assertFalse(categoryRepository.existsByName("Антоновка"), "После изменения на другом узле кэш должен сбрасываться");
+    }
+
+    private int childrenOf(String name) {
+        return transactionTemplate.execute(status -> categoryRepository.findByName(name).orElseThrow().getChildren().size());
+    }
+}
@@ -0,0 +1,112 @@
+package category.tree.bot.controller;
+
+import category.tree.bot.bulk.CategoryBulkImporter;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryTreePage;
+import category.tree.bot.service.services.CategoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CategoryControllerTest {
+
+    private CategoryService categoryService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        categoryService = mock(CategoryService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new CategoryController(categoryService,
+                new CategoryBulkImporter(categoryService, new ObjectMapper()))).build();
+    }
+
+    @Test
+    void tree_ShouldReturnPageWithEtagAndNotModifiedUntilTreeChanges() throws Exception {
+        when(categoryService.getTreeVersion()).thenReturn(3L);
+        when(categoryService.getTreePage(eq("Root"), eq(1), isNull(), eq(100))).thenReturn(new CategoryTreePage(3L,
+                List.of(new CategoryTreePage.Node(1L, "Root", null, 0, 1)), "cursor"));
+
+        String etag = mockMvc.perform(get("/category/tree").param("root", "Root").param("depth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(3))
+                .andExpect(jsonPath("$.nodes[0].name").value("Root"))
+                .andExpect(jsonPath("$.nextCursor").value("cursor"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/category/tree").param("root", "Root").param("depth", "1").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        verify(categoryService, times(1)).getTreePage(any(), any(), any(), anyInt());
+
+        when(categoryService.getTreeVersion()).thenReturn(4L);
+        when(categoryService.getTreePage(eq("Root"), eq(1), isNull(), eq(100))).thenReturn(new CategoryTreePage(4L, List.of(), null));
+
+        String changed = mockMvc.perform(get("/category/tree").param("root", "Root").param("depth", "1").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(etag, changed, "После изменения дерева ETag должен измениться");
+    }
+
+    @Test
+    void tree_ShouldRejectInvalidCursor() throws Exception {
+        when(categoryService.getTreePage(any(), any(), eq("bad"), anyInt()))
+                .thenThrow(new IllegalArgumentException("Malformed cursor"));
+
+        mockMvc.perform(get("/category/tree").param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void bulk_ShouldStreamResultPerItem() throws Exception {
+        when(categoryService.importCategories(anyList(), any())).thenAnswer(invocation -> {
+            Consumer<CategoryImportConflict> listener = invocation.getArgument(1);
+            listener.accept(new CategoryImportConflict(2, "Фрукты", "категория уже существует"));
+            return new CategoryImportReport(1, 1, List.of());
+        });
+
+        String body = "{\"name\":\"Яблоки\",\"parent\":\"Фрукты\"}\n{\"name\":\"Фрукты\"}\n";
+        String response = mockMvc.perform(post("/category/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body.getBytes(StandardCharsets.UTF_8)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertEquals("{\"line\":1,\"name\":\"Яблоки\",\"status\":\"CREATED\"}\n"
+                + "{\"line\":2,\"name\":\"Фрукты\",\"status\":\"CONFLICT\",\"reason\":\"категория уже существует\"}\n", response);
+    }
+
+    @Test
+    void viewTree_WithRoot_ShouldRenderSubtree() throws Exception {
+        when(categoryService.viewTree("Root", 1)).thenReturn("--Root\n  --Child\n");
+        when(categoryService.viewTree(null, -1)).thenThrow(new IllegalArgumentException("depth must not be negative: -1"));
+
+        mockMvc.perform(get("/category/viewTree").param("root", "Root").param("depth", "1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("--Root\n  --Child\n"));
+        mockMvc.perform(get("/category/viewTree").param("depth", "-1"))
+                .andExpect(status().isBadRequest());
+        verify(categoryService, never()).viewTree();
+    }
+}
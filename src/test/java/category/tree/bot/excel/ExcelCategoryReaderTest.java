@@ -0,0 +1,87 @@
+package category.tree.bot.excel;
+
+import category.tree.bot.dto.CategoryImportRow;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelCategoryReaderTest {
+
+    private static final int LARGE_ROW_COUNT = 200_000;
+    private static final int SAMPLE_EVERY = 20_000;
+    private static final long MAX_HEAP_GROWTH = 32L * 1024 * 1024;
+
+    private static File largeFile;
+
+    private final ExcelCategoryReader reader = new ExcelCategoryReader();
+
+    @BeforeAll
+    static void generateLargeFile() throws IOException {
+        largeFile = File.createTempFile("categories_large", ".xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100)) {
+            Sheet sheet = workbook.createSheet(ExcelCategoryColumns.SHEET_NAME);
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue(ExcelCategoryColumns.CATEGORY_HEADER);
+            header.createCell(1).setCellValue(ExcelCategoryColumns.PARENT_HEADER);
+            for (int i = 1; i <= LARGE_ROW_COUNT; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Категория" + i);
+                row.createCell(1).setCellValue(i == 1 ? "" : "Категория" + (i / 2));
+            }
+            try (FileOutputStream fos = new FileOutputStream(largeFile)) {
+                workbook.write(fos);
+            }
+            workbook.dispose();
+        }
+    }
+
+    @AfterAll
+    static void deleteLargeFile() {
+        largeFile.delete();
+    }
+
+    @Test
+    void read_ShouldSkipHeaderAndMapEmptyParentToRoot() throws IOException {
+        List<CategoryImportRow> rows = new ArrayList<>();
+
+        long count = reader.read(new File("src/test/resources/categories_tree (3).xlsx"), rows::add);
+
+        assertEquals(4, count);
+        assertEquals(new CategoryImportRow(2, "искусство", null), rows.get(0));
+        assertEquals(new CategoryImportRow(3, "кино", "искусство"), rows.get(1));
+        assertEquals(new CategoryImportRow(4, "хоррор", "кино"), rows.get(2));
+    }
+
+    @Test
+    void read_LargeFile_ShouldKeepHeapBounded() throws IOException {
+        long baseline = usedHeapAfterGc();
+        long[] peak = {baseline};
+
+        long count = reader.read(largeFile, row -> {
+            if (row.rowNumber() % SAMPLE_EVERY == 0) {
+                peak[0] = Math.max(peak[0], usedHeapAfterGc());
+            }
+        });
+
+        assertEquals(LARGE_ROW_COUNT, count);
+        assertTrue(peak[0] - baseline < MAX_HEAP_GROWTH,
+                "Рост кучи при импорте: " + (peak[0] - baseline) / 1024 + " KB");
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
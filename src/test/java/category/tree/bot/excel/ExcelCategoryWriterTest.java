@@ -0,0 +1,112 @@
+package category.tree.bot.excel;
+
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportRow;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelCategoryWriterTest {
+
+    private final ExcelCategoryWriter writer = new ExcelCategoryWriter();
+    private final ExcelCategoryReader reader = new ExcelCategoryReader();
+
+    @Test
+    void write_ShouldProduceFileReadableByImport() throws IOException {
+        File file = File.createTempFile("categories_export", ".xlsx");
+        file.deleteOnExit();
+
+        long written = writer.write(file, consumer -> {
+            consumer.accept(new CategoryExportRow("Родитель", null));
+            consumer.accept(new CategoryExportRow("Дочерняя", "Родитель"));
+        });
+
+        List<CategoryImportRow> rows = new ArrayList<>();
+        reader.read(file, rows::add);
+
+        assertEquals(2, written);
+        assertEquals(List.of(
+                new CategoryImportRow(2, "Родитель", null),
+                new CategoryImportRow(3, "Дочерняя", "Родитель")), rows);
+    }
+
+    @Test
+    void write_MoreRowsThanSheetHolds_ShouldContinueOnNextSheets() throws IOException {
+        File file = File.createTempFile("categories_export", ".xlsx");
+        file.deleteOnExit();
+
+        long written = new ExcelCategoryWriter(2).write(file, consumer -> {
+            for (int i = 1; i <= 5; i++) {
+                consumer.accept(new CategoryExportRow("Категория" + i, i == 1 ? null : "Категория" + (i - 1)));
+            }
+        });
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(file)) {
+            assertEquals(3, workbook.getNumberOfSheets());
+            assertEquals("Categories 3", workbook.getSheetName(2));
+            assertEquals(ExcelCategoryColumns.CATEGORY_HEADER, workbook.getSheetAt(1).getRow(0).getCell(0).getStringCellValue(),
+                    "Каждый лист должен начинаться со строки заголовка");
+        } catch (org.apache.poi.openxml4j.exceptions.InvalidFormatException e) {
+            fail(e);
+        }
+        List<String> names = new ArrayList<>();
+        long read = reader.read(file, row -> names.add(row.name()));
+
+        assertEquals(5, written);
+        assertEquals(5, read);
+        assertEquals(List.of("Категория1", "Категория2", "Категория3", "Категория4", "Категория5"), names,
+                "Родители должны читаться раньше подкатегорий и на следующих листах");
+    }
+
+    @Test
+    void write_ShouldSizeColumnsFromLongestValue() throws IOException {
+        File file = File.createTempFile("categories_export", ".xlsx");
+        file.deleteOnExit();
+        String longName = "Категория".repeat(10);
+
+        writer.write(file, consumer -> consumer.accept(new CategoryExportRow(longName, null)));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(file)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals((longName.length() + 2) * 256, sheet.getColumnWidth(ExcelCategoryColumns.CATEGORY_COLUMN));
+            assertEquals((ExcelCategoryColumns.PARENT_HEADER.length() + 2) * 256,
+                    sheet.getColumnWidth(ExcelCategoryColumns.PARENT_COLUMN));
+        } catch (org.apache.poi.openxml4j.exceptions.InvalidFormatException e) {
+            fail(e);
+        }
+    }
+
+    @Test
+    void write_LargeExport_ShouldKeepHeapBounded() throws IOException {
+        File file = File.createTempFile("categories_export", ".xlsx");
+        file.deleteOnExit();
+        long baseline = usedHeapAfterGc();
+        long[] peak = {baseline};
+
+        long written = writer.write(file, consumer -> {
+            for (int i = 1; i <= 200_000; i++) {
+                consumer.accept(new CategoryExportRow("Категория" + i, i == 1 ? null : "Категория" + (i / 2)));
+                if (i % 20_000 == 0) {
+                    peak[0] = Math.max(peak[0], usedHeapAfterGc());
+                }
+            }
+        });
+
+        assertEquals(200_000, written);
+        assertTrue(peak[0] - baseline < 32L * 1024 * 1024,
+                "Рост кучи при выгрузке: " + (peak[0] - baseline) / 1024 + " KB");
+    }
+
+    private static long usedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
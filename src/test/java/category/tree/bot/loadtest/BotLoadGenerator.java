@@ -0,0 +1,162 @@
+package category.tree.bot.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Генератор нагрузки: множество чатов одновременно проходят сценарий работы с ботом через {@link FakeTelegramBotApi}.
+ *
+ * Сценарий чата на каждом круге: добавить категорию и подкатегорию, открыть дерево и нажать кнопку,
+ * скачать Excel, загрузить Excel и удалить добавленную категорию. Каждый шаг отправляет обновление
+ * и ждёт известное количество ответов бота в этом чате, следующий шаг начинается после ответа.
+ * Шаг без ответа за {@code stepTimeout} считается неудачным, и сценарий чата прерывается.
+ */
+public class BotLoadGenerator {
+
+    private static final long FIRST_CHAT_ID = 1_000_000;
+
+    private final FakeTelegramBotApi api;
+    private final byte[] uploadFile;
+    private final long stepTimeoutNanos;
+
+    private final Map<Long, ChatRun> runs = new ConcurrentHashMap<>();
+    private final Map<String, Queue<Long>> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong failedSteps = new AtomicLong();
+    private final ScheduledExecutorService timeouts = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * @param api         Сервер Bot API, к которому подключён бот.
+     * @param uploadFile  Содержимое Excel-файла для шага загрузки.
+     * @param stepTimeout Максимальное время ожидания ответа на один шаг.
+     * @param unit        Единица измерения {@code stepTimeout}.
+     */
+    public BotLoadGenerator(FakeTelegramBotApi api, byte[] uploadFile, long stepTimeout, TimeUnit unit) {
+        this.api = api;
+        this.uploadFile = uploadFile;
+        this.stepTimeoutNanos = unit.toNanos(stepTimeout);
+        api.setListener((chatId, method) -> {
+            ChatRun run = runs.get(chatId);
+            if (run != null) {
+                run.onReply();
+            }
+        });
+    }
+
+    /**
+     * Запускает сценарий во всех чатах одновременно и ждёт его завершения.
+     *
+     * @param chats  Количество чатов.
+     * @param rounds Количество повторений сценария в каждом чате.
+     * @return Отчёт о прогоне.
+     */
+    public LoadReport run(int chats, int rounds) throws Exception {
+        long callsBefore = api.getCallCount();
+        long start = System.nanoTime();
+
+        List<CompletableFuture<Void>> results = new ArrayList<>(chats);
+        for (long chatId = FIRST_CHAT_ID; chatId < FIRST_CHAT_ID + chats; chatId++) {
+            ChatRun run = new ChatRun(chatId, scenario(chatId, rounds));
+            runs.put(chatId, run);
+            results.add(run.done);
+        }
+        runs.values().forEach(ChatRun::startNext);
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get();
+
+        long elapsed = System.nanoTime() - start;
+        timeouts.shutdownNow();
+        runs.clear();
+
+        Map<String, long[]> stepLatencies = new ConcurrentHashMap<>();
+        latencies.forEach((step, values) -> stepLatencies.put(step, values.stream().mapToLong(Long::longValue).toArray()));
+        return new LoadReport(chats, elapsed, api.getCallCount() - callsBefore, failedSteps.get(), stepLatencies);
+    }
+
+    private List<Step> scenario(long chatId, int rounds) {
+        List<Step> steps = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            String root = "Load" + chatId + "r" + round;
+            steps.add(new Step("add", 1, id -> api.pushMessage(id, "/addElement")));
+            steps.add(new Step("add", 1, id -> api.pushMessage(id, root)));
+            steps.add(new Step("add", 1, id -> api.pushMessage(id, "/addElement")));
+            steps.add(new Step("add", 1, id -> api.pushMessage(id, root + " Child" + chatId)));
+            steps.add(new Step("view", 1, id -> api.pushMessage(id, "/viewTree")));
+            steps.add(new Step("view", 2, id -> api.pushCallback(id, 1, "t:0")));
+            steps.add(new Step("download", 1, id -> api.pushMessage(id, "/download")));
+            steps.add(new Step("upload", 1, id -> api.pushMessage(id, "/upload")));
+            steps.add(new Step("upload", 2, id -> api.pushDocument(id, "categories.xlsx", uploadFile)));
+            steps.add(new Step("remove", 1, id -> api.pushMessage(id, "/removeElement")));
+            steps.add(new Step("remove", 1, id -> api.pushMessage(id, root)));
+        }
+        return steps;
+    }
+
+    /**
+     * Шаг сценария: действие пользователя и количество ответов бота, которое его завершает.
+     */
+    private record Step(String name, int expectedReplies, LongConsumer action) {
+    }
+
+    /**
+     * Состояние сценария одного чата.
+     */
+    private final class ChatRun {
+        private final long chatId;
+        private final List<Step> steps;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private int index = -1;
+        private int received;
+        private long startedAt;
+        private ScheduledFuture<?> timeout;
+
+        private ChatRun(long chatId, List<Step> steps) {
+            this.chatId = chatId;
+            this.steps = steps;
+        }
+
+        private synchronized void startNext() {
+            index++;
+            if (index >= steps.size()) {
+                done.complete(null);
+                return;
+            }
+            Step step = steps.get(index);
+            int current = index;
+            received = 0;
+            startedAt = System.nanoTime();
+            timeout = timeouts.schedule(() -> onTimeout(current), stepTimeoutNanos, TimeUnit.NANOSECONDS);
+            step.action().accept(chatId);
+        }
+
+        private synchronized void onReply() {
+            if (done.isDone() || index < 0) {
+                return;
+            }
+            Step step = steps.get(index);
+            if (++received < step.expectedReplies()) {
+                return;
+            }
+            timeout.cancel(false);
+            latencies.computeIfAbsent(step.name(), name -> new ConcurrentLinkedQueue<>()).add(System.nanoTime() - startedAt);
+            startNext();
+        }
+
+        private synchronized void onTimeout(int step) {
+            if (index == step && !done.isDone()) {
+                failedSteps.incrementAndGet();
+                done.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package category.tree.bot.loadtest;
+
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.excel.ExcelCategoryWriter;
+import category.tree.bot.updatescontrol.TelegramBotUpdatesControl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сквозной нагрузочный тест: бот с базой H2 получает обновления long polling'ом от {@link FakeTelegramBotApi}.
+ *
+ * По умолчанию выполняется небольшой прогон в составе обычной сборки. Полная нагрузка задаётся свойствами:
+ * {@code mvn test -Dtest=BotLoadTest -Dloadtest.chats=5000 -Dloadtest.rounds=3}.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:loadtest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "telegram.bot.token=" + BotLoadTest.TOKEN,
+        "telegram.bot.username=load_test_bot",
+        "telegram.bot.mode=none",
+        "telegram.bot.outbound.global-rate=1000000",
+        "telegram.bot.outbound.per-chat-rate=1000",
+        "telegram.bot.outbound.per-chat-burst=1000"
+})
+@DirtiesContext
+class BotLoadTest {
+
+    static final String TOKEN = "123:load";
+
+    private static final int CHATS = Integer.getInteger("loadtest.chats", 20);
+    private static final int ROUNDS = Integer.getInteger("loadtest.rounds", 1);
+    private static final long STEP_TIMEOUT_SECONDS = Long.getLong("loadtest.step-timeout-seconds", 30);
+
+    private static FakeTelegramBotApi api;
+
+    @Autowired
+    private TelegramBotUpdatesControl bot;
+
+    @DynamicPropertySource
+    static void botApiProperties(DynamicPropertyRegistry registry) throws IOException {
+        api = new FakeTelegramBotApi(TOKEN);
+        registry.add("telegram.bot.api-url", api::apiUrl);
+    }
+
+    @AfterAll
+    static void stopApi() {
+        api.close();
+    }
+
+    @Test
+    void scenarios_ShouldCompleteInAllChats() throws Exception {
+        BotSession session = new TelegramBotsApi(DefaultBotSession.class).registerBot(bot);
+        try {
+            LoadReport report = new BotLoadGenerator(api, uploadFile(), STEP_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    .run(CHATS, ROUNDS);
+            System.out.println(report);
+
+            assertEquals(0, report.failedSteps(), "Часть шагов не получила ответа бота:\n" + report);
+            assertEquals(11L * CHATS * ROUNDS, report.completedSteps());
+        } finally {
+            session.stop();
+        }
+    }
+
+    private static byte[] uploadFile() throws IOException {
+        File file = Files.createTempFile("load-upload", ".xlsx").toFile();
+        try {
+            new ExcelCategoryWriter().write(file, sink -> {
+                for (int i = 0; i < 100; i++) {
+                    sink.accept(new CategoryExportRow("Upload" + i, null));
+                    sink.accept(new CategoryExportRow("UploadChild" + i, "Upload" + i));
+                }
+            });
+            return Files.readAllBytes(file.toPath());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package category.tree.bot.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Локальная замена Telegram Bot API для нагрузочных тестов.
+ *
+ * Поддерживает методы, которые использует бот: getUpdates (long polling), sendMessage, sendDocument,
+ * editMessageText, answerCallbackQuery, getFile и скачивание файла по адресу {@code /file/bot<токен>/<путь>}.
+ * Остальные методы отвечают {@code true}. Обновления добавляются методами {@code push*},
+ * о каждом запросе бота сообщается слушателю.
+ */
+public class FakeTelegramBotApi implements AutoCloseable {
+
+    /**
+     * Слушатель запросов бота к Bot API.
+     */
+    @FunctionalInterface
+    public interface CallListener {
+
+        /**
+         * @param chatId Чат, указанный в запросе, или 0, если запрос не относится к чату.
+         * @param method Имя метода Bot API в нижнем регистре.
+         */
+        void onCall(long chatId, String method);
+    }
+
+    private static final long MAX_POLL_MILLIS = 1000;
+    private static final Pattern MULTIPART_CHAT_ID = Pattern.compile("name=\"chat_id\".*?\r\n\r\n(-?\\d+)", Pattern.DOTALL);
+
+    static {
+        // Без TCP_NODELAY ответ, записанный двумя пакетами, ждёт отложенного ACK и добавляет ~40 мс к каждому запросу.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonNodeFactory json = JsonNodeFactory.instance;
+    private final String token;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final NavigableMap<Long, ObjectNode> pendingUpdates = new ConcurrentSkipListMap<>();
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Long> callbackChats = new ConcurrentHashMap<>();
+    private final AtomicLong updateIds = new AtomicLong();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private final AtomicLong callCount = new AtomicLong();
+    private final Object updatesLock = new Object();
+
+    private volatile CallListener listener = (chatId, method) -> {};
+
+    /**
+     * Запускает сервер на свободном порту localhost.
+     *
+     * @param token Токен бота, который должен присутствовать в адресах запросов.
+     * @throws IOException Если сервер не удалось запустить.
+     */
+    public FakeTelegramBotApi(String token) throws IOException {
+        this.token = token;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/bot" + token + "/", this::handleMethod);
+        this.server.createContext("/file/bot" + token + "/", this::handleDownload);
+        this.server.start();
+    }
+
+    /**
+     * @return Адрес Bot API для свойства {@code telegram.bot.api-url}.
+     */
+    public String apiUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/bot";
+    }
+
+    public void setListener(CallListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return Количество запросов бота к Bot API, кроме getUpdates.
+     */
+    public long getCallCount() {
+        return callCount.get();
+    }
+
+    /**
+     * Добавляет текстовое сообщение пользователя.
+     */
+    public void pushMessage(long chatId, String text) {
+        ObjectNode message = message(chatId, messageIds.incrementAndGet());
+        message.put("text", text);
+        if (text.startsWith("/")) {
+            int end = text.indexOf(' ');
+            message.putArray("entities").addObject()
+                    .put("type", "bot_command")
+                    .put("offset", 0)
+                    .put("length", end < 0 ? text.length() : end);
+        }
+        pushUpdate(json.objectNode().set("message", message));
+    }
+
+    /**
+     * Добавляет сообщение пользователя с документом. Содержимое документа можно будет скачать через getFile.
+     */
+    public void pushDocument(long chatId, String fileName, byte[] content) {
+        String fileId = "file" + updateIds.get() + "_" + chatId;
+        files.put(fileId, content);
+
+        ObjectNode message = message(chatId, messageIds.incrementAndGet());
+        message.putObject("document")
+                .put("file_id", fileId)
+                .put("file_unique_id", fileId)
+                .put("file_name", fileName)
+                .put("file_size", content.length);
+        pushUpdate(json.objectNode().set("message", message));
+    }
+
+    /**
+     * Добавляет нажатие на кнопку встроенной клавиатуры под сообщением бота.
+     */
+    public void pushCallback(long chatId, int messageId, String data) {
+        String callbackId = "cb" + updateIds.get() + "_" + chatId;
+        callbackChats.put(callbackId, chatId);
+        ObjectNode callback = json.objectNode()
+                .put("id", callbackId)
+                .put("chat_instance", String.valueOf(chatId))
+                .put("data", data);
+        callback.set("from", user(chatId));
+        callback.set("message", message(chatId, messageId));
+        pushUpdate(json.objectNode().set("callback_query", callback));
+    }
+
+    private void pushUpdate(ObjectNode update) {
+        long updateId = updateIds.incrementAndGet();
+        update.put("update_id", updateId);
+        pendingUpdates.put(updateId, update);
+        synchronized (updatesLock) {
+            updatesLock.notifyAll();
+        }
+    }
+
+    private void handleMethod(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+        if (method.equals("getupdates")) {
+            respond(exchange, getUpdates(body.isBlank() ? json.objectNode() : mapper.readTree(body)));
+            return;
+        }
+
+        long chatId = chatId(body);
+        JsonNode result = switch (method) {
+            case "sendmessage", "editmessagetext" -> message(chatId, messageIds.incrementAndGet());
+            case "senddocument" -> sentDocument(chatId);
+            case "getfile" -> getFile(mapper.readTree(body).path("file_id").asText());
+            case "getme" -> user(0).put("is_bot", true).put("username", "fake_bot");
+            default -> json.booleanNode(true);
+        };
+        respond(exchange, result);
+
+        callCount.incrementAndGet();
+        listener.onCall(chatId, method);
+    }
+
+    private void handleDownload(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] content = files.get(path.substring(path.lastIndexOf('/') + 1));
+        if (content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, content.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(content);
+        }
+    }
+
+    /**
+     * Возвращает неподтверждённые обновления, ожидая их появления не дольше таймаута запроса.
+     */
+    private ArrayNode getUpdates(JsonNode request) {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(100);
+        long timeoutMillis = Math.min(TimeUnit.SECONDS.toMillis(request.path("timeout").asLong(0)), MAX_POLL_MILLIS);
+
+        pendingUpdates.headMap(offset).clear();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (updatesLock) {
+            long wait;
+            while (pendingUpdates.isEmpty() && (wait = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    updatesLock.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        ArrayNode updates = json.arrayNode();
+        Iterator<ObjectNode> iterator = pendingUpdates.values().iterator();
+        while (iterator.hasNext() && updates.size() < limit) {
+            updates.add(iterator.next());
+        }
+        return updates;
+    }
+
+    /**
+     * Ответ на sendDocument: сообщение с документом, чей file_id бот может отправить повторно.
+     */
+    private ObjectNode sentDocument(long chatId) {
+        int messageId = messageIds.incrementAndGet();
+        ObjectNode message = message(chatId, messageId);
+        message.putObject("document")
+                .put("file_id", "sent" + messageId)
+                .put("file_unique_id", "sent" + messageId);
+        return message;
+    }
+
+    private JsonNode getFile(String fileId) {
+        byte[] content = files.get(fileId);
+        ObjectNode file = json.objectNode()
+                .put("file_id", fileId)
+                .put("file_unique_id", fileId);
+        if (content != null) {
+            file.put("file_size", content.length).put("file_path", "documents/" + fileId);
+        }
+        return file;
+    }
+
+    /**
+     * Определяет чат запроса. У answerCallbackQuery нет chat_id, чат берётся по идентификатору нажатия.
+     */
+    private long chatId(String body) throws IOException {
+        if (body.startsWith("{")) {
+            JsonNode request = mapper.readTree(body);
+            String callbackId = request.path("callback_query_id").asText(null);
+            return callbackId != null ? callbackChats.getOrDefault(callbackId, 0L) : request.path("chat_id").asLong(0);
+        }
+        Matcher matcher = MULTIPART_CHAT_ID.matcher(body);
+        return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    private ObjectNode message(long chatId, int messageId) {
+        ObjectNode message = json.objectNode()
+                .put("message_id", messageId)
+                .put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.set("from", user(chatId));
+        return message;
+    }
+
+    private ObjectNode user(long id) {
+        return json.objectNode()
+                .put("id", id)
+                .put("is_bot", false)
+                .put("first_name", "User" + id);
+    }
+
+    private void respond(HttpExchange exchange, JsonNode result) throws IOException {
+        ObjectNode response = json.objectNode().put("ok", true);
+        response.set("result", result);
+        byte[] bytes = mapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,63 @@
+package category.tree.bot.loadtest;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Результат нагрузочного прогона: задержки шагов сценария и пропускная способность бота.
+ * Задержка шага — время от отправки обновления до последнего ожидаемого ответа бота.
+ *
+ * @param chats         Количество одновременно работающих чатов.
+ * @param elapsedNanos  Длительность прогона.
+ * @param botCalls      Количество запросов бота к Bot API за прогон.
+ * @param failedSteps   Количество шагов, не получивших ответа за отведённое время.
+ * @param stepLatencies Задержки выполненных шагов в наносекундах по именам шагов.
+ */
+public record LoadReport(int chats, long elapsedNanos, long botCalls, long failedSteps, Map<String, long[]> stepLatencies) {
+
+    public long completedSteps() {
+        return stepLatencies.values().stream().mapToLong(latencies -> latencies.length).sum();
+    }
+
+    /**
+     * @return Количество запросов бота к Bot API в секунду.
+     */
+    public double messagesPerSecond() {
+        return botCalls * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Возвращает перцентиль задержки по всем шагам.
+     *
+     * @param percentile Перцентиль от 0 до 100.
+     * @return Задержка в миллисекундах.
+     */
+    public double latencyMillis(double percentile) {
+        return percentile(stepLatencies.values().stream().flatMapToLong(Arrays::stream).toArray(), percentile);
+    }
+
+    private static double percentile(long[] latencies, double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(rank - 1, 0)] / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                "chats=%d, steps=%d, failed=%d, elapsed=%.1f s, messages/sec=%.1f, p50=%.1f ms, p99=%.1f ms%n",
+                chats, completedSteps(), failedSteps, elapsedNanos / 1e9, messagesPerSecond(),
+                latencyMillis(50), latencyMillis(99)));
+        new TreeMap<>(stepLatencies).forEach((step, latencies) -> text.append(String.format(Locale.ROOT,
+                "  %-12s count=%d, p50=%.1f ms, p99=%.1f ms%n",
+                step, latencies.length, percentile(latencies, 50), percentile(latencies, 99))));
+        return text.toString();
+    }
+}
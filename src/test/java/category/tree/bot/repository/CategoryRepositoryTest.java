@@ -0,0 +1,283 @@
+package category.tree.bot.repository;
+
+import category.tree.bot.cache.CategoryEntityCache;
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.configuration.CategoryCacheConfiguration;
+import category.tree.bot.dto.CategoryExportRow;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.dto.CategoryTreeLevel;
+import category.tree.bot.entity.Category;
+import category.tree.bot.exceptions.CategoryAlreadyExists;
+import category.tree.bot.exceptions.CategoryIsNotFound;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.service.implementations.CategoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:categories;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({CategoryServiceImpl.class, CategoryBulkRepository.class, CategoryHierarchyRepository.class, CategoryTreeCache.class,
+        CategoryEntityCache.class, CategoryCacheConfiguration.class, BotMetrics.class, SimpleMeterRegistry.class})
+class CategoryRepositoryTest {
+
+    private static final int DEPTH = 30;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryServiceImpl categoryService;
+
+    @Autowired
+    private CategoryBulkRepository bulkRepository;
+
+    @Autowired
+    private CategoryEntityCache entityCache;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        // Тесты откатывают транзакции, а кэш категорий общий для всех тестов контекста.
+        entityCache.evictAll();
+        categoryService.addElement("Root", null);
+        categoryService.addElement("Root", "Sibling");
+        String parent = "Root";
+        for (int i = 1; i <= DEPTH; i++) {
+            categoryService.addElement(parent, "Level" + i);
+            parent = "Level" + i;
+        }
+        categoryService.addElement("OtherRoot", null);
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void findTree_ShouldLoadWholeTreeInSingleStatement() {
+        List<CategoryTreeRow> rows = categoryRepository.findTree();
+
+        assertEquals(DEPTH + 3, rows.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals("Root", rows.get(0).getName());
+        assertNull(rows.get(0).getParentId());
+        assertEquals(DEPTH, rows.get(rows.size() - 1).getDepth());
+    }
+
+    @Test
+    void getTreeLevel_ShouldPageChildrenOfSingleNode() {
+        Long rootId = categoryRepository.findByName("Root").orElseThrow().getId();
+        statistics.clear();
+
+        CategoryTreeLevel firstPage = categoryService.getTreeLevel(rootId, 0, 1);
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals("Root", firstPage.nodeName());
+        assertNull(firstPage.parentId());
+        assertEquals(1, firstPage.children().size());
+        assertEquals("Sibling", firstPage.children().get(0).getName());
+        assertFalse(firstPage.children().get(0).getHasChildren());
+        assertTrue(firstPage.hasMore());
+
+        CategoryTreeLevel secondPage = categoryService.getTreeLevel(rootId, firstPage.children().get(0).getId(), 1);
+
+        assertEquals("Level1", secondPage.children().get(0).getName());
+        assertTrue(secondPage.children().get(0).getHasChildren());
+        assertFalse(secondPage.hasMore());
+    }
+
+    @Test
+    void getTreeLevel_WithoutNode_ShouldReturnRoots() {
+        CategoryTreeLevel level = categoryService.getTreeLevel(null, 0, 10);
+
+        assertTrue(level.isRoot());
+        assertEquals(List.of("Root", "OtherRoot"), level.children().stream().map(CategoryLevelRow::getName).toList());
+        assertFalse(level.hasMore());
+    }
+
+    @Test
+    void findSubtree_ShouldLoadOnlyDescendants() {
+        Long rootId = categoryRepository.findByName("Level10").orElseThrow().getId();
+        statistics.clear();
+
+        List<CategoryTreeRow> rows = categoryRepository.findSubtree(rootId);
+
+        assertEquals(DEPTH - 9, rows.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals("Level10", rows.get(0).getName());
+        assertEquals(0, rows.get(0).getDepth());
+        assertEquals(DEPTH - 10, rows.get(rows.size() - 1).getDepth());
+    }
+
+    @Test
+    void findSubtree_WithMaxDepth_ShouldStopAtDepth() {
+        Long rootId = categoryRepository.findByName("Level10").orElseThrow().getId();
+
+        List<CategoryTreeRow> rows = categoryRepository.findSubtree(rootId, 2);
+
+        assertEquals(List.of("Level10", "Level11", "Level12"), rows.stream().map(CategoryTreeRow::getName).toList());
+    }
+
+    @Test
+    void findAncestors_ShouldReturnPathFromRootInSingleStatement() {
+        Long id = categoryRepository.findByName("Level3").orElseThrow().getId();
+        statistics.clear();
+
+        List<CategoryTreeRow> path = categoryRepository.findAncestors(id);
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(List.of("Root", "Level1", "Level2", "Level3"), path.stream().map(CategoryTreeRow::getName).toList());
+        assertEquals(3, path.get(0).getDepth());
+    }
+
+    @Test
+    void findPathsByName_ShouldReturnPathsOfAllNamesInSingleStatement() {
+        statistics.clear();
+
+        List<CategoryPathRow> rows = categoryRepository.findPathsByName(List.of("Level2", "Root", "Missing"));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(List.of("Root", "Root", "Level1", "Level2"), rows.stream()
+                .map(CategoryPathRow::getAncestorName).toList());
+        assertEquals(List.of("Root", "Level2", "Level2", "Level2"), rows.stream()
+                .map(CategoryPathRow::getName).toList());
+    }
+
+    @Test
+    void countDescendants_ShouldCountWholeSubtree() {
+        Long rootId = categoryRepository.findByName("Root").orElseThrow().getId();
+
+        assertEquals(DEPTH + 1, categoryRepository.countDescendants(rootId));
+    }
+
+    @Test
+    void hierarchy_ShouldFollowImportAndRemoval() {
+        categoryService.importCategories(List.of(
+                new CategoryImportRow(2, "Imported", "Level2"),
+                new CategoryImportRow(3, "ImportedChild", "Imported")));
+        Long importedChildId = categoryRepository.findByName("ImportedChild").orElseThrow().getId();
+        Long level1Id = categoryRepository.findByName("Level1").orElseThrow().getId();
+
+        assertEquals(List.of("Root", "Level1", "Level2", "Imported", "ImportedChild"),
+                categoryRepository.findAncestors(importedChildId).stream().map(CategoryTreeRow::getName).toList());
+        assertEquals(DEPTH + 1, categoryRepository.countDescendants(level1Id));
+
+        categoryService.removeElement("Imported");
+        entityManager.flush();
+
+        assertEquals(DEPTH - 1, categoryRepository.countDescendants(level1Id));
+        assertTrue(categoryRepository.findAncestors(importedChildId).isEmpty());
+    }
+
+    @Test
+    void viewTree_ShouldNotScaleQueriesWithDepth() {
+        String tree = categoryService.viewTree();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(tree.startsWith("--Root\n  --Sibling\n  --Level1\n    --Level2\n"));
+        assertTrue(tree.endsWith("--OtherRoot\n"));
+    }
+
+    @Test
+    void importCategories_ShouldResolveParentsInsideBatch() {
+        CategoryImportReport report = categoryService.importCategories(List.of(
+                new CategoryImportRow(2, "Imported", "Root"),
+                new CategoryImportRow(3, "ImportedChild", "Imported"),
+                new CategoryImportRow(4, "Level1", null)));
+
+        assertEquals(2, report.imported());
+        assertEquals(1, report.conflictCount());
+        Category child = categoryRepository.findByName("ImportedChild").orElseThrow();
+        assertEquals("Imported", child.getParent().getName());
+        assertEquals("Root", child.getParent().getParent().getName());
+    }
+
+    @Test
+    void insertAll_ShouldSkipNamesAddedAfterCheckWithoutAbortingBatch() {
+        CategoryImportRow existing = new CategoryImportRow(3, "Level2", "Root");
+
+        List<CategoryImportRow> skipped = bulkRepository.insertAll(List.of(
+                new CategoryImportRow(2, "Fresh", "Root"),
+                existing,
+                new CategoryImportRow(4, "FreshChild", "Fresh")));
+
+        assertEquals(List.of(existing), skipped);
+        assertEquals("Fresh", categoryRepository.findByName("FreshChild").orElseThrow().getParent().getName());
+        assertEquals("Level1", categoryRepository.findByName("Level2").orElseThrow().getParent().getName());
+    }
+
+    @Test
+    void exportCategories_ShouldStreamParentsBeforeChildren() {
+        List<CategoryExportRow> rows = new ArrayList<>();
+
+        long count = categoryService.exportCategories(rows::add);
+
+        assertEquals(DEPTH + 3, count);
+        assertEquals(new CategoryExportRow("Root", null), rows.get(0));
+        assertEquals(new CategoryExportRow("Level" + DEPTH, "Level" + (DEPTH - 1)), rows.get(rows.size() - 1));
+    }
+
+    @Test
+    void exportCategories_Subtree_ShouldReadOnlySubtreeUpToDepth() {
+        List<CategoryExportRow> rows = new ArrayList<>();
+
+        long count = categoryService.exportCategories("Level1", 2, rows::add);
+
+        assertEquals(3, count);
+        assertEquals(List.of(new CategoryExportRow("Level1", null), new CategoryExportRow("Level2", "Level1"),
+                new CategoryExportRow("Level3", "Level2")), rows);
+
+        rows.clear();
+        categoryService.exportCategories(null, 0, rows::add);
+        assertEquals(List.of(new CategoryExportRow("Root", null), new CategoryExportRow("OtherRoot", null)), rows);
+    }
+
+    @Test
+    void viewTree_Subtree_ShouldRenderFromSubtreeRoot() {
+        statistics.clear();
+        assertEquals("--Level1\n  --Level2\n", categoryService.viewTree("Level1", 1));
+        assertEquals(2, statistics.getPrepareStatementCount(), "Поиск корня и загрузка поддерева, без загрузки всего дерева");
+        assertThrows(CategoryIsNotFound.class, () -> categoryService.viewTree("Missing", null));
+        assertThrows(IllegalArgumentException.class, () -> categoryService.viewTree("Root", -1));
+    }
+
+    @Test
+    void addElement_ShouldReportExistingNameFromInsertResult() {
+        Category parent = categoryService.addElement("Level3", "Upserted");
+        entityManager.flush();
+
+        Long upsertedId = parent.getChildren().get(0).getId();
+        assertEquals(List.of("Root", "Level1", "Level2", "Level3", "Upserted"),
+                categoryRepository.findAncestors(upsertedId).stream().map(CategoryTreeRow::getName).toList());
+
+        assertThrows(CategoryAlreadyExists.class, () -> categoryService.addElement("Sibling", "Upserted"));
+        assertThrows(CategoryAlreadyExists.class, () -> categoryService.addElement("Sibling", null));
+        assertEquals("Level3", categoryRepository.findByName("Upserted").orElseThrow().getParent().getName());
+    }
+}
@@ -1,19 +1,35 @@
 package category.tree.bot.service;
 
+import category.tree.bot.cache.CategoryEntityCache;
+import category.tree.bot.cache.CategoryTreeCache;
+import category.tree.bot.dto.CategoryImportConflict;
+import category.tree.bot.dto.CategoryImportReport;
+import category.tree.bot.dto.CategoryImportRow;
+import category.tree.bot.dto.CategorySearchResult;
+import category.tree.bot.dto.CategoryTreePage;
 import category.tree.bot.entity.Category;
 import category.tree.bot.exceptions.CategoryAlreadyExists;
 import category.tree.bot.exceptions.CategoryIsNotFound;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.repository.CategoryBulkRepository;
+import category.tree.bot.repository.CategoryHierarchyRepository;
+import category.tree.bot.repository.CategoryPathRow;
 import category.tree.bot.repository.CategoryRepository;
+import category.tree.bot.repository.CategoryTreeRow;
 import category.tree.bot.service.implementations.CategoryServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.ArgumentCaptor;
 import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -23,17 +39,32 @@ class CategoryServiceImplTest {
     @Mock
     private CategoryRepository categoryRepository;
 
-    @InjectMocks
+    @Mock
+    private CategoryBulkRepository bulkRepository;
+
+    @Mock
+    private CategoryHierarchyRepository hierarchyRepository;
+
+    @Mock
+    private CategoryEntityCache entityCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
     private CategoryServiceImpl categoryService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        categoryService = new CategoryServiceImpl(categoryRepository, bulkRepository, hierarchyRepository,
+                new CategoryTreeCache(), entityCache, new TransactionTemplate(transactionManager), new BotMetrics(meterRegistry));
     }
 
     @Test
     void testViewTree_EmptyTree() {
-        when(categoryRepository.findAll()).thenReturn(List.of());
+        when(categoryRepository.findTree()).thenReturn(List.of());
 
         String result = categoryService.viewTree();
 
@@ -42,16 +73,9 @@ class CategoryServiceImplTest {
 
     @Test
     void testViewTree_NonEmptyTree() {
-        Category parentCategory = new Category();
-        parentCategory.setName("Parent");
-        parentCategory.setChildren(new ArrayList<>());
-
-        Category childCategory = new Category();
-        childCategory.setName("Child");
-        childCategory.setParent(parentCategory);
-        parentCategory.getChildren().add(childCategory);
-
-        when(categoryRepository.findAll()).thenReturn(List.of(parentCategory));
+        when(categoryRepository.findTree()).thenReturn(List.of(
+                treeRow(1L, "Parent", null, 0),
+                treeRow(2L, "Child", 1L, 1)));
 
         String result = categoryService.viewTree();
 
@@ -60,41 +84,105 @@ class CategoryServiceImplTest {
     }
 
     @Test
-    void testAddElement_NewParentCategory() {
-        when(categoryRepository.existsByName("NewParent")).thenReturn(false);
+    void testViewTree_RepeatedViewsUseSnapshot() {
+        when(categoryRepository.findTree()).thenReturn(List.of(treeRow(1L, "Cached", null, 0)));
+
+        categoryService.viewTree();
+        String result = categoryService.viewTree();
+
+        assertEquals("--Cached\n", result);
+        verify(categoryRepository, times(1)).findTree();
+    }
+
+    @Test
+    void testViewTree_SnapshotInvalidatedAfterAdd() {
+        when(categoryRepository.findTree()).thenReturn(List.of(treeRow(1L, "Existing", null, 0)));
+        when(bulkRepository.insertWithClosure("Added", null)).thenReturn(2L);
+
+        categoryService.viewTree();
+        categoryService.addElement("Added", null);
+        categoryService.viewTree();
+
+        verify(categoryRepository, times(2)).findTree();
+    }
 
-        Category newCategory = new Category();
-        newCategory.setName("NewParent");
+    @Test
+    void testSearchCategories_ShouldSeeAddedCategories() {
+        when(categoryRepository.findTree()).thenReturn(List.of(treeRow(1L, "Parent", null, 0)));
+        when(bulkRepository.insertWithClosure("Part", null)).thenReturn(2L);
+        when(categoryRepository.findPathsByName(List.of("Parent", "Part"))).thenReturn(List.of(
+                pathRow(1L, "Parent", "Parent"),
+                pathRow(2L, "Part", "Parent"),
+                pathRow(2L, "Part", "Part")));
+
+        assertEquals(List.of(new CategorySearchResult(1L, "Parent", "Parent")),
+                categoryService.searchCategories("par", 10));
+
+        categoryService.addElement("Part", null);
+
+        assertEquals(List.of(new CategorySearchResult(1L, "Parent", "Parent"),
+                        new CategorySearchResult(2L, "Part", "Parent / Part")),
+                categoryService.searchCategories("PAR", 10));
+        assertTrue(categoryService.searchCategories(" ", 10).isEmpty());
+        verify(categoryRepository, times(1)).findTree();
+    }
+
+    @Test
+    void testGetTreePage_ShouldPageSubtreeWithCursor() {
+        Category root = new Category("Root");
+        root.setId(1L);
+        when(categoryRepository.findByName("Root")).thenReturn(Optional.of(root));
+        when(categoryRepository.findSubtree(1L, 2)).thenReturn(List.of(
+                treeRow(1L, "Root", null, 0),
+                treeRow(2L, "A", 1L, 1),
+                treeRow(4L, "B", 1L, 1),
+                treeRow(3L, "A1", 2L, 2)));
+
+        CategoryTreePage first = categoryService.getTreePage("Root", 1, null, 2);
+        assertEquals(List.of(new CategoryTreePage.Node(1L, "Root", null, 0, 2),
+                new CategoryTreePage.Node(2L, "A", 1L, 1, 1)), first.nodes());
+        assertNotNull(first.nextCursor());
+
+        CategoryTreePage second = categoryService.getTreePage("Root", 1, first.nextCursor(), 2);
+        assertEquals(List.of(new CategoryTreePage.Node(4L, "B", 1L, 1, 0)), second.nodes());
+        assertNull(second.nextCursor(), "Последняя страница не должна содержать курсор");
+        assertEquals(first.version(), second.version());
+
+        assertThrows(CategoryIsNotFound.class, () -> categoryService.getTreePage("Missing", null, null, 10));
+        verify(categoryRepository, never()).findTree();
+        assertThrows(IllegalArgumentException.class, () -> categoryService.getTreePage(null, null, "@@@", 10));
+        assertThrows(IllegalArgumentException.class, () -> categoryService.getTreePage(null, -1, null, 10));
+    }
 
-        when(categoryRepository.save(any(Category.class))).thenReturn(newCategory);
+    @Test
+    void testAddElement_NewParentCategory() {
+        when(bulkRepository.insertWithClosure("NewParent", null)).thenReturn(5L);
 
         Category result = categoryService.addElement("NewParent", null);
 
         assertNotNull(result);
+        assertEquals(5L, result.getId());
         assertEquals("NewParent", result.getName());
+        verify(bulkRepository).insertWithClosure("NewParent", null);
+        verify(hierarchyRepository, never()).addNode(any(), any());
+        verify(categoryRepository, never()).existsByName(any());
+        verify(categoryRepository, never()).save(any());
     }
 
     @Test
     void testAddElement_DuplicateCategory() {
-        when(categoryRepository.existsByName("Duplicate")).thenReturn(true);
+        when(bulkRepository.insertWithClosure("Duplicate", null)).thenReturn(null);
 
         assertThrows(CategoryAlreadyExists.class, () -> categoryService.addElement("Duplicate", null));
+        verify(bulkRepository, never()).insertIfAbsent(any(), any());
     }
 
     @Test
     void testAddElement_NewChildCategory() {
-        Category parentCategory = new Category();
-        parentCategory.setName("Parent");
-        parentCategory.setChildren(new ArrayList<>());
-
+        Category parentCategory = new Category("Parent");
+        parentCategory.setId(1L);
         when(categoryRepository.findByName("Parent")).thenReturn(Optional.of(parentCategory));
-        when(categoryRepository.existsByName("Child")).thenReturn(false);
-
-        Category childCategory = new Category();
-        childCategory.setName("Child");
-        childCategory.setParent(parentCategory);
-
-        when(categoryRepository.save(any(Category.class))).thenReturn(childCategory);
+        when(bulkRepository.insertWithClosure("Child", 1L)).thenReturn(2L);
 
         Category result = categoryService.addElement("Parent", "Child");
 
@@ -102,6 +190,49 @@ class CategoryServiceImplTest {
         assertEquals("Parent", result.getName());
         assertEquals(1, result.getChildren().size());
         assertEquals("Child", result.getChildren().get(0).getName());
+        assertEquals(2L, result.getChildren().get(0).getId());
+        assertTrue(parentCategory.getChildren().isEmpty(), "Список подкатегорий управляемой сущности не должен меняться");
+        verify(bulkRepository, times(1)).insertWithClosure(any(), any());
+        verify(hierarchyRepository, never()).addNode(any(), any());
+        verify(entityCache).evictChildren(1L);
+    }
+
+    @Test
+    void testAddElement_MissingParent_ShouldInsertParentAndChild() {
+        when(categoryRepository.findByName("Parent")).thenReturn(Optional.empty());
+        when(bulkRepository.insertWithClosure("Parent", null)).thenReturn(1L);
+        when(bulkRepository.insertWithClosure("Child", 1L)).thenReturn(2L);
+
+        Category result = categoryService.addElement("Parent", "Child");
+
+        assertEquals(1L, result.getId());
+        verify(bulkRepository).insertWithClosure("Parent", null);
+        verify(bulkRepository).insertWithClosure("Child", 1L);
+    }
+
+    @Test
+    void testAddElement_ParentCreatedConcurrently_ShouldUseExistingParent() {
+        Category concurrent = new Category("Parent");
+        concurrent.setId(7L);
+        when(categoryRepository.findByName("Parent")).thenReturn(Optional.empty()).thenReturn(Optional.of(concurrent));
+        when(bulkRepository.insertWithClosure("Parent", null)).thenReturn(null);
+        when(bulkRepository.insertWithClosure("Child", 7L)).thenReturn(8L);
+
+        Category result = categoryService.addElement("Parent", "Child");
+
+        assertEquals(7L, result.getId());
+        verify(bulkRepository).insertWithClosure("Child", 7L);
+    }
+
+    @Test
+    void testAddElement_DuplicateChild_ShouldReportConflictFromInsertResult() {
+        Category parentCategory = new Category("Parent");
+        parentCategory.setId(1L);
+        when(categoryRepository.findByName("Parent")).thenReturn(Optional.of(parentCategory));
+        when(bulkRepository.insertWithClosure("Child", 1L)).thenReturn(null);
+
+        assertThrows(CategoryAlreadyExists.class, () -> categoryService.addElement("Parent", "Child"));
+        verify(entityCache, never()).evictChildren(any(Long.class));
     }
 
     @Test
@@ -124,6 +255,77 @@ class CategoryServiceImplTest {
         assertEquals("Категория и её подкатегории удалены: ToRemove", result);
     }
 
+    @Test
+    void testImportCategories_OrdersParentsBeforeChildren() {
+        when(bulkRepository.findExistingNames(anyCollection())).thenReturn(Set.of());
+
+        CategoryImportReport report = categoryService.importCategories(List.of(
+                new CategoryImportRow(2, "Child", "Parent"),
+                new CategoryImportRow(3, "Parent", null),
+                new CategoryImportRow(4, "Orphan", "Missing")));
+
+        ArgumentCaptor<List<CategoryImportRow>> captor = ArgumentCaptor.forClass(List.class);
+        verify(bulkRepository, times(1)).insertAll(captor.capture());
+        verify(entityCache).evictChildren();
+        List<String> inserted = captor.getValue().stream().map(CategoryImportRow::name).toList();
+
+        assertEquals(List.of("Parent", "Child", "Missing", "Orphan"), inserted);
+        assertEquals(4, report.imported());
+        assertFalse(report.hasConflicts());
+        assertEquals(3, meterRegistry.get(BotMetrics.EXCEL_ROWS).tag("direction", "import").counter().count());
+        assertEquals(1, meterRegistry.get(BotMetrics.REPOSITORY_LATENCY).tag("method", "insertAll").timer().count());
+    }
+
+    @Test
+    void testImportCategories_ReportsConflictsWithoutAborting() {
+        when(bulkRepository.findExistingNames(anyCollection())).thenReturn(Set.of("Existing"));
+
+        CategoryImportReport report = categoryService.importCategories(List.of(
+                new CategoryImportRow(2, "Existing", null),
+                new CategoryImportRow(3, "New", "Existing"),
+                new CategoryImportRow(4, "New", null),
+                new CategoryImportRow(5, "A", "B"),
+                new CategoryImportRow(6, "B", "A")));
+
+        assertEquals(1, report.imported());
+        assertEquals(4, report.conflictCount());
+        assertEquals(List.of(2L, 4L), report.conflicts().stream()
+                .map(conflict -> conflict.rowNumber()).toList().subList(0, 2));
+    }
+
+    @Test
+    void testImportCategories_ReportsNamesAddedConcurrently() {
+        when(bulkRepository.findExistingNames(anyCollection())).thenReturn(Set.of());
+        when(bulkRepository.insertAll(anyList())).thenReturn(List.of(
+                CategoryImportRow.missingParent("Parent"),
+                new CategoryImportRow(3, "Taken", null)));
+
+        CategoryImportReport report = categoryService.importCategories(List.of(
+                new CategoryImportRow(2, "Child", "Parent"),
+                new CategoryImportRow(3, "Taken", null)));
+
+        assertEquals(1, report.imported());
+        assertEquals(1, report.conflictCount(), "Созданный другим запросом родитель не является конфликтом строки");
+        assertEquals(new CategoryImportConflict(3, "Taken", "категория уже существует"), report.conflicts().get(0));
+        verify(hierarchyRepository).addNodesByName(List.of("Child"));
+    }
+
+    @Test
+    void testImportCategories_SplitsIntoBatches() {
+        when(bulkRepository.findExistingNames(anyCollection())).thenReturn(Set.of());
+        List<CategoryImportRow> rows = new ArrayList<>();
+        for (int i = 0; i < CategoryServiceImpl.IMPORT_BATCH_SIZE + 1; i++) {
+            rows.add(new CategoryImportRow(i + 1, "Category" + i, null));
+        }
+
+        CategoryImportReport report = categoryService.importCategories(rows);
+
+        assertEquals(rows.size(), report.imported());
+        verify(bulkRepository, times(2)).findExistingNames(anyCollection());
+        verify(bulkRepository, times(2)).insertAll(anyList());
+        verify(transactionManager, times(2)).commit(any());
+    }
+
     @Test
     void testGetAllCategories() {
         Category category1 = new Category();
@@ -141,4 +343,47 @@ class CategoryServiceImplTest {
         assertEquals("Category1", result.get(0).getName());
         assertEquals("Category2", result.get(1).getName());
     }
+
+    private static CategoryTreeRow treeRow(Long id, String name, Long parentId, int depth) {
+        return new CategoryTreeRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public Long getParentId() {
+                return parentId;
+            }
+
+            @Override
+            public int getDepth() {
+                return depth;
+            }
+        };
+    }
+
+    private static CategoryPathRow pathRow(Long id, String name, String ancestorName) {
+        return new CategoryPathRow() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getAncestorName() {
+                return ancestorName;
+            }
+        };
+    }
 }
@@ -0,0 +1,82 @@
+package category.tree.bot.updatescontrol;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatUpdateDispatcherTest {
+
+    private ChatUpdateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new ChatUpdateDispatcher(4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void submit_ShouldKeepOrderWithinChat() throws InterruptedException {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            int number = i;
+            dispatcher.submit(1L, () -> {
+                processed.add(number);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(IntStream.range(0, 1000).boxed().toList(), processed);
+    }
+
+    @Test
+    void submit_ShouldProcessDifferentChatsConcurrently() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(2);
+
+        for (long chatId = 1; chatId <= 2; chatId++) {
+            dispatcher.submit(chatId, () -> {
+                bothStarted.countDown();
+                try {
+                    if (bothStarted.await(5, TimeUnit.SECONDS)) {
+                        done.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Медленный чат не должен блокировать другие чаты");
+    }
+
+    @Test
+    void submit_ShouldContinueAfterFailedTaskAndReleaseQueue() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.submit(1L, () -> {
+            throw new IllegalStateException("Test exception");
+        });
+        dispatcher.submit(1L, done::countDown);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50 && dispatcher.getActiveChats() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, dispatcher.getActiveChats());
+    }
+}
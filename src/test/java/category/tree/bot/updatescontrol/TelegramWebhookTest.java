@@ -0,0 +1,154 @@
+package category.tree.bot.updatescontrol;
+
+import category.tree.bot.chatStates.InMemoryChatStateStore;
+import category.tree.bot.controller.TelegramWebhookController;
+import category.tree.bot.metrics.BotMetrics;
+import category.tree.bot.service.services.CategoryService;
+import category.tree.bot.updatescontrol.commands.CommandRegistry;
+import category.tree.bot.updatescontrol.dedup.UpdateDeduplicator;
+import category.tree.bot.updatescontrol.dedup.UpdateWatermarkStore;
+import category.tree.bot.updatescontrol.jobs.ImportJobManager;
+import category.tree.bot.updatescontrol.outbound.OutboundMessageScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TelegramWebhookTest {
+
+    private static final String TOKEN = "123:test";
+    private static final String SECRET = "webhook-secret";
+
+    private HttpServer botApi;
+    private final BlockingQueue<String> apiCalls = new LinkedBlockingQueue<>();
+
+    private ChatUpdateDispatcher dispatcher;
+    private OutboundMessageScheduler outbound;
+    private TelegramWebhookBotUpdatesControl webhookBot;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        botApi = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        botApi.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            apiCalls.add(path.substring(path.lastIndexOf('/') + 1) + " " + body);
+
+            String result = path.endsWith("/setWebhook")
+                    ? "true"
+                    : "{\"message_id\":1,\"date\":0,\"chat\":{\"id\":42,\"type\":\"private\"}}";
+            byte[] response = ("{\"ok\":true,\"result\":" + result + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        botApi.start();
+
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl("http://localhost:" + botApi.getAddress().getPort() + "/bot");
+
+        BotMetrics metrics = new BotMetrics(new SimpleMeterRegistry());
+        dispatcher = new ChatUpdateDispatcher(2);
+        outbound = new OutboundMessageScheduler(30, 1, 3, 1, 2, metrics);
+        TelegramBotUpdatesControl bot = new TelegramBotUpdatesControl(
+                options, "test_bot", TOKEN, mock(CategoryService.class), new CommandRegistry(),
+                new InMemoryChatStateStore(100, Duration.ofMinutes(30)), dispatcher, outbound,
+                new UpdateDeduplicator(mock(UpdateWatermarkStore.class), 1024), mock(ImportJobManager.class), metrics);
+        webhookBot = new TelegramWebhookBotUpdatesControl(options, "test_bot", TOKEN, "/telegram/webhook", bot::onUpdateReceived);
+
+        mockMvc = MockMvcBuilders.standaloneSetup(new TelegramWebhookController(webhookBot, SECRET))
+                .addPlaceholderValue("telegram.bot.webhook.path", "/telegram/webhook")
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.shutdown();
+        outbound.shutdown();
+        botApi.stop(0);
+    }
+
+    @Test
+    void registerWebhook_ShouldCallSetWebhookWithUrlAndSecret() throws Exception {
+        webhookBot.registerWebhook("https://bot.example.com/", SECRET);
+
+        String call = apiCalls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(call);
+        assertTrue(call.startsWith("setWebhook "));
+        assertTrue(call.contains("https://bot.example.com/telegram/webhook"));
+        assertTrue(call.contains(SECRET));
+    }
+
+    @Test
+    void webhookUpdate_ShouldRunCommandPipeline() throws Exception {
+        mockMvc.perform(post("/telegram/webhook")
+                        .header("X-Telegram-Bot-Api-Secret-Token", SECRET)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(startUpdate()))
+                .andExpect(status().isOk());
+
+        String call = apiCalls.poll(5, TimeUnit.SECONDS);
+        assertNotNull(call, "Бот должен ответить через Bot API");
+        assertTrue(call.startsWith("sendmessage "), call);
+        assertTrue(call.contains("\"chat_id\":\"42\""), call);
+    }
+
+    @Test
+    void webhookUpdate_Redelivered_ShouldBeProcessedOnce() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/telegram/webhook")
+                            .header("X-Telegram-Bot-Api-Secret-Token", SECRET)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(startUpdate()))
+                    .andExpect(status().isOk());
+        }
+
+        assertNotNull(apiCalls.poll(5, TimeUnit.SECONDS));
+        assertNull(apiCalls.poll(500, TimeUnit.MILLISECONDS), "Повторно доставленное обновление не должно обрабатываться");
+    }
+
+    @Test
+    void webhookUpdate_WithWrongSecret_ShouldBeRejected() throws Exception {
+        mockMvc.perform(post("/telegram/webhook")
+                        .header("X-Telegram-Bot-Api-Secret-Token", "wrong")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(startUpdate()))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/telegram/webhook")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(startUpdate()))
+                .andExpect(status().isUnauthorized());
+
+        assertNull(apiCalls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static String startUpdate() {
+        return """
+                {"update_id": 1,
+                 "message": {"message_id": 10, "date": 0, "text": "/start",
+                             "chat": {"id": 42, "type": "private"}}}
+                """;
+    }
+}
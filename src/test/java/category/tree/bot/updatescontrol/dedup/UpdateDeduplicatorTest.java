@@ -0,0 +1,132 @@
+package category.tree.bot.updatescontrol.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateDeduplicatorTest {
+
+    @Test
+    void tryAccept_ShouldSkipRepeatedAndOutOfOrderDuplicates() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(new MemoryStore(0), 128);
+
+        assertTrue(deduplicator.tryAccept(10));
+        assertTrue(deduplicator.tryAccept(12));
+        assertFalse(deduplicator.tryAccept(10));
+        assertTrue(deduplicator.tryAccept(11), "Обновление, пришедшее не по порядку, не является повтором");
+        assertFalse(deduplicator.tryAccept(11));
+        assertFalse(deduplicator.tryAccept(12));
+    }
+
+    @Test
+    void tryAccept_ShouldTreatUpdatesOlderThanWindowAsDuplicates() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(new MemoryStore(0), 64);
+
+        assertTrue(deduplicator.tryAccept(1));
+        assertTrue(deduplicator.tryAccept(100));
+        assertFalse(deduplicator.tryAccept(36), "Идентификатор за пределами окна нельзя проверить");
+        assertTrue(deduplicator.tryAccept(37));
+        assertTrue(deduplicator.tryAccept(1000), "Ячейки выпавших из окна идентификаторов должны освобождаться");
+        assertTrue(deduplicator.tryAccept(999));
+    }
+
+    @Test
+    void flush_ShouldPersistWatermarkAndSkipItAfterRestart() {
+        MemoryStore store = new MemoryStore(0);
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(store, 128);
+        deduplicator.tryAccept(5);
+        deduplicator.tryAccept(7);
+        deduplicator.complete(5);
+        deduplicator.complete(7);
+        deduplicator.flush();
+        deduplicator.flush();
+
+        assertEquals(7, store.value.get());
+        assertEquals(1, store.saves.get(), "Неизменённая отметка не должна сохраняться повторно");
+
+        UpdateDeduplicator restarted = new UpdateDeduplicator(store, 128);
+        assertFalse(restarted.tryAccept(6));
+        assertFalse(restarted.tryAccept(7));
+        assertTrue(restarted.tryAccept(8));
+    }
+
+    @Test
+    void flush_ShouldStopWatermarkBelowLowestUnprocessedUpdate() {
+        MemoryStore store = new MemoryStore(0);
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(store, 128);
+        deduplicator.tryAccept(5);
+        deduplicator.tryAccept(6);
+        deduplicator.tryAccept(7);
+        deduplicator.complete(5);
+        deduplicator.complete(7);
+        deduplicator.flush();
+
+        assertEquals(5, store.value.get(), "Отметка не должна обгонять необработанное обновление");
+
+        UpdateDeduplicator restarted = new UpdateDeduplicator(store, 128);
+        assertFalse(restarted.tryAccept(5));
+        assertTrue(restarted.tryAccept(6), "Необработанное до сбоя обновление должно выполниться после повторной доставки");
+
+        deduplicator.complete(6);
+        deduplicator.flush();
+        assertEquals(7, store.value.get());
+    }
+
+    @Test
+    void tryAccept_ShouldAcceptEachUpdateOnceUnderConcurrency() throws InterruptedException {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(new MemoryStore(0), 65536);
+        int threads = 4;
+        int updates = 10_000;
+        AtomicInteger accepted = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int id = 1; id <= updates; id++) {
+                        if (deduplicator.tryAccept(id)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(updates, accepted.get(), "Каждое обновление должно быть принято ровно один раз");
+    }
+
+    private static class MemoryStore implements UpdateWatermarkStore {
+        private final AtomicLong value;
+        private final AtomicInteger saves = new AtomicInteger();
+
+        MemoryStore(long value) {
+            this.value = new AtomicLong(value);
+        }
+
+        @Override
+        public long load() {
+            return value.get();
+        }
+
+        @Override
+        public void save(long updateId) {
+            saves.incrementAndGet();
+            value.accumulateAndGet(updateId, Math::max);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package category.tree.bot.updatescontrol.jobs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportJobManagerTest {
+
+    private final ImportJobManager manager = new ImportJobManager(1, 1, Duration.ofMillis(20));
+
+    @AfterEach
+    void tearDown() {
+        manager.shutdown();
+    }
+
+    @Test
+    void start_ShouldRunJobInBackgroundAndReportProgressUntilItStops() throws InterruptedException {
+        CountDownLatch reported = new CountDownLatch(3);
+        CountDownLatch finished = new CountDownLatch(1);
+        AtomicInteger chunks = new AtomicInteger();
+        ImportJob job = manager.create(1L);
+
+        assertTrue(manager.start(job, new ImportJobManager.Task() {
+            @Override
+            public void run(ImportJob job) {
+                try {
+                    job.start();
+                    while (true) {
+                        job.checkCancelled();
+                        job.addRows(1000);
+                        chunks.incrementAndGet();
+                        Thread.sleep(5);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }
+
+            @Override
+            public void reportProgress(ImportJob job) {
+                reported.countDown();
+            }
+        }));
+
+        assertTrue(reported.await(5, TimeUnit.SECONDS), "Ход задания должен сообщаться, пока оно выполняется");
+        assertSame(job, manager.cancel(1L));
+        assertTrue(finished.await(5, TimeUnit.SECONDS), "Отменённое задание должно остановиться на границе пакета");
+        assertEquals(chunks.get() * 1000L, job.getRows());
+        assertTrue(job.getRowsPerSecond() > 0);
+        waitUntilRemoved(1L);
+    }
+
+    @Test
+    void create_ShouldAllowOneJobPerChatAndRejectWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        ImportJobManager.Task blocking = task(release);
+
+        ImportJob first = manager.create(1L);
+        assertNull(manager.create(1L), "У чата может быть только одно задание");
+        assertTrue(manager.start(first, blocking));
+        assertTrue(manager.start(manager.create(2L), blocking), "Задание должно встать в очередь");
+
+        ImportJob rejected = manager.create(3L);
+        assertFalse(manager.start(rejected, blocking), "Переполненная очередь должна отклонять задания");
+        assertNull(manager.getJob(3L));
+
+        release.countDown();
+        waitUntilRemoved(1L);
+        waitUntilRemoved(2L);
+        assertNotNull(manager.create(1L));
+    }
+
+    private static ImportJobManager.Task task(CountDownLatch release) {
+        return new ImportJobManager.Task() {
+            @Override
+            public void run(ImportJob job) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void reportProgress(ImportJob job) {
+            }
+        };
+    }
+
+    private void waitUntilRemoved(long chatId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (manager.getJob(chatId) != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNull(manager.getJob(chatId));
+    }
+}
@@ -0,0 +1,159 @@
+package category.tree.bot.updatescontrol.outbound;
+
+import category.tree.bot.metrics.BotMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OutboundMessageSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BotMetrics metrics = new BotMetrics(meterRegistry);
+
+    private OutboundMessageScheduler scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void submit_ShouldKeepOrderAndRespectPerChatRate() throws Exception {
+        scheduler = new OutboundMessageScheduler(100, 10, 1, 3, 4, metrics);
+        List<String> sent = new CopyOnWriteArrayList<>();
+        List<Long> sentAt = new CopyOnWriteArrayList<>();
+        AbsSender sender = mock(AbsSender.class);
+        when(sender.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            sent.add(invocation.<SendMessage>getArgument(0).getText());
+            sentAt.add(System.nanoTime());
+            return new Message();
+        });
+
+        List<CompletableFuture<Message>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(scheduler.submit(1L, message(1L, "msg" + i), sender));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(IntStream.range(0, 5).mapToObj(i -> "msg" + i).toList(), sent);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(sentAt.get(4) - sentAt.get(0));
+        assertTrue(elapsed >= 350, "Сообщения отправлены слишком быстро: " + elapsed + " ms");
+    }
+
+    @Test
+    void submit_ShouldHonorRetryAfter() throws Exception {
+        scheduler = new OutboundMessageScheduler(30, 10, 3, 3, 2, metrics);
+        List<Long> attemptsAt = new CopyOnWriteArrayList<>();
+        TelegramApiRequestException tooManyRequests = rateLimited(1);
+        AbsSender sender = mock(AbsSender.class);
+        when(sender.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            attemptsAt.add(System.nanoTime());
+            if (attemptsAt.size() == 1) {
+                throw tooManyRequests;
+            }
+            return new Message();
+        });
+
+        scheduler.submit(1L, message(1L, "text"), sender).get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, attemptsAt.size());
+        long waited = TimeUnit.NANOSECONDS.toMillis(attemptsAt.get(1) - attemptsAt.get(0));
+        assertTrue(waited >= 950, "Повтор раньше retry_after: " + waited + " ms");
+        assertEquals(1, meterRegistry.get(BotMetrics.OUTBOUND_FAILURES).tag("reason", "rate_limited").counter().count());
+        assertEquals(1, meterRegistry.get(BotMetrics.OUTBOUND_LATENCY).tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void submit_RetryAfterInPrivateChat_ShouldPauseOtherChats() throws Exception {
+        scheduler = new OutboundMessageScheduler(30, 10, 3, 3, 2, metrics);
+        List<Long> attemptsAt = new CopyOnWriteArrayList<>();
+        TelegramApiRequestException tooManyRequests = rateLimited(1);
+        AbsSender sender = mock(AbsSender.class);
+        when(sender.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            attemptsAt.add(System.nanoTime());
+            if (attemptsAt.size() == 1) {
+                throw tooManyRequests;
+            }
+            return new Message();
+        });
+
+        CompletableFuture<Message> limited = scheduler.submit(1L, message(1L, "first"), sender);
+        while (meterRegistry.find(BotMetrics.OUTBOUND_FAILURES).tag("reason", "rate_limited").counter() == null) {
+            Thread.onSpinWait();
+        }
+        CompletableFuture<Message> other = scheduler.submit(2L, message(2L, "other"), sender);
+        CompletableFuture.allOf(limited, other).get(5, TimeUnit.SECONDS);
+
+        long waited = TimeUnit.NANOSECONDS.toMillis(attemptsAt.get(1) - attemptsAt.get(0));
+        assertTrue(waited >= 950, "Другой чат отправлен раньше retry_after: " + waited + " ms");
+    }
+
+    @Test
+    void submit_Document_ShouldBeSentThroughQueue() throws Exception {
+        scheduler = new OutboundMessageScheduler(30, 10, 3, 3, 2, metrics);
+        AbsSender sender = mock(AbsSender.class);
+        Message sent = new Message();
+        when(sender.execute(any(SendDocument.class))).thenReturn(sent);
+
+        SendDocument document = SendDocument.builder().chatId("1").document(new InputFile("file_id")).build();
+
+        assertSame(sent, scheduler.submit(1L, document, sender).get(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get(BotMetrics.OUTBOUND_LATENCY).tag("method", "senddocument")
+                .tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void submit_NonRetryableError_ShouldFailAndContinueWithNextMessage() throws Exception {
+        scheduler = new OutboundMessageScheduler(30, 10, 3, 3, 2, metrics);
+        TelegramApiRequestException badRequest = mock(TelegramApiRequestException.class);
+        when(badRequest.getErrorCode()).thenReturn(400);
+        AbsSender sender = mock(AbsSender.class);
+        when(sender.execute(any(SendMessage.class))).thenAnswer(invocation -> {
+            if ("bad".equals(invocation.<SendMessage>getArgument(0).getText())) {
+                throw badRequest;
+            }
+            return new Message();
+        });
+
+        CompletableFuture<Message> failed = scheduler.submit(1L, message(1L, "bad"), sender);
+        CompletableFuture<Message> delivered = scheduler.submit(1L, message(1L, "good"), sender);
+
+        assertNotNull(delivered.get(5, TimeUnit.SECONDS));
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertSame(badRequest, error.getCause());
+        assertEquals(1, meterRegistry.get(BotMetrics.OUTBOUND_FAILURES).tag("reason", "client_error").counter().count());
+    }
+
+    private static SendMessage message(long chatId, String text) {
+        return SendMessage.builder().chatId(String.valueOf(chatId)).text(text).build();
+    }
+
+    private static TelegramApiRequestException rateLimited(int retryAfter) {
+        ResponseParameters parameters = new ResponseParameters();
+        parameters.setRetryAfter(retryAfter);
+        TelegramApiRequestException exception = mock(TelegramApiRequestException.class);
+        when(exception.getErrorCode()).thenReturn(429);
+        when(exception.getParameters()).thenReturn(parameters);
+        return exception;
+    }
+}
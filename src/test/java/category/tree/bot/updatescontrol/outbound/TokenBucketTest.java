@@ -0,0 +1,45 @@
+package category.tree.bot.updatescontrol.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void tryAcquire_ShouldRefillAtConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(0));
+        assertEquals(SECOND / 2, bucket.tryAcquire(0));
+        assertEquals(0, bucket.tryAcquire(SECOND / 2));
+    }
+
+    @Test
+    void pause_ShouldBlockUntilPauseEnds() {
+        TokenBucket bucket = new TokenBucket(2, 2, 0);
+
+        bucket.pause(0, 3 * SECOND);
+
+        assertFalse(bucket.isFull(SECOND));
+        assertEquals(2 * SECOND, bucket.delayNanos(SECOND));
+        assertEquals(0, bucket.tryAcquire(3 * SECOND));
+    }
+
+    @Test
+    void setRate_ShouldLimitAccumulatedTokensAndSlowRefill() {
+        TokenBucket bucket = new TokenBucket(30, 30, 0);
+
+        bucket.setRate(10, 10, 0);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, bucket.tryAcquire(0));
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire(0), "После уменьшения частоты токен должен появляться реже");
+    }
+}